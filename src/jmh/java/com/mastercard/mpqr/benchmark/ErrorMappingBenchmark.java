@@ -0,0 +1,68 @@
+package com.mastercard.mpqr.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.web.ExceptionController;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Error path: unwrapping a failed MPQR API call, mapping it to an error response and writing it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ErrorMappingBenchmark {
+
+    ObjectMapper objectMapper;
+
+    ExceptionController exceptionController;
+
+    CompletionException failure;
+
+    @Setup
+    public void setup() {
+        objectMapper = Payloads.objectMapper();
+        exceptionController = new ExceptionController();
+        failure = new CompletionException(new MasterCardException("transfer_reference", "RESOURCE_UNKNOWN",
+                "Record not found", HttpStatus.NOT_FOUND));
+    }
+
+    @Benchmark
+    public ResponseEntity<?> mapError() {
+        return exceptionController.handleSQLException(MasterCardException.from(failure));
+    }
+
+    @Benchmark
+    public byte[] writeError() throws IOException {
+        return objectMapper.writeValueAsBytes(exceptionController.handleSQLException(MasterCardException.from(failure)).getBody());
+    }
+
+    /**
+     * Cost of creating the exception itself, dominated by filling its stack trace
+     */
+    @Benchmark
+    public MasterCardException createException() {
+        return new MasterCardException("transfer_reference", "RESOURCE_UNKNOWN", "Record not found", HttpStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,52 @@
+package com.mastercard.mpqr.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Fully populated payloads of the test resources and the object mapper configured like the application
+ */
+final class Payloads {
+
+    static final String PAYMENT_REQUEST = "/MerchantTransferPaymentRequest.json";
+
+    static final String FUNDING_AND_PAYMENT_REQUEST = "/MerchantTransferFundingAndPaymentRequest.json";
+
+    static final String PAYMENT_RESPONSE = "/MerchantTransferPaymentResponse.json";
+
+    private Payloads() {
+    }
+
+    /**
+     * Same configuration as in MasterCardServiceImpl.init
+     */
+    static ObjectMapper objectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE);
+        return objectMapper;
+    }
+
+    static byte[] read(String resourceName) {
+        try (InputStream in = Payloads.class.getResourceAsStream(resourceName)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
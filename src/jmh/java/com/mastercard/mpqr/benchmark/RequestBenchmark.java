@@ -0,0 +1,119 @@
+package com.mastercard.mpqr.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import com.mastercard.mpqr.service.RequestMapFlattener;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request path: deserialization of payment requests and their conversion to the MPQR client RequestMap
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RequestBenchmark {
+
+    ObjectMapper objectMapper;
+
+    RequestMapFlattener requestMapFlattener;
+
+    byte[] paymentJson;
+
+    byte[] fundingAndPaymentJson;
+
+    MerchantTransferPaymentRequest payment;
+
+    MerchantTransferFundingAndPaymentRequest fundingAndPayment;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = Payloads.objectMapper();
+        requestMapFlattener = new RequestMapFlattener(objectMapper);
+        paymentJson = Payloads.read(Payloads.PAYMENT_REQUEST);
+        fundingAndPaymentJson = Payloads.read(Payloads.FUNDING_AND_PAYMENT_REQUEST);
+        payment = objectMapper.readValue(paymentJson, MerchantTransferPaymentRequest.class);
+        fundingAndPayment = objectMapper.readValue(fundingAndPaymentJson, MerchantTransferFundingAndPaymentRequest.class);
+    }
+
+    @Benchmark
+    public MerchantTransferPaymentRequest readPayment() throws IOException {
+        return objectMapper.readValue(paymentJson, MerchantTransferPaymentRequest.class);
+    }
+
+    @Benchmark
+    public MerchantTransferFundingAndPaymentRequest readFundingAndPayment() throws IOException {
+        return objectMapper.readValue(fundingAndPaymentJson, MerchantTransferFundingAndPaymentRequest.class);
+    }
+
+    @Benchmark
+    public RequestMap flattenPayment() {
+        return requestMapFlattener.toRequestMap(payment);
+    }
+
+    @Benchmark
+    public RequestMap flattenFundingAndPayment() {
+        return requestMapFlattener.toRequestMap(fundingAndPayment);
+    }
+
+    /**
+     * Baseline: former addKeys conversion through the json tree of the request
+     */
+    @Benchmark
+    public RequestMap flattenPaymentJsonTree() throws IOException {
+        return flattenJsonTree(payment);
+    }
+
+    @Benchmark
+    public RequestMap flattenFundingAndPaymentJsonTree() throws IOException {
+        return flattenJsonTree(fundingAndPayment);
+    }
+
+    private RequestMap flattenJsonTree(Object request) throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        RequestMap requestMap = new RequestMap();
+        addKeys("", objectMapper.readTree(objectMapper.writeValueAsString(request)), map);
+        map.forEach(requestMap::set);
+        return requestMap;
+    }
+
+    private void addKeys(String currentPath, JsonNode jsonNode, Map<String, Object> map) {
+        if (jsonNode.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> iter = jsonNode.properties().iterator();
+            String pathPrefix = currentPath.isEmpty() ? "" : currentPath + ".";
+            while (iter.hasNext()) {
+                Map.Entry<String, JsonNode> entry = iter.next();
+                addKeys(pathPrefix + entry.getKey(), entry.getValue(), map);
+            }
+        } else if (jsonNode.isArray()) {
+            for (int i = 0; i < jsonNode.size(); i++) {
+                addKeys(currentPath + "[" + i + "]", jsonNode.get(i), map);
+            }
+        } else if (jsonNode.isValueNode()) {
+            map.put(currentPath, jsonNode.asText());
+        }
+    }
+}
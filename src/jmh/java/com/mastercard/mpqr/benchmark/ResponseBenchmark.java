@@ -0,0 +1,60 @@
+package com.mastercard.mpqr.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response path: writing a merchant transfer response of MPQR API to the client
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ResponseBenchmark {
+
+    ObjectMapper objectMapper;
+
+    Map<String, Object> response;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+        objectMapper = Payloads.objectMapper();
+        response = objectMapper.readValue(Payloads.read(Payloads.PAYMENT_RESPONSE), Map.class);
+    }
+
+    /**
+     * Current path, the response map is written once by the message converter
+     */
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    /**
+     * Baseline: former JSONObject.toJSONString conversion, written again as a string by the message converter
+     */
+    @Benchmark
+    public byte[] toJSONStringResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(JSONObject.toJSONString(response));
+    }
+}
@@ -0,0 +1,99 @@
+package com.mastercard.mpqr.benchmark;
+
+import com.mastercard.mpqr.service.OAuthSigner;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OAuth 1.0a RSA-SHA256 signing cost of a payment request: body hash, signature base string and RSA
+ * signature with a 2048 bit key like the sandbox p12 keys. {@code sign} creates the engines for every call
+ * like the MPQR client, {@code signer} is {@link OAuthSigner}. Run with {@code -t 1} then {@code -t <cores>}
+ * to compare how both scale with threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SigningBenchmark {
+
+    static final String URL = "https://sandbox.api.mastercard.com/send/v1/partners/ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo/merchant/transfers/payment";
+
+    byte[] body;
+
+    PrivateKey privateKey;
+
+    OAuthSigner signer;
+
+    HttpEntity entity;
+
+    URI uri;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        body = Payloads.read(Payloads.PAYMENT_REQUEST);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        privateKey = generator.generateKeyPair().getPrivate();
+        signer = new OAuthSigner("consumer-key", privateKey);
+        entity = new ByteArrayEntity(body, ContentType.APPLICATION_JSON);
+        uri = URI.create(URL);
+    }
+
+    @Benchmark
+    public String bodyHash() throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+    }
+
+    @Benchmark
+    public byte[] sign() throws Exception {
+        String bodyHash = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        String parameters = "oauth_body_hash=" + encode(bodyHash)
+                + "&oauth_consumer_key=" + encode("consumer-key")
+                + "&oauth_nonce=" + encode(UUID.randomUUID().toString())
+                + "&oauth_signature_method=RSA-SHA256"
+                + "&oauth_timestamp=" + System.currentTimeMillis() / 1000
+                + "&oauth_version=1.0";
+        String baseString = "POST&" + encode(URL) + "&" + encode(parameters);
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(privateKey);
+        signature.update(baseString.getBytes(StandardCharsets.UTF_8));
+        return signature.sign();
+    }
+
+    @Benchmark
+    public String signer() throws Exception {
+        return signer.authorizationHeader("POST", uri, entity);
+    }
+
+    private static String encode(String value) throws Exception {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+}
@@ -0,0 +1,87 @@
+package com.mastercard.mpqr.loadtest;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Garbage collections and allocations of this jvm between start and stop. Allocations are summed
+ * over the threads alive at stop, bytes allocated by threads which ended in between are missed.
+ * Peaks of platform threads and heap compare thread modes, virtual threads are not counted as threads.
+ */
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class JvmStats {
+
+    long collections;
+
+    long collectionMillis;
+
+    long allocatedBytes;
+
+    int peakThreads;
+
+    long peakHeapBytes;
+
+    @Getter(AccessLevel.NONE)
+    Map<Long, Long> allocatedAtStart;
+
+    static JvmStats start() {
+        JvmStats stats = new JvmStats();
+        stats.collections = -collections();
+        stats.collectionMillis = -collectionMillis();
+        stats.allocatedAtStart = allocatedBytes();
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        return stats;
+    }
+
+    void stop() {
+        collections += collections();
+        collectionMillis += collectionMillis();
+        allocatedBytes().forEach((thread, allocated) ->
+                allocatedBytes += allocated - allocatedAtStart.getOrDefault(thread, 0L));
+        peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+        // peaks of the pools are not simultaneous, their sum is an upper bound
+        peakHeapBytes = heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(Collectors.toList());
+    }
+
+    private static long collections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long collectionMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static Map<Long, Long> allocatedBytes() {
+        Map<Long, Long> allocated = new HashMap<>();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    allocated.put(ids[i], bytes[i]);
+                }
+            }
+        }
+        return allocated;
+    }
+}
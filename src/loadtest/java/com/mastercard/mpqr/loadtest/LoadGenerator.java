@@ -0,0 +1,231 @@
+package com.mastercard.mpqr.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open model load generator: requests of every operation are due at a constant rate whatever the
+ * response times, and latency is measured from the due time so slow responses are not hidden by
+ * fewer requests (coordinated omission). Retrievals use transfers created earlier in the run.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class LoadGenerator {
+
+    static final int KNOWN_TRANSFERS = 10000;
+
+    LoadTestOptions options;
+
+    String baseUrl;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    String paymentTemplate;
+
+    String paymentTemplateRef;
+
+    String fundingAndPaymentTemplate;
+
+    String fundingAndPaymentTemplateRef;
+
+    /**
+     * Prefix of the transfer references of this run, so runs against the same stub do not collide
+     */
+    String runPrefix = String.format("%010d", ThreadLocalRandom.current().nextLong(10_000_000_000L));
+
+    AtomicLong sequence = new AtomicLong();
+
+    AtomicReferenceArray<String[]> transfers = new AtomicReferenceArray<>(KNOWN_TRANSFERS);
+
+    AtomicInteger transferCount = new AtomicInteger();
+
+    Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    @NonFinal
+    volatile long recordFrom = Long.MAX_VALUE;
+
+    @NonFinal
+    volatile long recordUntil = Long.MAX_VALUE;
+
+    public LoadGenerator(LoadTestOptions options, String baseUrl) throws IOException {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        paymentTemplate = resource("/MerchantTransferPaymentRequest.json");
+        paymentTemplateRef = objectMapper.readTree(paymentTemplate).findValue("transfer_reference").asText();
+        fundingAndPaymentTemplate = resource("/MerchantTransferFundingAndPaymentRequest.json");
+        fundingAndPaymentTemplateRef = objectMapper.readTree(fundingAndPaymentTemplate).findValue("transfer_reference").asText();
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    /**
+     * Runs the warmup then the recorded phase and waits for the last recorded request
+     *
+     * @return jvm activity during the recorded phase
+     */
+    public JvmStats run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(options.getConcurrency());
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Operation.values().length);
+        long start = System.nanoTime();
+        for (Operation operation : Operation.values()) {
+            double rate = operation.rate(options);
+            if (rate <= 0) {
+                continue;
+            }
+            long period = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            AtomicLong due = new AtomicLong();
+            scheduler.scheduleAtFixedRate(() -> {
+                long dueAt = start + due.getAndIncrement() * period;
+                workers.execute(() -> call(operation, dueAt));
+            }, 0, period, TimeUnit.NANOSECONDS);
+        }
+
+        TimeUnit.SECONDS.sleep(options.getWarmupSeconds());
+        JvmStats jvmStats = JvmStats.start();
+        recordFrom = System.nanoTime();
+        log.info("Warmup done, recording for {} seconds", options.getDurationSeconds());
+        TimeUnit.SECONDS.sleep(options.getDurationSeconds());
+        recordUntil = System.nanoTime();
+        jvmStats.stop();
+        scheduler.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.MINUTES);
+        return jvmStats;
+    }
+
+    public Map<Operation, OperationStats> getStats() {
+        return stats;
+    }
+
+    /**
+     * Duration of the recorded phase, requests due within it are recorded
+     */
+    public long getRecordedNanos() {
+        return recordUntil - recordFrom;
+    }
+
+    private void call(Operation operation, long dueAt) {
+        boolean recorded = dueAt >= recordFrom && dueAt < recordUntil;
+        String[] transfer = null;
+        if (operation == Operation.BY_ID || operation == Operation.BY_REF) {
+            transfer = randomTransfer();
+            if (transfer == null) {
+                if (recorded) {
+                    stats.get(operation).skip();
+                }
+                return;
+            }
+        }
+
+        int status;
+        try {
+            switch (operation) {
+                case PAYMENT:
+                    status = create("/merchantTransferPayment", paymentTemplate, paymentTemplateRef);
+                    break;
+                case FUNDING_AND_PAYMENT:
+                    status = create("/merchantTransferFundingAndPayment", fundingAndPaymentTemplate, fundingAndPaymentTemplateRef);
+                    break;
+                case BY_ID:
+                    status = send("GET", "/byId?partnerId=" + encode(options.getPartnerId()) + "&transferId=" + encode(transfer[0]), null, null);
+                    break;
+                default:
+                    status = send("GET", "/byRef?partnerId=" + encode(options.getPartnerId()) + "&ref=" + encode(transfer[1]), null, null);
+                    break;
+            }
+        } catch (IOException e) {
+            status = 0;
+        }
+        if (recorded) {
+            stats.get(operation).record(System.nanoTime() - dueAt, status);
+        }
+    }
+
+    private int create(String path, String template, String templateRef) throws IOException {
+        String ref = runPrefix + String.format("%030d", sequence.incrementAndGet());
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        int status = send("POST", path, template.replace(templateRef, ref), response);
+        if (status == 200) {
+            JsonNode id = objectMapper.readTree(response.toByteArray()).findValue("id");
+            if (id != null) {
+                transfers.set(transferCount.getAndIncrement() % KNOWN_TRANSFERS, new String[]{id.asText(), ref});
+            }
+        }
+        return status;
+    }
+
+    private String[] randomTransfer() {
+        int count = Math.min(transferCount.get(), KNOWN_TRANSFERS);
+        return count == 0 ? null : transfers.get(ThreadLocalRandom.current().nextInt(count));
+    }
+
+    /**
+     * Sends the request and reads the whole response so the connection is kept alive
+     */
+    private int send(String method, String path, String body, OutputStream response) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(baseUrl + path).toURL().openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                for (int read; (read = in.read(buffer)) != -1; ) {
+                    if (response != null) {
+                        response.write(buffer, 0, read);
+                    }
+                }
+            }
+        }
+        return status;
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = LoadGenerator.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.mastercard.mpqr.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Machine readable result of a load test run and its comparison with a stored baseline
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class LoadReport {
+
+    ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    LoadTestOptions options;
+
+    Map<String, Object> result = new LinkedHashMap<>();
+
+    public LoadReport(LoadTestOptions options, LoadGenerator generator, JvmStats jvmStats) {
+        this.options = options;
+        double seconds = generator.getRecordedNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+        result.put("finished", Instant.now().toString());
+        result.put("target", options.getTarget().isEmpty() ? "in-process" : options.getTarget());
+        result.put("duration_seconds", seconds);
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        generator.getStats().forEach((operation, stats) -> {
+            if (operation.rate(options) > 0) {
+                operations.put(operation.name(), operation(operation, stats, seconds));
+            }
+        });
+        result.put("operations", operations);
+
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        jvm.put("gc_collections", jvmStats.getCollections());
+        jvm.put("gc_millis", jvmStats.getCollectionMillis());
+        jvm.put("allocated_bytes", jvmStats.getAllocatedBytes());
+        jvm.put("allocated_bytes_per_second", (long) (jvmStats.getAllocatedBytes() / seconds));
+        jvm.put("peak_threads", jvmStats.getPeakThreads());
+        jvm.put("peak_heap_bytes", jvmStats.getPeakHeapBytes());
+        result.put("jvm", jvm);
+    }
+
+    public void write() throws IOException {
+        File file = new File(options.getResult());
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writeValue(file, result);
+    }
+
+    public void writeBaseline() throws IOException {
+        objectMapper.writeValue(new File(options.getBaseline()), result);
+    }
+
+    /**
+     * Compares throughput and p99 latency of every operation with the baseline, if there is one
+     *
+     * @return regressions, empty if none
+     */
+    public List<String> regressions() throws IOException {
+        List<String> regressions = new ArrayList<>();
+        JsonNode operations = objectMapper.valueToTree(result).path("operations");
+        operations.properties().forEach(entry -> {
+            double errorRate = entry.getValue().path("error_rate").asDouble();
+            if (errorRate > options.getMaxErrorRate()) {
+                regressions.add(String.format("%s error rate %.4f over %.4f", entry.getKey(), errorRate, options.getMaxErrorRate()));
+            }
+        });
+
+        File baselineFile = new File(options.getBaseline());
+        if (!baselineFile.exists()) {
+            return regressions;
+        }
+        JsonNode baseline = objectMapper.readTree(baselineFile).path("operations");
+        baseline.properties().forEach(entry -> {
+            JsonNode current = operations.path(entry.getKey());
+            if (current.isMissingNode()) {
+                return;
+            }
+            double baselineThroughput = entry.getValue().path("throughput").asDouble();
+            double throughput = current.path("throughput").asDouble();
+            if (throughput < baselineThroughput * (1 - options.getMaxThroughputDrop())) {
+                regressions.add(String.format("%s throughput %.1f/s below baseline %.1f/s", entry.getKey(), throughput, baselineThroughput));
+            }
+            double baselineP99 = entry.getValue().path("latency_millis").path("p99").asDouble();
+            double p99 = current.path("latency_millis").path("p99").asDouble();
+            if (p99 > baselineP99 * (1 + options.getMaxP99Increase())) {
+                regressions.add(String.format("%s p99 %.1f ms above baseline %.1f ms", entry.getKey(), p99, baselineP99));
+            }
+        });
+        return regressions;
+    }
+
+    public String toJson() throws IOException {
+        return objectMapper.writeValueAsString(result);
+    }
+
+    private Map<String, Object> operation(Operation operation, OperationStats stats, double seconds) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long requests = stats.getRequests();
+        result.put("target_rate", operation.rate(options));
+        result.put("requests", requests);
+        result.put("skipped", stats.getSkipped());
+        result.put("throughput", (requests - stats.getErrors()) / seconds);
+        result.put("error_rate", requests == 0 ? 0 : stats.getErrors() / (double) requests);
+        result.put("status_codes", stats.getStatusCodes());
+
+        Histogram latencies = stats.getLatencies();
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("mean", latencies.getMean() / 1000);
+        percentiles.put("p50", millis(latencies, 50));
+        percentiles.put("p90", millis(latencies, 90));
+        percentiles.put("p99", millis(latencies, 99));
+        percentiles.put("p999", millis(latencies, 99.9));
+        percentiles.put("max", latencies.getMaxValue() / 1000.0);
+        result.put("latency_millis", percentiles);
+        return result;
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,66 @@
+package com.mastercard.mpqr.loadtest;
+
+import com.mastercard.mpqr.MpqrApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the application over http with a mix of payments, funding and payments and retrievals,
+ * writes the result as json and fails when it regressed against the stored baseline.
+ * Without a target the application is started in process with the stub profile, so MPQR API calls
+ * go to the in-process stub and jvm stats include the application.
+ * <p>
+ * mvn -P loadtest test-compile exec:exec -Dloadtest.args="durationSeconds=120 --spring.profiles.active=stub,local"
+ * <p>
+ * Thread modes are compared under a slow MPQR API on Java 21, each run against its own baseline, e.g.
+ * <pre>
+ * -Dloadtest.args="concurrency=2000 byIdRate=1500 baseline=target/loadtest/platform.json updateBaseline=true
+ *     --com.mastercard.stub.median-latency-millis=1000 --com.mastercard.stub.threads=4000 --com.mastercard.threads.mode=PLATFORM"
+ * </pre>
+ * then the same with --com.mastercard.threads.mode=VIRTUAL, comparing throughput, latency, peak threads and heap.
+ */
+@Slf4j
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        System.setProperty("http.maxConnections", String.valueOf(options.getConcurrency()));
+
+        ConfigurableApplicationContext application = null;
+        String baseUrl = options.getTarget();
+        if (baseUrl.isEmpty()) {
+            List<String> applicationArgs = new ArrayList<>(options.getApplicationArgs());
+            applicationArgs.add("--server.port=0");
+            if (applicationArgs.stream().noneMatch(arg -> arg.startsWith("--spring.profiles.active="))) {
+                applicationArgs.add("--spring.profiles.active=stub");
+            }
+            application = SpringApplication.run(MpqrApplication.class, applicationArgs.toArray(new String[0]));
+            baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) application).getWebServer().getPort();
+        }
+
+        List<String> regressions;
+        try {
+            LoadGenerator generator = new LoadGenerator(options, baseUrl);
+            JvmStats jvmStats = generator.run();
+            LoadReport report = new LoadReport(options, generator, jvmStats);
+            report.write();
+            log.info("Load test result written to {}:\n{}", options.getResult(), report.toJson());
+            if (options.isUpdateBaseline()) {
+                report.writeBaseline();
+                log.info("Baseline {} updated", options.getBaseline());
+            }
+            regressions = options.isUpdateBaseline() ? new ArrayList<>() : report.regressions();
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+        regressions.forEach(regression -> log.error("Regression: {}", regression));
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+}
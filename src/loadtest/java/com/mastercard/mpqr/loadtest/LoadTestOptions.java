@@ -0,0 +1,94 @@
+package com.mastercard.mpqr.loadtest;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options of the load test given as name=value arguments, arguments starting with -- are passed
+ * to the application started in process
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LoadTestOptions {
+    /**
+     * Base url of a running application, the application is started in process with the stub profile if empty
+     */
+    String target = "";
+    /**
+     * Requests per second of each operation
+     */
+    double paymentRate = 50;
+    double fundingAndPaymentRate = 20;
+    double byIdRate = 100;
+    double byRefRate = 100;
+    /**
+     * Warmup is run at the same rates but not recorded
+     */
+    int warmupSeconds = 30;
+    int durationSeconds = 60;
+    /**
+     * Max number of requests in flight, requests over it wait and their wait counts in their latency
+     */
+    int concurrency = 200;
+    String partnerId = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+    String result = "target/loadtest/result.json";
+    String baseline = "src/loadtest/baseline.json";
+    /**
+     * Stores the result as the new baseline instead of comparing to it
+     */
+    boolean updateBaseline;
+    /**
+     * Max throughput drop of an operation against the baseline
+     */
+    double maxThroughputDrop = 0.1;
+    /**
+     * Max p99 latency increase of an operation against the baseline
+     */
+    double maxP99Increase = 0.2;
+    /**
+     * Max share of failed requests of an operation
+     */
+    double maxErrorRate = 0.01;
+    List<String> applicationArgs = new ArrayList<>();
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                options.applicationArgs.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            options.set(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "target": target = value; break;
+            case "paymentRate": paymentRate = Double.parseDouble(value); break;
+            case "fundingAndPaymentRate": fundingAndPaymentRate = Double.parseDouble(value); break;
+            case "byIdRate": byIdRate = Double.parseDouble(value); break;
+            case "byRefRate": byRefRate = Double.parseDouble(value); break;
+            case "warmupSeconds": warmupSeconds = Integer.parseInt(value); break;
+            case "durationSeconds": durationSeconds = Integer.parseInt(value); break;
+            case "concurrency": concurrency = Integer.parseInt(value); break;
+            case "partnerId": partnerId = value; break;
+            case "result": result = value; break;
+            case "baseline": baseline = value; break;
+            case "updateBaseline": updateBaseline = Boolean.parseBoolean(value); break;
+            case "maxThroughputDrop": maxThroughputDrop = Double.parseDouble(value); break;
+            case "maxP99Increase": maxP99Increase = Double.parseDouble(value); break;
+            case "maxErrorRate": maxErrorRate = Double.parseDouble(value); break;
+            default: throw new IllegalArgumentException("Unknown option: " + name);
+        }
+    }
+}
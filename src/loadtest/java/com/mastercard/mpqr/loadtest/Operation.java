@@ -0,0 +1,24 @@
+package com.mastercard.mpqr.loadtest;
+
+/**
+ * Endpoints driven by the load test
+ */
+public enum Operation {
+    PAYMENT,
+    FUNDING_AND_PAYMENT,
+    BY_ID,
+    BY_REF;
+
+    double rate(LoadTestOptions options) {
+        switch (this) {
+            case PAYMENT:
+                return options.getPaymentRate();
+            case FUNDING_AND_PAYMENT:
+                return options.getFundingAndPaymentRate();
+            case BY_ID:
+                return options.getByIdRate();
+            default:
+                return options.getByRefRate();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.mastercard.mpqr.loadtest;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies in microseconds and outcomes of the recorded requests of one operation
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OperationStats {
+
+    Histogram latencies = new ConcurrentHistogram(TimeUnit.HOURS.toMicros(1), 3);
+
+    LongAdder errors = new LongAdder();
+
+    LongAdder skipped = new LongAdder();
+
+    ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+
+    /**
+     * @param latencyNanos from the time the request was due, so waiting for a free connection counts
+     * @param status       http status, 0 if the request failed without response
+     */
+    void record(long latencyNanos, int status) {
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), latencies.getHighestTrackableValue()));
+        statusCodes.computeIfAbsent(status, code -> new LongAdder()).increment();
+        if (status != 200) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Request not sent as no transfer was created yet to retrieve
+     */
+    void skip() {
+        skipped.increment();
+    }
+
+    Histogram getLatencies() {
+        return latencies;
+    }
+
+    long getRequests() {
+        return latencies.getTotalCount();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    long getSkipped() {
+        return skipped.sum();
+    }
+
+    Map<Integer, Long> getStatusCodes() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCodes.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,33 @@
+package com.mastercard.mpqr.audit;
+
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+/**
+ * MPQR API call waiting for the journal writer. Request and response are masked and serialized by the writer,
+ * not by the thread of the call.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class AuditEvent {
+    long timestamp;
+    long durationNanos;
+    UpstreamOperation operation;
+    String partnerId;
+    /**
+     * Transfer reference of payments and retrievals by reference, transfer id of retrievals by id
+     */
+    String key;
+    Object request;
+    Map<String, Object> response;
+    int status;
+    String source;
+    String reasonCode;
+    String message;
+}
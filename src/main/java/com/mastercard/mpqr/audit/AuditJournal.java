@@ -0,0 +1,340 @@
+package com.mastercard.mpqr.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mastercard.mpqr.config.AuditConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Audit journal of MPQR API calls. Calls are handed to a background writer through a lock-free ring buffer,
+ * the writer masks them and appends them to memory mapped segments, so the calling thread neither serializes
+ * nor does any I/O. Calls are dropped from the journal rather than waiting when the writer falls behind.
+ * <p>
+ * A segment starts with {@link #MAGIC} and {@link #VERSION}, followed by records of
+ * payload length, CRC32 of the payload, timestamp, duration in nanoseconds, operation ordinal, http status
+ * and the masked json payload. A zero length ends the segment. Segments are read by {@link AuditJournalReader}.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class AuditJournal {
+
+    static final int MAGIC = 0x4D505141;
+
+    static final int VERSION = 1;
+
+    static final int SEGMENT_HEADER_BYTES = 8;
+
+    static final int RECORD_HEADER_BYTES = 4 + 4 + 8 + 8 + 1 + 2;
+
+    static final String SEGMENT_PREFIX = "mpqr-audit-";
+
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    AuditConfiguration configuration;
+
+    ObjectMapper objectMapper;
+
+    MpscRingBuffer<AuditEvent> buffer;
+
+    LongAdder recorded = new LongAdder();
+
+    LongAdder dropped = new LongAdder();
+
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(4096);
+
+    CRC32 crc = new CRC32();
+
+    @NonFinal
+    volatile boolean running;
+
+    @NonFinal
+    Thread writer;
+
+    @NonFinal
+    MappedByteBuffer segment;
+
+    @NonFinal
+    long segmentSequence;
+
+    @NonFinal
+    long forcedAt;
+
+    @NonFinal
+    boolean dirty;
+
+    public AuditJournal(AuditConfiguration configuration, ObjectMapper objectMapper) {
+        this.configuration = configuration;
+        this.objectMapper = objectMapper;
+        this.buffer = new MpscRingBuffer<>(configuration.getBufferSize());
+    }
+
+    /**
+     * Starts the writer after the last existing segment
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        List<Path> segments = segments(Paths.get(configuration.getDirectory()));
+        if (!segments.isEmpty()) {
+            segmentSequence = sequence(segments.get(segments.size() - 1));
+        }
+        running = true;
+        writer = new Thread(this::drain, "mpqr-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes the records still in the buffer and forces them to disk
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Journals a MPQR API call if sampled, failed calls are journaled whatever the sample rate
+     *
+     * @param operation
+     * @param partnerId
+     * @param key       transfer reference or transfer id
+     * @param request   payment request or null for retrievals
+     * @param call      MPQR API call
+     * @return response from MPQR API
+     */
+    public Map<String, Object> record(UpstreamOperation operation, String partnerId, String key, Object request,
+                                      Supplier<Map<String, Object>> call) {
+        if (!running) {
+            return call.get();
+        }
+        double sampleRate = configuration.getSampleRate();
+        boolean sampled = sampleRate >= 1 || sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        if (!sampled && !configuration.isRecordFailures()) {
+            return call.get();
+        }
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> response = call.get();
+            if (sampled) {
+                offer(new AuditEvent(timestamp, System.nanoTime() - start, operation, partnerId, key, request, response,
+                        HttpStatus.OK.value(), null, null, null));
+            }
+            return response;
+        } catch (MasterCardException e) {
+            if (sampled || configuration.isRecordFailures()) {
+                offer(new AuditEvent(timestamp, System.nanoTime() - start, operation, partnerId, key, request, null,
+                        e.getHttpStatus(), e.getSource(), e.getReasonCode(), e.getMessage()));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Records a non-blocking MPQR API call when it completes
+     *
+     * @param operation
+     * @param partnerId
+     * @param key       transfer reference or transfer id
+     * @param request   payment request or null for retrievals
+     * @param call      MPQR API call
+     * @return completes with the response from MPQR API
+     */
+    public CompletableFuture<Map<String, Object>> recordAsync(UpstreamOperation operation, String partnerId, String key, Object request,
+                                                              Supplier<CompletableFuture<Map<String, Object>>> call) {
+        double sampleRate = configuration.getSampleRate();
+        boolean sampled = running && (sampleRate >= 1 || sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        if (!sampled && !(running && configuration.isRecordFailures())) {
+            return call.get();
+        }
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        return call.get().whenComplete((response, e) -> {
+            if (e == null) {
+                if (sampled) {
+                    offer(new AuditEvent(timestamp, System.nanoTime() - start, operation, partnerId, key, request, response,
+                            HttpStatus.OK.value(), null, null, null));
+                }
+                return;
+            }
+            MasterCardException error = MasterCardException.from(e);
+            offer(new AuditEvent(timestamp, System.nanoTime() - start, operation, partnerId, key, request, null,
+                    error.getHttpStatus(), error.getSource(), error.getReasonCode(), error.getMessage()));
+        });
+    }
+
+    public long recordedCount() {
+        return recorded.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    private void offer(AuditEvent event) {
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Loop of the writer thread
+     */
+    private void drain() {
+        while (running || !buffer.isEmpty()) {
+            AuditEvent event = buffer.poll();
+            if (event == null) {
+                force(false);
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                write(event);
+            } catch (IOException | RuntimeException e) {
+                dropped.increment();
+                log.warn("Audit record of {} not written: {}", event.getOperation().getLabel(), e.getMessage());
+            }
+        }
+        force(true);
+    }
+
+    private void write(AuditEvent event) throws IOException {
+        payload.reset();
+        objectMapper.writeValue(payload, AuditMasking.mask(payload(event)));
+        byte[] bytes = payload.toByteArray();
+        int size = RECORD_HEADER_BYTES + bytes.length;
+        if (size > configuration.getSegmentBytes() - SEGMENT_HEADER_BYTES) {
+            dropped.increment();
+            return;
+        }
+        if (segment == null || segment.remaining() < size) {
+            rotate();
+        }
+        crc.reset();
+        crc.update(bytes);
+        int position = segment.position();
+        // the length is written last, readers never see a partly written record
+        segment.position(position + 4);
+        segment.putInt((int) crc.getValue())
+                .putLong(event.getTimestamp())
+                .putLong(event.getDurationNanos())
+                .put((byte) event.getOperation().ordinal())
+                .putShort((short) event.getStatus())
+                .put(bytes);
+        segment.putInt(position, bytes.length);
+        recorded.increment();
+        dirty = true;
+    }
+
+    private ObjectNode payload(AuditEvent event) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("partner_id", event.getPartnerId());
+        node.put("key", event.getKey());
+        if (event.getReasonCode() != null || event.getSource() != null || event.getMessage() != null) {
+            node.put("source", event.getSource());
+            node.put("reason_code", event.getReasonCode());
+            node.put("message", event.getMessage());
+        }
+        if (event.getRequest() != null) {
+            node.set("request", objectMapper.valueToTree(event.getRequest()));
+        }
+        if (event.getResponse() != null) {
+            node.set("response", objectMapper.valueToTree(event.getResponse()));
+        }
+        return node;
+    }
+
+    /**
+     * Starts a new segment and deletes the oldest ones over the configured count
+     */
+    private void rotate() throws IOException {
+        force(true);
+        Path directory = Paths.get(configuration.getDirectory());
+        Files.createDirectories(directory);
+        segmentSequence++;
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentSequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, configuration.getSegmentBytes());
+        }
+        segment.putInt(MAGIC).putInt(VERSION);
+        dirty = true;
+
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size() - configuration.getMaxSegments(); i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private void force(boolean now) {
+        long millis = System.currentTimeMillis();
+        if (segment != null && dirty && (now || millis - forcedAt >= configuration.getForceIntervalMillis())) {
+            segment.force();
+            dirty = false;
+            forcedAt = millis;
+        }
+    }
+
+    /**
+     * Segments of the directory, oldest first
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long sequence(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
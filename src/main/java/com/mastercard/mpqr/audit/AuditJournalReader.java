@@ -0,0 +1,104 @@
+package com.mastercard.mpqr.audit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Dumps audit journal segments as json lines, oldest first. Arguments are segment files or directories of segments:
+ * <pre>
+ * java -cp mpqr.jar -Dloader.main=com.mastercard.mpqr.audit.AuditJournalReader org.springframework.boot.loader.PropertiesLauncher audit
+ * </pre>
+ * Reading stops at the end of a segment or at the first record failing its checksum.
+ */
+public final class AuditJournalReader {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private AuditJournalReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        for (String arg : args.length == 0 ? new String[]{"audit"} : args) {
+            Path path = Paths.get(arg);
+            List<Path> segments = Files.isDirectory(path) ? AuditJournal.segments(path) : Collections.singletonList(path);
+            for (Path segment : segments) {
+                read(segment, record -> {
+                    try {
+                        out.println(MAPPER.writeValueAsString(record));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a segment
+     *
+     * @param segment
+     * @param records receives each record with its time, operation, duration and status, followed by its payload
+     */
+    public static void read(Path segment, Consumer<ObjectNode> records) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < AuditJournal.SEGMENT_HEADER_BYTES || buffer.getInt() != AuditJournal.MAGIC) {
+            throw new IOException(segment + " is not an audit journal segment");
+        }
+        int version = buffer.getInt();
+        if (version != AuditJournal.VERSION) {
+            throw new IOException(segment + " has unsupported version " + version);
+        }
+        CRC32 crc = new CRC32();
+        UpstreamOperation[] operations = UpstreamOperation.values();
+        while (buffer.remaining() >= AuditJournal.RECORD_HEADER_BYTES) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - AuditJournal.RECORD_HEADER_BYTES + 4) {
+                return;
+            }
+            int checksum = buffer.getInt();
+            long timestamp = buffer.getLong();
+            long durationNanos = buffer.getLong();
+            int operation = buffer.get();
+            int status = buffer.getShort();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+
+            ObjectNode record = MAPPER.createObjectNode();
+            record.put("time", Instant.ofEpochMilli(timestamp).toString());
+            record.put("operation", operation >= 0 && operation < operations.length ? operations[operation].getLabel() : Integer.toString(operation));
+            record.put("duration_ms", durationNanos / 1e6);
+            record.put("status", status);
+            JsonNode fields = MAPPER.readTree(payload);
+            for (Map.Entry<String, JsonNode> field : fields.properties()) {
+                record.set(field.getKey(), field.getValue());
+            }
+            records.accept(record);
+        }
+    }
+}
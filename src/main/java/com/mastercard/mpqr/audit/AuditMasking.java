@@ -0,0 +1,77 @@
+package com.mastercard.mpqr.audit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Masks card numbers and personal data of requests and responses before they are journaled. Card numbers keep
+ * their first six and last four digits, card parameters like expiry and cvc are removed. Also used for the
+ * responses kept by the idempotency store and the transfer ledger.
+ */
+public final class AuditMasking {
+
+    static final String MASK = "****";
+
+    static final Set<String> PERSONAL_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "first_name", "middle_name", "last_name", "line1", "line2", "phone", "email", "date_of_birth",
+            "authentication_value", "token_cryptogram")));
+
+    static final String ACCOUNT_URI_SUFFIX = "account_uri";
+
+    private AuditMasking() {
+    }
+
+    /**
+     * Masks the tree in place
+     *
+     * @return the tree
+     */
+    public static JsonNode mask(JsonNode node) {
+        if (node instanceof ObjectNode) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.properties().iterator();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (field.getValue().isNull()) {
+                    continue;
+                }
+                if (PERSONAL_FIELDS.contains(field.getKey())) {
+                    ((ObjectNode) node).put(field.getKey(), MASK);
+                } else if (field.getKey().endsWith(ACCOUNT_URI_SUFFIX) && field.getValue().isTextual()) {
+                    ((ObjectNode) node).put(field.getKey(), maskAccountUri(field.getValue().textValue()));
+                } else {
+                    mask(field.getValue());
+                }
+            }
+        } else if (node instanceof ArrayNode) {
+            for (JsonNode element : node) {
+                mask(element);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * {@code pan:5509670000000187;exp=2099-08;cvc=123} becomes {@code pan:550967******0187}, other schemes only keep
+     * the last four characters of the account
+     */
+    static String maskAccountUri(String uri) {
+        int colon = uri.indexOf(':');
+        int end = uri.indexOf(';');
+        String account = uri.substring(colon + 1, end < 0 ? uri.length() : end);
+        String scheme = uri.substring(0, colon + 1);
+        if ("pan:".equals(scheme) && account.length() > 10) {
+            char[] masked = account.toCharArray();
+            Arrays.fill(masked, 6, masked.length - 4, '*');
+            return scheme + new String(masked);
+        }
+        return scheme + MASK + (account.length() > 8 ? account.substring(account.length() - 4) : "");
+    }
+}
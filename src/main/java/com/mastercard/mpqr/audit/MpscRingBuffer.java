@@ -0,0 +1,68 @@
+package com.mastercard.mpqr.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of many producers and a single consumer. Producers claim a slot with a compare and set
+ * of the tail and never wait, {@link #offer(Object)} fails when the buffer is full.
+ */
+class MpscRingBuffer<E> {
+
+    final AtomicReferenceArray<E> slots;
+
+    final int mask;
+
+    final AtomicLong tail = new AtomicLong();
+
+    final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.lazySet((int) claimed & mask, element);
+        return true;
+    }
+
+    /**
+     * Only called by the consumer
+     *
+     * @return next element or null if the buffer is empty or the next element not published yet
+     */
+    E poll() {
+        long next = head.get();
+        int index = (int) next & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head.lazySet(next + 1);
+        return element;
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
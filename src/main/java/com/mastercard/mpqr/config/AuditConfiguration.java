@@ -0,0 +1,60 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+
+/**
+ * Configuration of the audit journal of MPQR API calls from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.audit")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AuditConfiguration {
+    boolean enabled = true;
+    /**
+     * Directory of the journal segments
+     */
+    @NotEmpty
+    String directory = "audit";
+    /**
+     * Size of a memory mapped segment, a new segment is started when it is full
+     */
+    @Min(65536)
+    int segmentBytes = 64 * 1024 * 1024;
+    /**
+     * Number of segments kept, the oldest ones are deleted
+     */
+    @Min(1)
+    int maxSegments = 16;
+    /**
+     * Calls waiting for the journal writer, rounded up to a power of two. Calls over it are dropped from the journal.
+     */
+    @Min(2)
+    int bufferSize = 8192;
+    /**
+     * Share of successful calls recorded, between 0 and 1
+     */
+    @DecimalMin("0")
+    @DecimalMax("1")
+    double sampleRate = 1;
+    /**
+     * Records failed calls whatever the sample rate
+     */
+    boolean recordFailures = true;
+    /**
+     * How often written records are forced to disk
+     */
+    @Min(1)
+    long forceIntervalMillis = 1000;
+}
@@ -0,0 +1,51 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of batch payment submission from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.batch")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchConfiguration {
+    /**
+     * Max number of payments of one batch in flight
+     */
+    @Min(1)
+    int window = 16;
+    /**
+     * Max number of batches processed at the same time, further batches are rejected
+     */
+    @Min(1)
+    int maxConcurrentBatches = 4;
+    /**
+     * Time to process one batch
+     */
+    @Min(1)
+    long timeoutMillis = 60 * 60 * 1000;
+
+    /**
+     * Pool reading batch requests and writing their results
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService batchExecutor() {
+        return new ThreadPoolExecutor(maxConcurrentBatches, maxConcurrentBatches, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("mpqr-batch-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+}
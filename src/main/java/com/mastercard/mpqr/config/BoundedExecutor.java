@@ -0,0 +1,87 @@
+package com.mastercard.mpqr.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each task on a new virtual thread, up to a number of tasks running at once. Tasks over it are rejected,
+ * like tasks over the queue of a bounded pool. Virtual threads are cheap to start and must not be pooled.
+ */
+public final class BoundedExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+
+    private final int maxTasks;
+
+    private final Semaphore permits;
+
+    /**
+     * @param prefix   of the thread names, followed by a counter
+     * @param maxTasks max number of tasks running at once
+     */
+    public BoundedExecutor(String prefix, int maxTasks) {
+        this(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory()), maxTasks);
+    }
+
+    BoundedExecutor(ExecutorService delegate, int maxTasks) {
+        this.delegate = delegate;
+        this.maxTasks = maxTasks;
+        this.permits = new Semaphore(maxTasks);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (delegate.isShutdown() || !permits.tryAcquire()) {
+            throw new RejectedExecutionException(delegate.isShutdown() ? "Executor is shut down" : "Too many running tasks");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of tasks running
+     */
+    public int getActiveCount() {
+        return maxTasks - permits.availablePermits();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,68 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of merchant transfer bulk lookup from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.bulk-lookup")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkLookupConfiguration {
+    /**
+     * Max number of references and transfer ids in one bulk request
+     */
+    @Min(1)
+    int maxItems = 100;
+    /**
+     * Time to wait for all lookups of one bulk request
+     */
+    @Min(1)
+    long timeoutMillis = 30000;
+    /**
+     * Max number of references and transfer ids in one streamed lookup
+     */
+    @Min(1)
+    int maxStreamItems = 10000;
+    /**
+     * Max number of lookups of one streamed lookup in flight, the next ones start as results are written
+     */
+    @Min(1)
+    int streamWindow = 32;
+    /**
+     * Max number of streamed lookups at the same time, further ones are rejected. Each one holds a thread
+     * until its last result is written. Streams of the reactive stack hold no thread and are not counted.
+     */
+    @Min(1)
+    int maxConcurrentStreams = 8;
+    /**
+     * Time to stream all results of one streamed lookup
+     */
+    @Min(1)
+    long streamTimeoutMillis = 10 * 60 * 1000;
+
+    /**
+     * Pool writing the results of streamed lookups, one thread per stream, blocked while waiting for results
+     * or for the Retry-After of the rate limiter
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService lookupStreamExecutor() {
+        return new ThreadPoolExecutor(maxConcurrentStreams, maxConcurrentStreams, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("mpqr-lookup-stream-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,60 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Configuration of the circuit breaker around MPQR API calls from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.circuit-breaker")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CircuitBreakerConfiguration {
+    boolean enabled = true;
+    /**
+     * Number of last calls the failure and slow call rates are computed from
+     */
+    @Min(1)
+    int windowSize = 100;
+    /**
+     * Rates are not evaluated before this number of calls in the window
+     */
+    @Min(1)
+    int minimumCalls = 20;
+    /**
+     * Percentage of failed calls opening the circuit
+     */
+    @Min(1)
+    @Max(100)
+    int failureRateThreshold = 50;
+    /**
+     * Calls taking longer are counted as slow
+     */
+    @Min(1)
+    long slowCallMillis = 5000;
+    /**
+     * Percentage of slow calls opening the circuit
+     */
+    @Min(1)
+    @Max(100)
+    int slowCallRateThreshold = 80;
+    /**
+     * How long calls are rejected before probing MPQR API again
+     */
+    @Min(1)
+    long openMillis = 10000;
+    /**
+     * Number of probe calls let through when half open
+     */
+    @Min(1)
+    int halfOpenCalls = 5;
+}
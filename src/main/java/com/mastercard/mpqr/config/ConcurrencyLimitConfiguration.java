@@ -0,0 +1,55 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Configuration of the adaptive concurrency limit of MPQR API calls from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.concurrency-limit")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConcurrencyLimitConfiguration {
+    boolean enabled = true;
+    @Min(1)
+    int initialLimit = 20;
+    @Min(1)
+    int minLimit = 4;
+    /**
+     * Should not exceed the outbound pool size, calls over it would queue anyway
+     */
+    @Min(1)
+    int maxLimit = 64;
+    /**
+     * Latency increase over the long term average tolerated before the limit is reduced
+     */
+    @DecimalMin("1.0")
+    double rttTolerance = 1.5;
+    /**
+     * Weight of a new limit estimate against the current limit
+     */
+    @DecimalMin("0.01")
+    @DecimalMax("1.0")
+    double smoothing = 0.2;
+    /**
+     * Number of samples the long term latency average is computed over
+     */
+    @Min(1)
+    int longWindow = 600;
+    /**
+     * Factor the limit is multiplied by when MPQR API fails
+     */
+    @DecimalMin("0.1")
+    @DecimalMax("1.0")
+    double backoffRatio = 0.9;
+}
@@ -0,0 +1,57 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Configuration of idempotent payment creation from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.idempotency")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class IdempotencyConfiguration {
+
+    /**
+     * When journal lines are forced to disk. ALWAYS forces each group of lines before the creations it starts
+     * are forwarded to MPQR API, so they survive a crash of the host. INTERVAL forces them every
+     * fsync-interval-millis, a crash of the host may lose the last ones. NEVER leaves it to the operating system.
+     * Lines are written before creations are forwarded in all cases, so they survive a crash of the process.
+     */
+    public enum Fsync {
+        ALWAYS, INTERVAL, NEVER
+    }
+
+    boolean enabled = true;
+    /**
+     * Append only file keeping payment creations across restarts, compacted while running
+     */
+    @NotEmpty
+    String journalFile = "mpqr-idempotency.log";
+    /**
+     * How long completed payment creations are replayed
+     */
+    @Min(1)
+    long retentionMillis = 24 * 60 * 60 * 1000;
+    /**
+     * How long a duplicate waits for the payment creation in progress before it is rejected
+     */
+    @Min(0)
+    long waitMillis = 30000;
+    @NotNull
+    Fsync fsync = Fsync.ALWAYS;
+    /**
+     * How often written lines are forced to disk with the INTERVAL policy
+     */
+    @Min(1)
+    long fsyncIntervalMillis = 1000;
+}
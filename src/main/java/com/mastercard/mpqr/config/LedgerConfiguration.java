@@ -0,0 +1,59 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+
+/**
+ * Configuration of the local ledger of transfers from /resources/application*.yml.
+ * Terminal statuses are the ones of {@link TransferCacheConfiguration}.
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.ledger")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LedgerConfiguration {
+    boolean enabled = true;
+    /**
+     * Directory of the ledger segments
+     */
+    @NotEmpty
+    String directory = "ledger";
+    /**
+     * Size of a memory mapped segment, a new segment is started when it is full
+     */
+    @Min(65536)
+    int segmentBytes = 64 * 1024 * 1024;
+    /**
+     * Initial number of index slots, two per transfer, the index doubles when half full
+     */
+    @Min(16)
+    int initialIndexSlots = 1 << 20;
+    /**
+     * How long transfers are answered locally, segments written to before are deleted by the compaction
+     */
+    @Min(1)
+    long retentionMillis = 30L * 24 * 60 * 60 * 1000;
+    /**
+     * How often the compaction runs
+     */
+    @Min(1)
+    long compactionIntervalMillis = 60 * 60 * 1000;
+    /**
+     * How often written transfers are forced to disk
+     */
+    @Min(1)
+    long forceIntervalMillis = 1000;
+    /**
+     * Base64 AES key of 16, 24 or 32 bytes encrypting the transfers at rest. Without it a key is generated on start,
+     * and transfers recorded before a restart are retrieved from MPQR API again.
+     */
+    String encryptionKey;
+}
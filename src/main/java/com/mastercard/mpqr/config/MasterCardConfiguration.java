@@ -1,15 +1,23 @@
 package com.mastercard.mpqr.config;
 
 import com.mastercard.api.core.model.Environment;
+import com.mastercard.mpqr.service.CredentialRegistry;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.experimental.FieldDefaults;
-import org.hibernate.validator.constraints.NotEmpty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.annotation.Validated;
 
-import javax.validation.constraints.NotNull;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configuration class getting proeprties from /resources/application*.yml
@@ -31,4 +39,51 @@ public class MasterCardConfiguration {
     String keyPassword;
     @NotEmpty
     String privateKey;
+    /**
+     * Timeout to open a connection to MPQR API, used by the pooled transport
+     */
+    @Min(1)
+    int connectTimeoutMillis = 5000;
+    /**
+     * Max wait for data from MPQR API once connected, used by the pooled transport
+     */
+    @Min(1)
+    int readTimeoutMillis = 30000;
+
+    /**
+     * Partners calling MPQR API with their own credentials or environment, other partners use the ones above
+     */
+    @Valid
+    List<PartnerCredentials> partners = new ArrayList<>();
+
+    /**
+     * Credentials of all partners, key stores are read once at startup
+     */
+    @Bean
+    public CredentialRegistry credentialRegistry() throws IOException, GeneralSecurityException {
+        return CredentialRegistry.load(this);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class PartnerCredentials {
+        @NotEmpty
+        String partnerId;
+        @NotEmpty
+        String consumerKey;
+        @NotEmpty
+        String keyAlias;
+        @NotEmpty
+        String keyPassword;
+        @NotEmpty
+        String privateKey;
+        /**
+         * By default the environment of api-config
+         */
+        Environment environment;
+        /**
+         * MPQR API url for the pooled transport, by default the one of the environment
+         */
+        String baseUrl;
+    }
 }
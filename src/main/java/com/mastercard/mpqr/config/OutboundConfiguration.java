@@ -0,0 +1,63 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the executor running MPQR API calls, sized separately from servlet container threads
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.outbound")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutboundConfiguration {
+    /**
+     * Max number of concurrent MPQR API calls
+     */
+    @Min(1)
+    int poolSize = 64;
+    /**
+     * Max number of MPQR API calls waiting for a free thread, calls over capacity are rejected
+     */
+    @Min(1)
+    int queueCapacity = 1000;
+
+    /**
+     * Bounded pool running MPQR API calls. On virtual threads each call gets its own thread, with the same
+     * capacity of pool-size plus queue-capacity calls.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService outboundExecutor(ThreadConfiguration threadConfiguration) {
+        if (threadConfiguration.isVirtual()) {
+            return new BoundedExecutor("mpqr-outbound-", poolSize + queueCapacity);
+        }
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("mpqr-outbound-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Single thread scheduler for timeouts and delayed MPQR API calls, scheduled tasks must not block
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService outboundScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("mpqr-scheduler-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Configuration of the rate limits of payment creations and merchant transfer retrievals from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.rate-limit")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RateLimitConfiguration {
+    boolean enabled = true;
+    /**
+     * Payment creations per second of each partner
+     */
+    @DecimalMin("0.01")
+    double partnerCreatePerSecond = 20;
+    @Min(1)
+    int partnerCreateBurst = 40;
+    /**
+     * Merchant transfer retrievals per second of each partner, a bulk lookup counts one per item sent to MPQR API
+     */
+    @DecimalMin("0.01")
+    double partnerRetrievalPerSecond = 100;
+    @Min(1)
+    int partnerRetrievalBurst = 200;
+    /**
+     * Payment creations per second of all partners, within the MPQR API quota
+     */
+    @DecimalMin("0.01")
+    double globalCreatePerSecond = 100;
+    @Min(1)
+    int globalCreateBurst = 200;
+    /**
+     * Merchant transfer retrievals per second of all partners, within the MPQR API quota
+     */
+    @DecimalMin("0.01")
+    double globalRetrievalPerSecond = 500;
+    @Min(1)
+    int globalRetrievalBurst = 1000;
+    /**
+     * Partners whose buckets are kept, buckets of idle partners are dropped beyond
+     */
+    @Min(1)
+    int maxPartners = 10000;
+}
@@ -0,0 +1,64 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Configuration of the background refresh of pending transfers from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.reconciliation")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReconciliationConfiguration {
+    boolean enabled = true;
+    /**
+     * Resolution of the refresh schedule
+     */
+    @Min(1)
+    long tickMillis = 100;
+    /**
+     * Buckets of the timer wheel, a round of the wheel should cover the max delay
+     */
+    @Min(2)
+    int wheelSize = 512;
+    /**
+     * Delay of the first refresh after the creation of a pending transfer
+     */
+    @Min(1)
+    long initialDelayMillis = 1000;
+    /**
+     * Growth of the delay after each refresh still pending
+     */
+    @DecimalMin("1")
+    double multiplier = 2;
+    @Min(1)
+    long maxDelayMillis = 30000;
+    /**
+     * Transfers still pending after this time are not tracked anymore
+     */
+    @Min(1)
+    long maxAgeMillis = 24 * 60 * 60 * 1000;
+    /**
+     * Pending transfers tracked at once, new ones are not tracked over it
+     */
+    @Min(1)
+    int maxTracked = 100000;
+    /**
+     * Refreshes started per tick
+     */
+    @Min(1)
+    int batchSize = 20;
+    @Min(1)
+    int maxRefreshesPerSecond = 50;
+    @Min(1)
+    int maxConcurrentRefreshes = 8;
+}
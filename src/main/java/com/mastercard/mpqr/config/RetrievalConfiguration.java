@@ -0,0 +1,85 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of hedging and retry of merchant transfer retrievals from /resources/application*.yml,
+ * payment creations are never hedged nor retried
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.retrieval")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RetrievalConfiguration {
+    /**
+     * Sends a second retrieval when the first one is slower than usual
+     */
+    boolean hedgingEnabled = false;
+    /**
+     * Percentile of recent retrieval latencies after which the second retrieval is sent
+     */
+    @DecimalMin("50.0")
+    @DecimalMax("99.99")
+    double hedgeDelayPercentile = 95;
+    @Min(1)
+    long minHedgeDelayMillis = 50;
+    /**
+     * Also used until enough latencies are known
+     */
+    @Min(1)
+    long maxHedgeDelayMillis = 1000;
+    /**
+     * Max number of concurrent hedges of retrievals
+     */
+    @Min(1)
+    int hedgePoolSize = 64;
+    /**
+     * Attempts of a retrieval failing with a server or network error, 1 disables retry
+     */
+    @Min(1)
+    int maxAttempts = 3;
+    /**
+     * Base of the exponential backoff between attempts, full jitter is applied
+     */
+    @Min(0)
+    long backoffMillis = 50;
+    @Min(0)
+    long maxBackoffMillis = 1000;
+    /**
+     * Retries and hedges allowed per retrieval, on top of the minimum below
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    double budgetRatio = 0.1;
+    /**
+     * Retries and hedges always allowed per second, even without traffic
+     */
+    @Min(0)
+    int budgetMinPerSecond = 10;
+
+    /**
+     * Pool running the hedges of retrievals, the first attempt runs on the calling thread
+     * and retries on the outbound executor
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService hedgeExecutor() {
+        return new ThreadPoolExecutor(0, hedgePoolSize, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("mpqr-hedge-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,35 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Configuration of the Server-Timing phase breakdown of proxied requests
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.server-timing")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ServerTimingConfiguration {
+    boolean enabled = true;
+    /**
+     * Request header asking for the breakdown of this request, whatever its value
+     */
+    @NotNull
+    String requestHeader = "X-Server-Timing";
+    /**
+     * Share of requests timed without asking, between 0 and 1
+     */
+    @DecimalMin("0")
+    @DecimalMax("1")
+    double sampleRate = 0;
+}
@@ -0,0 +1,89 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Configuration of the in-process MPQR API stub from /resources/application*.yml. The MPQR client
+ * calls it when the api-config environment is LOCALHOST, see /resources/application-stub.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.stub")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StubConfiguration {
+    boolean enabled;
+    /**
+     * Port of the LOCALHOST environment of the MPQR client
+     */
+    @Min(1)
+    int port = 8081;
+    /**
+     * Max number of requests served concurrently, each thread sleeps for the latency of its request
+     */
+    @Min(1)
+    int threads = 256;
+    /**
+     * Median latency, latencies follow a log-normal distribution
+     */
+    @Min(0)
+    long medianLatencyMillis = 80;
+    /**
+     * 99th percentile latency, equal to the median for a fixed latency
+     */
+    @Min(0)
+    long p99LatencyMillis = 400;
+    /**
+     * Share of requests stalled for stall-millis, to reproduce timeouts and tail latency
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    double stallRate;
+    @Min(0)
+    long stallMillis = 30000;
+    /**
+     * Share of requests failing with 500 SYSTEM_ERROR
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    double errorRate;
+    /**
+     * Share of requests rejected with 429 LIMIT_EXCEEDED
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    double throttleRate;
+    /**
+     * Requests over this number in flight are rejected with 429 LIMIT_EXCEEDED, 0 for no limit
+     */
+    @Min(0)
+    int maxConcurrentRequests;
+    /**
+     * Share of payments created DECLINED
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    double declineRate;
+    /**
+     * Share of payments created PENDING, they become APPROVED after pending-millis
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    double pendingRate;
+    @Min(0)
+    long pendingMillis = 5000;
+    /**
+     * Max number of payments kept for retrievals, the oldest are forgotten
+     */
+    @Min(1)
+    int maxTransfers = 100000;
+}
@@ -0,0 +1,70 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.NotNull;
+import java.util.concurrent.Executors;
+
+/**
+ * Configuration of the threads serving requests and running MPQR API calls from /resources/application*.yml.
+ * In VIRTUAL mode both run on virtual threads, so blocking MPQR API calls no longer hold a platform thread each.
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.threads")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ThreadConfiguration {
+
+    public enum Mode {
+        PLATFORM, VIRTUAL
+    }
+
+    @NotNull
+    Mode mode = Mode.PLATFORM;
+
+    /**
+     * @return true if requests and MPQR API calls run on virtual threads
+     */
+    public boolean isVirtual() {
+        return mode == Mode.VIRTUAL;
+    }
+
+    /**
+     * Serves requests of the embedded Tomcat on a virtual thread each, Tomcat max-connections still bounds them
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadContainerCustomizer() {
+        return container -> {
+            if (isVirtual()) {
+                container.addConnectorCustomizers(connector -> {
+                    if (connector.getProtocolHandler() instanceof AbstractProtocol) {
+                        ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(
+                                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory()));
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Serves requests of the reactive stack on Netty event loops, Tomcat would be picked otherwise as it is on
+     * the classpath. Requests no longer hold a thread while they wait, so the thread mode does not apply.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,46 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration of merchant transfer retrieval cache from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.cache")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferCacheConfiguration {
+    boolean enabled = true;
+    /**
+     * Time to live of transfers in a terminal status, they never change anymore
+     */
+    @Min(0)
+    long terminalTtlMillis = 24 * 60 * 60 * 1000;
+    /**
+     * Time to live of transfers which are still processed
+     */
+    @Min(0)
+    long pendingTtlMillis = 2000;
+    /**
+     * Time to live of not found transfers
+     */
+    @Min(0)
+    long notFoundTtlMillis = 5000;
+    /**
+     * Approximate max memory used by cached responses
+     */
+    @Min(0)
+    long maxWeightBytes = 64 * 1024 * 1024;
+    List<String> terminalStatuses = new ArrayList<>(Arrays.asList("APPROVED", "DECLINED", "REJECTED", "REVERSED"));
+}
@@ -0,0 +1,234 @@
+package com.mastercard.mpqr.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.api.core.ApiConfig;
+import com.mastercard.api.core.model.Environment;
+import com.mastercard.mpqr.service.AsyncHttpTransport;
+import com.mastercard.mpqr.service.MpqrTransport;
+import com.mastercard.mpqr.service.CredentialRegistry;
+import com.mastercard.mpqr.service.PartnerContext;
+import com.mastercard.mpqr.service.PooledHttpTransport;
+import com.mastercard.mpqr.service.PooledHttpTransport.PartnerRoute;
+import com.mastercard.mpqr.service.RequestMapFlattener;
+import com.mastercard.mpqr.service.SdkTransport;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.ssl.SSLContexts;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.net.ssl.SSLContext;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Configuration of the http transport of MPQR API calls from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.transport")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransportConfiguration {
+
+    public enum Type {
+        /**
+         * Transport of the QR client
+         */
+        SDK,
+        /**
+         * Pooled keep-alive connections
+         */
+        POOLED,
+        /**
+         * Pooled keep-alive connections driven by non-blocking i/o, retrievals wait for MPQR API without a thread
+         */
+        ASYNC
+    }
+
+    @NotNull
+    Type type = Type.SDK;
+    /**
+     * MPQR API url for the pooled transport, by default the one of the api-config environment
+     */
+    String baseUrl;
+    @Min(1)
+    int maxConnections = 128;
+    /**
+     * Max connections to one host, all MPQR API calls go to the same one
+     */
+    @Min(1)
+    int maxConnectionsPerRoute = 64;
+    /**
+     * Max wait for a free connection when all are in use
+     */
+    @Min(0)
+    int connectionRequestTimeoutMillis = 1000;
+    /**
+     * Idle connections are closed after this time
+     */
+    @Min(1)
+    long idleTimeoutMillis = 30000;
+    /**
+     * Keep alive of connections when MPQR API does not tell it
+     */
+    @Min(1)
+    long keepAliveMillis = 30000;
+    /**
+     * Connections idle for longer are checked before reuse
+     */
+    @Min(0)
+    int validateAfterInactivityMillis = 2000;
+    /**
+     * I/O reactor threads of the ASYNC transport, 0 for one per core
+     */
+    @Min(0)
+    int ioThreads = 0;
+
+    @Bean(destroyMethod = "close")
+    public MpqrTransport mpqrTransport(MasterCardConfiguration masterCardConfiguration, RequestMapFlattener requestMapFlattener,
+                                       ObjectMapper objectMapper, CredentialRegistry credentialRegistry,
+                                       ScheduledExecutorService outboundScheduler) throws IOReactorException {
+        if (type == Type.SDK) {
+            for (PartnerContext partner : credentialRegistry.getPartners()) {
+                if (partner.getEnvironment() != masterCardConfiguration.getEnvironment() || partner.getBaseUrl() != null) {
+                    throw new IllegalStateException("Partner " + partner.getPartnerId()
+                            + " has its own environment, which requires com.mastercard.transport.type POOLED");
+                }
+            }
+            // the QR client reads its environment statically, calls pass the signer of their partner
+            ApiConfig.setEnvironment(masterCardConfiguration.getEnvironment());
+            ApiConfig.setDebug(masterCardConfiguration.isDebug());
+            ApiConfig.setAuthentication(credentialRegistry.getDefault().getSigner());
+            return new SdkTransport(requestMapFlattener, credentialRegistry);
+        }
+        Map<String, PartnerRoute> routes = new HashMap<>();
+        for (PartnerContext partner : credentialRegistry.getPartners()) {
+            routes.put(partner.getPartnerId(), new PartnerRoute(URI.create(baseUrl(partner, masterCardConfiguration)), partner.getSigner()));
+        }
+        PartnerRoute defaultRoute = new PartnerRoute(URI.create(baseUrl(credentialRegistry.getDefault(), masterCardConfiguration)),
+                credentialRegistry.getDefault().getSigner());
+        if (type == Type.ASYNC) {
+            return asyncTransport(masterCardConfiguration, objectMapper, outboundScheduler, defaultRoute, routes);
+        }
+        LongAdder connectionsOpened = new LongAdder();
+        SSLContext sslContext = SSLContexts.createSystemDefault();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PooledHttpTransport.countingPlain(connectionsOpened))
+                        .register("https", PooledHttpTransport.countingTls(sslContext, connectionsOpened))
+                        .build());
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivityMillis);
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(masterCardConfiguration.getConnectTimeoutMillis())
+                        .setSocketTimeout(masterCardConfiguration.getReadTimeoutMillis())
+                        .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : keepAliveMillis;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+                .disableConnectionState()
+                .disableAutomaticRetries()
+                .disableCookieManagement()
+                .build();
+        return new PooledHttpTransport(defaultRoute, routes, objectMapper, connectionManager, httpClient, connectionsOpened);
+    }
+
+    AsyncHttpTransport asyncTransport(MasterCardConfiguration masterCardConfiguration, ObjectMapper objectMapper,
+                                      ScheduledExecutorService outboundScheduler, PartnerRoute defaultRoute,
+                                      Map<String, PartnerRoute> routes) throws IOReactorException {
+        PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(IOReactorConfig.custom()
+                        .setIoThreadCount(ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors())
+                        .setConnectTimeout(masterCardConfiguration.getConnectTimeoutMillis())
+                        .setSoTimeout(masterCardConfiguration.getReadTimeoutMillis())
+                        .setSoKeepAlive(true)
+                        .build()),
+                RegistryBuilder.<SchemeIOSessionStrategy>create()
+                        .register("http", NoopIOSessionStrategy.INSTANCE)
+                        .register("https", new SSLIOSessionStrategy(SSLContexts.createSystemDefault(),
+                                SSLIOSessionStrategy.getDefaultHostnameVerifier()))
+                        .build());
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        CloseableHttpAsyncClient httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(masterCardConfiguration.getConnectTimeoutMillis())
+                        .setSocketTimeout(masterCardConfiguration.getReadTimeoutMillis())
+                        .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : keepAliveMillis;
+                })
+                .disableConnectionState()
+                .disableCookieManagement()
+                .build();
+        // the async client has no idle connection evictor of its own
+        long evictionMillis = Math.max(1, idleTimeoutMillis / 2);
+        outboundScheduler.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        }, evictionMillis, evictionMillis, TimeUnit.MILLISECONDS);
+        return new AsyncHttpTransport(defaultRoute, routes, objectMapper, connectionManager, httpClient);
+    }
+
+    /**
+     * Url of the partner, the configured base url applies to partners of the default environment
+     */
+    private String baseUrl(PartnerContext partner, MasterCardConfiguration masterCardConfiguration) {
+        if (partner.getBaseUrl() != null) {
+            return partner.getBaseUrl();
+        }
+        if (baseUrl != null && partner.getEnvironment() == masterCardConfiguration.getEnvironment()) {
+            return baseUrl;
+        }
+        return baseUrlOf(partner.getEnvironment());
+    }
+
+    private static String baseUrlOf(Environment environment) {
+        switch (environment) {
+            case PRODUCTION:
+                return "https://api.mastercard.com";
+            case SANDBOX:
+                return "https://sandbox.api.mastercard.com";
+            case LOCALHOST:
+                return "http://localhost:8081";
+            default:
+                throw new IllegalStateException("A base url is required with environment " + environment);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.mastercard.mpqr.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration of the local validation of MPQR API requests from /resources/application*.yml
+ */
+@Configuration
+@ConfigurationProperties("com.mastercard.validation")
+@Validated
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ValidationConfiguration {
+    /**
+     * Rejects requests breaking MPQR API field rules before calling it,
+     * disable to leave all validation to MPQR API
+     */
+    boolean enabled = true;
+}
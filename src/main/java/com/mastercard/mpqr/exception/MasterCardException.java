@@ -8,6 +8,9 @@ import lombok.EqualsAndHashCode;
 import lombok.experimental.FieldDefaults;
 import org.springframework.http.HttpStatus;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
 /**
  * General mastercard exception
  */
@@ -32,4 +35,31 @@ public class MasterCardException extends RuntimeException {
         reasonCode = null;
         httpStatus = HttpStatus.BAD_REQUEST.value();
     }
+
+    public MasterCardException(String source, String reasonCode, String message, HttpStatus httpStatus) {
+        super(message);
+        this.source = source;
+        this.reasonCode = reasonCode;
+        this.httpStatus = httpStatus.value();
+    }
+
+    /**
+     * Unwraps failure of asynchronous MPQR API call
+     *
+     * @param e
+     * @return
+     */
+    public static MasterCardException from(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof MasterCardException) {
+            return (MasterCardException) cause;
+        }
+        if (cause instanceof ApiException) {
+            return new MasterCardException((ApiException) cause);
+        }
+        return new MasterCardException(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+    }
 }
@@ -0,0 +1,23 @@
+package com.mastercard.mpqr.exception;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Request over a rate limit, answered with 429 and a Retry-After header
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@EqualsAndHashCode(callSuper = true)
+public class RateLimitException extends MasterCardException {
+
+    long retryAfterSeconds;
+
+    public RateLimitException(String source, String message, long retryAfterSeconds) {
+        super(source, "RATE_LIMIT_EXCEEDED", message, HttpStatus.TOO_MANY_REQUESTS);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,118 @@
+package com.mastercard.mpqr.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free and allocation free latency histogram with log-linear buckets in microseconds:
+ * exact below 16µs, then 8 buckets per power of two, so values are known within 12.5% up to 2^40µs
+ */
+public class LatencyHistogram {
+
+    static final int LINEAR = 16;
+
+    static final int SUB_BUCKETS = 8;
+
+    static final int MAX_EXPONENT = 40;
+
+    static final int BUCKETS = LINEAR + (MAX_EXPONENT - 4) * SUB_BUCKETS + 1;
+
+    final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    final LongAdder sumMicros = new LongAdder();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(indexOf(micros));
+        sumMicros.add(micros);
+    }
+
+    /**
+     * Consistent enough copy of the bucket counts for reporting
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sumMicros.sum());
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Largest value of the bucket in microseconds
+     */
+    static long upperBoundOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+        int subBucket = (index - LINEAR) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - 3)) - 1;
+    }
+
+    public static class Snapshot {
+
+        final long[] counts;
+
+        final long count;
+
+        final long sumMicros;
+
+        Snapshot(long[] counts, long count, long sumMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.sumMicros = sumMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSumSeconds() {
+            return sumMicros / 1e6;
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return upper bound of the bucket of the quantile in seconds, 0 if empty
+         */
+        public double quantileSeconds(double quantile) {
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return upperBoundOf(i) / 1e6;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Number of values up to the bound, counting a bucket only if it lies entirely below the bound
+         */
+        public long countAtOrBelow(double seconds) {
+            long micros = (long) (seconds * 1e6);
+            long below = 0;
+            for (int i = 0; i < counts.length && upperBoundOf(i) <= micros; i++) {
+                below += counts[i];
+            }
+            return below;
+        }
+    }
+}
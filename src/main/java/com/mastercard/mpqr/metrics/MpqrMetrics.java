@@ -0,0 +1,183 @@
+package com.mastercard.mpqr.metrics;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Latency histograms and counters of endpoints and MPQR API calls. Recording only touches
+ * atomics of objects created up front, so it stays on in production.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MpqrMetrics {
+
+    static final String UNKNOWN_REASON = "UNKNOWN";
+
+    /**
+     * Time spent in MPQR API calls by the current thread, to separate it from local processing
+     */
+    static final ThreadLocal<long[]> UPSTREAM_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    ConcurrentMap<String, LatencyHistogram> endpoints = new ConcurrentHashMap<>();
+
+    AtomicInteger endpointsInFlight = new AtomicInteger();
+
+    LatencyHistogram outboundQueueWait = new LatencyHistogram();
+
+    Map<UpstreamOperation, Upstream> upstreams = new EnumMap<>(UpstreamOperation.class);
+
+    public MpqrMetrics() {
+        for (UpstreamOperation operation : UpstreamOperation.values()) {
+            upstreams.put(operation, new Upstream());
+        }
+    }
+
+    /**
+     * Histogram of an endpoint, created on its first request
+     *
+     * @param endpoint path pattern of the endpoint
+     */
+    public LatencyHistogram endpoint(String endpoint) {
+        LatencyHistogram histogram = endpoints.get(endpoint);
+        return histogram != null ? histogram : endpoints.computeIfAbsent(endpoint, name -> new LatencyHistogram());
+    }
+
+    public void endpointStarted() {
+        endpointsInFlight.incrementAndGet();
+    }
+
+    public void endpointCompleted(String endpoint, long nanos) {
+        endpointsInFlight.decrementAndGet();
+        endpoint(endpoint).record(nanos);
+    }
+
+    /**
+     * Measures a MPQR API call, its failures are counted by reason code
+     *
+     * @param operation
+     * @param call      MPQR API call
+     * @return response from MPQR API
+     */
+    public <T> T upstream(UpstreamOperation operation, Supplier<T> call) {
+        Upstream upstream = upstreams.get(operation);
+        upstream.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (MasterCardException e) {
+            upstream.error(e.getReasonCode() == null ? UNKNOWN_REASON : e.getReasonCode());
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            upstream.latency.record(nanos);
+            upstream.inFlight.decrementAndGet();
+            UPSTREAM_NANOS.get()[0] += nanos;
+        }
+    }
+
+    /**
+     * Measures a non-blocking MPQR API call until its response, its failures are counted by reason code
+     *
+     * @param operation
+     * @param call      MPQR API call
+     * @return completes with the response from MPQR API
+     */
+    public <T> CompletableFuture<T> upstreamAsync(UpstreamOperation operation, Supplier<CompletableFuture<T>> call) {
+        Upstream upstream = upstreams.get(operation);
+        upstream.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        return response.whenComplete((body, e) -> {
+            if (e != null) {
+                MasterCardException error = MasterCardException.from(e);
+                upstream.error(error.getReasonCode() == null ? UNKNOWN_REASON : error.getReasonCode());
+            }
+            upstream.latency.record(System.nanoTime() - start);
+            upstream.inFlight.decrementAndGet();
+        });
+    }
+
+    /**
+     * Measures the processing of an operation on the outbound executor: the wait for a thread, and the
+     * local processing time around MPQR API calls made by this thread. Hedges and retries of retrievals
+     * are made on other threads, once the operation has returned, and are not measured.
+     *
+     * @param operation
+     * @param submittedAt when the operation was submitted to the executor, in nanos
+     * @param call        operation
+     * @return response from MPQR API
+     */
+    public <T> T local(UpstreamOperation operation, long submittedAt, Supplier<T> call) {
+        long start = System.nanoTime();
+        outboundQueueWait.record(start - submittedAt);
+        long[] upstreamNanos = UPSTREAM_NANOS.get();
+        upstreamNanos[0] = 0;
+        try {
+            return call.get();
+        } finally {
+            upstreams.get(operation).local.record(System.nanoTime() - start - upstreamNanos[0]);
+        }
+    }
+
+    public Map<String, LatencyHistogram> getEndpoints() {
+        return endpoints;
+    }
+
+    public int getEndpointsInFlight() {
+        return endpointsInFlight.get();
+    }
+
+    public LatencyHistogram getOutboundQueueWait() {
+        return outboundQueueWait;
+    }
+
+    public Map<UpstreamOperation, Upstream> getUpstreams() {
+        return upstreams;
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    public static class Upstream {
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram local = new LatencyHistogram();
+        AtomicInteger inFlight = new AtomicInteger();
+        ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void error(String reasonCode) {
+            LongAdder count = errors.get(reasonCode);
+            (count != null ? count : errors.computeIfAbsent(reasonCode, code -> new LongAdder())).increment();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public LatencyHistogram getLocal() {
+            return local;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public Map<String, LongAdder> getErrors() {
+            return errors;
+        }
+    }
+}
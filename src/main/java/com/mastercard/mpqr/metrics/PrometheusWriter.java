@@ -0,0 +1,134 @@
+package com.mastercard.mpqr.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes metrics in Prometheus text exposition format 0.0.4
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    static final double[] BUCKETS_SECONDS = {.001, .0025, .005, .01, .025, .05, .1, .25, .5, 1, 2.5, 5, 10, 30};
+
+    static final double[] QUANTILES = {.5, .9, .99, .999};
+
+    final StringBuilder out = new StringBuilder(8192);
+
+    /**
+     * Writes HELP and TYPE lines, once per metric name
+     */
+    public PrometheusWriter header(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a sample of a counter or a gauge
+     *
+     * @param labels label names and values alternately
+     */
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        out.append(name);
+        labels(labels, null, null);
+        out.append(' ').append(format(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a histogram family and the quantiles of its histograms as a {@code <name>_quantile} gauge family,
+     * since quantiles computed by Prometheus from the buckets are only approximate
+     *
+     * @param label      name of the label distinguishing the histograms
+     * @param histograms histograms by label value
+     */
+    public PrometheusWriter histograms(String name, String help, String label, Map<String, LatencyHistogram> histograms) {
+        List<String> values = new ArrayList<>(histograms.keySet());
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        values.forEach(value -> snapshots.add(histograms.get(value).snapshot()));
+
+        header(name, "histogram", help);
+        for (int i = 0; i < values.size(); i++) {
+            String[] labels = label == null ? new String[0] : new String[]{label, values.get(i)};
+            LatencyHistogram.Snapshot snapshot = snapshots.get(i);
+            for (double bound : BUCKETS_SECONDS) {
+                out.append(name).append("_bucket");
+                labels(labels, "le", format(bound));
+                out.append(' ').append(snapshot.countAtOrBelow(bound)).append('\n');
+            }
+            out.append(name).append("_bucket");
+            labels(labels, "le", "+Inf");
+            out.append(' ').append(snapshot.getCount()).append('\n');
+            out.append(name).append("_sum");
+            labels(labels, null, null);
+            out.append(' ').append(format(snapshot.getSumSeconds())).append('\n');
+            out.append(name).append("_count");
+            labels(labels, null, null);
+            out.append(' ').append(snapshot.getCount()).append('\n');
+        }
+
+        header(name + "_quantile", "gauge", help + " by quantile");
+        for (int i = 0; i < values.size(); i++) {
+            String[] labels = label == null ? new String[0] : new String[]{label, values.get(i)};
+            for (double quantile : QUANTILES) {
+                out.append(name).append("_quantile");
+                labels(labels, "quantile", format(quantile));
+                out.append(' ').append(format(snapshots.get(i).quantileSeconds(quantile))).append('\n');
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes a histogram family of a single histogram
+     */
+    public PrometheusWriter histogram(String name, String help, LatencyHistogram histogram) {
+        return histograms(name, help, null, Collections.singletonMap("", histogram));
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void labels(String[] labels, String extraName, String extraValue) {
+        if (labels.length == 0 && extraName == null) {
+            return;
+        }
+        out.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            label(labels[i], labels[i + 1]);
+        }
+        if (extraName != null) {
+            label(extraName, extraValue);
+        }
+        out.setCharAt(out.length() - 1, '}');
+    }
+
+    private void label(String name, String value) {
+        out.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+        out.append("\",");
+    }
+
+    static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%s", value);
+    }
+}
@@ -0,0 +1,188 @@
+package com.mastercard.mpqr.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Phase breakdown of a timed request. The timing of the request being processed is bound to the
+ * current thread, and is carried along when the request moves to another thread. When the request
+ * is not timed every method is a thread local lookup and nothing else.
+ */
+public class RequestTiming {
+
+    public enum Phase {
+        /**
+         * Wait for an outbound thread
+         */
+        QUEUE("queue"),
+        /**
+         * Reading the json request body
+         */
+        DESERIALIZE("deserialize"),
+        /**
+         * Encoding the request for MPQR API, into a RequestMap or into json with the pooled transport
+         */
+        FLATTEN("flatten"),
+        /**
+         * OAuth signature of MPQR API calls
+         */
+        SIGN("sign"),
+        /**
+         * MPQR API calls, including retries, and parsing of their responses by the MPQR client,
+         * signing excluded
+         */
+        UPSTREAM("upstream"),
+        /**
+         * Writing the json response body, known only after the response headers are sent
+         */
+        SERIALIZE("serialize");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    static final Phase[] PHASES = Phase.values();
+
+    final long startedAt = System.nanoTime();
+
+    /**
+     * Time of each phase, concurrent calls of a request add up
+     */
+    final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+
+    /**
+     * Start of the phase measured by {@link #mark()} and {@link #lapFromMark(Phase)}
+     */
+    volatile long markedAt;
+
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the timing to the current thread
+     *
+     * @param timing timing or null
+     * @return timing previously bound, to restore with {@link #detach(RequestTiming)}
+     */
+    public static RequestTiming attach(RequestTiming timing) {
+        RequestTiming previous = CURRENT.get();
+        CURRENT.set(timing);
+        return previous;
+    }
+
+    public static void detach(RequestTiming previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Wraps a task so that it runs with the timing of the current thread
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        RequestTiming timing = CURRENT.get();
+        if (timing == null) {
+            return task;
+        }
+        return () -> {
+            RequestTiming previous = attach(timing);
+            try {
+                return task.get();
+            } finally {
+                detach(previous);
+            }
+        };
+    }
+
+    /**
+     * Start of a phase of the current request
+     *
+     * @return start time, 0 if the request is not timed
+     */
+    public static long start() {
+        return CURRENT.get() == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Ends a phase of the current request started with {@link #start()}
+     *
+     * @return end time, to use as start of the next phase
+     */
+    public static long lap(Phase phase, long start) {
+        RequestTiming timing = CURRENT.get();
+        if (timing == null || start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        timing.add(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Starts a phase which ends in another callback, possibly on another thread
+     */
+    public void mark() {
+        markedAt = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase started by {@link #mark()}, if any
+     */
+    public void lapFromMark(Phase phase) {
+        long start = markedAt;
+        if (start != 0) {
+            markedAt = 0;
+            add(phase, System.nanoTime() - start);
+        }
+    }
+
+    public void add(Phase phase, long nanos) {
+        this.nanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    public long nanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startedAt;
+    }
+
+    /**
+     * Value of the Server-Timing header: recorded phases and the time spent so far in the application
+     */
+    public String toHeader() {
+        StringBuilder header = new StringBuilder(128);
+        for (Phase phase : PHASES) {
+            long phaseNanos = nanos(phase);
+            if (phaseNanos > 0) {
+                header.append(phase.label).append(";dur=").append(millis(phaseNanos)).append(", ");
+            }
+        }
+        return header.append("app;dur=").append(millis(elapsedNanos())).toString();
+    }
+
+    /**
+     * Key value pairs of all the phases and the total time of the request, for structured logs
+     */
+    public String toLog() {
+        StringBuilder log = new StringBuilder(160);
+        for (Phase phase : PHASES) {
+            log.append(phase.label).append("_ms=").append(millis(nanos(phase))).append(' ');
+        }
+        return log.append("total_ms=").append(millis(elapsedNanos())).toString();
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
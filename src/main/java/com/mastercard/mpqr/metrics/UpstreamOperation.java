@@ -0,0 +1,21 @@
+package com.mastercard.mpqr.metrics;
+
+/**
+ * MPQR API operations, label values of the upstream metrics
+ */
+public enum UpstreamOperation {
+    MERCHANT_TRANSFER_PAYMENT("merchant_transfer_payment"),
+    MERCHANT_TRANSFER_FUNDING_AND_PAYMENT("merchant_transfer_funding_and_payment"),
+    GET_BY_ID("get_by_id"),
+    GET_BY_REF("get_by_ref");
+
+    final String label;
+
+    UpstreamOperation(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
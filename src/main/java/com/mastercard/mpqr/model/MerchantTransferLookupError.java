@@ -0,0 +1,20 @@
+package com.mastercard.mpqr.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Failure of a single lookup in bulk lookup response, either ref or transfer id is set
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@AllArgsConstructor
+public class MerchantTransferLookupError {
+    String ref;
+    String transferId;
+    String source;
+    String reasonCode;
+    String message;
+}
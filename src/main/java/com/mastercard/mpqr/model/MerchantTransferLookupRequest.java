@@ -0,0 +1,20 @@
+package com.mastercard.mpqr.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Request object for bulk lookup of merchant transfers by references and transfer ids
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MerchantTransferLookupRequest {
+    @JsonProperty("partnerId")
+    String partnerId;
+    List<String> refs;
+    List<String> transferIds;
+}
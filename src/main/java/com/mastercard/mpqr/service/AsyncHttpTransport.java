@@ -0,0 +1,262 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import com.mastercard.mpqr.service.PooledHttpTransport.PartnerRoute;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Calls MPQR API over pooled keep-alive connections driven by a few i/o reactor threads, no thread waits for a
+ * response. Requests are signed on the calling thread and responses parsed on the reactor thread, into the same maps
+ * as {@link PooledHttpTransport} returns. The blocking calls of {@link MpqrTransport} wait for the same futures.
+ */
+@Slf4j
+public class AsyncHttpTransport implements MpqrTransport, AsyncMpqrTransport {
+
+    final PartnerRoute defaultRoute;
+
+    final Map<String, PartnerRoute> routes;
+
+    final ObjectMapper objectMapper;
+
+    final PoolingNHttpClientConnectionManager connectionManager;
+
+    final CloseableHttpAsyncClient httpClient;
+
+    /**
+     * @param httpClient started by the transport
+     */
+    public AsyncHttpTransport(PartnerRoute defaultRoute, Map<String, PartnerRoute> routes, ObjectMapper objectMapper,
+                              PoolingNHttpClientConnectionManager connectionManager, CloseableHttpAsyncClient httpClient) {
+        this.defaultRoute = defaultRoute;
+        this.routes = Collections.unmodifiableMap(new HashMap<>(routes));
+        this.objectMapper = objectMapper;
+        this.connectionManager = connectionManager;
+        this.httpClient = httpClient;
+        httpClient.start();
+    }
+
+    @Override
+    public Map<String, Object> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request) {
+        return awaitCreated(merchantTransferFundingAndPaymentAsync(request));
+    }
+
+    @Override
+    public Map<String, Object> merchantTransferPayment(MerchantTransferPaymentRequest request) {
+        return awaitCreated(merchantTransferPaymentAsync(request));
+    }
+
+    @Override
+    public Map<String, Object> getById(String partnerId, String transferId) {
+        return await(getByIdAsync(partnerId, transferId));
+    }
+
+    @Override
+    public Map<String, Object> getByRef(String partnerId, String ref) {
+        return await(getByRefAsync(partnerId, ref));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> merchantTransferFundingAndPaymentAsync(MerchantTransferFundingAndPaymentRequest request) {
+        return create(request.getPartnerId(), "funding-and-payment",
+                Collections.singletonMap("merchant_transfer", request.getMerchantTransfer()));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> merchantTransferPaymentAsync(MerchantTransferPaymentRequest request) {
+        return create(request.getPartnerId(), "payment",
+                Collections.singletonMap("merchant_payment_transfer", request.getMerchantPaymentTransfer()));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getByIdAsync(String partnerId, String transferId) {
+        PartnerRoute route = route(partnerId);
+        try {
+            return execute(route, new HttpGet(PooledHttpTransport.uri(route, partnerId, transferId, null)));
+        } catch (MasterCardException e) {
+            return failed(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getByRefAsync(String partnerId, String ref) {
+        PartnerRoute route = route(partnerId);
+        try {
+            return execute(route, new HttpGet(PooledHttpTransport.uri(route, partnerId, null, ref)));
+        } catch (MasterCardException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * Connections leased, idle and awaited, over all routes
+     */
+    public PoolStats poolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private CompletableFuture<Map<String, Object>> create(String partnerId, String resource, Object body) {
+        long start = RequestTiming.start();
+        PartnerRoute route = route(partnerId);
+        try {
+            HttpPost post = new HttpPost(PooledHttpTransport.uri(route, partnerId, resource, null));
+            post.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(body), ContentType.APPLICATION_JSON));
+            RequestTiming.lap(RequestTiming.Phase.FLATTEN, start);
+            return execute(route, post);
+        } catch (MasterCardException e) {
+            return failed(e);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            return failed(new MasterCardException(e));
+        }
+    }
+
+    private PartnerRoute route(String partnerId) {
+        PartnerRoute route = partnerId == null ? null : routes.get(partnerId);
+        return route != null ? route : defaultRoute;
+    }
+
+    private CompletableFuture<Map<String, Object>> execute(PartnerRoute route, HttpRequestBase request) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        try {
+            request.setHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+            route.getSigner().signRequest(request.getURI(), request);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            future.completeExceptionally(new MasterCardException(e));
+            return future;
+        }
+        httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    future.complete(body(response));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(unavailable(e));
+            }
+
+            @Override
+            public void cancelled() {
+                future.completeExceptionally(new MasterCardException(null, null, "MPQR API call cancelled", HttpStatus.SERVICE_UNAVAILABLE));
+            }
+        });
+        return future;
+    }
+
+    private Map<String, Object> body(HttpResponse response) {
+        int status = response.getStatusLine().getStatusCode();
+        Map<String, Object> body;
+        try {
+            body = read(response);
+        } catch (JsonProcessingException e) {
+            if (status < 300) {
+                log.error(e.getMessage(), e);
+                throw new MasterCardException(e);
+            }
+            body = Collections.emptyMap();
+        } catch (IOException e) {
+            throw PooledHttpTransport.unavailable(e, HttpStatus.BAD_GATEWAY);
+        }
+        if (status >= 300) {
+            throw PooledHttpTransport.error(status, body);
+        }
+        return body;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> read(HttpResponse response) throws IOException {
+        if (response.getEntity() == null) {
+            return Collections.emptyMap();
+        }
+        try (InputStream content = response.getEntity().getContent()) {
+            Map<String, Object> body = objectMapper.readValue(content, Map.class);
+            return body == null ? Collections.emptyMap() : body;
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    private static MasterCardException unavailable(Exception e) {
+        if (e instanceof TimeoutException) {
+            // no connection leased in time
+            return PooledHttpTransport.unavailable(e, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (e instanceof ConnectTimeoutException || e instanceof SocketTimeoutException || isConnectTimeout(e)) {
+            return PooledHttpTransport.unavailable(e, HttpStatus.GATEWAY_TIMEOUT);
+        }
+        return PooledHttpTransport.unavailable(e, HttpStatus.BAD_GATEWAY);
+    }
+
+    /**
+     * The connection pool of the i/o reactor fails connections not established in time with a plain
+     * {@link ConnectException}, told apart from refused connections by its message only
+     */
+    private static boolean isConnectTimeout(Exception e) {
+        return e instanceof ConnectException && e.getMessage() != null && e.getMessage().startsWith("Timeout connecting");
+    }
+
+    /**
+     * Payment creations time their own upstream phase, retrievals are timed by {@link MasterCardServiceImpl}
+     */
+    private static Map<String, Object> awaitCreated(CompletableFuture<Map<String, Object>> future) {
+        long start = RequestTiming.start();
+        try {
+            return await(future);
+        } finally {
+            RequestTiming.lap(RequestTiming.Phase.UPSTREAM, start);
+        }
+    }
+
+    private static Map<String, Object> await(CompletableFuture<Map<String, Object>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw MasterCardException.from(e);
+        }
+    }
+
+    private static CompletableFuture<Map<String, Object>> failed(MasterCardException e) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+}
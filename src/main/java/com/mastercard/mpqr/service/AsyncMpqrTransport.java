@@ -0,0 +1,22 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends calls to MPQR API without blocking the calling thread, failures complete the futures with {@link MasterCardException}
+ */
+public interface AsyncMpqrTransport {
+
+    CompletableFuture<Map<String, Object>> merchantTransferFundingAndPaymentAsync(MerchantTransferFundingAndPaymentRequest request);
+
+    CompletableFuture<Map<String, Object>> merchantTransferPaymentAsync(MerchantTransferPaymentRequest request);
+
+    CompletableFuture<Map<String, Object>> getByIdAsync(String partnerId, String transferId);
+
+    CompletableFuture<Map<String, Object>> getByRefAsync(String partnerId, String ref);
+}
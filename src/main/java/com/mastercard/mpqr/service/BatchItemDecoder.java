@@ -0,0 +1,112 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Splits a json array or newline delimited json into its items as the bytes arrive, with the non-blocking
+ * parser of Jackson. Only the tokens of the item being read are buffered, whatever the size of the batch.
+ * Not thread safe, chunks are fed one at a time.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class BatchItemDecoder {
+
+    ObjectMapper objectMapper;
+
+    JsonParser parser;
+
+    ByteArrayFeeder feeder;
+
+    @NonFinal
+    TokenBuffer item;
+
+    @NonFinal
+    int depth;
+
+    @NonFinal
+    boolean started;
+
+    @NonFinal
+    boolean array;
+
+    @NonFinal
+    boolean ended;
+
+    BatchItemDecoder(ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * @param chunk next bytes of the batch
+     * @param items gets the items completed by the chunk, as parsers positioned before their first token
+     * @throws IOException if the batch is not valid json, items before the error are added
+     */
+    void feed(byte[] chunk, List<JsonParser> items) throws IOException {
+        if (!ended) {
+            feeder.feedInput(chunk, 0, chunk.length);
+            items(items);
+        }
+    }
+
+    /**
+     * @param items gets the items completed by the end of the batch
+     * @throws IOException if the batch ends within an item
+     */
+    void end(List<JsonParser> items) throws IOException {
+        if (!ended) {
+            feeder.endOfInput();
+            items(items);
+        }
+    }
+
+    private void items(List<JsonParser> items) throws IOException {
+        try {
+            read(items);
+        } catch (IOException e) {
+            // the parser cannot go on after an error
+            ended = true;
+            throw e;
+        }
+    }
+
+    private void read(List<JsonParser> items) throws IOException {
+        for (JsonToken token = parser.nextToken(); token != null && token != JsonToken.NOT_AVAILABLE; token = parser.nextToken()) {
+            if (!started) {
+                started = true;
+                if (token == JsonToken.START_ARRAY) {
+                    array = true;
+                    continue;
+                }
+            }
+            if (array && depth == 0 && token == JsonToken.END_ARRAY) {
+                // what follows the array is ignored
+                ended = true;
+                break;
+            }
+            if (item == null) {
+                item = new TokenBuffer(parser, null);
+            }
+            item.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                items.add(item.asParser(objectMapper));
+                item = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.mastercard.mpqr.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface BatchPaymentService {
+    CompletableFuture<Void> merchantTransferPayments(InputStream content, Consumer<String> results);
+
+    Flux<String> merchantTransferPayments(Flux<DataBuffer> content);
+}
@@ -0,0 +1,260 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.config.BatchConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.ErrorResponse;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Submits streamed batches of payments. Requests are read one by one from a json array or
+ * newline delimited json, at most a window of them is in flight and every result is written
+ * as a json line as soon as it is available, so memory does not depend on the batch size.
+ * Blocking requests are read on the batch executor, non-blocking ones as their bytes arrive.
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class BatchPaymentServiceImpl implements BatchPaymentService {
+
+    MasterCardAsyncService masterCardAsyncService;
+
+    ObjectMapper objectMapper;
+
+    BatchConfiguration batchConfiguration;
+
+    ExecutorService batchExecutor;
+
+    /**
+     * Non-blocking batches in progress, bounded like the batch executor
+     */
+    Semaphore streamedBatches;
+
+    public BatchPaymentServiceImpl(MasterCardAsyncService masterCardAsyncService, ObjectMapper objectMapper,
+                                   BatchConfiguration batchConfiguration, ExecutorService batchExecutor) {
+        this.masterCardAsyncService = masterCardAsyncService;
+        this.objectMapper = objectMapper;
+        this.batchConfiguration = batchConfiguration;
+        this.batchExecutor = batchExecutor;
+        this.streamedBatches = new Semaphore(batchConfiguration.getMaxConcurrentBatches());
+    }
+
+    /**
+     * Initiates MPQR purchase transactions of the batch
+     *
+     * @param content json array or newline delimited json of payment requests
+     * @param results consumer of result lines, called from a single thread
+     * @return completes when all results are written
+     */
+    @Override
+    public CompletableFuture<Void> merchantTransferPayments(InputStream content, Consumer<String> results) {
+        try {
+            return CompletableFuture.runAsync(() -> process(content, results), batchExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new MasterCardException(null, "SERVICE_UNAVAILABLE", "Too many concurrent batches", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Initiates MPQR purchase transactions of a batch without blocking. Requests are parsed as the bytes arrive
+     * and more bytes are requested only while fewer than a window of payments are in flight.
+     *
+     * @param content json array or newline delimited json of payment requests
+     * @return result lines, in completion order
+     */
+    @Override
+    public Flux<String> merchantTransferPayments(Flux<DataBuffer> content) {
+        return Flux.defer(() -> {
+            if (!streamedBatches.tryAcquire()) {
+                return Flux.error(new MasterCardException(null, "SERVICE_UNAVAILABLE", "Too many concurrent batches",
+                        HttpStatus.SERVICE_UNAVAILABLE));
+            }
+            BatchItemDecoder decoder;
+            try {
+                decoder = new BatchItemDecoder(objectMapper);
+            } catch (IOException e) {
+                streamedBatches.release();
+                return Flux.error(new UncheckedIOException(e));
+            }
+            AtomicInteger index = new AtomicInteger();
+            return content.concatMapIterable(buffer -> {
+                        byte[] chunk = new byte[buffer.readableByteCount()];
+                        buffer.read(chunk);
+                        DataBufferUtils.release(buffer);
+                        return items(decoder, chunk, index);
+                    })
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(items(decoder, null, index))))
+                    .takeUntil(item -> item.last)
+                    .flatMap(this::result, batchConfiguration.getWindow())
+                    .timeout(Duration.ofMillis(batchConfiguration.getTimeoutMillis()), Flux.error(() ->
+                            new MasterCardException(null, "TIMEOUT", "Request timed out", HttpStatus.GATEWAY_TIMEOUT)))
+                    .doFinally(signal -> streamedBatches.release());
+        });
+    }
+
+    /**
+     * Items completed by a chunk, or by the end of the batch for a null chunk. Invalid json ends the batch with
+     * an error item.
+     */
+    private List<BatchItem> items(BatchItemDecoder decoder, byte[] chunk, AtomicInteger index) {
+        List<JsonParser> parsers = new ArrayList<>();
+        List<BatchItem> items = new ArrayList<>();
+        try {
+            try {
+                if (chunk == null) {
+                    decoder.end(parsers);
+                } else {
+                    decoder.feed(chunk, parsers);
+                }
+            } finally {
+                for (JsonParser parser : parsers) {
+                    MerchantTransferPaymentRequest request = objectMapper.readValue(parser, MerchantTransferPaymentRequest.class);
+                    items.add(new BatchItem(index.getAndIncrement(), request, request == null ? new MasterCardException(null,
+                            "INVALID_INPUT_FORMAT", "Invalid format", HttpStatus.BAD_REQUEST) : null, false));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Batch stopped at item {}: {}", index.get(), e.getOriginalMessage());
+            items.add(new BatchItem(index.get(), null, new MasterCardException(null, "INVALID_INPUT_FORMAT",
+                    e.getOriginalMessage(), HttpStatus.BAD_REQUEST), true));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return items;
+    }
+
+    private Mono<String> result(BatchItem item) {
+        if (item.error != null) {
+            return Mono.just(resultLine(item.index, null, null, item.error));
+        }
+        MerchantTransferPaymentRequest request = item.request;
+        String transferReference = request.getMerchantPaymentTransfer() == null ? null : request.getMerchantPaymentTransfer().getTransferReference();
+        return Mono.fromFuture(() -> masterCardAsyncService.merchantTransferPayment(request))
+                .map(body -> resultLine(item.index, transferReference, body, null))
+                .onErrorResume(e -> Mono.just(resultLine(item.index, transferReference, null, MasterCardException.from(e))));
+    }
+
+    private void process(InputStream content, Consumer<String> results) {
+        BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        int index = 0;
+        int inFlight = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                MerchantTransferPaymentRequest request = objectMapper.readValue(parser, MerchantTransferPaymentRequest.class);
+                for (; inFlight >= batchConfiguration.getWindow(); inFlight--) {
+                    results.accept(completed.take());
+                }
+                if (request == null) {
+                    // a null item fails alone, like an invalid payment
+                    completed.add(resultLine(index++, null, null, new MasterCardException(null, "INVALID_INPUT_FORMAT",
+                            "Invalid format", HttpStatus.BAD_REQUEST)));
+                } else {
+                    submit(index++, request, completed);
+                }
+                inFlight++;
+                for (String line; (line = completed.poll()) != null; inFlight--) {
+                    results.accept(line);
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Batch stopped at item {}: {}", index, e.getOriginalMessage());
+            completed.add(resultLine(index, null, null, new MasterCardException(null, "INVALID_INPUT_FORMAT",
+                    e.getOriginalMessage(), HttpStatus.BAD_REQUEST)));
+            inFlight++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        try {
+            for (; inFlight > 0; inFlight--) {
+                results.accept(completed.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private void submit(int index, MerchantTransferPaymentRequest request, BlockingQueue<String> completed) {
+        String transferReference = request.getMerchantPaymentTransfer() == null ? null : request.getMerchantPaymentTransfer().getTransferReference();
+        masterCardAsyncService.merchantTransferPayment(request)
+                .whenComplete((body, e) -> completed.add(resultLine(index, transferReference, body,
+                        e == null ? null : MasterCardException.from(e))));
+    }
+
+    /**
+     * Result line with the index of the request in the batch and either MPQR API response or error
+     */
+    private String resultLine(int index, String transferReference, Map<String, Object> body, MasterCardException error) {
+        StringWriter line = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(line)) {
+            generator.writeStartObject();
+            generator.writeNumberField("index", index);
+            if (transferReference != null) {
+                generator.writeStringField("transfer_reference", transferReference);
+            }
+            if (error == null) {
+                generator.writeNumberField("status", HttpStatus.OK.value());
+                generator.writeObjectField("response", body);
+            } else {
+                generator.writeNumberField("status", error.getHttpStatus() == 0 ? HttpStatus.BAD_REQUEST.value() : error.getHttpStatus());
+                generator.writeObjectField("error", new ErrorResponse(error.getSource(), error.getReasonCode(), error.getMessage()));
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return line.append('\n').toString();
+    }
+
+    /**
+     * Payment request of a batch, or the error of an invalid item. The last item ends the batch.
+     */
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class BatchItem {
+        int index;
+        MerchantTransferPaymentRequest request;
+        MasterCardException error;
+        boolean last;
+    }
+}
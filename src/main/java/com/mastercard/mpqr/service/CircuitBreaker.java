@@ -0,0 +1,148 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.CircuitBreakerConfiguration;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker over a window of the last calls. It opens when too many calls fail or are slow,
+ * rejects calls while open, then lets a few probe calls through and closes again if they succeed.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    final CircuitBreakerConfiguration configuration;
+
+    final LongSupplier nanoTime;
+
+    /**
+     * Outcomes of the last calls, bit 0 failed and bit 1 slow
+     */
+    final byte[] window;
+
+    int position;
+
+    int calls;
+
+    int failures;
+
+    int slowCalls;
+
+    State state = State.CLOSED;
+
+    long openUntil;
+
+    int probesLeft;
+
+    volatile State observedState = State.CLOSED;
+
+    public CircuitBreaker(CircuitBreakerConfiguration configuration) {
+        this(configuration, System::nanoTime);
+    }
+
+    CircuitBreaker(CircuitBreakerConfiguration configuration, LongSupplier nanoTime) {
+        this.configuration = configuration;
+        this.nanoTime = nanoTime;
+        this.window = new byte[configuration.getWindowSize()];
+    }
+
+    /**
+     * Asks for permission to call MPQR API
+     *
+     * @return false if the circuit is open or all probes of a half open circuit are taken
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openUntil >= 0) {
+            transition(State.HALF_OPEN);
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (probesLeft > 0) {
+                    probesLeft--;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gives back a permission which was not used for a call
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            probesLeft++;
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call
+     *
+     * @param durationNanos
+     * @param failed true if MPQR API was unavailable, business errors are successful calls
+     */
+    public synchronized void onResult(long durationNanos, boolean failed) {
+        if (state == State.OPEN) {
+            return;
+        }
+        boolean slow = durationNanos >= TimeUnit.MILLISECONDS.toNanos(configuration.getSlowCallMillis());
+        record(failed, slow);
+        if (state == State.HALF_OPEN) {
+            if (calls >= Math.min(configuration.getHalfOpenCalls(), window.length)) {
+                transition(isOverThreshold() ? State.OPEN : State.CLOSED);
+            }
+        } else if (calls >= configuration.getMinimumCalls() && isOverThreshold()) {
+            transition(State.OPEN);
+        }
+    }
+
+    public State getState() {
+        return observedState;
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (calls == window.length) {
+            byte eldest = window[position];
+            failures -= eldest & 1;
+            slowCalls -= (eldest >> 1) & 1;
+        } else {
+            calls++;
+        }
+        window[position] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        failures += failed ? 1 : 0;
+        slowCalls += slow ? 1 : 0;
+        position = (position + 1) % window.length;
+    }
+
+    private boolean isOverThreshold() {
+        return failures * 100 >= configuration.getFailureRateThreshold() * calls
+                || slowCalls * 100 >= configuration.getSlowCallRateThreshold() * calls;
+    }
+
+    private void transition(State next) {
+        log.warn("MPQR API circuit {} -> {} ({} failed and {} slow of {} calls)", state, next, failures, slowCalls, calls);
+        state = next;
+        observedState = next;
+        position = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        if (next == State.OPEN) {
+            openUntil = nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(configuration.getOpenMillis());
+        } else if (next == State.HALF_OPEN) {
+            probesLeft = configuration.getHalfOpenCalls();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.ConcurrencyLimitConfiguration;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit of concurrent MPQR API calls. The limit follows the gradient between the long term
+ * and the recent latency: it grows while latency stays flat and shrinks as soon as MPQR API queues
+ * calls, so calls over the limit fail fast instead of piling up behind a degraded endpoint.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConcurrencyLimiter {
+
+    /**
+     * Weight of a sample in the recent latency average
+     */
+    static final double SHORT_SMOOTHING = 0.1;
+
+    final ConcurrencyLimitConfiguration configuration;
+
+    final AtomicInteger inFlight = new AtomicInteger();
+
+    double estimatedLimit;
+
+    double shortRtt;
+
+    double longRtt;
+
+    volatile int limit;
+
+    public ConcurrencyLimiter(ConcurrencyLimitConfiguration configuration) {
+        this.configuration = configuration;
+        this.estimatedLimit = configuration.getInitialLimit();
+        this.limit = configuration.getInitialLimit();
+    }
+
+    /**
+     * Takes a slot for a call to MPQR API
+     *
+     * @return number of calls in flight including this one, or 0 if the limit is reached
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a call, the latency of successful calls adjusts the limit
+     *
+     * @param inFlightAtStart value returned by {@link #tryAcquire()}
+     * @param rttNanos        call latency
+     * @param failed          true if MPQR API was unavailable
+     */
+    public void release(int inFlightAtStart, long rttNanos, boolean failed) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            if (failed) {
+                update(estimatedLimit * configuration.getBackoffRatio());
+            } else {
+                onSample(inFlightAtStart, rttNanos);
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a call which did not reach MPQR API
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void onSample(int inFlightAtStart, long rttNanos) {
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) * SHORT_SMOOTHING;
+        longRtt += (rttNanos - longRtt) / configuration.getLongWindow();
+        // recover quickly once a latency increase is over instead of waiting for the long average
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+        // the limit is not the bottleneck, latency says nothing about a higher limit
+        if (inFlightAtStart < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, configuration.getRttTolerance() * longRtt / shortRtt));
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        update(estimatedLimit * (1 - configuration.getSmoothing()) + newLimit * configuration.getSmoothing());
+    }
+
+    private void update(double newLimit) {
+        estimatedLimit = Math.max(configuration.getMinLimit(), Math.min(configuration.getMaxLimit(), newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
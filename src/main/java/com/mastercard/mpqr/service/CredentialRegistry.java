@@ -0,0 +1,83 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.MasterCardConfiguration;
+import com.mastercard.mpqr.config.MasterCardConfiguration.PartnerCredentials;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calling contexts of partners, built once at startup and read without locking.
+ * Partners without their own credentials use the default context.
+ */
+public class CredentialRegistry {
+
+    final PartnerContext defaultContext;
+
+    final Map<String, PartnerContext> partners;
+
+    public CredentialRegistry(PartnerContext defaultContext, Map<String, PartnerContext> partners) {
+        this.defaultContext = defaultContext;
+        this.partners = Collections.unmodifiableMap(new HashMap<>(partners));
+    }
+
+    /**
+     * Loads the key stores of the configuration, a key store and alias shared by several partners is loaded once
+     *
+     * @param configuration
+     * @return
+     */
+    public static CredentialRegistry load(MasterCardConfiguration configuration) throws IOException, GeneralSecurityException {
+        Map<String, OAuthSigner> signers = new HashMap<>();
+        PartnerContext defaultContext = new PartnerContext(null, configuration.getEnvironment(), null,
+                signer(signers, configuration.getConsumerKey(), configuration.getPrivateKey(), configuration.getKeyAlias(), configuration.getKeyPassword()));
+        Map<String, PartnerContext> partners = new HashMap<>();
+        for (PartnerCredentials credentials : configuration.getPartners()) {
+            PartnerContext context = new PartnerContext(credentials.getPartnerId(),
+                    credentials.getEnvironment() == null ? configuration.getEnvironment() : credentials.getEnvironment(),
+                    credentials.getBaseUrl(),
+                    signer(signers, credentials.getConsumerKey(), credentials.getPrivateKey(), credentials.getKeyAlias(), credentials.getKeyPassword()));
+            if (partners.put(credentials.getPartnerId(), context) != null) {
+                throw new IllegalStateException("Duplicate credentials of partner " + credentials.getPartnerId());
+            }
+        }
+        return new CredentialRegistry(defaultContext, partners);
+    }
+
+    /**
+     * Context of the partner, or the default one
+     *
+     * @param partnerId
+     * @return
+     */
+    public PartnerContext forPartner(String partnerId) {
+        PartnerContext context = partnerId == null ? null : partners.get(partnerId);
+        return context != null ? context : defaultContext;
+    }
+
+    public PartnerContext getDefault() {
+        return defaultContext;
+    }
+
+    /**
+     * Contexts of the partners with their own credentials
+     */
+    public Collection<PartnerContext> getPartners() {
+        return partners.values();
+    }
+
+    private static OAuthSigner signer(Map<String, OAuthSigner> signers, String consumerKey, String keyStore, String keyAlias,
+                                      String keyPassword) throws IOException, GeneralSecurityException {
+        String key = consumerKey + '\n' + keyStore + '\n' + keyAlias;
+        OAuthSigner signer = signers.get(key);
+        if (signer == null) {
+            signer = OAuthSigner.load(consumerKey, keyStore, keyAlias, keyPassword);
+            signers.put(key, signer);
+        }
+        return signer;
+    }
+}
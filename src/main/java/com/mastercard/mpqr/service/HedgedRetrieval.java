@@ -0,0 +1,292 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.RetrievalConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.exception.RateLimitException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Hedges and retries merchant transfer retrievals, which are read only and safe to repeat.
+ * A second retrieval is sent when the first one is slower than the configured percentile of recent
+ * retrievals and the first response wins. Retrievals failing with a server or network error are retried
+ * with jittered exponential backoff. Hedges and retries share a {@link RetryBudget}. Each attempt is a call
+ * to MPQR API of its own and takes its own token of the {@link RateLimiter}.
+ * <p>
+ * No thread waits for another: the first attempt runs on the calling thread, hedges and retries are scheduled
+ * on the outbound scheduler, which hands them to the hedge and outbound executors.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class HedgedRetrieval {
+
+    RetrievalConfiguration configuration;
+
+    ExecutorService outboundExecutor;
+
+    ExecutorService hedgeExecutor;
+
+    ScheduledExecutorService outboundScheduler;
+
+    RetryBudget budget;
+
+    LatencyWindow latencies = new LatencyWindow(1000);
+
+    LongAdder retries = new LongAdder();
+
+    LongAdder hedges = new LongAdder();
+
+    LongAdder hedgeWins = new LongAdder();
+
+    LongSupplier nanoTime;
+
+    @Autowired
+    public HedgedRetrieval(RetrievalConfiguration configuration, ExecutorService outboundExecutor,
+                           ExecutorService hedgeExecutor, ScheduledExecutorService outboundScheduler) {
+        this(configuration, outboundExecutor, hedgeExecutor, outboundScheduler, System::nanoTime);
+    }
+
+    HedgedRetrieval(RetrievalConfiguration configuration, ExecutorService outboundExecutor, ExecutorService hedgeExecutor,
+                    ScheduledExecutorService outboundScheduler, LongSupplier nanoTime) {
+        this.configuration = configuration;
+        this.outboundExecutor = outboundExecutor;
+        this.hedgeExecutor = hedgeExecutor;
+        this.outboundScheduler = outboundScheduler;
+        this.nanoTime = nanoTime;
+        this.budget = new RetryBudget(configuration.getBudgetRatio(), configuration.getBudgetMinPerSecond(), nanoTime);
+    }
+
+    /**
+     * Calls MPQR API, hedging and retrying the call if needed. The first attempt is made on the calling thread
+     * before returning, retries on the outbound executor after their backoff.
+     *
+     * @param call read only and blocking MPQR API call
+     * @return completes with the response from MPQR API, or the error of the last attempt
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<T> call) {
+        budget.onCall();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(call, result, 1);
+        return result;
+    }
+
+    public long retryCount() {
+        return retries.sum();
+    }
+
+    public long hedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * Number of hedges which returned before the retrieval they hedged
+     */
+    public long hedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Server and network errors only, rejections of the circuit breaker or concurrency limit are not
+     * retried as they only come back when MPQR API is already overloaded, nor rejections of the local
+     * rate limiter, which come with the time after which a token is available
+     */
+    static boolean isRetryable(MasterCardException e) {
+        return UpstreamGuard.isUnavailable(e)
+                && !(e instanceof RateLimitException)
+                && !UpstreamGuard.CIRCUIT_OPEN.equals(e.getReasonCode())
+                && !UpstreamGuard.CONCURRENCY_LIMIT_EXCEEDED.equals(e.getReasonCode());
+    }
+
+    /**
+     * Upper bound of the backoff after an attempt, doubling from the base up to the max backoff
+     */
+    long maxBackoffMillis(int attempt) {
+        return Math.min(configuration.getMaxBackoffMillis(), configuration.getBackoffMillis() << Math.min(attempt - 1, 20));
+    }
+
+    private long backoffMillis(int attempt) {
+        long max = maxBackoffMillis(attempt);
+        return max <= 0 ? 0 : ThreadLocalRandom.current().nextLong(max + 1);
+    }
+
+    private <T> void attempt(Supplier<T> call, CompletableFuture<T> result, int attempt) {
+        CompletableFuture<T> response = configuration.isHedgingEnabled() ? hedged(call) : timed(call);
+        response.whenComplete((body, e) -> {
+            if (e == null) {
+                result.complete(body);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof MasterCardException) || attempt >= configuration.getMaxAttempts()
+                    || !isRetryable((MasterCardException) cause) || !budget.tryAcquire()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            retries.increment();
+            log.debug("Retrying retrieval after attempt {} failed: {}", attempt, cause.getMessage());
+            try {
+                outboundScheduler.schedule(() -> retry(call, result, attempt + 1, cause),
+                        backoffMillis(attempt), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * Runs on the outbound scheduler, which must not block: the retry is handed to the outbound executor
+     */
+    private <T> void retry(Supplier<T> call, CompletableFuture<T> result, int attempt, Throwable lastError) {
+        try {
+            outboundExecutor.execute(() -> attempt(call, result, attempt));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(lastError);
+        }
+    }
+
+    private <T> CompletableFuture<T> timed(Supplier<T> call) {
+        CompletableFuture<T> response = new CompletableFuture<>();
+        try {
+            response.complete(timedCall(call));
+        } catch (RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    private <T> T timedCall(Supplier<T> call) {
+        long start = nanoTime.getAsLong();
+        T response = call.get();
+        latencies.add(nanoTime.getAsLong() - start);
+        return response;
+    }
+
+    /**
+     * Runs the call on the calling thread and schedules a hedge on the hedge executor, the first successful
+     * attempt or the failure of the last one completes the response. The slower attempt cannot be interrupted
+     * and completes unused.
+     */
+    private <T> CompletableFuture<T> hedged(Supplier<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicReference<RuntimeException> lastError = new AtomicReference<>();
+        ScheduledFuture<?> hedge = outboundScheduler.schedule(() -> {
+            if (result.isDone() || !budget.tryAcquire()) {
+                return;
+            }
+            if (!incrementIfPending(pending)) {
+                return;
+            }
+            try {
+                hedgeExecutor.execute(() -> send(call, result, pending, lastError, true));
+                hedges.increment();
+            } catch (RejectedExecutionException e) {
+                attemptFailed(result, pending, lastError, null);
+            }
+        }, hedgeDelayMillis(), TimeUnit.MILLISECONDS);
+        result.whenComplete((response, e) -> hedge.cancel(false));
+        send(call, result, pending, lastError, false);
+        return result;
+    }
+
+    private <T> void send(Supplier<T> call, CompletableFuture<T> result, AtomicInteger pending,
+                          AtomicReference<RuntimeException> lastError, boolean hedge) {
+        try {
+            if (result.complete(timedCall(call)) && hedge) {
+                hedgeWins.increment();
+            }
+        } catch (RuntimeException e) {
+            attemptFailed(result, pending, lastError, e);
+        }
+    }
+
+    private static void attemptFailed(CompletableFuture<?> result, AtomicInteger pending,
+                                      AtomicReference<RuntimeException> lastError, RuntimeException e) {
+        if (e != null) {
+            lastError.set(e);
+        }
+        if (pending.decrementAndGet() == 0) {
+            result.completeExceptionally(lastError.get());
+        }
+    }
+
+    private static boolean incrementIfPending(AtomicInteger pending) {
+        for (int current = pending.get(); current > 0; current = pending.get()) {
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long hedgeDelayMillis() {
+        long percentile = latencies.percentileMillis(configuration.getHedgeDelayPercentile());
+        if (percentile < 0) {
+            return configuration.getMaxHedgeDelayMillis();
+        }
+        return Math.max(configuration.getMinHedgeDelayMillis(), Math.min(configuration.getMaxHedgeDelayMillis(), percentile));
+    }
+
+    /**
+     * Latencies of the last successful attempts, the percentile is recomputed every hundred samples
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class LatencyWindow {
+        static final int RECOMPUTE_EVERY = 100;
+
+        final long[] samples;
+        int position;
+        int count;
+        int sinceComputed;
+        double computedFor = -1;
+        long percentile = -1;
+
+        LatencyWindow(int size) {
+            samples = new long[size];
+        }
+
+        synchronized void add(long nanos) {
+            samples[position] = nanos;
+            position = (position + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            sinceComputed++;
+        }
+
+        /**
+         * @return percentile of the window or -1 until the window has enough samples
+         */
+        synchronized long percentileMillis(double p) {
+            if (count < RECOMPUTE_EVERY) {
+                return -1;
+            }
+            if (sinceComputed >= RECOMPUTE_EVERY || computedFor != p) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.min(count - 1, Math.ceil(p / 100 * count) - 1);
+                percentile = TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+                computedFor = p;
+                sinceComputed = 0;
+            }
+            return percentile;
+        }
+    }
+}
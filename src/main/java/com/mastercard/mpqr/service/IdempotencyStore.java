@@ -0,0 +1,608 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.audit.AuditMasking;
+import com.mastercard.mpqr.config.IdempotencyConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Makes payment creation idempotent by partner id and transfer reference. The first request is
+ * forwarded to MPQR API, concurrent duplicates wait for its outcome and later retries get the stored
+ * response back. A different request with the same transfer reference is rejected as duplicate.
+ * Entries live in a {@link ConcurrentHashMap}, so requests only contend on the same transfer reference.
+ * <p>
+ * Creations are appended to a journal file when they start and when they end, and loaded back on start:
+ * a creation cut short by a crash has an unknown outcome and its retries are rejected instead of creating
+ * the transfer again. Lines are handed to a journal writer thread, which writes all the lines waiting in one
+ * write and forces them to disk as {@link IdempotencyConfiguration.Fsync} says. A creation is forwarded once
+ * the line of its start is written. The journal is compacted on its own thread once most of its lines are outdated.
+ * <p>
+ * Responses are kept with card numbers and personal data masked, in memory as in the journal. Only the first
+ * request gets the full response, duplicates and retries get the masked response, before and after a restart.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class IdempotencyStore {
+
+    static final int MAX_GROUP_LINES = 1024;
+
+    static final long IDLE_POLL_MILLIS = 100;
+
+    IdempotencyConfiguration configuration;
+
+    ObjectMapper objectMapper;
+
+    RequestMapFlattener requestMapFlattener;
+
+    ExecutorService outboundExecutor;
+
+    ConcurrentMap<TransferKey, Entry> entries = new ConcurrentHashMap<>();
+
+    LongAdder replays = new LongAdder();
+
+    BlockingQueue<JournalLine> pending = new LinkedBlockingQueue<>();
+
+    /**
+     * Lines in the journal, compacted ones included
+     */
+    AtomicLong journalLines = new AtomicLong();
+
+    /**
+     * Held by the writer while it writes and by the compaction while it swaps the journal
+     */
+    Object journalLock = new Object();
+
+    @NonFinal
+    volatile boolean running;
+
+    @NonFinal
+    FileChannel journal;
+
+    @NonFinal
+    Thread writer;
+
+    @NonFinal
+    ScheduledExecutorService maintenance;
+
+    @NonFinal
+    long forcedAt;
+
+    @NonFinal
+    boolean dirty;
+
+    public IdempotencyStore(IdempotencyConfiguration configuration, ObjectMapper objectMapper,
+                            RequestMapFlattener requestMapFlattener, ExecutorService outboundExecutor) {
+        this.configuration = configuration;
+        this.objectMapper = objectMapper;
+        this.requestMapFlattener = requestMapFlattener;
+        this.outboundExecutor = outboundExecutor;
+    }
+
+    /**
+     * Loads payment creations from the journal, compacts it and starts the writer
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        Path path = Paths.get(configuration.getJournalFile());
+        if (Files.exists(path)) {
+            long expiredBefore = System.currentTimeMillis() - configuration.getRetentionMillis();
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    load(line, expiredBefore);
+                }
+            }
+            log.info("Loaded {} payment creations from {}", entries.size(), path);
+        }
+        compact();
+        running = true;
+        writer = new Thread(this::drain, "mpqr-idempotency-journal");
+        writer.setDaemon(true);
+        writer.start();
+        maintenance = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("mpqr-idempotency-"));
+        maintenance.scheduleWithFixedDelay(this::purge, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Writes the lines still waiting, forces them to disk and closes the journal
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * Creates the payment unless it was already created with the same transfer reference
+     *
+     * @param partnerId
+     * @param transferReference
+     * @param request           payment request, identical requests are replayed
+     * @param create            MPQR API call
+     * @return response from MPQR API, masked for replays
+     */
+    public Map<String, Object> execute(String partnerId, String transferReference, Object request, Supplier<Map<String, Object>> create) {
+        if (!configuration.isEnabled() || partnerId == null || transferReference == null) {
+            return create.get();
+        }
+        TransferKey key = TransferKey.byRef(partnerId, transferReference);
+        Entry entry = new Entry(new Record(partnerId, transferReference, fingerprint(request), System.currentTimeMillis(), true, null));
+        Entry existing = claim(key, entry);
+        if (existing != null) {
+            return replay(existing, entry.record.getFingerprint());
+        }
+
+        append(entry.record).join();
+        Map<String, Object> body;
+        try {
+            body = create.get();
+        } catch (RuntimeException e) {
+            return complete(key, entry, null, e);
+        }
+        return complete(key, entry, body, null);
+    }
+
+    /**
+     * Creates the payment unless it was already created with the same transfer reference, without blocking. The
+     * MPQR API call is sent from the outbound executor once the start of the creation is journaled, duplicates
+     * complete with the outcome of the creation in progress.
+     *
+     * @param partnerId
+     * @param transferReference
+     * @param request           payment request, identical requests are replayed
+     * @param create            non-blocking MPQR API call
+     * @return completes with the response from MPQR API, masked for replays
+     */
+    public CompletableFuture<Map<String, Object>> executeAsync(String partnerId, String transferReference, Object request,
+                                                               Supplier<CompletableFuture<Map<String, Object>>> create) {
+        if (!configuration.isEnabled() || partnerId == null || transferReference == null) {
+            return create.get();
+        }
+        TransferKey key = TransferKey.byRef(partnerId, transferReference);
+        Entry entry = new Entry(new Record(partnerId, transferReference, fingerprint(request), System.currentTimeMillis(), true, null));
+        Entry existing = claim(key, entry);
+        if (existing != null) {
+            return replayAsync(existing, entry.record.getFingerprint());
+        }
+
+        CompletableFuture<Map<String, Object>> created;
+        try {
+            // the journal writer completes the append, the call must not be sent from its thread
+            Supplier<CompletableFuture<Map<String, Object>>> timed = RequestTiming.propagate(create);
+            created = append(entry.record).thenComposeAsync(written -> timed.get(), outboundExecutor);
+        } catch (RejectedExecutionException e) {
+            created = CompletableFuture.failedFuture(e);
+        }
+        return created.handle((body, e) -> complete(key, entry, body, e == null ? null : failure(e)));
+    }
+
+    public long replayCount() {
+        return replays.sum();
+    }
+
+    /**
+     * Removes expired entries from memory, the journal is compacted once it has more outdated lines than entries
+     */
+    void purge() {
+        long expiredBefore = System.currentTimeMillis() - configuration.getRetentionMillis();
+        entries.values().removeIf(entry -> entry.isExpired(expiredBefore));
+        if (journalLines.get() > 2L * entries.size()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                log.warn("Idempotency journal not compacted: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Waits until the lines appended so far are written
+     */
+    void flush() {
+        append(null).join();
+    }
+
+    /**
+     * Rewrites the journal with one line per entry, without holding the lock. Lines written meanwhile are copied
+     * after them while the lock is held, then the new journal replaces the old one. Entries change before their line
+     * is appended, so the last line of each transfer reference is still the latest.
+     */
+    void compact() throws IOException {
+        Path path = Paths.get(configuration.getJournalFile());
+        Path compacted = Paths.get(configuration.getJournalFile() + ".tmp");
+        long mark;
+        long markedLines;
+        synchronized (journalLock) {
+            mark = journal != null ? journal.size() : 0;
+            markedLines = journalLines.get();
+        }
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            long lines = 0;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(out), StandardCharsets.UTF_8));
+            for (Entry entry : entries.values()) {
+                writer.write(objectMapper.writeValueAsString(entry.record) + "\n");
+                lines++;
+            }
+            writer.flush();
+            force(out);
+            synchronized (journalLock) {
+                if (journal != null) {
+                    try (FileChannel tail = FileChannel.open(path, StandardOpenOption.READ)) {
+                        long size = journal.size();
+                        for (long position = mark; position < size; ) {
+                            position += tail.transferTo(position, size - position, out);
+                        }
+                    }
+                    force(out);
+                    journal.close();
+                }
+                Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                journalLines.set(lines + journalLines.get() - markedLines);
+            }
+        }
+    }
+
+    private void force(FileChannel channel) throws IOException {
+        if (configuration.getFsync() != IdempotencyConfiguration.Fsync.NEVER) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Puts the entry of a new creation unless there is one for the transfer reference, expired ones are replaced
+     *
+     * @return the existing entry or null
+     */
+    private Entry claim(TransferKey key, Entry entry) {
+        Entry existing = entries.putIfAbsent(key, entry);
+        while (existing != null && existing.isExpired(System.currentTimeMillis() - configuration.getRetentionMillis())) {
+            existing = entries.replace(key, existing, entry) ? null : entries.putIfAbsent(key, entry);
+        }
+        return existing;
+    }
+
+    /**
+     * Keeps the masked response of a completed creation, or forgets a failed one
+     *
+     * @return the response as is
+     * @throws RuntimeException the error of a failed creation
+     */
+    private Map<String, Object> complete(TransferKey key, Entry entry, Map<String, Object> body, RuntimeException error) {
+        Record started = entry.record;
+        if (error != null) {
+            entries.remove(key, entry);
+            entry.response.completeExceptionally(error);
+            // the creation failed, a retry may create the transfer
+            append(new Record(started.getPartnerId(), started.getTransferReference(), started.getFingerprint(),
+                    System.currentTimeMillis(), false, null));
+            throw error;
+        }
+        Map<String, Object> masked = mask(body);
+        entry.record = new Record(started.getPartnerId(), started.getTransferReference(), started.getFingerprint(),
+                System.currentTimeMillis(), false, masked);
+        entry.response.complete(masked);
+        append(entry.record);
+        return body;
+    }
+
+    private Map<String, Object> replay(Entry existing, String fingerprint) {
+        if (!existing.record.getFingerprint().equals(fingerprint)) {
+            throw duplicate();
+        }
+        try {
+            Map<String, Object> body = existing.response.get(configuration.getWaitMillis(), TimeUnit.MILLISECONDS);
+            replays.increment();
+            return body;
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (ExecutionException e) {
+            throw MasterCardException.from(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MasterCardException(e);
+        }
+    }
+
+    private CompletableFuture<Map<String, Object>> replayAsync(Entry existing, String fingerprint) {
+        if (!existing.record.getFingerprint().equals(fingerprint)) {
+            return CompletableFuture.failedFuture(duplicate());
+        }
+        // the shared response is copied, the timeout only fails this duplicate
+        return existing.response.copy()
+                .orTimeout(configuration.getWaitMillis(), TimeUnit.MILLISECONDS)
+                .handle((body, e) -> {
+                    if (e != null) {
+                        throw e instanceof TimeoutException ? inProgress() : MasterCardException.from(e);
+                    }
+                    replays.increment();
+                    return body;
+                });
+    }
+
+    private static MasterCardException failure(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RejectedExecutionException) {
+            return new MasterCardException(null, "SERVICE_UNAVAILABLE", "Too many concurrent requests to MPQR API",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return MasterCardException.from(cause);
+    }
+
+    private static MasterCardException duplicate() {
+        return new MasterCardException("transfer_reference", "RESOURCE_ERROR", "Duplicate value", HttpStatus.CONFLICT);
+    }
+
+    private static MasterCardException inProgress() {
+        return new MasterCardException("transfer_reference", "REQUEST_IN_PROGRESS", "Request in progress", HttpStatus.CONFLICT);
+    }
+
+    /**
+     * The last line of a transfer reference wins: a started creation without an end has an unknown outcome,
+     * a failed one is forgotten
+     */
+    private void load(String line, long expiredBefore) {
+        try {
+            Record record = objectMapper.readValue(line, Record.class);
+            TransferKey key = TransferKey.byRef(record.getPartnerId(), record.getTransferReference());
+            if (record.getCreatedAt() < expiredBefore || !record.isInProgress() && record.getResponse() == null) {
+                entries.remove(key);
+                return;
+            }
+            Entry entry = new Entry(record);
+            if (record.isInProgress()) {
+                entry.response.completeExceptionally(new MasterCardException("transfer_reference", "REQUEST_IN_PROGRESS",
+                        "Outcome unknown, retrieve the transfer by reference", HttpStatus.CONFLICT));
+            } else {
+                entry.response.complete(record.getResponse());
+            }
+            entries.put(key, entry);
+        } catch (IOException e) {
+            log.warn("Skipping corrupted idempotency journal line: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Hands a line to the journal writer
+     *
+     * @param record line to append, null to only wait for the lines before
+     * @return completes once the line is written, and forced to disk with the ALWAYS policy
+     */
+    private CompletableFuture<Void> append(Record record) {
+        JournalLine line;
+        try {
+            line = new JournalLine(record == null ? null : objectMapper.writeValueAsBytes(record), new CompletableFuture<>());
+        } catch (IOException e) {
+            log.warn("Payment creation {} not journaled: {}", record.getTransferReference(), e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!running) {
+            return CompletableFuture.completedFuture(null);
+        }
+        pending.add(line);
+        return line.written;
+    }
+
+    /**
+     * Loop of the writer thread, lines waiting are written together
+     */
+    private void drain() {
+        List<JournalLine> group = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                JournalLine first = pending.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    forceIfDue(false);
+                    continue;
+                }
+                group.add(first);
+                pending.drainTo(group, MAX_GROUP_LINES - 1);
+                write(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                group.forEach(line -> line.written.complete(null));
+                group.clear();
+            }
+        }
+        forceIfDue(true);
+    }
+
+    private void write(List<JournalLine> group) {
+        int size = 0;
+        int lines = 0;
+        for (JournalLine line : group) {
+            if (line.bytes != null) {
+                size += line.bytes.length + 1;
+                lines++;
+            }
+        }
+        if (lines == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (JournalLine line : group) {
+            if (line.bytes != null) {
+                buffer.put(line.bytes).put((byte) '\n');
+            }
+        }
+        buffer.flip();
+        synchronized (journalLock) {
+            try {
+                while (buffer.hasRemaining()) {
+                    journal.write(buffer);
+                }
+                journalLines.addAndGet(lines);
+                dirty = true;
+                if (configuration.getFsync() == IdempotencyConfiguration.Fsync.ALWAYS) {
+                    forceIfDue(true);
+                }
+            } catch (IOException e) {
+                log.warn("{} payment creation lines not journaled: {}", lines, e.getMessage());
+            }
+        }
+    }
+
+    private void forceIfDue(boolean now) {
+        synchronized (journalLock) {
+            long millis = System.currentTimeMillis();
+            if (!dirty || configuration.getFsync() == IdempotencyConfiguration.Fsync.NEVER
+                    || !now && millis - forcedAt < configuration.getFsyncIntervalMillis()) {
+                return;
+            }
+            try {
+                journal.force(false);
+                dirty = false;
+                forcedAt = millis;
+            } catch (IOException e) {
+                log.warn("Idempotency journal not forced to disk: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copy of the response to replay, the caller gets the response as is
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> mask(Map<String, Object> response) {
+        return objectMapper.convertValue(AuditMasking.mask(objectMapper.valueToTree(response)), Map.class);
+    }
+
+    /**
+     * Hash of the request type and all its values
+     */
+    private String fingerprint(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            requestMapFlattener.flatten(request, (path, value) -> {
+                digest.update(path.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '=');
+                digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            });
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Entry {
+        @NonFinal
+        volatile Record record;
+        CompletableFuture<Map<String, Object>> response = new CompletableFuture<>();
+
+        Entry(Record record) {
+            this.record = record;
+        }
+
+        /**
+         * Completed creations and creations of unknown outcome expire, creations in progress and failed ones do not
+         */
+        boolean isExpired(long expiredBefore) {
+            return response.isDone() && (!response.isCompletedExceptionally() || record.isInProgress())
+                    && record.getCreatedAt() < expiredBefore;
+        }
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class JournalLine {
+        byte[] bytes;
+        CompletableFuture<Void> written;
+    }
+
+    /**
+     * Journal line of a payment creation started, completed with its masked response, or failed without response
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static class Record {
+        @JsonProperty("partner_id")
+        String partnerId;
+        @JsonProperty("transfer_reference")
+        String transferReference;
+        @JsonProperty("fingerprint")
+        String fingerprint;
+        @JsonProperty("created_at")
+        long createdAt;
+        @JsonProperty("in_progress")
+        boolean inProgress;
+        @JsonProperty("response")
+        Map<String, Object> response;
+    }
+}
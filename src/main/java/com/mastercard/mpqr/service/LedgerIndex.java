@@ -0,0 +1,136 @@
+package com.mastercard.mpqr.service;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+/**
+ * Off-heap open addressing hash table from 64 bit key hashes to ledger record locations. Slots live in a direct
+ * buffer, so millions of keys cost no objects to the garbage collector. Hashes may collide, callers check the key
+ * of the record at a location. Not thread safe, {@link TransferLedger} guards it with its lock.
+ */
+final class LedgerIndex {
+
+    static final int SLOT_BYTES = 16;
+
+    static final long EMPTY = 0;
+
+    static final long NOT_FOUND = -1;
+
+    ByteBuffer slots;
+
+    int mask;
+
+    int size;
+
+    /**
+     * @param capacity initial number of slots, rounded up to a power of two
+     */
+    LedgerIndex(int capacity) {
+        allocate(Integer.highestOneBit(Math.max(16, capacity) - 1) << 1);
+    }
+
+    /**
+     * @param hash    hash of the key, see {@link #hash(String, TransferKey.Type, String)}
+     * @param matches whether the record at a location has the key
+     * @return location of the record or {@link #NOT_FOUND}
+     */
+    long get(long hash, LongPredicate matches) {
+        for (int slot = slot(hash); ; slot = (slot + 1) & mask) {
+            long slotHash = slots.getLong(slot * SLOT_BYTES);
+            if (slotHash == EMPTY) {
+                return NOT_FOUND;
+            }
+            long location = slots.getLong(slot * SLOT_BYTES + 8);
+            if (slotHash == hash && matches.test(location)) {
+                return location;
+            }
+        }
+    }
+
+    /**
+     * Points the key to a location, replacing its previous location
+     *
+     * @param sameKey whether the record at an existing location has the same key
+     */
+    void put(long hash, long location, LongPredicate sameKey) {
+        if ((size + 1) * 2 > slots.capacity() / SLOT_BYTES) {
+            resize(slots.capacity() / SLOT_BYTES * 2, existing -> true);
+        }
+        for (int slot = slot(hash); ; slot = (slot + 1) & mask) {
+            long slotHash = slots.getLong(slot * SLOT_BYTES);
+            if (slotHash == EMPTY) {
+                slots.putLong(slot * SLOT_BYTES, hash);
+                slots.putLong(slot * SLOT_BYTES + 8, location);
+                size++;
+                return;
+            }
+            if (slotHash == hash && sameKey.test(slots.getLong(slot * SLOT_BYTES + 8))) {
+                slots.putLong(slot * SLOT_BYTES + 8, location);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the table with the locations kept
+     */
+    void retain(LongPredicate keep) {
+        resize(slots.capacity() / SLOT_BYTES, keep);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * FNV-1a of the key finished with the murmur3 mixer, never {@link #EMPTY}
+     */
+    static long hash(String partnerId, TransferKey.Type type, String value) {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, partnerId);
+        hash = (hash ^ (type.ordinal() + 1)) * 0x100000001b3L;
+        hash = fnv(hash, value);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private static long fnv(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private int slot(long hash) {
+        return (int) hash & mask;
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void resize(int capacity, LongPredicate keep) {
+        ByteBuffer previous = slots;
+        allocate(capacity);
+        for (int offset = 0; offset < previous.capacity(); offset += SLOT_BYTES) {
+            long hash = previous.getLong(offset);
+            long location = previous.getLong(offset + 8);
+            if (hash == EMPTY || !keep.test(location)) {
+                continue;
+            }
+            int slot = slot(hash);
+            while (slots.getLong(slot * SLOT_BYTES) != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots.putLong(slot * SLOT_BYTES, hash);
+            slots.putLong(slot * SLOT_BYTES + 8, location);
+            size++;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.mastercard.mpqr.service;
+
+
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface MasterCardAsyncService {
+    CompletableFuture<Map<String, Object>> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request);
+
+    CompletableFuture<Map<String, Object>> merchantTransferPayment(MerchantTransferPaymentRequest request);
+
+    CompletableFuture<Map<String, Object>> getById(String partnerId, String transferId);
+
+    CompletableFuture<Map<String, Object>> getByRef(String partnerId, String ref);
+}
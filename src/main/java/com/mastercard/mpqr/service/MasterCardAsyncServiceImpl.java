@@ -0,0 +1,118 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.metrics.MpqrMetrics;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs MPQR API calls of {@link MasterCardService} on the bounded outbound executor,
+ * calls over its capacity fail fast instead of queueing servlet threads. With a non-blocking
+ * transport, creations and retrievals wait for MPQR API without any thread. Pending transfers
+ * created are followed up by the {@link TransferReconciler}.
+ */
+@Service
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MasterCardAsyncServiceImpl implements MasterCardAsyncService {
+
+    MasterCardService masterCardService;
+
+    ExecutorService outboundExecutor;
+
+    MpqrMetrics metrics;
+
+    RequestValidator requestValidator;
+
+    TransferReconciler transferReconciler;
+
+    MpqrTransport mpqrTransport;
+
+    @Override
+    public CompletableFuture<Map<String, Object>> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request) {
+        if (mpqrTransport instanceof AsyncMpqrTransport) {
+            return admit(() -> requestValidator.validate(request),
+                    () -> masterCardService.merchantTransferFundingAndPaymentAsync(request)
+                            .thenApply(body -> transferReconciler.track(request.getPartnerId(), body)));
+        }
+        return submit(() -> requestValidator.validate(request), UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT,
+                () -> transferReconciler.track(request.getPartnerId(), masterCardService.merchantTransferFundingAndPayment(request)));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> merchantTransferPayment(MerchantTransferPaymentRequest request) {
+        if (mpqrTransport instanceof AsyncMpqrTransport) {
+            return admit(() -> requestValidator.validate(request),
+                    () -> masterCardService.merchantTransferPaymentAsync(request)
+                            .thenApply(body -> transferReconciler.track(request.getPartnerId(), body)));
+        }
+        return submit(() -> requestValidator.validate(request), UpstreamOperation.MERCHANT_TRANSFER_PAYMENT,
+                () -> transferReconciler.track(request.getPartnerId(), masterCardService.merchantTransferPayment(request)));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getById(String partnerId, String transferId) {
+        if (mpqrTransport instanceof AsyncMpqrTransport) {
+            return admit(() -> requestValidator.validatePartnerId(partnerId),
+                    () -> masterCardService.getByIdAsync(partnerId, transferId));
+        }
+        // the first attempt runs on the outbound thread, hedges and retries do not hold it
+        return submit(() -> requestValidator.validatePartnerId(partnerId), UpstreamOperation.GET_BY_ID,
+                () -> masterCardService.getByIdAsync(partnerId, transferId)).thenCompose(Function.identity());
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getByRef(String partnerId, String ref) {
+        if (mpqrTransport instanceof AsyncMpqrTransport) {
+            return admit(() -> requestValidator.validatePartnerId(partnerId),
+                    () -> masterCardService.getByRefAsync(partnerId, ref));
+        }
+        // the first attempt runs on the outbound thread, hedges and retries do not hold it
+        return submit(() -> requestValidator.validatePartnerId(partnerId), UpstreamOperation.GET_BY_REF,
+                () -> masterCardService.getByRefAsync(partnerId, ref)).thenCompose(Function.identity());
+    }
+
+    private <T> CompletableFuture<T> submit(Runnable validation, UpstreamOperation operation, Supplier<T> call) {
+        return admit(validation, () -> {
+            long submittedAt = System.nanoTime();
+            try {
+                return CompletableFuture.supplyAsync(RequestTiming.propagate(() -> {
+                    RequestTiming.lap(RequestTiming.Phase.QUEUE, submittedAt);
+                    return metrics.local(operation, submittedAt, call);
+                }), outboundExecutor);
+            } catch (RejectedExecutionException e) {
+                throw new MasterCardException(null, "SERVICE_UNAVAILABLE", "Too many concurrent requests to MPQR API",
+                        HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        });
+    }
+
+    /**
+     * Requests failing validation are rejected on the calling thread, without being queued. Rate limits are
+     * charged by {@link MasterCardService} only when MPQR API is called.
+     */
+    private <T> CompletableFuture<T> admit(Runnable validation, Supplier<CompletableFuture<T>> call) {
+        try {
+            validation.run();
+            return call.get();
+        } catch (MasterCardException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+}
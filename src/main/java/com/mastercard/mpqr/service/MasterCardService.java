@@ -4,12 +4,21 @@ package com.mastercard.mpqr.service;
 import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
 import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 public interface MasterCardService {
-    String merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request);
+    Map<String, Object> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request);
+
+    Map<String, Object> merchantTransferPayment(MerchantTransferPaymentRequest request);
+
+    CompletableFuture<Map<String, Object>> merchantTransferFundingAndPaymentAsync(MerchantTransferFundingAndPaymentRequest request);
+
+    CompletableFuture<Map<String, Object>> merchantTransferPaymentAsync(MerchantTransferPaymentRequest request);
 
-    String merchantTransferPayment(MerchantTransferPaymentRequest request);
+    Map<String, Object> refreshById(String partnerId, String transferId);
 
-    String getById(String partnerId, String transferId);
+    CompletableFuture<Map<String, Object>> getByIdAsync(String partnerId, String transferId);
 
-    String getByRef(String partnerId, String ref);
+    CompletableFuture<Map<String, Object>> getByRefAsync(String partnerId, String ref);
 }
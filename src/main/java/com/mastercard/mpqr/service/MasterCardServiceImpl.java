@@ -2,37 +2,25 @@ package com.mastercard.mpqr.service;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ValueNode;
-import com.mastercard.api.core.ApiConfig;
-import com.mastercard.api.core.exception.ApiException;
-import com.mastercard.api.core.model.RequestMap;
-import com.mastercard.api.core.security.oauth.OAuthAuthentication;
-import com.mastercard.api.p2m.MerchantRetrieval;
-import com.mastercard.api.p2m.MerchantTransferFundingAndPayment;
-import com.mastercard.api.p2m.MerchantTransferPayment;
-import com.mastercard.mpqr.config.MasterCardConfiguration;
-import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.audit.AuditJournal;
+import com.mastercard.mpqr.metrics.MpqrMetrics;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
 import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
 import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
-import org.json.simple.JSONObject;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import jakarta.annotation.PostConstruct;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * Service communicating with MPQR API via QR client
@@ -43,23 +31,35 @@ import java.util.Map;
 @Slf4j
 public class MasterCardServiceImpl implements MasterCardService {
 
-    MasterCardConfiguration masterCardConfiguration;
-
     ObjectMapper objectMapper;
 
+    TransferCache transferCache;
+
+    TransferSingleFlight transferSingleFlight;
+
+    IdempotencyStore idempotencyStore;
+
+    TransferLedger transferLedger;
+
+    UpstreamGuard upstreamGuard;
+
+    RateLimiter rateLimiter;
+
+    HedgedRetrieval hedgedRetrieval;
+
+    MpqrMetrics metrics;
+
+    AuditJournal auditJournal;
+
+    MpqrTransport mpqrTransport;
+
     /**
-     * Configures MPQR API client and jackson Object mapper
+     * Configures jackson Object mapper
      */
     @PostConstruct
-    public void init() throws IOException {
-        ApiConfig.setEnvironment(masterCardConfiguration.getEnvironment());
-        ApiConfig.setDebug(masterCardConfiguration.isDebug());
-        InputStream is = new FileInputStream(masterCardConfiguration.getPrivateKey());
-        OAuthAuthentication authentication = new OAuthAuthentication(masterCardConfiguration.getConsumerKey(), is, masterCardConfiguration.getKeyAlias(),
-                masterCardConfiguration.getKeyPassword());
-        ApiConfig.setAuthentication(authentication);
-        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        objectMapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+    public void init() {
+        objectMapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         objectMapper.disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE);
     }
@@ -69,132 +69,155 @@ public class MasterCardServiceImpl implements MasterCardService {
      * with a Funding Transaction and pushing funds to a merchant account with a Payment Transaction.
      *
      * @param request
-     * @return json response from MPQR API
+     * @return response from MPQR API
      */
     @Override
-    public String merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request) {
-        try {
-            Map<String, Object> map = new LinkedHashMap<>();
-            RequestMap requestMap = new RequestMap();
-            String content = objectMapper.writeValueAsString(request);
-            addKeys("", objectMapper.readTree(content), map);
-            map.forEach(requestMap::set);
-            MerchantTransferFundingAndPayment apiResponse = MerchantTransferFundingAndPayment.create(requestMap);
-            log.debug(apiResponse.toString());
-            return JSONObject.toJSONString(apiResponse);
-        } catch (ApiException e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
-        }
+    public Map<String, Object> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request) {
+        String transferReference = request.getMerchantTransfer() == null ? null : request.getMerchantTransfer().getTransferReference();
+        return idempotencyStore.execute(request.getPartnerId(), transferReference, request,
+                () -> rateLimiter.execute(request.getPartnerId(), UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT,
+                        () -> transferLedger.record(request.getPartnerId(), upstreamGuard.execute(() -> metrics.upstream(UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT,
+                                () -> auditJournal.record(UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT, request.getPartnerId(),
+                                        transferReference, request, () -> mpqrTransport.merchantTransferFundingAndPayment(request)))))));
     }
 
     /**
      * Initiates a MPQR purchase transaction by pushing funds to a merchant account.
      *
      * @param request
-     * @return json response from MPQR API
+     * @return response from MPQR API
      */
     @Override
-    public String merchantTransferPayment(MerchantTransferPaymentRequest request) {
-        try {
-            Map<String, Object> map = new LinkedHashMap<>();
-            RequestMap requestMap = new RequestMap();
-            String content = objectMapper.writeValueAsString(request);
-            addKeys("", objectMapper.readTree(content), map);
-            map.forEach(requestMap::set);
-            MerchantTransferPayment apiResponse = MerchantTransferPayment.create(requestMap);
-            log.debug(apiResponse.toString());
-            return JSONObject.toJSONString(apiResponse);
-        } catch (ApiException e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
-        }
+    public Map<String, Object> merchantTransferPayment(MerchantTransferPaymentRequest request) {
+        String transferReference = request.getMerchantPaymentTransfer() == null ? null : request.getMerchantPaymentTransfer().getTransferReference();
+        return idempotencyStore.execute(request.getPartnerId(), transferReference, request,
+                () -> rateLimiter.execute(request.getPartnerId(), UpstreamOperation.MERCHANT_TRANSFER_PAYMENT,
+                        () -> transferLedger.record(request.getPartnerId(), upstreamGuard.execute(() -> metrics.upstream(UpstreamOperation.MERCHANT_TRANSFER_PAYMENT,
+                                () -> auditJournal.record(UpstreamOperation.MERCHANT_TRANSFER_PAYMENT, request.getPartnerId(),
+                                        transferReference, request, () -> mpqrTransport.merchantTransferPayment(request)))))));
+    }
+
+    /**
+     * Initiates a MPQR purchase transaction like {@link #merchantTransferFundingAndPayment} without blocking,
+     * with a non-blocking transport
+     *
+     * @param request
+     * @return completes with the response from MPQR API
+     */
+    @Override
+    public CompletableFuture<Map<String, Object>> merchantTransferFundingAndPaymentAsync(MerchantTransferFundingAndPaymentRequest request) {
+        AsyncMpqrTransport transport = asyncTransport();
+        String transferReference = request.getMerchantTransfer() == null ? null : request.getMerchantTransfer().getTransferReference();
+        return idempotencyStore.executeAsync(request.getPartnerId(), transferReference, request,
+                () -> rateLimiter.executeAsync(request.getPartnerId(), UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT,
+                        () -> upstreamGuard.executeAsync(() -> metrics.upstreamAsync(UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT,
+                                () -> auditJournal.recordAsync(UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT, request.getPartnerId(),
+                                        transferReference, request, () -> timedAsync(() -> transport.merchantTransferFundingAndPaymentAsync(request)))))
+                                .thenApply(body -> transferLedger.record(request.getPartnerId(), body))));
     }
 
     /**
-     * Retrieves the Transfer resource associated with the specified transfer-id.
+     * Initiates a MPQR purchase transaction like {@link #merchantTransferPayment} without blocking,
+     * with a non-blocking transport
+     *
+     * @param request
+     * @return completes with the response from MPQR API
+     */
+    @Override
+    public CompletableFuture<Map<String, Object>> merchantTransferPaymentAsync(MerchantTransferPaymentRequest request) {
+        AsyncMpqrTransport transport = asyncTransport();
+        String transferReference = request.getMerchantPaymentTransfer() == null ? null : request.getMerchantPaymentTransfer().getTransferReference();
+        return idempotencyStore.executeAsync(request.getPartnerId(), transferReference, request,
+                () -> rateLimiter.executeAsync(request.getPartnerId(), UpstreamOperation.MERCHANT_TRANSFER_PAYMENT,
+                        () -> upstreamGuard.executeAsync(() -> metrics.upstreamAsync(UpstreamOperation.MERCHANT_TRANSFER_PAYMENT,
+                                () -> auditJournal.recordAsync(UpstreamOperation.MERCHANT_TRANSFER_PAYMENT, request.getPartnerId(),
+                                        transferReference, request, () -> timedAsync(() -> transport.merchantTransferPaymentAsync(request)))))
+                                .thenApply(body -> transferLedger.record(request.getPartnerId(), body))));
+    }
+
+    /**
+     * Retrieves the Transfer resource from MPQR API, bypassing the cache and the ledger, to follow up a pending transfer.
+     * The transfer is recorded in the ledger.
      *
      * @param partnerId
      * @param transferId
-     * @return json response from MPQR API
+     * @return response from MPQR API
      */
     @Override
-    public String getById(String partnerId, String transferId) {
-        try {
-            RequestMap map = new RequestMap();
-            map.set("partnerId", partnerId);
-            map.set("transferId", transferId);
-            MerchantRetrieval apiResponse = MerchantRetrieval.readByID(null, map);
-            log.debug(apiResponse.toString());
-            return JSONObject.toJSONString(apiResponse);
-        } catch (ApiException e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
+    public Map<String, Object> refreshById(String partnerId, String transferId) {
+        TransferKey key = TransferKey.byId(partnerId, transferId);
+        return transferLedger.record(partnerId, transferSingleFlight.execute(key,
+                () -> upstreamGuard.execute(() -> metrics.upstream(UpstreamOperation.GET_BY_ID,
+                        () -> auditJournal.record(UpstreamOperation.GET_BY_ID, partnerId, transferId, null,
+                                () -> mpqrTransport.getById(partnerId, transferId))))));
+    }
+
+    /**
+     * Retrieves the Transfer resource associated with the specified transfer-id. With a blocking transport, the first
+     * call to MPQR API is made on the calling thread, and is hedged and retried without blocking any thread. With a
+     * non-blocking transport, retrievals are neither hedged nor retried.
+     *
+     * @param partnerId
+     * @param transferId
+     * @return completes with the response from MPQR API
+     */
+    @Override
+    public CompletableFuture<Map<String, Object>> getByIdAsync(String partnerId, String transferId) {
+        TransferKey key = TransferKey.byId(partnerId, transferId);
+        if (!(mpqrTransport instanceof AsyncMpqrTransport)) {
+            return transferCache.getAsync(key, () -> transferLedger.getAsync(key, () -> timedAsync(() -> transferSingleFlight.executeAsync(key,
+                    () -> hedgedRetrieval.executeAsync(() -> rateLimiter.execute(partnerId, UpstreamOperation.GET_BY_ID, () -> upstreamGuard.execute(
+                            () -> metrics.upstream(UpstreamOperation.GET_BY_ID, () -> auditJournal.record(UpstreamOperation.GET_BY_ID, partnerId, transferId, null,
+                                    () -> mpqrTransport.getById(partnerId, transferId))))))))));
         }
+        AsyncMpqrTransport transport = (AsyncMpqrTransport) mpqrTransport;
+        return transferCache.getAsync(key, () -> transferLedger.getAsync(key, () -> timedAsync(() -> transferSingleFlight.executeAsync(key,
+                () -> rateLimiter.executeAsync(partnerId, UpstreamOperation.GET_BY_ID, () -> upstreamGuard.executeAsync(
+                        () -> metrics.upstreamAsync(UpstreamOperation.GET_BY_ID, () -> auditJournal.recordAsync(UpstreamOperation.GET_BY_ID, partnerId, transferId, null,
+                                () -> transport.getByIdAsync(partnerId, transferId)))))))));
     }
 
     /**
-     * Retrieves the Transfer resource associated with a specified transfer_reference value
+     * Retrieves the Transfer resource associated with a specified transfer_reference value, hedged and retried
+     * with a blocking transport like {@link #getByIdAsync(String, String)}
      *
      * @param partnerId
      * @param ref
-     * @return json response from MPQR API
+     * @return completes with the response from MPQR API
      */
     @Override
-    public String getByRef(String partnerId, String ref) {
-        try {
-            RequestMap map = new RequestMap();
-            map.set("partnerId", partnerId);
-            map.set("ref", ref);
-            MerchantRetrieval apiResponse = MerchantRetrieval.readByReference(map);
-            log.debug(apiResponse.toString());
-            return JSONObject.toJSONString(apiResponse);
-        } catch (ApiException e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new MasterCardException(e);
+    public CompletableFuture<Map<String, Object>> getByRefAsync(String partnerId, String ref) {
+        TransferKey key = TransferKey.byRef(partnerId, ref);
+        if (!(mpqrTransport instanceof AsyncMpqrTransport)) {
+            return transferCache.getAsync(key, () -> transferLedger.getAsync(key, () -> timedAsync(() -> transferSingleFlight.executeAsync(key,
+                    () -> hedgedRetrieval.executeAsync(() -> rateLimiter.execute(partnerId, UpstreamOperation.GET_BY_REF, () -> upstreamGuard.execute(
+                            () -> metrics.upstream(UpstreamOperation.GET_BY_REF, () -> auditJournal.record(UpstreamOperation.GET_BY_REF, partnerId, ref, null,
+                                    () -> mpqrTransport.getByRef(partnerId, ref))))))))));
         }
+        AsyncMpqrTransport transport = (AsyncMpqrTransport) mpqrTransport;
+        return transferCache.getAsync(key, () -> transferLedger.getAsync(key, () -> timedAsync(() -> transferSingleFlight.executeAsync(key,
+                () -> rateLimiter.executeAsync(partnerId, UpstreamOperation.GET_BY_REF, () -> upstreamGuard.executeAsync(
+                        () -> metrics.upstreamAsync(UpstreamOperation.GET_BY_REF, () -> auditJournal.recordAsync(UpstreamOperation.GET_BY_REF, partnerId, ref, null,
+                                () -> transport.getByRefAsync(partnerId, ref)))))))));
+    }
+
+    private AsyncMpqrTransport asyncTransport() {
+        if (!(mpqrTransport instanceof AsyncMpqrTransport)) {
+            throw new IllegalStateException("Non-blocking calls need com.mastercard.transport.type ASYNC");
+        }
+        return (AsyncMpqrTransport) mpqrTransport;
     }
 
     /**
-     * Generates flat map from json request object
-     *
-     * @param currentPath
-     * @param jsonNode
-     * @param map
+     * Non-blocking MPQR API call as seen by the request being timed, until the call completes on another thread.
+     * Waiting for an identical retrieval in flight, retries and hedges count as upstream time.
      */
-    private void addKeys(String currentPath, JsonNode jsonNode, Map<String, Object> map) {
-        if (jsonNode.isObject()) {
-            com.fasterxml.jackson.databind.node.ObjectNode objectNode = (com.fasterxml.jackson.databind.node.ObjectNode) jsonNode;
-            Iterator<Map.Entry<String, JsonNode>> iter = objectNode.fields();
-            String pathPrefix = currentPath.isEmpty() ? "" : currentPath + ".";
-
-            while (iter.hasNext()) {
-                Map.Entry<String, JsonNode> entry = iter.next();
-                addKeys(pathPrefix + entry.getKey(), entry.getValue(), map);
-            }
-        } else if (jsonNode.isArray()) {
-            ArrayNode arrayNode = (ArrayNode) jsonNode;
-            for (int i = 0; i < arrayNode.size(); i++) {
-                addKeys(currentPath + "[" + i + "]", arrayNode.get(i), map);
-            }
-        } else if (jsonNode.isValueNode()) {
-            ValueNode valueNode = (ValueNode) jsonNode;
-            String value = valueNode.asText();
-            if (value != null) {
-                map.put(currentPath, value);
-            }
+    private static <T> CompletableFuture<T> timedAsync(Supplier<CompletableFuture<T>> call) {
+        RequestTiming timing = RequestTiming.current();
+        if (timing == null) {
+            return call.get();
         }
+        long start = System.nanoTime();
+        return call.get().whenComplete((response, e) -> timing.add(RequestTiming.Phase.UPSTREAM, System.nanoTime() - start));
     }
 }
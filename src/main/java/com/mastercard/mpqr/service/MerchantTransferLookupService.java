@@ -0,0 +1,17 @@
+package com.mastercard.mpqr.service;
+
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface MerchantTransferLookupService {
+    CompletableFuture<Map<String, Object>> getMerchantTransferList(String partnerId, List<String> refs, List<String> transferIds);
+
+    CompletableFuture<Void> streamMerchantTransferList(String partnerId, List<String> refs, List<String> transferIds,
+                                                       Consumer<String> results);
+
+    Flux<String> streamMerchantTransferList(String partnerId, List<String> refs, List<String> transferIds);
+}
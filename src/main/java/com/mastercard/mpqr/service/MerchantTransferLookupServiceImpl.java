@@ -0,0 +1,361 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.config.BulkLookupConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.exception.RateLimitException;
+import com.mastercard.mpqr.model.ErrorResponse;
+import com.mastercard.mpqr.model.MerchantTransferLookupError;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Service looking up several merchant transfers at once, lookups run concurrently
+ * so the latency is the one of the slowest lookup. Long lists are streamed instead.
+ */
+@Service
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MerchantTransferLookupServiceImpl implements MerchantTransferLookupService {
+
+    MasterCardAsyncService masterCardAsyncService;
+
+    BulkLookupConfiguration bulkLookupConfiguration;
+
+    ScheduledExecutorService outboundScheduler;
+
+    ExecutorService lookupStreamExecutor;
+
+    ObjectMapper objectMapper;
+
+    /**
+     * Retrieves merchant transfers by references and transfer ids and merges them into one
+     * merchant transfer list. Failed lookups are reported in errors instead of failing the whole list.
+     *
+     * @param partnerId
+     * @param refs
+     * @param transferIds
+     * @return merged response from MPQR API
+     */
+    @Override
+    public CompletableFuture<Map<String, Object>> getMerchantTransferList(String partnerId, List<String> refs, List<String> transferIds) {
+        refs = refs == null ? Collections.emptyList() : refs;
+        transferIds = transferIds == null ? Collections.emptyList() : transferIds;
+        if (refs.size() + transferIds.size() > bulkLookupConfiguration.getMaxItems()) {
+            throw new MasterCardException("refs", "INVALID_INPUT_LENGTH", "Too many items", HttpStatus.BAD_REQUEST);
+        }
+
+        List<Lookup> lookups = new ArrayList<>(refs.size() + transferIds.size());
+        refs.forEach(ref -> lookups.add(new Lookup(ref, null, withTimeout(masterCardAsyncService.getByRef(partnerId, ref)))));
+        transferIds.forEach(id -> lookups.add(new Lookup(null, id, withTimeout(masterCardAsyncService.getById(partnerId, id)))));
+
+        CompletableFuture<?>[] outcomes = lookups.stream()
+                .map(lookup -> lookup.future.handle((body, e) -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(outcomes).thenApply(done -> merge(lookups));
+    }
+
+    /**
+     * Retrieves merchant transfers by references and transfer ids and streams each result as a json line.
+     * At most a window of lookups is in flight, the next ones start as results are written, so a slow
+     * client slows down the lookups instead of results piling up in memory. Lookups rejected by the rate
+     * limiter are started again after its Retry-After instead of being written as errors, so long lists
+     * follow the rate of the partner.
+     * <p>
+     * Lookups do not hold threads, but each stream holds a lookup stream thread until its last result is
+     * written, blocked waiting for results. Concurrent streams are bounded by the size of that pool.
+     *
+     * @param partnerId
+     * @param refs
+     * @param transferIds
+     * @param results     consumer of result lines, called from a single thread
+     * @return completes when all results are written
+     */
+    @Override
+    public CompletableFuture<Void> streamMerchantTransferList(String partnerId, List<String> refs, List<String> transferIds,
+                                                              Consumer<String> results) {
+        List<String> streamedRefs = refs == null ? Collections.emptyList() : refs;
+        List<String> streamedIds = transferIds == null ? Collections.emptyList() : transferIds;
+        if (streamedRefs.size() + streamedIds.size() > bulkLookupConfiguration.getMaxStreamItems()) {
+            throw new MasterCardException("refs", "INVALID_INPUT_LENGTH", "Too many items", HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return CompletableFuture.runAsync(() -> stream(partnerId, streamedRefs, streamedIds, results), lookupStreamExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new MasterCardException(null, "SERVICE_UNAVAILABLE", "Too many concurrent streams", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private void stream(String partnerId, List<String> refs, List<String> transferIds, Consumer<String> results) {
+        int items = refs.size() + transferIds.size();
+        int window = bulkLookupConfiguration.getStreamWindow();
+        BlockingQueue<Result> completed = new LinkedBlockingQueue<>();
+        Deque<Integer> limited = new ArrayDeque<>();
+        long pausedUntil = System.nanoTime();
+        int next = 0;
+        int inFlight = 0;
+        try {
+            while (next < items || !limited.isEmpty() || inFlight > 0) {
+                long pause = pausedUntil - System.nanoTime();
+                boolean start = inFlight < window && pause <= 0 && (next < items || !limited.isEmpty());
+                Result result;
+                if (start) {
+                    result = completed.poll();
+                } else if (inFlight == 0) {
+                    result = null;
+                } else if (pause > 0 && inFlight < window) {
+                    result = completed.poll(pause, TimeUnit.NANOSECONDS);
+                } else {
+                    result = completed.take();
+                }
+
+                if (result != null) {
+                    inFlight--;
+                    if (result.error instanceof RateLimitException) {
+                        // started again first once the limiter admits new calls
+                        limited.add(result.index);
+                        long retryAfter = TimeUnit.SECONDS.toNanos(((RateLimitException) result.error).getRetryAfterSeconds());
+                        pausedUntil = Math.max(pausedUntil, System.nanoTime() + retryAfter);
+                    } else {
+                        results.accept(resultLine(result));
+                    }
+                } else if (start) {
+                    lookup(partnerId, refs, transferIds, limited.isEmpty() ? next++ : limited.poll()).thenAccept(completed::add);
+                    inFlight++;
+                } else if (inFlight == 0) {
+                    TimeUnit.NANOSECONDS.sleep(pause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Retrieves merchant transfers by references and transfer ids as a stream of json lines for the reactive
+     * stack. Like the blocking stream, at most a window of lookups is in flight and lookups rejected by the
+     * rate limiter are started again after its Retry-After, but no thread waits for results: lookups start
+     * as the subscriber requests lines, so a slow client slows down the lookups through backpressure.
+     *
+     * @param partnerId
+     * @param refs
+     * @param transferIds
+     * @return result lines in completion order
+     */
+    @Override
+    public Flux<String> streamMerchantTransferList(String partnerId, List<String> refs, List<String> transferIds) {
+        List<String> streamedRefs = refs == null ? Collections.emptyList() : refs;
+        List<String> streamedIds = transferIds == null ? Collections.emptyList() : transferIds;
+        if (streamedRefs.size() + streamedIds.size() > bulkLookupConfiguration.getMaxStreamItems()) {
+            throw new MasterCardException("refs", "INVALID_INPUT_LENGTH", "Too many items", HttpStatus.BAD_REQUEST);
+        }
+        AtomicLong pausedUntil = new AtomicLong(System.nanoTime());
+        return Flux.range(0, streamedRefs.size() + streamedIds.size())
+                .flatMap(index -> pacedLookup(partnerId, streamedRefs, streamedIds, index, pausedUntil),
+                        bulkLookupConfiguration.getStreamWindow(), 1)
+                .map(this::resultLine);
+    }
+
+    /**
+     * Lookup started once the pause of the stream is over, lookups rejected by the rate limiter
+     * extend that pause to its Retry-After and wait for it before they are started again
+     */
+    private Mono<Result> pacedLookup(String partnerId, List<String> refs, List<String> transferIds, int index, AtomicLong pausedUntil) {
+        return Mono.defer(() -> {
+            Mono<Result> lookup = Mono.fromFuture(() -> lookup(partnerId, refs, transferIds, index));
+            long pause = pausedUntil.get() - System.nanoTime();
+            return pause > 0 ? Mono.delay(Duration.ofNanos(pause)).then(lookup) : lookup;
+        }).flatMap(result -> {
+            if (!(result.error instanceof RateLimitException)) {
+                return Mono.just(result);
+            }
+            long retryAfter = TimeUnit.SECONDS.toNanos(((RateLimitException) result.error).getRetryAfterSeconds());
+            pausedUntil.accumulateAndGet(System.nanoTime() + retryAfter, Math::max);
+            return pacedLookup(partnerId, refs, transferIds, index, pausedUntil);
+        });
+    }
+
+    /**
+     * Lookup of the item at index, refs first then transfer ids, completing with its result or error
+     */
+    private CompletableFuture<Result> lookup(String partnerId, List<String> refs, List<String> transferIds, int index) {
+        String ref = index < refs.size() ? refs.get(index) : null;
+        String transferId = index < refs.size() ? null : transferIds.get(index - refs.size());
+        return withTimeout(ref != null ? masterCardAsyncService.getByRef(partnerId, ref) : masterCardAsyncService.getById(partnerId, transferId))
+                .handle((body, e) -> new Result(index, ref, transferId, body, e == null ? null : MasterCardException.from(e)));
+    }
+
+    /**
+     * Result line with the index of the item in the request and either MPQR API response or error
+     */
+    private String resultLine(Result result) {
+        StringWriter line = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(line)) {
+            generator.writeStartObject();
+            generator.writeNumberField("index", result.index);
+            if (result.ref != null) {
+                generator.writeStringField("ref", result.ref);
+            } else {
+                generator.writeStringField("transfer_id", result.transferId);
+            }
+            MasterCardException error = result.error;
+            if (error == null) {
+                generator.writeNumberField("status", HttpStatus.OK.value());
+                generator.writeObjectField("response", result.body);
+            } else {
+                generator.writeNumberField("status", error.getHttpStatus() == 0 ? HttpStatus.BAD_REQUEST.value() : error.getHttpStatus());
+                generator.writeObjectField("error", new ErrorResponse(error.getSource(), error.getReasonCode(), error.getMessage()));
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return line.append('\n').toString();
+    }
+
+    private Map<String, Object> merge(List<Lookup> lookups) {
+        MerchantTransferList list = new MerchantTransferList();
+        List<MerchantTransferLookupError> errors = new ArrayList<>();
+        for (Lookup lookup : lookups) {
+            try {
+                list.add(lookup.future.join());
+            } catch (CompletionException e) {
+                MasterCardException error = MasterCardException.from(e);
+                errors.add(new MerchantTransferLookupError(lookup.ref, lookup.transferId, error.getSource(),
+                        error.getReasonCode(), error.getMessage()));
+            }
+        }
+        Map<String, Object> result = list.getResult();
+        if (!errors.isEmpty()) {
+            result.put("errors", errors);
+        }
+        return result;
+    }
+
+    private CompletableFuture<Map<String, Object>> withTimeout(CompletableFuture<Map<String, Object>> future) {
+        ScheduledFuture<?> timeout = outboundScheduler.schedule(() -> future.completeExceptionally(
+                new MasterCardException(null, "TIMEOUT", "Lookup timed out", HttpStatus.GATEWAY_TIMEOUT)),
+                bulkLookupConfiguration.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        future.whenComplete((body, e) -> timeout.cancel(false));
+        return future;
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Lookup {
+        String ref;
+        String transferId;
+        CompletableFuture<Map<String, Object>> future;
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Result {
+        int index;
+        String ref;
+        String transferId;
+        Map<String, Object> body;
+        MasterCardException error;
+    }
+
+    /**
+     * Merchant transfer list built from the first response, transfers of the following
+     * responses are appended to its merchant_transfer array. Responses may be cached, so
+     * the maps and lists on the way to that array are copied instead of modified.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class MerchantTransferList {
+        Map<String, Object> result;
+        Map<String, Object> merchantTransfers;
+        List<Object> data;
+
+        void add(Map<String, Object> response) {
+            Object responseTransfers = TransferResponses.findValue(response, "merchant_transfers");
+            Object responseData = TransferResponses.findValue(responseTransfers, "data");
+            if (result == null && response.get("merchant_transfers") instanceof Map && responseData instanceof Map) {
+                result = new LinkedHashMap<>(response);
+                merchantTransfers = copy(responseTransfers);
+                result.put("merchant_transfers", merchantTransfers);
+                Map<String, Object> dataMap = copy(merchantTransfers.get("data"));
+                merchantTransfers.put("data", dataMap);
+                Object transfers = dataMap.get("merchant_transfer");
+                data = transfers instanceof Collection ? new ArrayList<>((Collection<?>) transfers) : new ArrayList<>();
+                dataMap.put("merchant_transfer", data);
+                return;
+            }
+            Object transfer;
+            if (responseTransfers instanceof Map) {
+                Object transfers = responseData instanceof Map ? ((Map<?, ?>) responseData).get("merchant_transfer") : null;
+                transfer = transfers instanceof List && !((List<?>) transfers).isEmpty() ? ((List<?>) transfers).get(0) : null;
+            } else {
+                transfer = TransferResponses.findValue(response, "merchant_transfer");
+            }
+            if (transfer == null) {
+                return;
+            }
+            getResult();
+            merchantTransfers.put("item_count", itemCount() + 1);
+            data.add(transfer);
+        }
+
+        Map<String, Object> getResult() {
+            if (result == null) {
+                result = new LinkedHashMap<>();
+                merchantTransfers = new LinkedHashMap<>();
+                merchantTransfers.put("item_count", 0);
+                data = new ArrayList<>();
+                merchantTransfers.put("data", Collections.singletonMap("merchant_transfer", data));
+                result.put("merchant_transfers", merchantTransfers);
+            }
+            return result;
+        }
+
+        private int itemCount() {
+            Object itemCount = merchantTransfers.get("item_count");
+            if (itemCount instanceof Number) {
+                return ((Number) itemCount).intValue();
+            }
+            try {
+                return itemCount == null ? 0 : Integer.parseInt(itemCount.toString());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, Object> copy(Object map) {
+            return new LinkedHashMap<>((Map<String, Object>) map);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * Sends calls to MPQR API, failures are thrown as {@link MasterCardException}
+ */
+public interface MpqrTransport extends Closeable {
+
+    Map<String, Object> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request);
+
+    Map<String, Object> merchantTransferPayment(MerchantTransferPaymentRequest request);
+
+    Map<String, Object> getById(String partnerId, String transferId);
+
+    Map<String, Object> getByRef(String partnerId, String ref);
+}
@@ -0,0 +1,276 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.api.core.security.Authentication;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.BufferedHttpEntity;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * OAuth 1.0a RSA-SHA256 signer of MPQR API calls. The private key is decoded once, and each thread
+ * keeps its own signature and digest engines so that signing scales with cores without a shared lock.
+ * Virtual threads run a single call each, they borrow engines from a small shared pool instead.
+ * Request bodies are hashed while streamed, without copying them.
+ */
+public class OAuthSigner implements Authentication {
+
+    static final String SIGNATURE_METHOD = "RSA-SHA256";
+
+    static final String EMPTY_BODY_HASH = Base64.getEncoder().encodeToString(sha256().digest());
+
+    static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    final String consumerKey;
+
+    final PrivateKey privateKey;
+
+    final Engines<Signature> signatures;
+
+    final Engines<MessageDigest> digests = new Engines<>(OAuthSigner::sha256);
+
+    public OAuthSigner(String consumerKey, PrivateKey privateKey) {
+        this.consumerKey = consumerKey;
+        this.privateKey = privateKey;
+        this.signatures = new Engines<>(this::newSignature);
+    }
+
+    /**
+     * Loads the signing key from a PKCS#12 key store
+     *
+     * @param consumerKey
+     * @param keyStore    path of the p12 file
+     * @param keyAlias
+     * @param keyPassword password of the key store and of the key
+     * @return
+     */
+    public static OAuthSigner load(String consumerKey, String keyStore, String keyAlias, String keyPassword)
+            throws IOException, GeneralSecurityException {
+        KeyStore pkcs12 = KeyStore.getInstance("PKCS12");
+        try (InputStream is = new FileInputStream(keyStore)) {
+            pkcs12.load(is, keyPassword.toCharArray());
+        }
+        PrivateKey privateKey = (PrivateKey) pkcs12.getKey(keyAlias, keyPassword.toCharArray());
+        if (privateKey == null) {
+            throw new GeneralSecurityException("No private key " + keyAlias + " in " + keyStore);
+        }
+        return new OAuthSigner(consumerKey, privateKey);
+    }
+
+    @Override
+    public void signRequest(URI uri, HttpRequestBase request) throws Exception {
+        long start = RequestTiming.start();
+        HttpEntity entity = null;
+        if (request instanceof HttpEntityEnclosingRequest) {
+            entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && !entity.isRepeatable()) {
+                // hashing consumes the body, it has to be sent again
+                entity = new BufferedHttpEntity(entity);
+                ((HttpEntityEnclosingRequest) request).setEntity(entity);
+            }
+        }
+        request.setHeader(HttpHeaders.AUTHORIZATION, authorizationHeader(request.getMethod(), uri, entity));
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            // signing happens within the MPQR API call, which is timed as a whole
+            long nanos = System.nanoTime() - start;
+            timing.add(RequestTiming.Phase.SIGN, nanos);
+            timing.add(RequestTiming.Phase.UPSTREAM, -nanos);
+        }
+    }
+
+    /**
+     * Value of the OAuth Authorization header of a call
+     *
+     * @param method http method
+     * @param uri    full uri, its query parameters are signed
+     * @param entity body or null
+     * @return
+     */
+    public String authorizationHeader(String method, URI uri, HttpEntity entity) throws IOException, GeneralSecurityException {
+        String bodyHash = bodyHash(entity);
+        String nonce = nonce();
+        String timestamp = Long.toString(System.currentTimeMillis() / 1000);
+
+        List<String> parameters = new ArrayList<>();
+        parameters.add("oauth_body_hash=" + encode(bodyHash));
+        parameters.add("oauth_consumer_key=" + encode(consumerKey));
+        parameters.add("oauth_nonce=" + nonce);
+        parameters.add("oauth_signature_method=" + SIGNATURE_METHOD);
+        parameters.add("oauth_timestamp=" + timestamp);
+        parameters.add("oauth_version=1.0");
+        addQueryParameters(uri.getRawQuery(), parameters);
+        parameters.sort(Comparator.comparing(OAuthSigner::nameOf).thenComparing(parameter -> parameter.substring(nameOf(parameter).length())));
+
+        String baseString = method.toUpperCase(Locale.ROOT) + '&' + encode(baseUri(uri)) + '&' + encode(String.join("&", parameters));
+
+        Signature signature = signatures.acquire();
+        signature.update(baseString.getBytes(StandardCharsets.UTF_8));
+        String signed = Base64.getEncoder().encodeToString(signature.sign());
+        signatures.release(signature);
+
+        return "OAuth oauth_body_hash=\"" + encode(bodyHash)
+                + "\",oauth_consumer_key=\"" + encode(consumerKey)
+                + "\",oauth_nonce=\"" + nonce
+                + "\",oauth_signature=\"" + encode(signed)
+                + "\",oauth_signature_method=\"" + SIGNATURE_METHOD
+                + "\",oauth_timestamp=\"" + timestamp
+                + "\",oauth_version=\"1.0\"";
+    }
+
+    /**
+     * Base64 SHA-256 of the body, digested while the entity writes it
+     */
+    String bodyHash(HttpEntity entity) throws IOException {
+        if (entity == null || entity.getContentLength() == 0) {
+            return EMPTY_BODY_HASH;
+        }
+        MessageDigest digest = digests.acquire();
+        digest.reset();
+        entity.writeTo(new DigestOutputStream(NULL_OUTPUT, digest));
+        String hash = Base64.getEncoder().encodeToString(digest.digest());
+        digests.release(digest);
+        return hash;
+    }
+
+    /**
+     * Unique per call, the signature makes it unpredictable
+     */
+    static String nonce() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+    }
+
+    private static String nameOf(String parameter) {
+        return parameter.substring(0, parameter.indexOf('='));
+    }
+
+    static String baseUri(URI uri) {
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || "https".equals(scheme) && port == 443 || "http".equals(scheme) && port == 80;
+        return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + (defaultPort ? "" : ":" + port) + uri.getRawPath();
+    }
+
+    static void addQueryParameters(String query, List<String> parameters) throws UnsupportedEncodingException {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.add(encode(URLDecoder.decode(name, "UTF-8")) + '=' + encode(URLDecoder.decode(value, "UTF-8")));
+        }
+    }
+
+    /**
+     * RFC 3986 percent encoding required by OAuth
+     */
+    static String encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        StringBuilder encoded = new StringBuilder(bytes.length + 16);
+        for (byte b : bytes) {
+            char c = (char) (b & 0xff);
+            if (c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '.' || c == '_' || c == '~') {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private Signature newSignature() {
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(privateKey);
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Engines kept per platform thread, and pooled for virtual threads which would otherwise create them for
+     * every call. Engines are released only once back in their initial state, a failed call drops its engine.
+     */
+    static final class Engines<T> {
+
+        /**
+         * Signing does not block, so carrier threads bound the engines in use by virtual threads
+         */
+        static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+        final Supplier<T> factory;
+
+        final ThreadLocal<T> perThread;
+
+        final BlockingQueue<T> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+        Engines(Supplier<T> factory) {
+            this.factory = factory;
+            this.perThread = ThreadLocal.withInitial(factory);
+        }
+
+        T acquire() {
+            if (!Thread.currentThread().isVirtual()) {
+                return perThread.get();
+            }
+            T engine = pool.poll();
+            return engine != null ? engine : factory.get();
+        }
+
+        void release(T engine) {
+            if (Thread.currentThread().isVirtual()) {
+                pool.offer(engine);
+            }
+        }
+
+        int pooledCount() {
+            return pool.size();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.api.core.model.Environment;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Credentials and environment used to call MPQR API for a partner
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PartnerContext {
+
+    /**
+     * Null for the default context, used by partners without their own credentials
+     */
+    String partnerId;
+
+    Environment environment;
+
+    /**
+     * MPQR API url for the pooled transport, null for the one of the environment
+     */
+    String baseUrl;
+
+    OAuthSigner signer;
+}
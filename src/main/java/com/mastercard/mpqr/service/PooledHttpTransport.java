@@ -0,0 +1,308 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.util.UriUtils;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls MPQR API over pooled keep-alive connections, at the url and with the signer of the partner. Requests are written
+ * as json straight from the request objects and responses are parsed into the same maps as the QR client
+ * returns. Connections share one TLS context, so new connections resume TLS sessions.
+ */
+@Slf4j
+public class PooledHttpTransport implements MpqrTransport {
+
+    /**
+     * Path of the transfers of a partner, /send/v1/partners/{partnerId}/merchant/transfers
+     */
+    static final String PARTNERS_PATH = "/send/v1/partners";
+
+    static final String TRANSFERS_PATH = "/merchant/transfers";
+
+    final PartnerRoute defaultRoute;
+
+    final Map<String, PartnerRoute> routes;
+
+    final ObjectMapper objectMapper;
+
+    final PoolingHttpClientConnectionManager connectionManager;
+
+    final CloseableHttpClient httpClient;
+
+    final LongAdder connectionsOpened;
+
+    /**
+     * @param connectionsOpened incremented by the socket factories of the connection manager, see {@link #countingPlain(LongAdder)}
+     */
+    public PooledHttpTransport(PartnerRoute defaultRoute, Map<String, PartnerRoute> routes, ObjectMapper objectMapper,
+                               PoolingHttpClientConnectionManager connectionManager, CloseableHttpClient httpClient,
+                               LongAdder connectionsOpened) {
+        this.defaultRoute = defaultRoute;
+        this.routes = Collections.unmodifiableMap(new HashMap<>(routes));
+        this.objectMapper = objectMapper;
+        this.connectionManager = connectionManager;
+        this.httpClient = httpClient;
+        this.connectionsOpened = connectionsOpened;
+    }
+
+    @Override
+    public Map<String, Object> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request) {
+        return create(request.getPartnerId(), "funding-and-payment",
+                Collections.singletonMap("merchant_transfer", request.getMerchantTransfer()));
+    }
+
+    @Override
+    public Map<String, Object> merchantTransferPayment(MerchantTransferPaymentRequest request) {
+        return create(request.getPartnerId(), "payment",
+                Collections.singletonMap("merchant_payment_transfer", request.getMerchantPaymentTransfer()));
+    }
+
+    @Override
+    public Map<String, Object> getById(String partnerId, String transferId) {
+        PartnerRoute route = route(partnerId);
+        return execute(route, new HttpGet(uri(route, partnerId, transferId, null)));
+    }
+
+    @Override
+    public Map<String, Object> getByRef(String partnerId, String ref) {
+        PartnerRoute route = route(partnerId);
+        return execute(route, new HttpGet(uri(route, partnerId, null, ref)));
+    }
+
+    /**
+     * Connections leased, idle and awaited, over all routes
+     */
+    public PoolStats poolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Number of connections opened, each https one with a TLS handshake
+     */
+    public long connectionsOpenedCount() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private Map<String, Object> create(String partnerId, String resource, Object body) {
+        long start = RequestTiming.start();
+        PartnerRoute route = route(partnerId);
+        HttpPost post = new HttpPost(uri(route, partnerId, resource, null));
+        try {
+            post.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(body), ContentType.APPLICATION_JSON));
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new MasterCardException(e);
+        }
+        start = RequestTiming.lap(RequestTiming.Phase.FLATTEN, start);
+        try {
+            return execute(route, post);
+        } finally {
+            RequestTiming.lap(RequestTiming.Phase.UPSTREAM, start);
+        }
+    }
+
+    private PartnerRoute route(String partnerId) {
+        PartnerRoute route = partnerId == null ? null : routes.get(partnerId);
+        return route != null ? route : defaultRoute;
+    }
+
+    /**
+     * Address of a transfers resource, the partner id and the resource are each encoded as a single path segment
+     *
+     * @param route    of the partner
+     * @param partnerId
+     * @param resource path segment under the transfers, or null for the transfers
+     * @param ref      transfer reference to look up, or null
+     * @throws MasterCardException if the partner id or the resource is not a path segment
+     */
+    static URI uri(PartnerRoute route, String partnerId, String resource, String ref) {
+        StringBuilder path = new StringBuilder(route.baseUri.getRawPath() == null ? "" : route.baseUri.getRawPath());
+        if (path.length() > 0 && path.charAt(path.length() - 1) == '/') {
+            path.setLength(path.length() - 1);
+        }
+        path.append(PARTNERS_PATH).append('/').append(segment("partnerId", partnerId)).append(TRANSFERS_PATH);
+        if (resource != null) {
+            path.append('/').append(segment("transferId", resource));
+        }
+        if (ref != null) {
+            // URIBuilder would encode the path again from its decoded form
+            path.append('?').append(URLEncodedUtils.format(Collections.singletonList(new BasicNameValuePair("ref", ref)),
+                    StandardCharsets.UTF_8));
+        }
+        try {
+            return route.baseUri.resolve(path.toString());
+        } catch (IllegalArgumentException e) {
+            throw new MasterCardException("path", "INVALID_INPUT_VALUE", e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Percent-encodes a value as a single path segment, rejecting values which would change the path however
+     * MPQR API decodes them. Semicolons are encoded too, as some servers cut path parameters off a segment.
+     */
+    private static String segment(String source, String value) {
+        if (value == null || value.isEmpty() || ".".equals(value) || "..".equals(value)
+                || value.indexOf('/') >= 0 || value.indexOf('\\') >= 0) {
+            throw new MasterCardException(source, "INVALID_INPUT_VALUE", "Invalid value", HttpStatus.BAD_REQUEST);
+        }
+        return UriUtils.encodePathSegment(value, StandardCharsets.UTF_8).replace(";", "%3B");
+    }
+
+    private Map<String, Object> execute(PartnerRoute route, HttpRequestBase request) {
+        try {
+            request.setHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+            route.signer.signRequest(request.getURI(), request);
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int status = response.getStatusLine().getStatusCode();
+                Map<String, Object> body;
+                try {
+                    body = read(response);
+                } catch (JsonProcessingException e) {
+                    if (status < 300) {
+                        throw e;
+                    }
+                    body = Collections.emptyMap();
+                }
+                if (status >= 300) {
+                    throw error(status, body);
+                }
+                return body;
+            }
+        } catch (MasterCardException e) {
+            throw e;
+        } catch (ConnectionPoolTimeoutException e) {
+            throw unavailable(e, HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ConnectTimeoutException | SocketTimeoutException e) {
+            throw unavailable(e, HttpStatus.GATEWAY_TIMEOUT);
+        } catch (IOException e) {
+            throw unavailable(e, HttpStatus.BAD_GATEWAY);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new MasterCardException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> read(CloseableHttpResponse response) throws IOException {
+        if (response.getEntity() == null) {
+            return Collections.emptyMap();
+        }
+        try (InputStream content = response.getEntity().getContent()) {
+            Map<String, Object> body = objectMapper.readValue(content, Map.class);
+            return body == null ? Collections.emptyMap() : body;
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    /**
+     * Maps the first error of a MPQR API error response
+     */
+    static MasterCardException error(int status, Map<String, Object> body) {
+        HttpStatus httpStatus = HttpStatus.resolve(status);
+        Object errors = TransferResponses.findValue(body, "Error");
+        Object error = errors instanceof List && !((List<?>) errors).isEmpty() ? ((List<?>) errors).get(0) : errors;
+        if (error instanceof Map) {
+            Map<?, ?> fields = (Map<?, ?>) error;
+            return new MasterCardException(string(fields.get("Source")), string(fields.get("ReasonCode")),
+                    string(fields.get("Description")), httpStatus == null ? HttpStatus.BAD_GATEWAY : httpStatus);
+        }
+        return new MasterCardException(null, null, "MPQR API answered " + status, httpStatus == null ? HttpStatus.BAD_GATEWAY : httpStatus);
+    }
+
+    static MasterCardException unavailable(Exception e, HttpStatus status) {
+        log.warn("MPQR API call failed: {}", e.toString());
+        return new MasterCardException(null, null, e.getMessage(), status);
+    }
+
+    private static String string(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Plain socket factory counting the connections opened
+     */
+    public static ConnectionSocketFactory countingPlain(LongAdder connectionsOpened) {
+        return new PlainConnectionSocketFactory() {
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                        InetSocketAddress localAddress, HttpContext context) throws IOException {
+                connectionsOpened.increment();
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            }
+        };
+    }
+
+    /**
+     * TLS socket factory counting the connections opened, all of them share the TLS session cache of the context
+     */
+    public static ConnectionSocketFactory countingTls(SSLContext sslContext, LongAdder connectionsOpened) {
+        return new SSLConnectionSocketFactory(sslContext, SSLConnectionSocketFactory.getDefaultHostnameVerifier()) {
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                        InetSocketAddress localAddress, HttpContext context) throws IOException {
+                connectionsOpened.increment();
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            }
+        };
+    }
+
+    /**
+     * Url and signer of the calls of a partner
+     */
+    @AllArgsConstructor
+    @Getter
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    public static class PartnerRoute {
+        URI baseUri;
+        OAuthSigner signer;
+    }
+}
@@ -0,0 +1,197 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.RateLimitConfiguration;
+import com.mastercard.mpqr.exception.RateLimitException;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Rate limits of each partner and of all partners, separately for payment creations and retrievals, so that one
+ * partner cannot use up the MPQR API quota of the others. Partner buckets live in a concurrent map, the global
+ * buckets are striped over the cores, each stripe holding its share of the rate, so that threads seldom race on
+ * the same compare and set.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RateLimiter {
+
+    static final int CREATE = 0;
+
+    static final int RETRIEVAL = 1;
+
+    RateLimitConfiguration configuration;
+
+    ConcurrentMap<String, TokenBucket[]> partners = new ConcurrentHashMap<>();
+
+    TokenBucket[][] global;
+
+    AtomicBoolean pruning = new AtomicBoolean();
+
+    LongAdder partnerRejections = new LongAdder();
+
+    LongAdder globalRejections = new LongAdder();
+
+    LongSupplier nanoTime;
+
+    @Autowired
+    public RateLimiter(RateLimitConfiguration configuration) {
+        this(configuration, Runtime.getRuntime().availableProcessors(), System::nanoTime);
+    }
+
+    RateLimiter(RateLimitConfiguration configuration, int cores, LongSupplier nanoTime) {
+        this.configuration = configuration;
+        this.nanoTime = nanoTime;
+        this.global = new TokenBucket[][]{
+                stripes(configuration.getGlobalCreatePerSecond(), configuration.getGlobalCreateBurst(), cores, nanoTime),
+                stripes(configuration.getGlobalRetrievalPerSecond(), configuration.getGlobalRetrievalBurst(), cores, nanoTime)};
+    }
+
+    /**
+     * Calls MPQR API once a token is taken for the call, requests answered from the cache, the ledger or an
+     * idempotency replay never get here and do not use up the quota
+     *
+     * @param partnerId
+     * @param operation
+     * @param call      MPQR API call
+     * @return response from MPQR API
+     * @throws RateLimitException with the time after which a token is available
+     */
+    public <T> T execute(String partnerId, UpstreamOperation operation, Supplier<T> call) {
+        acquire(partnerId, operation);
+        return call.get();
+    }
+
+    /**
+     * Calls MPQR API without blocking once a token is taken for the call
+     *
+     * @param partnerId
+     * @param operation
+     * @param call      MPQR API call
+     * @return completes with the response from MPQR API, or with a {@link RateLimitException}
+     */
+    public <T> CompletableFuture<T> executeAsync(String partnerId, UpstreamOperation operation, Supplier<CompletableFuture<T>> call) {
+        try {
+            acquire(partnerId, operation);
+        } catch (RateLimitException e) {
+            CompletableFuture<T> response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+            return response;
+        }
+        return call.get();
+    }
+
+    /**
+     * Takes a token for a call from the partner and from all partners
+     *
+     * @param partnerId
+     * @param operation
+     * @throws RateLimitException with the time after which a token is available
+     */
+    public void acquire(String partnerId, UpstreamOperation operation) {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        int kind = operation == UpstreamOperation.GET_BY_ID || operation == UpstreamOperation.GET_BY_REF ? RETRIEVAL : CREATE;
+        TokenBucket partner = partnerId == null ? null : partnerBuckets(partnerId)[kind];
+        long waitNanos = partner == null ? 0 : partner.tryAcquire();
+        if (waitNanos > 0) {
+            partnerRejections.increment();
+            throw new RateLimitException("partnerId", "Too many requests from partner", seconds(waitNanos));
+        }
+        waitNanos = acquire(global[kind]);
+        if (waitNanos > 0) {
+            if (partner != null) {
+                partner.release();
+            }
+            globalRejections.increment();
+            throw new RateLimitException(null, "Too many requests", seconds(waitNanos));
+        }
+    }
+
+    public long partnerRejectionCount() {
+        return partnerRejections.sum();
+    }
+
+    public long globalRejectionCount() {
+        return globalRejections.sum();
+    }
+
+    public int partnerCount() {
+        return partners.size();
+    }
+
+    private TokenBucket[] partnerBuckets(String partnerId) {
+        TokenBucket[] buckets = partners.get(partnerId);
+        if (buckets != null) {
+            return buckets;
+        }
+        if (partners.size() >= configuration.getMaxPartners()) {
+            prune();
+        }
+        buckets = new TokenBucket[]{
+                new TokenBucket(configuration.getPartnerCreatePerSecond(), configuration.getPartnerCreateBurst(), nanoTime),
+                new TokenBucket(configuration.getPartnerRetrievalPerSecond(), configuration.getPartnerRetrievalBurst(), nanoTime)};
+        TokenBucket[] existing = partners.putIfAbsent(partnerId, buckets);
+        return existing == null ? buckets : existing;
+    }
+
+    /**
+     * Drops the buckets of partners idle long enough for them to be full, a new bucket would be the same
+     */
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            partners.values().removeIf(buckets -> buckets[CREATE].isFull() && buckets[RETRIEVAL].isFull());
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    /**
+     * Takes a token from the stripe of the current thread, or from another stripe if it is empty
+     *
+     * @return 0 if taken, otherwise nanoseconds until the first stripe has a token
+     */
+    private static long acquire(TokenBucket[] stripes) {
+        int first = (int) Thread.currentThread().threadId();
+        long waitNanos = Long.MAX_VALUE;
+        for (int i = 0; i < stripes.length; i++) {
+            long stripeWaitNanos = stripes[(first + i) & (stripes.length - 1)].tryAcquire();
+            if (stripeWaitNanos == 0) {
+                return 0;
+            }
+            waitNanos = Math.min(waitNanos, stripeWaitNanos);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Splits a rate over a power of two of stripes, no more than the cores nor the burst
+     */
+    private static TokenBucket[] stripes(double perSecond, int burst, int cores, LongSupplier nanoTime) {
+        int count = Integer.highestOneBit(Math.min(cores, burst));
+        TokenBucket[] stripes = new TokenBucket[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new TokenBucket(perSecond / count, burst / count, nanoTime);
+        }
+        return stripes;
+    }
+
+    private static long seconds(long nanos) {
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
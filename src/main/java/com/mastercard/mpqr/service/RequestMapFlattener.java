@@ -0,0 +1,178 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.mastercard.api.core.model.RequestMap;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Flattens request objects into dotted {@link RequestMap} paths without going through json.
+ * Properties, names and accessors are resolved once per request class with the jackson
+ * configuration of the shared {@link ObjectMapper}, so the produced keys and values are the same
+ * as the ones of the json representation of the request.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RequestMapFlattener {
+
+    ObjectMapper objectMapper;
+
+    ConcurrentMap<Class<?>, Node[]> plans = new ConcurrentHashMap<>();
+
+    public RequestMapFlattener(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Creates MPQR request map from request object
+     *
+     * @param request
+     * @return request map with all non null values of the request
+     */
+    public RequestMap toRequestMap(Object request) {
+        RequestMap requestMap = new RequestMap();
+        flatten(request, requestMap::set);
+        return requestMap;
+    }
+
+    /**
+     * Passes every non null value of the request with its dotted path to the consumer,
+     * in json property order
+     *
+     * @param request
+     * @param consumer
+     */
+    public void flatten(Object request, BiConsumer<String, Object> consumer) {
+        Node[] plan = plans.computeIfAbsent(request.getClass(), this::compile);
+        write(plan, null, request, consumer);
+    }
+
+    /**
+     * Builds flattening plan of the class, paths of nested properties are precomputed
+     * up to the first array, element paths are prefixed with the index at runtime
+     *
+     * @param type
+     * @return
+     */
+    private Node[] compile(Class<?> type) {
+        SerializationConfig config = objectMapper.getSerializationConfig();
+        return compile(config, config.constructType(type), "", new HashSet<>());
+    }
+
+    private Node[] compile(SerializationConfig config, JavaType type, String pathPrefix, Set<Class<?>> visiting) {
+        if (!visiting.add(type.getRawClass())) {
+            throw new IllegalArgumentException("Recursive request type " + type.getRawClass().getName());
+        }
+        BeanDescription description = config.introspect(type);
+        List<Node> nodes = new ArrayList<>();
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            AnnotatedMember accessor = property.getAccessor();
+            if (accessor == null) {
+                continue;
+            }
+            accessor.fixAccess(true);
+            String path = pathPrefix + property.getName();
+            JavaType propertyType = accessor.getType();
+            if (propertyType.isArrayType() || propertyType.isCollectionLikeType()) {
+                JavaType elementType = propertyType.getContentType();
+                Node[] elementPlan = isValue(elementType) ? null : compile(config, elementType, ".", visiting);
+                nodes.add(new Node(path, accessor, Kind.ARRAY, elementPlan));
+            } else if (isValue(propertyType)) {
+                nodes.add(new Node(path, accessor, Kind.VALUE, null));
+            } else {
+                nodes.add(new Node(path, accessor, Kind.OBJECT, compile(config, propertyType, path + ".", visiting)));
+            }
+        }
+        visiting.remove(type.getRawClass());
+        return nodes.toArray(new Node[nodes.size()]);
+    }
+
+    private boolean isValue(JavaType type) {
+        Class<?> rawClass = type.getRawClass();
+        return type.isPrimitive() || type.isEnumType() || CharSequence.class.isAssignableFrom(rawClass)
+                || Number.class.isAssignableFrom(rawClass) || rawClass == Boolean.class || rawClass == Character.class;
+    }
+
+    private void write(Node[] plan, String prefix, Object bean, BiConsumer<String, Object> consumer) {
+        for (Node node : plan) {
+            Object value = node.accessor.getValue(bean);
+            if (value == null) {
+                continue;
+            }
+            String path = prefix == null ? node.path : prefix + node.path;
+            switch (node.kind) {
+                case VALUE:
+                    consumer.accept(path, asText(value));
+                    break;
+                case OBJECT:
+                    write(node.children, prefix, value, consumer);
+                    break;
+                case ARRAY:
+                    writeArray(node, path, value, consumer);
+                    break;
+            }
+        }
+    }
+
+    private void writeArray(Node node, String path, Object array, BiConsumer<String, Object> consumer) {
+        int index = 0;
+        for (Object element : array instanceof Collection ? (Collection<?>) array : asList(array)) {
+            String elementPath = path + "[" + index++ + "]";
+            if (element == null) {
+                // json tree walk used to keep null array elements as text
+                consumer.accept(elementPath, "null");
+            } else if (node.children == null) {
+                consumer.accept(elementPath, asText(element));
+            } else {
+                write(node.children, elementPath, element, consumer);
+            }
+        }
+    }
+
+    private List<?> asList(Object array) {
+        if (array instanceof Object[]) {
+            return Arrays.asList((Object[]) array);
+        }
+        int length = Array.getLength(array);
+        List<Object> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(Array.get(array, i));
+        }
+        return list;
+    }
+
+    private String asText(Object value) {
+        return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+    }
+
+    private enum Kind {
+        VALUE, OBJECT, ARRAY
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Node {
+        String path;
+        AnnotatedMember accessor;
+        Kind kind;
+        Node[] children;
+    }
+}
@@ -0,0 +1,337 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.ValidationConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest.MerchantTransfer;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest.MerchantPaymentTransfer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks requests against the field rules of MPQR API before calling it. Rejections have the source, reason code and
+ * message MPQR API answers with, they cost a few string scans and use neither the outbound executor nor MPQR API quota.
+ * Rules are the ones MPQR API surely enforces, anything more specific is left to MPQR API.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RequestValidator {
+
+    static final String MISSING_REQUIRED_INPUT = "MISSING_REQUIRED_INPUT";
+
+    static final String INVALID_INPUT_LENGTH = "INVALID_INPUT_LENGTH";
+
+    static final String INVALID_INPUT_FORMAT = "INVALID_INPUT_FORMAT";
+
+    static final String INVALID_INPUT_VALUE = "INVALID_INPUT_VALUE";
+
+    static final int PARTNER_ID_MIN_LENGTH = 10;
+
+    static final int PARTNER_ID_MAX_LENGTH = 50;
+
+    static final int TRANSFER_REFERENCE_MAX_LENGTH = 40;
+
+    static final int PAYMENT_TYPE_MAX_LENGTH = 3;
+
+    static final int AMOUNT_MAX_DIGITS = 12;
+
+    static final int PAN_MIN_DIGITS = 12;
+
+    static final int PAN_MAX_DIGITS = 19;
+
+    static final Set<String> ACCOUNT_URI_SCHEMES = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("pan", "ewallet", "tel", "iban", "ban")));
+
+    static final Set<String> CURRENCIES = currencies();
+
+    static final Set<String> COUNTRIES = countries();
+
+    ValidationConfiguration configuration;
+
+    LongAdder rejections = new LongAdder();
+
+    public RequestValidator(ValidationConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @throws MasterCardException with http status 400 at the first field breaking a rule
+     */
+    public void validate(MerchantTransferPaymentRequest request) {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        try {
+            partnerId(request.getPartnerId());
+            MerchantPaymentTransfer transfer = request.getMerchantPaymentTransfer();
+            required("merchant_payment_transfer", transfer);
+            transfer(transfer.getTransferReference(), transfer.getPaymentType(), transfer.getPaymentOriginationCountry(),
+                    transfer.getTransactionLocalDateTime(), transfer.getSenderAccountUri(), transfer.getRecipientAccountUri());
+            amount("amount", transfer.getAmount());
+            currency("currency", transfer.getCurrency());
+            if (transfer.getSender() != null && transfer.getSender().getAddress() != null) {
+                country("sender.address.country", transfer.getSender().getAddress().getCountry());
+            }
+            if (transfer.getRecipient() != null) {
+                merchantCategoryCode(transfer.getRecipient().getMerchantCategoryCode());
+                if (transfer.getRecipient().getAddress() != null) {
+                    country("recipient.address.country", transfer.getRecipient().getAddress().getCountry());
+                }
+            }
+        } catch (MasterCardException e) {
+            rejections.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * @throws MasterCardException with http status 400 at the first field breaking a rule
+     */
+    public void validate(MerchantTransferFundingAndPaymentRequest request) {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        try {
+            partnerId(request.getPartnerId());
+            MerchantTransfer transfer = request.getMerchantTransfer();
+            required("merchant_transfer", transfer);
+            transfer(transfer.getTransferReference(), transfer.getPaymentType(), transfer.getPaymentOriginationCountry(),
+                    transfer.getTransactionLocalDateTime(), transfer.getSenderAccountUri(), transfer.getRecipientAccountUri());
+            required("transfer_amount", transfer.getTransferAmount());
+            amount("transfer_amount.value", transfer.getTransferAmount().getValue());
+            currency("transfer_amount.currency", transfer.getTransferAmount().getCurrency());
+            if (transfer.getSender() != null && transfer.getSender().getAddress() != null) {
+                country("sender.address.country", transfer.getSender().getAddress().getCountry());
+            }
+            if (transfer.getRecipient() != null) {
+                merchantCategoryCode(transfer.getRecipient().getMerchantCategoryCode());
+                if (transfer.getRecipient().getAddress() != null) {
+                    country("recipient.address.country", transfer.getRecipient().getAddress().getCountry());
+                }
+            }
+        } catch (MasterCardException e) {
+            rejections.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Partner of a transfer retrieval
+     *
+     * @throws MasterCardException with http status 400 if the partner id breaks a rule
+     */
+    public void validatePartnerId(String partnerId) {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        try {
+            partnerId(partnerId);
+        } catch (MasterCardException e) {
+            rejections.increment();
+            throw e;
+        }
+    }
+
+    public long rejectionCount() {
+        return rejections.sum();
+    }
+
+    private static void partnerId(String partnerId) {
+        required("partnerId", partnerId);
+        length("partnerId", partnerId, PARTNER_ID_MIN_LENGTH, PARTNER_ID_MAX_LENGTH);
+    }
+
+    /**
+     * Fields both payment requests have
+     */
+    private static void transfer(String transferReference, String paymentType, String paymentOriginationCountry,
+                                 String transactionLocalDateTime, String senderAccountUri, String recipientAccountUri) {
+        required("transfer_reference", transferReference);
+        length("transfer_reference", transferReference, 1, TRANSFER_REFERENCE_MAX_LENGTH);
+        required("payment_type", paymentType);
+        length("payment_type", paymentType, 1, PAYMENT_TYPE_MAX_LENGTH);
+        accountUri("sender_account_uri", senderAccountUri);
+        accountUri("recipient_account_uri", recipientAccountUri);
+        country("payment_origination_country", paymentOriginationCountry);
+        localDateTime(transactionLocalDateTime);
+    }
+
+    /**
+     * Amount in minor units of the currency
+     */
+    private static void amount(String source, String amount) {
+        required(source, amount);
+        length(source, amount, 1, AMOUNT_MAX_DIGITS);
+        if (!digits(amount, 0, amount.length())) {
+            throw invalid(source, INVALID_INPUT_FORMAT, "Invalid format");
+        }
+    }
+
+    /**
+     * ISO 4217 alphabetic code
+     */
+    private static void currency(String source, String currency) {
+        required(source, currency);
+        length(source, currency, 3, 3);
+        if (!CURRENCIES.contains(currency)) {
+            throw invalid(source, INVALID_INPUT_VALUE, "Invalid value");
+        }
+    }
+
+    /**
+     * Optional ISO 3166 alpha-3 code
+     */
+    private static void country(String source, String country) {
+        if (country == null) {
+            return;
+        }
+        length(source, country, 3, 3);
+        if (!COUNTRIES.contains(country)) {
+            throw invalid(source, INVALID_INPUT_VALUE, "Invalid value");
+        }
+    }
+
+    private static void merchantCategoryCode(String merchantCategoryCode) {
+        if (merchantCategoryCode == null) {
+            return;
+        }
+        length("recipient.merchant_category_code", merchantCategoryCode, 4, 4);
+        if (!digits(merchantCategoryCode, 0, 4)) {
+            throw invalid("recipient.merchant_category_code", INVALID_INPUT_FORMAT, "Invalid format");
+        }
+    }
+
+    /**
+     * {@code scheme:value}, card numbers are checked further as {@code pan:number[;exp=yyyy-MM][;cvc=digits]}
+     */
+    private static void accountUri(String source, String uri) {
+        required(source, uri);
+        int colon = uri.indexOf(':');
+        if (colon <= 0 || colon == uri.length() - 1 || !ACCOUNT_URI_SCHEMES.contains(uri.substring(0, colon))) {
+            throw invalid(source, INVALID_INPUT_FORMAT, "Invalid format");
+        }
+        if (!uri.startsWith("pan:")) {
+            return;
+        }
+        int end = uri.indexOf(';', colon);
+        if (end < 0) {
+            end = uri.length();
+        }
+        int digits = end - colon - 1;
+        if (digits < PAN_MIN_DIGITS || digits > PAN_MAX_DIGITS || !digits(uri, colon + 1, end)) {
+            throw invalid(source, INVALID_INPUT_FORMAT, "Invalid format");
+        }
+        if (!luhn(uri, colon + 1, end)) {
+            throw invalid(source, INVALID_INPUT_VALUE, "Invalid value");
+        }
+        while (end < uri.length()) {
+            int start = end + 1;
+            end = uri.indexOf(';', start);
+            if (end < 0) {
+                end = uri.length();
+            }
+            if (uri.startsWith("exp=", start) ? !expiry(uri, start + 4, end)
+                    : uri.startsWith("cvc=", start) && (end - start - 4 < 3 || end - start - 4 > 4 || !digits(uri, start + 4, end))) {
+                throw invalid(source, INVALID_INPUT_FORMAT, "Invalid format");
+            }
+        }
+    }
+
+    /**
+     * Optional {@code yyyy-MM-ddTHH:mm:ss} followed by the utc offset
+     */
+    private static void localDateTime(String dateTime) {
+        if (dateTime == null) {
+            return;
+        }
+        if (dateTime.length() < 19 || !digits(dateTime, 0, 4) || dateTime.charAt(4) != '-' || !digits(dateTime, 5, 7)
+                || dateTime.charAt(7) != '-' || !digits(dateTime, 8, 10) || dateTime.charAt(10) != 'T'
+                || !digits(dateTime, 11, 13) || dateTime.charAt(13) != ':' || !digits(dateTime, 14, 16)
+                || dateTime.charAt(16) != ':' || !digits(dateTime, 17, 19)) {
+            throw invalid("transaction_local_date_time", INVALID_INPUT_FORMAT, "Invalid format");
+        }
+    }
+
+    private static boolean expiry(String uri, int start, int end) {
+        return end - start == 7 && digits(uri, start, start + 4) && uri.charAt(start + 4) == '-'
+                && digits(uri, start + 5, end) && uri.charAt(start + 5) <= '1';
+    }
+
+    private static void required(String source, Object value) {
+        if (value == null || value instanceof String && ((String) value).isEmpty()) {
+            throw invalid(source, MISSING_REQUIRED_INPUT, "Missing required input");
+        }
+    }
+
+    private static void length(String source, String value, int min, int max) {
+        if (value.length() < min || value.length() > max) {
+            throw invalid(source, INVALID_INPUT_LENGTH, "Invalid length");
+        }
+    }
+
+    private static boolean digits(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check digit of a card number
+     */
+    static boolean luhn(String value, int start, int end) {
+        int sum = 0;
+        boolean doubled = false;
+        for (int i = end - 1; i >= start; i--) {
+            int digit = value.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+
+    private static MasterCardException invalid(String source, String reasonCode, String message) {
+        return new MasterCardException(source, reasonCode, message, HttpStatus.BAD_REQUEST);
+    }
+
+    private static Set<String> currencies() {
+        Set<String> codes = new HashSet<>();
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            codes.add(currency.getCurrencyCode());
+        }
+        return Collections.unmodifiableSet(codes);
+    }
+
+    private static Set<String> countries() {
+        Set<String> codes = new HashSet<>();
+        for (String country : Locale.getISOCountries()) {
+            try {
+                codes.add(Locale.of("", country).getISO3Country());
+            } catch (MissingResourceException e) {
+                // no alpha-3 code known by this JDK
+            }
+        }
+        return Collections.unmodifiableSet(codes);
+    }
+}
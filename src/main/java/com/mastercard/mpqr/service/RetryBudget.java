@@ -0,0 +1,71 @@
+package com.mastercard.mpqr.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits retries and hedges to a ratio of the calls plus a small minimum rate, so they cannot
+ * multiply the load on MPQR API during an outage when every call fails
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RetryBudget {
+
+    final double ratio;
+
+    final double minPerSecond;
+
+    /**
+     * Bursts up to the retries earned by the last thousand calls
+     */
+    final double maxTokens;
+
+    final LongSupplier nanoTime;
+
+    double tokens;
+
+    long refilledAt;
+
+    public RetryBudget(double ratio, int minPerSecond) {
+        this(ratio, minPerSecond, System::nanoTime);
+    }
+
+    RetryBudget(double ratio, int minPerSecond, LongSupplier nanoTime) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.maxTokens = Math.max(1, minPerSecond) + ratio * 1000;
+        this.nanoTime = nanoTime;
+        this.refilledAt = nanoTime.getAsLong();
+        this.tokens = minPerSecond;
+    }
+
+    /**
+     * Records a call, which earns a fraction of a retry
+     */
+    public synchronized void onCall() {
+        refill();
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Takes one retry from the budget
+     *
+     * @return false if the budget is exhausted
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(maxTokens, tokens + minPerSecond * (now - refilledAt) / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,111 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.api.core.exception.ApiException;
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.p2m.MerchantRetrieval;
+import com.mastercard.api.p2m.MerchantTransferFundingAndPayment;
+import com.mastercard.api.p2m.MerchantTransferPayment;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * Calls MPQR API with the QR client and its own http transport. The environment of the QR client is static,
+ * calls are signed with the credentials of their partner.
+ */
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Slf4j
+public class SdkTransport implements MpqrTransport {
+
+    RequestMapFlattener requestMapFlattener;
+
+    CredentialRegistry credentialRegistry;
+
+    @Override
+    public Map<String, Object> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request) {
+        try {
+            long start = RequestTiming.start();
+            RequestMap requestMap = requestMapFlattener.toRequestMap(request);
+            start = RequestTiming.lap(RequestTiming.Phase.FLATTEN, start);
+            MerchantTransferFundingAndPayment apiResponse;
+            try {
+                apiResponse = MerchantTransferFundingAndPayment.create(signer(request.getPartnerId()), requestMap);
+            } finally {
+                RequestTiming.lap(RequestTiming.Phase.UPSTREAM, start);
+            }
+            return apiResponse;
+        } catch (ApiException e) {
+            throw new MasterCardException(e);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new MasterCardException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> merchantTransferPayment(MerchantTransferPaymentRequest request) {
+        try {
+            long start = RequestTiming.start();
+            RequestMap requestMap = requestMapFlattener.toRequestMap(request);
+            start = RequestTiming.lap(RequestTiming.Phase.FLATTEN, start);
+            MerchantTransferPayment apiResponse;
+            try {
+                apiResponse = MerchantTransferPayment.create(signer(request.getPartnerId()), requestMap);
+            } finally {
+                RequestTiming.lap(RequestTiming.Phase.UPSTREAM, start);
+            }
+            return apiResponse;
+        } catch (ApiException e) {
+            throw new MasterCardException(e);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new MasterCardException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getById(String partnerId, String transferId) {
+        try {
+            RequestMap map = new RequestMap();
+            map.set("partnerId", partnerId);
+            map.set("transferId", transferId);
+            return MerchantRetrieval.readByID(signer(partnerId), null, map);
+        } catch (ApiException e) {
+            throw new MasterCardException(e);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new MasterCardException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getByRef(String partnerId, String ref) {
+        try {
+            RequestMap map = new RequestMap();
+            map.set("partnerId", partnerId);
+            map.set("ref", ref);
+            return MerchantRetrieval.readByReference(signer(partnerId), map);
+        } catch (ApiException e) {
+            throw new MasterCardException(e);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new MasterCardException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private OAuthSigner signer(String partnerId) {
+        return credentialRegistry.forPartner(partnerId).getSigner();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mastercard.mpqr.service;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel, scheduling and expiring cost constant time whatever the number of timers. A timer lands in the
+ * bucket of its deadline tick and stays there for as many rounds of the wheel as needed. Not thread safe, all calls
+ * come from one thread.
+ */
+class TimerWheel<T> {
+
+    final long tickMillis;
+
+    final ArrayDeque<Timer<T>>[] buckets;
+
+    final int mask;
+
+    long tick;
+
+    int size;
+
+    /**
+     * @param tickMillis resolution of the timers
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     * @param nowMillis  current time
+     */
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tickMillis, int wheelSize, long nowMillis) {
+        int capacity = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayDeque[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.mask = capacity - 1;
+        this.tick = nowMillis / tickMillis;
+    }
+
+    /**
+     * @param element     expired after the delay
+     * @param delayMillis rounded up to the next tick
+     */
+    void schedule(T element, long delayMillis) {
+        long deadline = tick + Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        buckets[(int) deadline & mask].add(new Timer<>(deadline, element));
+        size++;
+    }
+
+    /**
+     * Expires the timers due up to now
+     *
+     * @param nowMillis current time
+     * @param expired   receives the elements of the expired timers
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        long now = nowMillis / tickMillis;
+        // a late tick checks each bucket at most once
+        long last = Math.min(now, tick + mask + 1);
+        while (tick < last) {
+            tick++;
+            Iterator<Timer<T>> timers = buckets[(int) tick & mask].iterator();
+            while (timers.hasNext()) {
+                Timer<T> timer = timers.next();
+                if (timer.deadline <= now) {
+                    timers.remove();
+                    size--;
+                    expired.accept(timer.element);
+                }
+            }
+        }
+        tick = now;
+    }
+
+    int size() {
+        return size;
+    }
+
+    static final class Timer<T> {
+        final long deadline;
+        final T element;
+
+        Timer(long deadline, T element) {
+            this.deadline = deadline;
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mastercard.mpqr.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock free token bucket as a generic cell rate algorithm: the whole state is the time at which the bucket would be
+ * full again, each token pushes it one interval further. Taking a token is a single compare and set.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenBucket {
+
+    long intervalNanos;
+
+    long capacityNanos;
+
+    LongSupplier nanoTime;
+
+    AtomicLong fullAt;
+
+    /**
+     * @param perSecond tokens added per second
+     * @param burst     tokens the bucket holds
+     */
+    public TokenBucket(double perSecond, int burst) {
+        this(perSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double perSecond, int burst, LongSupplier nanoTime) {
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        this.capacityNanos = intervalNanos * Math.max(1, burst);
+        this.nanoTime = nanoTime;
+        this.fullAt = new AtomicLong(nanoTime.getAsLong());
+    }
+
+    /**
+     * Takes one token
+     *
+     * @return 0 if taken, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire() {
+        long now = nanoTime.getAsLong();
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            long over = next - now - capacityNanos;
+            if (over > 0) {
+                return over;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token which was not used
+     */
+    public void release() {
+        fullAt.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * @return true if the bucket is full, it then behaves like a new bucket
+     */
+    public boolean isFull() {
+        return fullAt.get() - nanoTime.getAsLong() <= 0;
+    }
+}
@@ -0,0 +1,276 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.TransferCacheConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Size bounded LRU cache of merchant transfer retrievals. Transfers in a terminal status are kept
+ * long as they never change, pending ones only shortly, not found transfers are cached as well.
+ * <p>
+ * Hits take no lock, they only record when the entry was used. The LRU order is approximated: when over its
+ * weight, the cache evicts the least recently used of a few entries sampled by a cursor going round the map.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TransferCache {
+
+    static final String RESOURCE_UNKNOWN = "RESOURCE_UNKNOWN";
+
+    /**
+     * Entries compared to evict one
+     */
+    static final int EVICTION_SAMPLES = 8;
+
+    TransferCacheConfiguration configuration;
+
+    ConcurrentHashMap<TransferKey, Entry> entries = new ConcurrentHashMap<>(256);
+
+    AtomicLong weight = new AtomicLong();
+
+    LongAdder hits = new LongAdder();
+
+    LongAdder misses = new LongAdder();
+
+    LongAdder evictions = new LongAdder();
+
+    Object evictionLock = new Object();
+
+    /**
+     * Next entries to sample, guarded by the eviction lock
+     */
+    @NonFinal
+    Iterator<Map.Entry<TransferKey, Entry>> cursor = Collections.emptyIterator();
+
+    public TransferCache(TransferCacheConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Returns cached response of the retrieval or loads it
+     *
+     * @param key
+     * @param loader MPQR API call
+     * @return response from MPQR API
+     */
+    public Map<String, Object> get(TransferKey key, Supplier<Map<String, Object>> loader) {
+        if (!configuration.isEnabled()) {
+            return loader.get();
+        }
+        Entry entry = getEntry(key);
+        if (entry != null) {
+            hits.increment();
+            if (entry.error != null) {
+                throw cachedError(entry);
+            }
+            return entry.body;
+        }
+        misses.increment();
+        try {
+            Map<String, Object> body = loader.get();
+            put(key, body, null, ttlOf(body));
+            return body;
+        } catch (MasterCardException e) {
+            cacheError(key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns cached response of the retrieval or loads it without blocking
+     *
+     * @param key
+     * @param loader MPQR API call
+     * @return completes with the response from MPQR API
+     */
+    public CompletableFuture<Map<String, Object>> getAsync(TransferKey key, Supplier<CompletableFuture<Map<String, Object>>> loader) {
+        if (!configuration.isEnabled()) {
+            return loader.get();
+        }
+        Entry entry = getEntry(key);
+        if (entry != null) {
+            hits.increment();
+            CompletableFuture<Map<String, Object>> cached = new CompletableFuture<>();
+            if (entry.error != null) {
+                cached.completeExceptionally(cachedError(entry));
+            } else {
+                cached.complete(entry.body);
+            }
+            return cached;
+        }
+        misses.increment();
+        return loader.get().whenComplete((body, e) -> {
+            if (e == null) {
+                put(key, body, null, ttlOf(body));
+            } else {
+                cacheError(key, MasterCardException.from(e));
+            }
+        });
+    }
+
+    /**
+     * Caches a response retrieved in the background. Transfers in a terminal status are kept long, pending ones
+     * for the given time.
+     *
+     * @param key
+     * @param body             response from MPQR API
+     * @param pendingTtlMillis time to live of a pending transfer
+     */
+    public void publish(TransferKey key, Map<String, Object> body, long pendingTtlMillis) {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        put(key, body, null, isTerminal(body) ? configuration.getTerminalTtlMillis() : pendingTtlMillis);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long weightBytes() {
+        return weight.get();
+    }
+
+    private void cacheError(TransferKey key, MasterCardException e) {
+        if (RESOURCE_UNKNOWN.equals(e.getReasonCode())) {
+            put(key, null, e, configuration.getNotFoundTtlMillis());
+        }
+    }
+
+    private static MasterCardException cachedError(Entry entry) {
+        return new MasterCardException(entry.error.getSource(), entry.error.getReasonCode(),
+                entry.error.getMessage(), HttpStatus.valueOf(entry.error.getHttpStatus()));
+    }
+
+    private Entry getEntry(TransferKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (entry.expiresAt - now <= 0) {
+            remove(key, entry);
+            return null;
+        }
+        entry.usedAt = now;
+        return entry;
+    }
+
+    private void put(TransferKey key, Map<String, Object> body, MasterCardException error, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        Entry entry = new Entry(body, error, now + TimeUnit.MILLISECONDS.toNanos(ttlMillis), weightOf(key, body, error), now);
+        Entry previous = entries.put(key, entry);
+        weight.addAndGet(entry.weight - (previous == null ? 0 : previous.weight));
+        if (weight.get() > configuration.getMaxWeightBytes()) {
+            evict();
+        }
+    }
+
+    /**
+     * Evicts until the cache is back under its weight, expired entries first. Only loads evict,
+     * one at a time, hits are never blocked.
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            while (weight.get() > configuration.getMaxWeightBytes() && !entries.isEmpty()) {
+                long now = System.nanoTime();
+                Map.Entry<TransferKey, Entry> victim = null;
+                for (int i = 0; i < EVICTION_SAMPLES; i++) {
+                    if (!cursor.hasNext()) {
+                        cursor = entries.entrySet().iterator();
+                        if (!cursor.hasNext()) {
+                            break;
+                        }
+                    }
+                    Map.Entry<TransferKey, Entry> sample = cursor.next();
+                    if (sample.getValue().expiresAt - now <= 0) {
+                        victim = null;
+                        remove(sample.getKey(), sample.getValue());
+                        break;
+                    }
+                    if (victim == null || sample.getValue().usedAt - victim.getValue().usedAt < 0) {
+                        victim = sample;
+                    }
+                }
+                if (victim != null && remove(victim.getKey(), victim.getValue())) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the entry unless it was replaced meanwhile
+     */
+    private boolean remove(TransferKey key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Long time to live if all transfers of the response are in a terminal status, short otherwise
+     */
+    private long ttlOf(Map<String, Object> body) {
+        return isTerminal(body) ? configuration.getTerminalTtlMillis() : configuration.getPendingTtlMillis();
+    }
+
+    /**
+     * All transfers of the response are in a terminal status
+     */
+    public boolean isTerminal(Map<String, Object> body) {
+        List<Object> statuses = TransferResponses.findValues(body, "status");
+        return !statuses.isEmpty() && statuses.stream()
+                .allMatch(status -> configuration.getTerminalStatuses().contains(String.valueOf(status)));
+    }
+
+    private long weightOf(TransferKey key, Map<String, Object> body, MasterCardException error) {
+        long chars = key.getPartnerId().length() + key.getValue().length()
+                + (body != null ? 0 : String.valueOf(error.getMessage()).length());
+        return 2 * chars + 128 + TransferResponses.weightOf(body);
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Entry {
+        Map<String, Object> body;
+        MasterCardException error;
+        long expiresAt;
+        long weight;
+        @NonFinal
+        volatile long usedAt;
+    }
+}
@@ -0,0 +1,25 @@
+package com.mastercard.mpqr.service;
+
+import lombok.Value;
+
+/**
+ * Identifies a merchant transfer retrieval, either by transfer id or by transfer reference
+ */
+@Value
+public class TransferKey {
+    String partnerId;
+    Type type;
+    String value;
+
+    public static TransferKey byId(String partnerId, String transferId) {
+        return new TransferKey(partnerId, Type.ID, transferId);
+    }
+
+    public static TransferKey byRef(String partnerId, String ref) {
+        return new TransferKey(partnerId, Type.REF, ref);
+    }
+
+    public enum Type {
+        ID, REF
+    }
+}
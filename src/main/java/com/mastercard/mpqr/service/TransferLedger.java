@@ -0,0 +1,640 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.config.LedgerConfiguration;
+import com.mastercard.mpqr.config.TransferCacheConfiguration;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Local ledger of the transfers created or retrieved through this service. Transfers are written through to
+ * memory mapped segments and indexed off-heap by partner id and transfer id and by partner id and transfer reference.
+ * Retrievals of transfers in a terminal status are answered from the ledger, other ones go to MPQR API.
+ * <p>
+ * A segment starts with {@link #MAGIC} and {@link #VERSION}, followed by records of body length, CRC32 of the body
+ * and body. The body holds the time, partner id, transfer id, transfer reference, status and json of the transfer.
+ * The json is kept whole, so retrievals answered from the ledger are the ones of MPQR API, and encrypted with AES-GCM
+ * bound to the partner id and transfer id, so card numbers and personal data are not stored in clear.
+ * Strings are prefixed by a short length, transfers with longer ones are not recorded.
+ * The length is written last and checked with the CRC, so the index is rebuilt on start up to the last complete record.
+ * Written records are forced to disk in the background without holding the lock, so reads never wait for the disk.
+ * Compaction deletes and unmaps the segments not written to within the retention.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class TransferLedger {
+
+    static final int MAGIC = 0x4D50514C;
+
+    static final int VERSION = 2;
+
+    static final int SEGMENT_HEADER_BYTES = 8;
+
+    static final int RECORD_HEADER_BYTES = 8;
+
+    static final String SEGMENT_PREFIX = "mpqr-ledger-";
+
+    static final String SEGMENT_SUFFIX = ".segment";
+
+    static final int IV_BYTES = 12;
+
+    static final int TAG_BITS = 128;
+
+    private static final MethodHandle INVOKE_CLEANER = invokeCleanerHandle();
+
+    LedgerConfiguration configuration;
+
+    TransferCacheConfiguration cacheConfiguration;
+
+    ObjectMapper objectMapper;
+
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    NavigableMap<Integer, Segment> segments = new TreeMap<>();
+
+    LongAdder hits = new LongAdder();
+
+    LongAdder appends = new LongAdder();
+
+    SecureRandom random = new SecureRandom();
+
+    @NonFinal
+    SecretKey key;
+
+    @NonFinal
+    LedgerIndex index;
+
+    @NonFinal
+    Segment active;
+
+    @NonFinal
+    ScheduledExecutorService maintenance;
+
+    public TransferLedger(LedgerConfiguration configuration, TransferCacheConfiguration cacheConfiguration,
+                          ObjectMapper objectMapper) {
+        this.configuration = configuration;
+        this.cacheConfiguration = cacheConfiguration;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Maps the existing segments and rebuilds the index from them
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        key = key(configuration.getEncryptionKey());
+        index = new LedgerIndex(configuration.getInitialIndexSlots());
+        Path directory = Paths.get(configuration.getDirectory());
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        Collections.sort(paths);
+        for (Path path : paths) {
+            Segment segment = open(path);
+            if (segment != null) {
+                recover(segment);
+                segments.put(segment.sequence, segment);
+                active = segment;
+            }
+        }
+        if (!segments.isEmpty()) {
+            log.info("Loaded {} transfer keys from {} ledger segments in {}", index.size(), segments.size(), directory);
+        }
+        maintenance = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("mpqr-ledger-"));
+        maintenance.scheduleWithFixedDelay(this::force, configuration.getForceIntervalMillis(),
+                configuration.getForceIntervalMillis(), TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::compact, configuration.getCompactionIntervalMillis(),
+                configuration.getCompactionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (maintenance != null) {
+            maintenance.shutdown();
+        }
+        force();
+    }
+
+    /**
+     * Answers the retrieval from the ledger if the transfer is in a terminal status, otherwise calls MPQR API
+     * and records the transfers of its response
+     *
+     * @param key
+     * @param loader MPQR API call
+     * @return response from the ledger or from MPQR API
+     */
+    public Map<String, Object> get(TransferKey key, Supplier<Map<String, Object>> loader) {
+        if (!configuration.isEnabled()) {
+            return loader.get();
+        }
+        Map<String, Object> terminal = findTerminal(key);
+        return terminal != null ? terminal : record(key.getPartnerId(), loader.get());
+    }
+
+    /**
+     * Answers the retrieval from the ledger if the transfer is in a terminal status, otherwise calls MPQR API without
+     * blocking and records the transfers of its response
+     *
+     * @param key
+     * @param loader MPQR API call
+     * @return completes with the response from the ledger or from MPQR API
+     */
+    public CompletableFuture<Map<String, Object>> getAsync(TransferKey key, Supplier<CompletableFuture<Map<String, Object>>> loader) {
+        if (!configuration.isEnabled()) {
+            return loader.get();
+        }
+        Map<String, Object> terminal = findTerminal(key);
+        return terminal != null ? CompletableFuture.completedFuture(terminal)
+                : loader.get().thenApply(body -> record(key.getPartnerId(), body));
+    }
+
+    /**
+     * Writes the transfers of a MPQR API response through to the ledger, unless already recorded with the same status
+     *
+     * @param partnerId
+     * @param body      response from MPQR API
+     * @return the response
+     */
+    public Map<String, Object> record(String partnerId, Map<String, Object> body) {
+        if (!configuration.isEnabled() || partnerId == null || body == null) {
+            return body;
+        }
+        for (Map<?, ?> transfer : TransferResponses.transfers(body)) {
+            String transferId = string(transfer.get("id"));
+            if (transferId == null) {
+                continue;
+            }
+            String status = string(transfer.get("status"));
+            Record existing = find(partnerId, TransferKey.Type.ID, transferId);
+            if (existing != null && String.valueOf(status).equals(existing.status)) {
+                continue;
+            }
+            try {
+                append(new Record(System.currentTimeMillis(), partnerId, transferId, string(transfer.get("transfer_reference")),
+                        status, encrypt(partnerId, transferId, objectMapper.writeValueAsBytes(transfer))));
+            } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                log.warn("Transfer {} not recorded in the ledger: {}", transferId, e.getMessage());
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Deletes the segments not written to within the retention and drops their keys from the index. Readers find
+     * segments under the lock, so the removed ones are unmapped once it is released.
+     */
+    public void compact() {
+        long expiredBefore = System.currentTimeMillis() - configuration.getRetentionMillis();
+        List<Segment> expired = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.lastWriteMillis < expiredBefore) {
+                    expired.add(segment);
+                }
+            }
+            if (expired.isEmpty()) {
+                return;
+            }
+            expired.forEach(segment -> segments.remove(segment.sequence));
+            index.retain(location -> segments.containsKey(sequenceOf(location)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Segment segment : expired) {
+            unmap(segment.buffer);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Ledger segment {} not deleted: {}", segment.path, e.getMessage());
+            }
+        }
+        log.info("Compacted {} ledger segments", expired.size());
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long appendCount() {
+        return appends.sum();
+    }
+
+    public int keyCount() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Object> findTerminal(TransferKey key) {
+        Record record = find(key.getPartnerId(), key.getType(), key.getValue());
+        if (record != null && cacheConfiguration.getTerminalStatuses().contains(record.status)) {
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> transfer = objectMapper.readValue(decrypt(record.partnerId, record.transferId, record.json), Map.class);
+                hits.increment();
+                return TransferResponses.retrievalResponse(key.getType(), transfer);
+            } catch (IOException | GeneralSecurityException e) {
+                log.warn("Unreadable ledger transfer {}: {}", record.transferId, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private Record find(String partnerId, TransferKey.Type type, String value) {
+        if (partnerId == null || value == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            long location = index.get(LedgerIndex.hash(partnerId, type, value), candidate -> matches(candidate, partnerId, type, value));
+            return location == LedgerIndex.NOT_FOUND ? null : read(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void append(Record record) throws IOException {
+        byte[] body = encode(record);
+        int size = RECORD_HEADER_BYTES + body.length;
+        if (size > configuration.getSegmentBytes() - SEGMENT_HEADER_BYTES) {
+            throw new IOException("transfer larger than a ledger segment");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        lock.writeLock().lock();
+        try {
+            if (active == null || active.buffer.capacity() - active.end < size) {
+                active = create(active == null ? 1 : active.sequence + 1);
+                segments.put(active.sequence, active);
+            }
+            int offset = active.end;
+            ByteBuffer buffer = active.buffer;
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.position(offset + RECORD_HEADER_BYTES);
+            buffer.put(body);
+            // the length is written last, recovery never sees a partly written record
+            buffer.putInt(offset, body.length);
+            active.end = offset + size;
+            active.lastWriteMillis = record.timestamp;
+
+            long location = locationOf(active.sequence, offset);
+            index.put(LedgerIndex.hash(record.partnerId, TransferKey.Type.ID, record.transferId), location,
+                    existing -> matches(existing, record.partnerId, TransferKey.Type.ID, record.transferId));
+            if (record.transferReference != null) {
+                index.put(LedgerIndex.hash(record.partnerId, TransferKey.Type.REF, record.transferReference), location,
+                        existing -> matches(existing, record.partnerId, TransferKey.Type.REF, record.transferReference));
+            }
+            appends.increment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean matches(long location, String partnerId, TransferKey.Type type, String value) {
+        Record record = read(location);
+        return record != null && partnerId.equals(record.partnerId)
+                && value.equals(type == TransferKey.Type.ID ? record.transferId : record.transferReference);
+    }
+
+    private Record read(long location) {
+        Segment segment = segments.get(sequenceOf(location));
+        if (segment == null) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offsetOf(location) + RECORD_HEADER_BYTES);
+        return decode(buffer);
+    }
+
+    /**
+     * Indexes the complete records of a segment and positions it after them
+     */
+    private void recover(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        CRC32 crc = new CRC32();
+        int offset = SEGMENT_HEADER_BYTES;
+        while (offset + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - RECORD_HEADER_BYTES) {
+                break;
+            }
+            buffer.limit(offset + RECORD_HEADER_BYTES + length).position(offset + RECORD_HEADER_BYTES);
+            crc.reset();
+            crc.update(buffer);
+            buffer.limit(buffer.capacity()).position(offset + RECORD_HEADER_BYTES);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            Record record = decode(buffer);
+            long location = locationOf(segment.sequence, offset);
+            index.put(LedgerIndex.hash(record.partnerId, TransferKey.Type.ID, record.transferId), location,
+                    existing -> matches(existing, record.partnerId, TransferKey.Type.ID, record.transferId));
+            if (record.transferReference != null) {
+                index.put(LedgerIndex.hash(record.partnerId, TransferKey.Type.REF, record.transferReference), location,
+                        existing -> matches(existing, record.partnerId, TransferKey.Type.REF, record.transferReference));
+            }
+            segment.lastWriteMillis = Math.max(segment.lastWriteMillis, record.timestamp);
+            offset += RECORD_HEADER_BYTES + length;
+        }
+        segment.end = offset;
+        segment.forced = offset;
+    }
+
+    /**
+     * Forces the records written since the last call to disk. The segments and their ends are read under the lock,
+     * the disk is flushed after it is released, records appended meanwhile are forced by the next call.
+     */
+    private synchronized void force() {
+        List<Segment> written = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment.end > segment.forced) {
+                    written.add(segment);
+                    ends.add(segment.end);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < written.size(); i++) {
+            Segment segment = written.get(i);
+            int end = ends.get(i);
+            segment.buffer.force(segment.forced, end - segment.forced);
+            segment.forced = end;
+        }
+    }
+
+    private Segment create(int sequence) throws IOException {
+        Path path = Paths.get(configuration.getDirectory()).resolve(String.format("%s%010d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, configuration.getSegmentBytes());
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        return new Segment(sequence, path, buffer, SEGMENT_HEADER_BYTES, 0, System.currentTimeMillis());
+    }
+
+    private static Segment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        int sequence;
+        try {
+            sequence = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer.capacity() < SEGMENT_HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            log.warn("Skipping {}, not a ledger segment", path);
+            return null;
+        }
+        if (buffer.getInt(4) != VERSION) {
+            // older segments hold masked transfers, which are not answered any more
+            log.warn("Deleting {}, a ledger segment of version {}", path, buffer.getInt(4));
+            unmap(buffer);
+            Files.delete(path);
+            return null;
+        }
+        return new Segment(sequence, path, buffer, SEGMENT_HEADER_BYTES, 0, 0);
+    }
+
+    private static byte[] encode(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.json.length + 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(record.timestamp);
+        writeString(out, record.partnerId);
+        writeString(out, record.transferId);
+        writeString(out, record.transferReference);
+        writeString(out, record.status);
+        out.writeInt(record.json.length);
+        out.write(record.json);
+        return bytes.toByteArray();
+    }
+
+    private static Record decode(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        String partnerId = readString(buffer);
+        String transferId = readString(buffer);
+        String transferReference = readString(buffer);
+        String status = readString(buffer);
+        byte[] json = new byte[buffer.getInt()];
+        buffer.get(json);
+        return new Record(timestamp, partnerId, transferId, transferReference, status, json);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IOException("value longer than " + Short.MAX_VALUE + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return random iv followed by the encrypted json and its tag
+     */
+    private byte[] encrypt(String partnerId, String transferId, byte[] json) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(associatedData(partnerId, transferId));
+        byte[] encrypted = new byte[IV_BYTES + cipher.getOutputSize(json.length)];
+        System.arraycopy(iv, 0, encrypted, 0, IV_BYTES);
+        cipher.doFinal(json, 0, json.length, encrypted, IV_BYTES);
+        return encrypted;
+    }
+
+    /**
+     * Fails for records encrypted with another key, or moved to another transfer
+     */
+    private byte[] decrypt(String partnerId, String transferId, byte[] encrypted) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, encrypted, 0, IV_BYTES));
+        cipher.updateAAD(associatedData(partnerId, transferId));
+        return cipher.doFinal(encrypted, IV_BYTES, encrypted.length - IV_BYTES);
+    }
+
+    private static byte[] associatedData(String partnerId, String transferId) {
+        return (partnerId + "\n" + transferId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static SecretKey key(String encoded) {
+        if (!StringUtils.hasLength(encoded)) {
+            log.warn("No ledger encryption key, transfers recorded before a restart will be retrieved from MPQR API again");
+            try {
+                KeyGenerator generator = KeyGenerator.getInstance("AES");
+                generator.init(256);
+                return generator.generateKey();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+            throw new IllegalStateException("The ledger encryption key must be 16, 24 or 32 bytes, not " + bytes.length);
+        }
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    private static String string(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Releases the mapping right away instead of when the buffer is garbage collected, so the address space and disk
+     * of deleted segments are given back. Left to the garbage collector if the jvm does not allow it.
+     *
+     * @return true if unmapped, the buffer must not be used any more
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return false;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+            return true;
+        } catch (Throwable e) {
+            log.warn("Ledger segment not unmapped: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static MethodHandle invokeCleanerHandle() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long locationOf(int sequence, int offset) {
+        return (long) sequence << 32 | offset & 0xffffffffL;
+    }
+
+    private static int sequenceOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Segment {
+        final int sequence;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int end;
+        /**
+         * End of the records forced to disk
+         */
+        int forced;
+        long lastWriteMillis;
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Record {
+        long timestamp;
+        String partnerId;
+        String transferId;
+        String transferReference;
+        String status;
+        byte[] json;
+    }
+}
@@ -0,0 +1,289 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.ReconciliationConfiguration;
+import com.mastercard.mpqr.config.TransferCacheConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Follows up pending transfers created through this service, so that clients polling them are answered from memory.
+ * Each pending transfer is refreshed from MPQR API on an exponential schedule kept in a {@link TimerWheel}, and its
+ * latest state is published to the {@link TransferCache} until the next refresh, or for good once terminal.
+ * Refreshes due are started in batches per tick, within a rate and a concurrency limit, on the outbound executor.
+ * A single thread owns the schedule, other threads hand transfers and refresh results over through queues.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class TransferReconciler {
+
+    static final String RESOURCE_UNKNOWN = "RESOURCE_UNKNOWN";
+
+    ReconciliationConfiguration configuration;
+
+    TransferCacheConfiguration cacheConfiguration;
+
+    MasterCardService masterCardService;
+
+    TransferCache transferCache;
+
+    ExecutorService outboundExecutor;
+
+    ConcurrentMap<TransferKey, Tracked> tracked = new ConcurrentHashMap<>();
+
+    Queue<Tracked> created = new ConcurrentLinkedQueue<>();
+
+    Queue<Refreshed> refreshed = new ConcurrentLinkedQueue<>();
+
+    ArrayDeque<Tracked> due = new ArrayDeque<>();
+
+    AtomicInteger inFlight = new AtomicInteger();
+
+    LongAdder refreshes = new LongAdder();
+
+    LongAdder resolved = new LongAdder();
+
+    LongAdder abandoned = new LongAdder();
+
+    LongSupplier currentTimeMillis;
+
+    @NonFinal
+    TimerWheel<Tracked> wheel;
+
+    @NonFinal
+    double tokens;
+
+    @NonFinal
+    long refilledAt;
+
+    @NonFinal
+    volatile ScheduledExecutorService ticker;
+
+    @Autowired
+    public TransferReconciler(ReconciliationConfiguration configuration, TransferCacheConfiguration cacheConfiguration,
+                              MasterCardService masterCardService, TransferCache transferCache, ExecutorService outboundExecutor) {
+        this(configuration, cacheConfiguration, masterCardService, transferCache, outboundExecutor, System::currentTimeMillis);
+    }
+
+    TransferReconciler(ReconciliationConfiguration configuration, TransferCacheConfiguration cacheConfiguration,
+                       MasterCardService masterCardService, TransferCache transferCache, ExecutorService outboundExecutor,
+                       LongSupplier currentTimeMillis) {
+        this.configuration = configuration;
+        this.cacheConfiguration = cacheConfiguration;
+        this.masterCardService = masterCardService;
+        this.transferCache = transferCache;
+        this.outboundExecutor = outboundExecutor;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!configuration.isEnabled()) {
+            return;
+        }
+        start(new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("mpqr-reconciler-")));
+    }
+
+    /**
+     * Ticks on the given scheduler, which is shut down on stop
+     */
+    void start(ScheduledExecutorService scheduler) {
+        refilledAt = currentTimeMillis.getAsLong();
+        wheel = new TimerWheel<>(configuration.getTickMillis(), configuration.getWheelSize(), refilledAt);
+        scheduler.scheduleAtFixedRate(this::tick, configuration.getTickMillis(), configuration.getTickMillis(), TimeUnit.MILLISECONDS);
+        ticker = scheduler;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Tracks the pending transfers of a create response
+     *
+     * @param partnerId
+     * @param body      response from MPQR API
+     * @return the response
+     */
+    public Map<String, Object> track(String partnerId, Map<String, Object> body) {
+        if (ticker == null || partnerId == null || body == null) {
+            return body;
+        }
+        long now = currentTimeMillis.getAsLong();
+        for (Map<?, ?> transfer : TransferResponses.transfers(body)) {
+            Object transferId = transfer.get("id");
+            if (transferId == null || cacheConfiguration.getTerminalStatuses().contains(String.valueOf(transfer.get("status")))
+                    || tracked.size() >= configuration.getMaxTracked()) {
+                continue;
+            }
+            Object ref = transfer.get("transfer_reference");
+            Tracked pending = new Tracked(partnerId, transferId.toString(), ref == null ? null : ref.toString(), now);
+            if (tracked.putIfAbsent(TransferKey.byId(partnerId, pending.transferId), pending) == null) {
+                created.add(pending);
+            }
+        }
+        return body;
+    }
+
+    public int trackedCount() {
+        return tracked.size();
+    }
+
+    public long refreshCount() {
+        return refreshes.sum();
+    }
+
+    public long resolvedCount() {
+        return resolved.sum();
+    }
+
+    public long abandonedCount() {
+        return abandoned.sum();
+    }
+
+    /**
+     * Schedules new transfers, handles refresh results and starts a batch of the refreshes due
+     */
+    void tick() {
+        try {
+            long now = currentTimeMillis.getAsLong();
+            for (Tracked pending; (pending = created.poll()) != null; ) {
+                wheel.schedule(pending, configuration.getInitialDelayMillis());
+            }
+            for (Refreshed result; (result = refreshed.poll()) != null; ) {
+                completed(result, now);
+            }
+            wheel.advance(now, due::add);
+
+            int rate = configuration.getMaxRefreshesPerSecond();
+            tokens = Math.min(rate, tokens + (now - refilledAt) * rate / 1000.0);
+            refilledAt = now;
+            for (int batch = 0; batch < configuration.getBatchSize() && tokens >= 1 && !due.isEmpty()
+                    && inFlight.get() < configuration.getMaxConcurrentRefreshes(); batch++) {
+                if (!refresh(due.peek())) {
+                    break;
+                }
+                due.poll();
+                tokens--;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Reconciliation tick failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean refresh(Tracked pending) {
+        inFlight.incrementAndGet();
+        try {
+            CompletableFuture.supplyAsync(() -> masterCardService.refreshById(pending.partnerId, pending.transferId), outboundExecutor)
+                    .whenComplete((body, e) -> {
+                        inFlight.decrementAndGet();
+                        refreshed.add(new Refreshed(pending, body, e == null ? null : MasterCardException.from(e)));
+                    });
+            refreshes.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            // client requests keep the outbound executor busy, retried next tick
+            inFlight.decrementAndGet();
+            return false;
+        }
+    }
+
+    private void completed(Refreshed result, long now) {
+        Tracked pending = result.tracked;
+        if (result.error != null && RESOURCE_UNKNOWN.equals(result.error.getReasonCode())) {
+            untrack(pending, abandoned);
+            return;
+        }
+        if (result.body != null && transferCache.isTerminal(result.body)) {
+            publish(pending, result.body, 0);
+            untrack(pending, resolved);
+            return;
+        }
+        if (now - pending.createdAt > configuration.getMaxAgeMillis()) {
+            untrack(pending, abandoned);
+            return;
+        }
+        pending.refreshes++;
+        long delay = (long) Math.min(configuration.getMaxDelayMillis(),
+                configuration.getInitialDelayMillis() * Math.pow(configuration.getMultiplier(), pending.refreshes));
+        if (result.body != null) {
+            // clients get this state until the next refresh instead of calling MPQR API
+            publish(pending, result.body, delay + configuration.getTickMillis());
+        }
+        wheel.schedule(pending, delay);
+    }
+
+    private void publish(Tracked pending, Map<String, Object> body, long pendingTtlMillis) {
+        transferCache.publish(TransferKey.byId(pending.partnerId, pending.transferId), body, pendingTtlMillis);
+        List<Map<?, ?>> transfers = TransferResponses.transfers(body);
+        if (pending.transferReference != null && transfers.size() == 1) {
+            transferCache.publish(TransferKey.byRef(pending.partnerId, pending.transferReference),
+                    TransferResponses.retrievalResponse(TransferKey.Type.REF, transfers.get(0)), pendingTtlMillis);
+        }
+    }
+
+    private void untrack(Tracked pending, LongAdder outcome) {
+        tracked.remove(TransferKey.byId(pending.partnerId, pending.transferId), pending);
+        outcome.increment();
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Tracked {
+        final String partnerId;
+        final String transferId;
+        final String transferReference;
+        final long createdAt;
+        /**
+         * Only updated by the ticking thread
+         */
+        int refreshes;
+
+        Tracked(String partnerId, String transferId, String transferReference, long createdAt) {
+            this.partnerId = partnerId;
+            this.transferId = transferId;
+            this.transferReference = transferReference;
+            this.createdAt = createdAt;
+        }
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Refreshed {
+        Tracked tracked;
+        Map<String, Object> body;
+        MasterCardException error;
+
+        Refreshed(Tracked tracked, Map<String, Object> body, MasterCardException error) {
+            this.tracked = tracked;
+            this.body = body;
+            this.error = error;
+        }
+    }
+}
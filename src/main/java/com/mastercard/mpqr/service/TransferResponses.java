@@ -0,0 +1,147 @@
+package com.mastercard.mpqr.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Navigation in MPQR API responses, which are nested maps and lists as parsed by the MPQR client.
+ * Responses are shared by the cache, they must not be modified.
+ */
+public final class TransferResponses {
+
+    static final String[] TRANSFER_FIELDS = {"merchant_transfer", "merchant_payment_transfer"};
+
+    private TransferResponses() {
+    }
+
+    /**
+     * First value of the field at any depth, like jackson {@code JsonNode.findValue}
+     *
+     * @param node
+     * @param field
+     * @return value or null if not found
+     */
+    public static Object findValue(Object node, String field) {
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                if (field.equals(entry.getKey())) {
+                    return entry.getValue();
+                }
+                Object value = findValue(entry.getValue(), field);
+                if (value != null) {
+                    return value;
+                }
+            }
+        } else if (node instanceof Collection) {
+            for (Object element : (Collection<?>) node) {
+                Object value = findValue(element, field);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * All values of the field at any depth, like jackson {@code JsonNode.findValues}
+     *
+     * @param node
+     * @param field
+     * @return
+     */
+    public static List<Object> findValues(Object node, String field) {
+        List<Object> values = new ArrayList<>();
+        findValues(node, field, values);
+        return values;
+    }
+
+    /**
+     * Transfers of a create or retrieval response
+     *
+     * @param body
+     * @return
+     */
+    public static List<Map<?, ?>> transfers(Object body) {
+        List<Map<?, ?>> transfers = new ArrayList<>();
+        for (String field : TRANSFER_FIELDS) {
+            for (Object value : findValues(body, field)) {
+                if (value instanceof Map) {
+                    transfers.add((Map<?, ?>) value);
+                } else if (value instanceof Collection) {
+                    for (Object element : (Collection<?>) value) {
+                        if (element instanceof Map) {
+                            transfers.add((Map<?, ?>) element);
+                        }
+                    }
+                }
+            }
+        }
+        return transfers;
+    }
+
+    /**
+     * Response of MPQR API to the retrieval of a transfer, by id or by reference
+     *
+     * @param type
+     * @param transfer
+     * @return
+     */
+    public static Map<String, Object> retrievalResponse(TransferKey.Type type, Object transfer) {
+        if (type == TransferKey.Type.ID) {
+            return Collections.singletonMap("merchant_transfer", transfer);
+        }
+        Map<String, Object> list = new LinkedHashMap<>();
+        list.put("resource_type", "list");
+        list.put("item_count", "1");
+        list.put("data", Collections.singletonMap("merchant_transfer", Collections.singletonList(transfer)));
+        return Collections.singletonMap("merchant_transfers", list);
+    }
+
+    /**
+     * Approximate memory used by the response
+     *
+     * @param node
+     * @return size in bytes
+     */
+    public static long weightOf(Object node) {
+        if (node instanceof Map) {
+            long weight = 64;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                weight += 32 + weightOf(entry.getKey()) + weightOf(entry.getValue());
+            }
+            return weight;
+        }
+        if (node instanceof Collection) {
+            long weight = 32;
+            for (Object element : (Collection<?>) node) {
+                weight += 8 + weightOf(element);
+            }
+            return weight;
+        }
+        if (node instanceof CharSequence) {
+            return 40 + 2L * ((CharSequence) node).length();
+        }
+        return 16;
+    }
+
+    private static void findValues(Object node, String field, List<Object> values) {
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                if (field.equals(entry.getKey())) {
+                    values.add(entry.getValue());
+                } else {
+                    findValues(entry.getValue(), field, values);
+                }
+            }
+        } else if (node instanceof Collection) {
+            for (Object element : (Collection<?>) node) {
+                findValues(element, field, values);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.mastercard.mpqr.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent identical merchant transfer retrievals, only the first caller
+ * calls MPQR API and the others wait for its response or exception
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TransferSingleFlight {
+
+    ConcurrentMap<TransferKey, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+
+    LongAdder shared = new LongAdder();
+
+    /**
+     * Calls MPQR API unless the same retrieval is already in flight
+     *
+     * @param key
+     * @param call MPQR API call
+     * @return response from MPQR API
+     */
+    public Map<String, Object> execute(TransferKey key, Supplier<Map<String, Object>> call) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> leader = inFlight.putIfAbsent(key, future);
+        if (leader != null) {
+            shared.increment();
+            return await(leader);
+        }
+        try {
+            Map<String, Object> body = call.get();
+            future.complete(body);
+            return body;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Calls MPQR API without blocking unless the same retrieval is already in flight, blocking and non-blocking
+     * retrievals share each other's calls
+     *
+     * @param key
+     * @param call MPQR API call
+     * @return completes with the response from MPQR API
+     */
+    public CompletableFuture<Map<String, Object>> executeAsync(TransferKey key, Supplier<CompletableFuture<Map<String, Object>>> call) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> leader = inFlight.putIfAbsent(key, future);
+        if (leader != null) {
+            shared.increment();
+            return leader;
+        }
+        CompletableFuture<Map<String, Object>> response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        response.whenComplete((body, e) -> {
+            inFlight.remove(key, future);
+            if (e != null) {
+                future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                future.complete(body);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Number of retrievals which waited for an identical retrieval in flight instead of calling MPQR API
+     */
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private Map<String, Object> await(CompletableFuture<Map<String, Object>> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.CircuitBreakerConfiguration;
+import com.mastercard.mpqr.config.ConcurrencyLimitConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Protects MPQR API calls with a circuit breaker and an adaptive concurrency limit,
+ * calls are rejected right away while MPQR API is degraded instead of waiting for its timeout
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UpstreamGuard {
+
+    static final String CIRCUIT_OPEN = "CIRCUIT_OPEN";
+
+    static final String CONCURRENCY_LIMIT_EXCEEDED = "CONCURRENCY_LIMIT_EXCEEDED";
+
+    CircuitBreakerConfiguration circuitBreakerConfiguration;
+
+    ConcurrencyLimitConfiguration concurrencyLimitConfiguration;
+
+    CircuitBreaker circuitBreaker;
+
+    ConcurrencyLimiter concurrencyLimiter;
+
+    LongAdder circuitRejections = new LongAdder();
+
+    LongAdder limitRejections = new LongAdder();
+
+    public UpstreamGuard(CircuitBreakerConfiguration circuitBreakerConfiguration,
+                         ConcurrencyLimitConfiguration concurrencyLimitConfiguration) {
+        this.circuitBreakerConfiguration = circuitBreakerConfiguration;
+        this.concurrencyLimitConfiguration = concurrencyLimitConfiguration;
+        this.circuitBreaker = new CircuitBreaker(circuitBreakerConfiguration);
+        this.concurrencyLimiter = new ConcurrencyLimiter(concurrencyLimitConfiguration);
+    }
+
+    /**
+     * Calls MPQR API if the circuit is closed and the concurrency limit not reached
+     *
+     * @param call MPQR API call
+     * @return response from MPQR API
+     */
+    public <T> T execute(Supplier<T> call) {
+        int inFlight = acquire();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T response = call.get();
+            failed = false;
+            return response;
+        } catch (MasterCardException e) {
+            failed = isUnavailable(e);
+            throw e;
+        } finally {
+            release(inFlight, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Calls MPQR API without blocking if the circuit is closed and the concurrency limit not reached, the call
+     * counts as in flight until its response
+     *
+     * @param call MPQR API call
+     * @return completes with the response from MPQR API
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> response;
+        int inFlight;
+        try {
+            inFlight = acquire();
+        } catch (MasterCardException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+            return response;
+        }
+        long start = System.nanoTime();
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        return response.whenComplete((body, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            boolean failed = cause != null && (!(cause instanceof MasterCardException) || isUnavailable((MasterCardException) cause));
+            release(inFlight, System.nanoTime() - start, failed);
+        });
+    }
+
+    /**
+     * @return in flight count reported back to the concurrency limiter, 0 when it is disabled
+     */
+    private int acquire() {
+        boolean breakerEnabled = circuitBreakerConfiguration.isEnabled();
+        boolean limitEnabled = concurrencyLimitConfiguration.isEnabled();
+        if (breakerEnabled && !circuitBreaker.tryAcquire()) {
+            circuitRejections.increment();
+            throw new MasterCardException(null, CIRCUIT_OPEN, "MPQR API is unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        int inFlight = limitEnabled ? concurrencyLimiter.tryAcquire() : 0;
+        if (limitEnabled && inFlight == 0) {
+            if (breakerEnabled) {
+                circuitBreaker.release();
+            }
+            limitRejections.increment();
+            throw new MasterCardException(null, CONCURRENCY_LIMIT_EXCEEDED, "Too many concurrent requests to MPQR API",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return inFlight;
+    }
+
+    private void release(int inFlight, long durationNanos, boolean failed) {
+        if (circuitBreakerConfiguration.isEnabled()) {
+            circuitBreaker.onResult(durationNanos, failed);
+        }
+        if (concurrencyLimitConfiguration.isEnabled()) {
+            concurrencyLimiter.release(inFlight, durationNanos, failed);
+        }
+    }
+
+    /**
+     * MPQR API did not answer, answered with a server error or throttled the call. Business errors
+     * like declined or not found transfers mean MPQR API works fine.
+     *
+     * @param e
+     * @return
+     */
+    public static boolean isUnavailable(MasterCardException e) {
+        return e.getHttpStatus() == 0 || e.getHttpStatus() >= 500 || e.getHttpStatus() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || e.getReasonCode() == null && e.getSource() == null;
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int concurrencyLimit() {
+        return concurrencyLimiter.getLimit();
+    }
+
+    public int inFlightCount() {
+        return concurrencyLimiter.getInFlight();
+    }
+
+    public long circuitRejectionCount() {
+        return circuitRejections.sum();
+    }
+
+    public long limitRejectionCount() {
+        return limitRejections.sum();
+    }
+}
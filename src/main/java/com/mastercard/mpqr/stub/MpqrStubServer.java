@@ -0,0 +1,261 @@
+package com.mastercard.mpqr.stub;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.config.StubConfiguration;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in MPQR API server for offline load tests, serving merchant transfer payment,
+ * funding and payment and retrievals on its own port and threads. Latency follows a log-normal
+ * distribution and errors, throttling and stalls are injected at configured rates.
+ * Requests are not authenticated.
+ */
+@Component
+@ConditionalOnProperty(prefix = "com.mastercard.stub", name = "enabled", havingValue = "true")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Slf4j
+public class MpqrStubServer {
+
+    static final Pattern TRANSFERS = Pattern.compile(".*/partners/([^/]+)/merchant/transfers(?:/([^/]+))?/?");
+
+    /**
+     * Standard normal quantile of the 99th percentile
+     */
+    static final double Z99 = 2.3263;
+
+    static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    final StubConfiguration configuration;
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+
+    final StubTransfers transfers;
+
+    final AtomicInteger inFlight = new AtomicInteger();
+
+    HttpServer server;
+
+    ExecutorService executor;
+
+    public MpqrStubServer(StubConfiguration configuration) {
+        this.configuration = configuration;
+        this.transfers = new StubTransfers(configuration.getMaxTransfers());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        // read once by the JDK http server, without it keep-alive responses wait for delayed acks
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        executor = Executors.newFixedThreadPool(configuration.getThreads(), new CustomizableThreadFactory("mpqr-stub-"));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), configuration.getPort()), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("MPQR API stub listening on port {}", configuration.getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            StubResponse response = throttle(inFlight.incrementAndGet());
+            if (response == null) {
+                sleep(latencyMillis());
+                response = ThreadLocalRandom.current().nextDouble() < configuration.getErrorRate()
+                        ? error(HttpStatus.INTERNAL_SERVER_ERROR, "System", "SYSTEM_ERROR", "Unexpected error", true)
+                        : route(exchange);
+            }
+            byte[] body = objectMapper.writeValueAsBytes(response.body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+            exchange.sendResponseHeaders(response.status.value(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private StubResponse throttle(int current) {
+        if (configuration.getMaxConcurrentRequests() > 0 && current > configuration.getMaxConcurrentRequests()
+                || ThreadLocalRandom.current().nextDouble() < configuration.getThrottleRate()) {
+            return error(HttpStatus.TOO_MANY_REQUESTS, "System", "LIMIT_EXCEEDED", "Too many requests", true);
+        }
+        return null;
+    }
+
+    private StubResponse route(HttpExchange exchange) throws IOException {
+        Matcher matcher = TRANSFERS.matcher(exchange.getRequestURI().getPath());
+        if (!matcher.matches()) {
+            return error(HttpStatus.NOT_FOUND, "path", "RESOURCE_UNKNOWN", "Resource not found", false);
+        }
+        String partnerId = matcher.group(1);
+        String resource = matcher.group(2);
+        if (partnerId.length() < 10) {
+            return error(HttpStatus.BAD_REQUEST, "partnerId", "INVALID_INPUT_LENGTH", "Invalid length", false);
+        }
+        String method = exchange.getRequestMethod();
+        if ("POST".equals(method) && "payment".equals(resource)) {
+            return create(partnerId, exchange, "merchant_payment_transfer");
+        }
+        if ("POST".equals(method) && "funding-and-payment".equals(resource)) {
+            return create(partnerId, exchange, "merchant_transfer");
+        }
+        if ("GET".equals(method) && resource == null) {
+            return findByRef(partnerId, query(exchange).get("ref"));
+        }
+        if ("GET".equals(method)) {
+            return findById(partnerId, resource);
+        }
+        return error(HttpStatus.METHOD_NOT_ALLOWED, "method", "INVALID_INPUT_VALUE", "Method not allowed", false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private StubResponse create(String partnerId, HttpExchange exchange, String field) throws IOException {
+        Map<String, Object> request;
+        try {
+            request = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+        } catch (JsonProcessingException e) {
+            return error(HttpStatus.BAD_REQUEST, "body", "INVALID_INPUT_FORMAT", "Invalid format", false);
+        }
+        Object transfer = request.get(field);
+        if (!(transfer instanceof Map)) {
+            return error(HttpStatus.BAD_REQUEST, field, "MISSING_REQUIRED_INPUT", "Missing required input", false);
+        }
+        if (((Map<String, Object>) transfer).get("transfer_reference") == null) {
+            return error(HttpStatus.BAD_REQUEST, "transfer_reference", "MISSING_REQUIRED_INPUT", "Missing required input", false);
+        }
+        Map<String, Object> created = transfers.create(partnerId, (Map<String, Object>) transfer, newStatus(),
+                System.currentTimeMillis() + configuration.getPendingMillis());
+        if (created == null) {
+            return error(HttpStatus.CONFLICT, "transfer_reference", "RESOURCE_ERROR", "Duplicate value", false);
+        }
+        return new StubResponse(HttpStatus.OK, Collections.singletonMap("merchant_transfer", created));
+    }
+
+    private StubResponse findById(String partnerId, String id) {
+        Map<String, Object> transfer = transfers.findById(partnerId, id);
+        if (transfer == null) {
+            return error(HttpStatus.NOT_FOUND, "transfer_id", "RESOURCE_UNKNOWN", "Record not found", false);
+        }
+        return new StubResponse(HttpStatus.OK, Collections.singletonMap("merchant_transfer", transfer));
+    }
+
+    private StubResponse findByRef(String partnerId, String ref) {
+        if (ref == null) {
+            return error(HttpStatus.BAD_REQUEST, "ref", "MISSING_REQUIRED_INPUT", "Missing required input", false);
+        }
+        Map<String, Object> transfer = transfers.findByRef(partnerId, ref);
+        if (transfer == null) {
+            return error(HttpStatus.NOT_FOUND, "transfer_reference", "RESOURCE_UNKNOWN", "Record not found", false);
+        }
+        Map<String, Object> list = new LinkedHashMap<>();
+        list.put("resource_type", "list");
+        list.put("item_count", "1");
+        list.put("data", Collections.singletonMap("merchant_transfer", Collections.singletonList(transfer)));
+        return new StubResponse(HttpStatus.OK, Collections.singletonMap("merchant_transfers", list));
+    }
+
+    private String newStatus() {
+        double random = ThreadLocalRandom.current().nextDouble();
+        if (random < configuration.getDeclineRate()) {
+            return "DECLINED";
+        }
+        return random < configuration.getDeclineRate() + configuration.getPendingRate() ? StubTransfers.PENDING : StubTransfers.APPROVED;
+    }
+
+    /**
+     * Log-normal latency with the configured median and 99th percentile, or the stall time
+     */
+    private long latencyMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < configuration.getStallRate()) {
+            return configuration.getStallMillis();
+        }
+        double median = configuration.getMedianLatencyMillis();
+        if (median <= 0 || configuration.getP99LatencyMillis() <= median) {
+            return (long) median;
+        }
+        double sigma = Math.log(configuration.getP99LatencyMillis() / median) / Z99;
+        return (long) (median * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Error in the format of MPQR API
+     */
+    private static StubResponse error(HttpStatus status, String source, String reasonCode, String description, boolean recoverable) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("Source", source);
+        error.put("ReasonCode", reasonCode);
+        error.put("Description", description);
+        error.put("Recoverable", recoverable);
+        error.put("Details", null);
+        return new StubResponse(status, Collections.singletonMap("Errors",
+                Collections.singletonMap("Error", Collections.singletonList(error))));
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class StubResponse {
+        HttpStatus status;
+        Object body;
+    }
+}
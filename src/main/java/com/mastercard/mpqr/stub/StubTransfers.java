@@ -0,0 +1,147 @@
+package com.mastercard.mpqr.stub;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Merchant transfers created on the MPQR API stub, kept for retrievals. Published transfer maps are
+ * never modified, a pending transfer is replaced by an approved copy once settled.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class StubTransfers {
+
+    static final String APPROVED = "APPROVED";
+
+    static final String PENDING = "PENDING";
+
+    static final String ID_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+    int maxTransfers;
+
+    LinkedHashMap<String, StubTransfer> byId = new LinkedHashMap<>();
+
+    Map<String, String> idByRef = new LinkedHashMap<>();
+
+    StubTransfers(int maxTransfers) {
+        this.maxTransfers = maxTransfers;
+    }
+
+    /**
+     * Creates a transfer from the payment request
+     *
+     * @param partnerId
+     * @param request   merchant transfer of the payment request
+     * @param status    status of the new transfer
+     * @param settleAt  when a PENDING transfer becomes APPROVED, in millis
+     * @return the transfer or null if the transfer reference is already used
+     */
+    synchronized Map<String, Object> create(String partnerId, Map<String, Object> request, String status, long settleAt) {
+        String refKey = partnerId + '/' + request.get("transfer_reference");
+        if (idByRef.containsKey(refKey)) {
+            return null;
+        }
+        String id = "mtr_" + randomId();
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("id", id);
+        transfer.put("resource_type", "merchant_transfer");
+        request.forEach((name, value) -> transfer.put(name, name.endsWith("_account_uri") ? mask(value) : value));
+        transfer.put("created", TIMESTAMP.format(OffsetDateTime.now(ZoneOffset.UTC)));
+        withStatus(transfer, status);
+
+        byId.put(id, new StubTransfer(partnerId, refKey, transfer, settleAt));
+        idByRef.put(refKey, id);
+        Iterator<StubTransfer> eldest = byId.values().iterator();
+        while (byId.size() > maxTransfers) {
+            idByRef.remove(eldest.next().refKey);
+            eldest.remove();
+        }
+        return transfer;
+    }
+
+    synchronized Map<String, Object> findById(String partnerId, String id) {
+        StubTransfer transfer = byId.get(id);
+        return transfer == null || !transfer.partnerId.equals(partnerId) ? null : settle(id, transfer);
+    }
+
+    synchronized Map<String, Object> findByRef(String partnerId, String ref) {
+        String id = idByRef.get(partnerId + '/' + ref);
+        return id == null ? null : settle(id, byId.get(id));
+    }
+
+    private Map<String, Object> settle(String id, StubTransfer transfer) {
+        if (!PENDING.equals(transfer.transfer.get("status")) || System.currentTimeMillis() < transfer.settleAt) {
+            return transfer.transfer;
+        }
+        Map<String, Object> approved = new LinkedHashMap<>(transfer.transfer);
+        withStatus(approved, APPROVED);
+        byId.put(id, new StubTransfer(transfer.partnerId, transfer.refKey, approved, transfer.settleAt));
+        return approved;
+    }
+
+    private static void withStatus(Map<String, Object> transfer, String status) {
+        Map<String, Object> transaction = new LinkedHashMap<>();
+        transaction.put("id", "txn_" + randomId());
+        transaction.put("resource_type", "transaction");
+        transaction.put("account", transfer.get("recipient_account_uri"));
+        transaction.put("amount", transfer.containsKey("amount") ? transfer.get("amount") : transfer.get("transfer_amount"));
+        transaction.put("currency", transfer.get("currency"));
+        transaction.put("network", "MasterCard Network");
+        transaction.put("type", "PAYMENT");
+        transaction.put("create_timestamp", transfer.get("created"));
+        transaction.put("status", status);
+        transaction.put("status_reason", status);
+        transaction.put("status_timestamp", TIMESTAMP.format(OffsetDateTime.now(ZoneOffset.UTC)));
+
+        Map<String, Object> history = new LinkedHashMap<>();
+        history.put("resource_type", "list");
+        history.put("item_count", "1");
+        history.put("data", Collections.singletonMap("transaction", Collections.singletonList(transaction)));
+        transfer.put("transaction_history", history);
+        transfer.put("status", status);
+    }
+
+    private static String randomId() {
+        char[] id = new char[27];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = ID_CHARACTERS.charAt(ThreadLocalRandom.current().nextInt(ID_CHARACTERS.length()));
+        }
+        return new String(id);
+    }
+
+    private static Object mask(Object uri) {
+        if (!(uri instanceof String)) {
+            return uri;
+        }
+        String value = ((String) uri).split(";")[0];
+        int digits = value.indexOf(':') + 1;
+        if (value.length() - digits <= 4) {
+            return value;
+        }
+        StringBuilder masked = new StringBuilder(value.substring(0, digits));
+        for (int i = digits; i < value.length() - 4; i++) {
+            masked.append('*');
+        }
+        return masked.append(value.substring(value.length() - 4)).toString();
+    }
+
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class StubTransfer {
+        String partnerId;
+        String refKey;
+        Map<String, Object> transfer;
+        long settleAt;
+    }
+}
@@ -1,7 +1,9 @@
 package com.mastercard.mpqr.web;
 
 import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.exception.RateLimitException;
 import com.mastercard.mpqr.model.ErrorResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -23,7 +25,11 @@ public class ExceptionController {
     public ResponseEntity<?> handleSQLException(MasterCardException e) {
         ErrorResponse errorResponse = new ErrorResponse(e.getSource(), e.getReasonCode(), e.getMessage());
         Integer status = e.getHttpStatus() == 0 ? HttpStatus.BAD_REQUEST.value() : e.getHttpStatus();
-        return ResponseEntity.status(status).body(errorResponse);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (e instanceof RateLimitException) {
+            response.header(HttpHeaders.RETRY_AFTER, Long.toString(((RateLimitException) e).getRetryAfterSeconds()));
+        }
+        return response.body(errorResponse);
     }
 
 }
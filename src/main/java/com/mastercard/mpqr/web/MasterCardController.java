@@ -1,38 +1,59 @@
 package com.mastercard.mpqr.web;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mastercard.mpqr.config.BatchConfiguration;
+import com.mastercard.mpqr.config.BulkLookupConfiguration;
 import com.mastercard.mpqr.exception.MasterCardException;
 import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferLookupRequest;
 import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
-import com.mastercard.mpqr.service.MasterCardService;
+import com.mastercard.mpqr.service.BatchPaymentService;
+import com.mastercard.mpqr.service.MasterCardAsyncService;
+import com.mastercard.mpqr.service.MerchantTransferLookupService;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.util.stream.Stream;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Rest endpoints to proxy MPQR API
  */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class MasterCardController {
 
-    MasterCardService masterCardService;
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
 
-    ObjectMapper objectMapper;
+    MasterCardAsyncService masterCardAsyncService;
+
+    BatchPaymentService batchPaymentService;
+
+    BatchConfiguration batchConfiguration;
+
+    BulkLookupConfiguration bulkLookupConfiguration;
+
+    MerchantTransferLookupService merchantTransferLookupService;
 
     /**
      * Proxy for Merchant Transfer - Funding and Payment/create request
@@ -41,8 +62,8 @@ public class MasterCardController {
      * @return
      */
     @PostMapping(value = "/merchantTransferFundingAndPayment", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> merchantTransferFundingAndPayment(@RequestBody MerchantTransferFundingAndPaymentRequest request) {
-        return ResponseEntity.ok(masterCardService.merchantTransferFundingAndPayment(request));
+    public DeferredResult<ResponseEntity<?>> merchantTransferFundingAndPayment(@RequestBody MerchantTransferFundingAndPaymentRequest request) {
+        return deferred(masterCardAsyncService.merchantTransferFundingAndPayment(request));
     }
 
     /**
@@ -52,37 +73,69 @@ public class MasterCardController {
      * @return
      */
     @PostMapping(value = "/merchantTransferPayment", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> merchantTransferPayment(@RequestBody MerchantTransferPaymentRequest request) {
-        return ResponseEntity.ok(masterCardService.merchantTransferPayment(request));
+    public DeferredResult<ResponseEntity<?>> merchantTransferPayment(@RequestBody MerchantTransferPaymentRequest request) {
+        return deferred(masterCardAsyncService.merchantTransferPayment(request));
     }
 
+    /**
+     * Batch of Merchant Transfer - Payment/create requests, results are streamed back
+     * as newline delimited json as soon as each payment completes
+     *
+     * @param request json array or newline delimited json of payment requests
+     * @return
+     */
+    @PostMapping(value = "/merchantTransferPayment/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE},
+            produces = APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter merchantTransferPaymentBatch(HttpServletRequest request) throws IOException {
+        InputStream content = request.getInputStream();
+        return emitter(batchConfiguration.getTimeoutMillis(), lines -> batchPaymentService.merchantTransferPayments(content, lines));
+    }
+
+    /**
+     * Bulk lookup of merchant transfers by references and transfer ids
+     *
+     * @param partnerId  required
+     * @param ref        list of references
+     * @param transferId list of transfer ids
+     * @return
+     */
     @GetMapping(value = "/getMerchantTransferPaymentList", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getMerchantTransferPaymentList() {
-        String byRef = masterCardService.getByRef("ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo", "4002731033061103775624344507490434951000");
-        try {
-            JsonNode jsonNode = objectMapper.readTree(byRef);
-            ObjectNode merchantTransfers = (ObjectNode) jsonNode.findPath("merchant_transfers");
-            ArrayNode data = (ArrayNode) merchantTransfers.findPath("data").withArray("merchant_transfer");
-
-            Stream.of(
-                    "4002731033061103775624344507490434951001",
-                    "4002731033061103775624344507490434951002",
-                    "4002731033061103775624344507490434951003",
-                    "4002731033061103775624344507490434951004",
-                    "4002731033061103775624344507490434951005")
-                    .map(ref -> masterCardService.getByRef("ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo", ref))
-                    .forEach(mtp -> {
-                        try {
-                            merchantTransfers.put("item_count", merchantTransfers.get("item_count").asInt() + 1);
-                            data.add(objectMapper.readTree(mtp).findPath("merchant_transfers").findPath("data").withArray("merchant_transfer").get(0));
-                        } catch (IOException e) {
-                            throw new MasterCardException(e);
-                        }
-                    });
-            return ResponseEntity.ok(jsonNode.toString());
-        } catch (IOException e) {
-            throw new MasterCardException(e);
+    public DeferredResult<ResponseEntity<?>> getMerchantTransferPaymentList(@RequestParam String partnerId,
+                                                            @RequestParam(required = false) List<String> ref,
+                                                            @RequestParam(required = false) List<String> transferId) {
+        return deferred(merchantTransferLookupService.getMerchantTransferList(partnerId, ref, transferId));
+    }
+
+    /**
+     * Bulk lookup of merchant transfers for long lists of references and transfer ids
+     *
+     * @param request
+     * @return
+     */
+    @PostMapping(value = "/getMerchantTransferPaymentList", produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<?>> getMerchantTransferPaymentList(@RequestBody MerchantTransferLookupRequest request) {
+        if (!StringUtils.hasLength(request.getPartnerId())) {
+            throw new MasterCardException("partnerId", "MISSING_REQUIRED_INPUT", "Missing required input", HttpStatus.BAD_REQUEST);
         }
+        return deferred(merchantTransferLookupService.getMerchantTransferList(request.getPartnerId(),
+                request.getRefs(), request.getTransferIds()));
+    }
+
+    /**
+     * Bulk lookup of merchant transfers streamed back as newline delimited json, for lists too long
+     * to be answered at once. Results come in completion order with the index of their item.
+     *
+     * @param request
+     * @return
+     */
+    @PostMapping(value = "/getMerchantTransferPaymentList/stream", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter getMerchantTransferPaymentListStream(@RequestBody MerchantTransferLookupRequest request) {
+        if (!StringUtils.hasLength(request.getPartnerId())) {
+            throw new MasterCardException("partnerId", "MISSING_REQUIRED_INPUT", "Missing required input", HttpStatus.BAD_REQUEST);
+        }
+        return emitter(bulkLookupConfiguration.getStreamTimeoutMillis(), lines -> merchantTransferLookupService
+                .streamMerchantTransferList(request.getPartnerId(), request.getRefs(), request.getTransferIds(), lines));
     }
 
     /**
@@ -93,8 +146,8 @@ public class MasterCardController {
      * @return
      */
     @GetMapping(value = "/byId", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getById(@RequestParam String partnerId, @RequestParam String transferId) {
-        return ResponseEntity.ok(masterCardService.getById(partnerId, transferId));
+    public DeferredResult<ResponseEntity<?>> getById(@RequestParam String partnerId, @RequestParam String transferId) {
+        return deferred(masterCardAsyncService.getById(partnerId, transferId));
     }
 
     /**
@@ -105,7 +158,53 @@ public class MasterCardController {
      * @return
      */
     @GetMapping(value = "/byRef", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getByRef(@RequestParam String partnerId, @RequestParam String ref) {
-        return ResponseEntity.ok(masterCardService.getByRef(partnerId, ref));
+    public DeferredResult<ResponseEntity<?>> getByRef(@RequestParam String partnerId, @RequestParam String ref) {
+        return deferred(masterCardAsyncService.getByRef(partnerId, ref));
+    }
+
+    /**
+     * Streams result lines as newline delimited json, sending blocks while the client is slow to read
+     *
+     * @param timeoutMillis
+     * @param producer      writes result lines to the consumer it is given
+     * @return
+     */
+    private ResponseBodyEmitter emitter(long timeoutMillis, Function<Consumer<String>, CompletableFuture<Void>> producer) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMillis);
+        MediaType ndjson = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+        producer.apply(line -> {
+            try {
+                emitter.send(line, ndjson);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((done, e) -> {
+            if (e != null) {
+                emitter.completeWithError(e);
+            } else {
+                emitter.complete();
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Completes the request when MPQR API call completes, the servlet thread is released meanwhile
+     *
+     * @param response
+     * @return
+     */
+    private DeferredResult<ResponseEntity<?>> deferred(CompletableFuture<?> response) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        result.onTimeout(() -> result.setErrorResult(
+                new MasterCardException(null, "TIMEOUT", "Request timed out", HttpStatus.GATEWAY_TIMEOUT)));
+        response.whenComplete((body, e) -> {
+            if (e != null) {
+                result.setErrorResult(MasterCardException.from(e));
+            } else {
+                result.setResult(ResponseEntity.ok(body));
+            }
+        });
+        return result;
     }
 }
@@ -0,0 +1,196 @@
+package com.mastercard.mpqr.web;
+
+import com.mastercard.mpqr.audit.AuditJournal;
+import com.mastercard.mpqr.config.BoundedExecutor;
+import com.mastercard.mpqr.metrics.LatencyHistogram;
+import com.mastercard.mpqr.metrics.MpqrMetrics;
+import com.mastercard.mpqr.metrics.PrometheusWriter;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+import com.mastercard.mpqr.service.AsyncHttpTransport;
+import com.mastercard.mpqr.service.CircuitBreaker;
+import com.mastercard.mpqr.service.HedgedRetrieval;
+import com.mastercard.mpqr.service.IdempotencyStore;
+import com.mastercard.mpqr.service.MpqrTransport;
+import com.mastercard.mpqr.service.PooledHttpTransport;
+import com.mastercard.mpqr.service.RateLimiter;
+import com.mastercard.mpqr.service.RequestValidator;
+import com.mastercard.mpqr.service.TransferCache;
+import com.mastercard.mpqr.service.TransferLedger;
+import com.mastercard.mpqr.service.TransferReconciler;
+import com.mastercard.mpqr.service.TransferSingleFlight;
+import com.mastercard.mpqr.service.UpstreamGuard;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of endpoints and MPQR API calls in Prometheus text format
+ */
+@RestController
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MetricsController {
+
+    MpqrMetrics metrics;
+
+    TransferCache transferCache;
+
+    TransferSingleFlight transferSingleFlight;
+
+    TransferLedger transferLedger;
+
+    TransferReconciler transferReconciler;
+
+    RateLimiter rateLimiter;
+
+    IdempotencyStore idempotencyStore;
+
+    RequestValidator requestValidator;
+
+    AuditJournal auditJournal;
+
+    UpstreamGuard upstreamGuard;
+
+    HedgedRetrieval hedgedRetrieval;
+
+    ExecutorService outboundExecutor;
+
+    MpqrTransport mpqrTransport;
+
+    @GetMapping("/metrics")
+    public ResponseEntity<String> metrics() {
+        PrometheusWriter writer = new PrometheusWriter();
+
+        writer.histograms("mpqr_http_request_duration_seconds", "Latency of endpoints", "endpoint", metrics.getEndpoints())
+                .header("mpqr_http_requests_in_flight", "gauge", "Requests being processed")
+                .sample("mpqr_http_requests_in_flight", metrics.getEndpointsInFlight());
+
+        Map<String, LatencyHistogram> upstreamLatencies = new LinkedHashMap<>();
+        Map<String, LatencyHistogram> localLatencies = new LinkedHashMap<>();
+        metrics.getUpstreams().forEach((operation, upstream) -> {
+            upstreamLatencies.put(operation.getLabel(), upstream.getLatency());
+            localLatencies.put(operation.getLabel(), upstream.getLocal());
+        });
+        writer.histograms("mpqr_upstream_duration_seconds", "Latency of MPQR API calls", "operation", upstreamLatencies)
+                .histograms("mpqr_local_duration_seconds", "Processing time of operations outside MPQR API calls",
+                        "operation", localLatencies);
+        writer.header("mpqr_upstream_in_flight", "gauge", "MPQR API calls in flight");
+        for (Map.Entry<UpstreamOperation, MpqrMetrics.Upstream> upstream : metrics.getUpstreams().entrySet()) {
+            writer.sample("mpqr_upstream_in_flight", upstream.getValue().getInFlight(), "operation", upstream.getKey().getLabel());
+        }
+        writer.header("mpqr_upstream_errors_total", "counter", "Failed MPQR API calls by reason code");
+        for (Map.Entry<UpstreamOperation, MpqrMetrics.Upstream> upstream : metrics.getUpstreams().entrySet()) {
+            for (Map.Entry<String, LongAdder> error : upstream.getValue().getErrors().entrySet()) {
+                writer.sample("mpqr_upstream_errors_total", error.getValue().sum(),
+                        "operation", upstream.getKey().getLabel(), "reason_code", error.getKey());
+            }
+        }
+
+        writer.histogram("mpqr_outbound_queue_wait_seconds", "Wait for an outbound thread", metrics.getOutboundQueueWait());
+        if (outboundExecutor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) outboundExecutor;
+            writer.header("mpqr_outbound_active_threads", "gauge", "Outbound threads running an operation")
+                    .sample("mpqr_outbound_active_threads", executor.getActiveCount())
+                    .header("mpqr_outbound_queued", "gauge", "Operations waiting for an outbound thread")
+                    .sample("mpqr_outbound_queued", executor.getQueue().size());
+        } else if (outboundExecutor instanceof BoundedExecutor) {
+            writer.header("mpqr_outbound_active_threads", "gauge", "Outbound threads running an operation")
+                    .sample("mpqr_outbound_active_threads", ((BoundedExecutor) outboundExecutor).getActiveCount());
+        }
+
+        if (mpqrTransport instanceof PooledHttpTransport) {
+            PooledHttpTransport transport = (PooledHttpTransport) mpqrTransport;
+            writePool(writer, transport.poolStats());
+            writer.header("mpqr_transport_connections_opened_total", "counter", "Connections opened to MPQR API, each with a TLS handshake over https")
+                    .sample("mpqr_transport_connections_opened_total", transport.connectionsOpenedCount());
+        } else if (mpqrTransport instanceof AsyncHttpTransport) {
+            writePool(writer, ((AsyncHttpTransport) mpqrTransport).poolStats());
+        }
+
+        writer.header("mpqr_cache_hits_total", "counter", "Transfer cache hits")
+                .sample("mpqr_cache_hits_total", transferCache.hitCount())
+                .header("mpqr_cache_misses_total", "counter", "Transfer cache misses")
+                .sample("mpqr_cache_misses_total", transferCache.missCount())
+                .header("mpqr_cache_evictions_total", "counter", "Transfers evicted from the cache")
+                .sample("mpqr_cache_evictions_total", transferCache.evictionCount())
+                .header("mpqr_cache_size", "gauge", "Cached transfers")
+                .sample("mpqr_cache_size", transferCache.size())
+                .header("mpqr_cache_weight_bytes", "gauge", "Approximate memory used by cached transfers")
+                .sample("mpqr_cache_weight_bytes", transferCache.weightBytes())
+                .header("mpqr_single_flight_shared_total", "counter", "Retrievals which shared an identical retrieval in flight")
+                .sample("mpqr_single_flight_shared_total", transferSingleFlight.sharedCount())
+                .header("mpqr_single_flight_in_flight", "gauge", "Distinct retrievals in flight")
+                .sample("mpqr_single_flight_in_flight", transferSingleFlight.inFlightCount())
+                .header("mpqr_ledger_hits_total", "counter", "Retrievals answered from the local ledger")
+                .sample("mpqr_ledger_hits_total", transferLedger.hitCount())
+                .header("mpqr_ledger_appends_total", "counter", "Transfers written to the local ledger")
+                .sample("mpqr_ledger_appends_total", transferLedger.appendCount())
+                .header("mpqr_ledger_keys", "gauge", "Transfer ids and references indexed by the local ledger")
+                .sample("mpqr_ledger_keys", transferLedger.keyCount())
+                .header("mpqr_ledger_segments", "gauge", "Segments of the local ledger")
+                .sample("mpqr_ledger_segments", transferLedger.segmentCount())
+                .header("mpqr_reconciliation_tracked", "gauge", "Pending transfers followed up in the background")
+                .sample("mpqr_reconciliation_tracked", transferReconciler.trackedCount())
+                .header("mpqr_reconciliation_refreshes_total", "counter", "Background refreshes of pending transfers")
+                .sample("mpqr_reconciliation_refreshes_total", transferReconciler.refreshCount())
+                .header("mpqr_reconciliation_resolved_total", "counter", "Pending transfers followed up to a terminal status")
+                .sample("mpqr_reconciliation_resolved_total", transferReconciler.resolvedCount())
+                .header("mpqr_reconciliation_abandoned_total", "counter", "Pending transfers not found or too old to follow up")
+                .sample("mpqr_reconciliation_abandoned_total", transferReconciler.abandonedCount())
+                .header("mpqr_idempotent_replays_total", "counter", "Payments answered from the idempotency store")
+                .sample("mpqr_idempotent_replays_total", idempotencyStore.replayCount())
+                .header("mpqr_rate_limited_total", "counter", "Requests rejected over the rate limit of their partner or of all partners")
+                .sample("mpqr_rate_limited_total", rateLimiter.partnerRejectionCount(), "scope", "partner")
+                .sample("mpqr_rate_limited_total", rateLimiter.globalRejectionCount(), "scope", "global")
+                .header("mpqr_rate_limit_partners", "gauge", "Partners with rate limit buckets")
+                .sample("mpqr_rate_limit_partners", rateLimiter.partnerCount())
+                .header("mpqr_validation_rejections_total", "counter", "Requests rejected locally for breaking MPQR API field rules")
+                .sample("mpqr_validation_rejections_total", requestValidator.rejectionCount())
+                .header("mpqr_audit_records_total", "counter", "MPQR API calls written to the audit journal")
+                .sample("mpqr_audit_records_total", auditJournal.recordedCount())
+                .header("mpqr_audit_dropped_total", "counter", "MPQR API calls dropped from the audit journal, buffer full or write failed")
+                .sample("mpqr_audit_dropped_total", auditJournal.droppedCount());
+
+        writer.header("mpqr_circuit_state", "gauge", "State of the circuit breaker, 1 for the current state");
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            writer.sample("mpqr_circuit_state", state == upstreamGuard.circuitState() ? 1 : 0, "state", state.name());
+        }
+        writer.header("mpqr_concurrency_limit", "gauge", "Adaptive limit of concurrent MPQR API calls")
+                .sample("mpqr_concurrency_limit", upstreamGuard.concurrencyLimit())
+                .header("mpqr_guard_in_flight", "gauge", "MPQR API calls counted by the concurrency limit")
+                .sample("mpqr_guard_in_flight", upstreamGuard.inFlightCount())
+                .header("mpqr_guard_rejections_total", "counter", "MPQR API calls rejected before being sent")
+                .sample("mpqr_guard_rejections_total", upstreamGuard.circuitRejectionCount(), "reason", "circuit_open")
+                .sample("mpqr_guard_rejections_total", upstreamGuard.limitRejectionCount(), "reason", "concurrency_limit")
+                .header("mpqr_retries_total", "counter", "Retried merchant transfer retrievals")
+                .sample("mpqr_retries_total", hedgedRetrieval.retryCount())
+                .header("mpqr_hedges_total", "counter", "Hedged merchant transfer retrievals")
+                .sample("mpqr_hedges_total", hedgedRetrieval.hedgeCount())
+                .header("mpqr_hedge_wins_total", "counter", "Hedged retrievals answered first by the hedge")
+                .sample("mpqr_hedge_wins_total", hedgedRetrieval.hedgeWinCount());
+
+        return ResponseEntity.ok()
+                .header("Content-Type", PrometheusWriter.CONTENT_TYPE)
+                .body(writer.toString());
+    }
+
+    private static void writePool(PrometheusWriter writer, PoolStats pool) {
+        writer.header("mpqr_transport_connections", "gauge", "Pooled connections to MPQR API by state")
+                .sample("mpqr_transport_connections", pool.getLeased(), "state", "leased")
+                .sample("mpqr_transport_connections", pool.getAvailable(), "state", "idle")
+                .header("mpqr_transport_max_connections", "gauge", "Max pooled connections to MPQR API")
+                .sample("mpqr_transport_max_connections", pool.getMax())
+                .header("mpqr_transport_pending", "gauge", "Calls waiting for a free connection")
+                .sample("mpqr_transport_pending", pool.getPending());
+    }
+}
@@ -0,0 +1,169 @@
+package com.mastercard.mpqr.web;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferLookupRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import com.mastercard.mpqr.service.BatchPaymentService;
+import com.mastercard.mpqr.service.MasterCardAsyncService;
+import com.mastercard.mpqr.service.MerchantTransferLookupService;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.mastercard.mpqr.web.MasterCardController.APPLICATION_NDJSON_VALUE;
+
+/**
+ * Rest endpoints to proxy MPQR API on the reactive stack, the same ones as {@link MasterCardController}.
+ * Requests wait for MPQR API without holding a thread, streamed results are written as the client reads them.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReactiveMasterCardController {
+
+    MasterCardAsyncService masterCardAsyncService;
+
+    BatchPaymentService batchPaymentService;
+
+    MerchantTransferLookupService merchantTransferLookupService;
+
+    /**
+     * Proxy for Merchant Transfer - Funding and Payment/create request
+     *
+     * @param request
+     * @return
+     */
+    @PostMapping(value = "/merchantTransferFundingAndPayment", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> merchantTransferFundingAndPayment(@RequestBody MerchantTransferFundingAndPaymentRequest request) {
+        return mono(masterCardAsyncService.merchantTransferFundingAndPayment(request));
+    }
+
+    /**
+     * Proxy for Merchant Transfer - Payment/create request
+     *
+     * @param request
+     * @return
+     */
+    @PostMapping(value = "/merchantTransferPayment", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> merchantTransferPayment(@RequestBody MerchantTransferPaymentRequest request) {
+        return mono(masterCardAsyncService.merchantTransferPayment(request));
+    }
+
+    /**
+     * Batch of Merchant Transfer - Payment/create requests, results are streamed back
+     * as newline delimited json as soon as each payment completes. Requests are parsed
+     * as the body arrives, whatever the size of the batch.
+     *
+     * @param body json array or newline delimited json of payment requests
+     * @return
+     */
+    @PostMapping(value = "/merchantTransferPayment/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE},
+            produces = APPLICATION_NDJSON_VALUE)
+    public Flux<byte[]> merchantTransferPaymentBatch(@RequestBody Flux<DataBuffer> body) {
+        return batchPaymentService.merchantTransferPayments(body)
+                .map(line -> line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Bulk lookup of merchant transfers by references and transfer ids
+     *
+     * @param partnerId  required
+     * @param ref        list of references
+     * @param transferId list of transfer ids
+     * @return
+     */
+    @GetMapping(value = "/getMerchantTransferPaymentList", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> getMerchantTransferPaymentList(@RequestParam String partnerId,
+                                                                  @RequestParam(required = false) List<String> ref,
+                                                                  @RequestParam(required = false) List<String> transferId) {
+        return mono(merchantTransferLookupService.getMerchantTransferList(partnerId, ref, transferId));
+    }
+
+    /**
+     * Bulk lookup of merchant transfers for long lists of references and transfer ids
+     *
+     * @param request
+     * @return
+     */
+    @PostMapping(value = "/getMerchantTransferPaymentList", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> getMerchantTransferPaymentList(@RequestBody MerchantTransferLookupRequest request) {
+        if (!StringUtils.hasLength(request.getPartnerId())) {
+            throw new MasterCardException("partnerId", "MISSING_REQUIRED_INPUT", "Missing required input", HttpStatus.BAD_REQUEST);
+        }
+        return mono(merchantTransferLookupService.getMerchantTransferList(request.getPartnerId(),
+                request.getRefs(), request.getTransferIds()));
+    }
+
+    /**
+     * Bulk lookup of merchant transfers streamed back as newline delimited json, for lists too long
+     * to be answered at once. Results come in completion order with the index of their item, lookups
+     * start as the client reads results.
+     *
+     * @param request
+     * @return
+     */
+    @PostMapping(value = "/getMerchantTransferPaymentList/stream", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = APPLICATION_NDJSON_VALUE)
+    public Flux<byte[]> getMerchantTransferPaymentListStream(@RequestBody MerchantTransferLookupRequest request) {
+        if (!StringUtils.hasLength(request.getPartnerId())) {
+            throw new MasterCardException("partnerId", "MISSING_REQUIRED_INPUT", "Missing required input", HttpStatus.BAD_REQUEST);
+        }
+        return merchantTransferLookupService.streamMerchantTransferList(request.getPartnerId(), request.getRefs(), request.getTransferIds())
+                .map(line -> line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Proxy for Merchant Retrieval/read by ID request
+     *
+     * @param partnerId  required
+     * @param transferId required
+     * @return
+     */
+    @GetMapping(value = "/byId", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> getById(@RequestParam String partnerId, @RequestParam String transferId) {
+        return mono(masterCardAsyncService.getById(partnerId, transferId));
+    }
+
+    /**
+     * Proxy for Merchant Retrieval/read by reference request
+     *
+     * @param partnerId required
+     * @param ref       required
+     * @return
+     */
+    @GetMapping(value = "/byRef", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> getByRef(@RequestParam String partnerId, @RequestParam String ref) {
+        return mono(masterCardAsyncService.getByRef(partnerId, ref));
+    }
+
+    /**
+     * Completes the request when MPQR API call completes, no thread waits meanwhile
+     *
+     * @param response
+     * @return
+     */
+    private static Mono<ResponseEntity<?>> mono(CompletableFuture<?> response) {
+        return Mono.fromFuture(response)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorMap(MasterCardException::from);
+    }
+}
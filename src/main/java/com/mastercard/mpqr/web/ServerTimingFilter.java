@@ -0,0 +1,100 @@
+package com.mastercard.mpqr.web;
+
+import com.mastercard.mpqr.config.ServerTimingConfiguration;
+import com.mastercard.mpqr.metrics.RequestTiming;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Times the phases of requests asking for it with the configured request header, and of a sample of
+ * the other requests. The breakdown is returned in the Server-Timing response header, see
+ * {@link ServerTimingAdvice}, and logged once the response is written.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Slf4j
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String TIMING_ATTRIBUTE = RequestTiming.class.getName();
+
+    ServerTimingConfiguration configuration;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!isTimed(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        RequestTiming timing = new RequestTiming();
+        request.setAttribute(TIMING_ATTRIBUTE, timing);
+        RequestTiming previous = RequestTiming.attach(timing);
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        completed(request, timing);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+                async = true;
+            }
+        } finally {
+            RequestTiming.detach(previous);
+            if (!async) {
+                completed(request, timing);
+            }
+        }
+    }
+
+    /**
+     * Async dispatches complete the request started by the first dispatch, which logs it
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+    private boolean isTimed(HttpServletRequest request) {
+        if (!configuration.isEnabled()) {
+            return false;
+        }
+        return request.getHeader(configuration.getRequestHeader()) != null
+                || configuration.getSampleRate() > 0 && ThreadLocalRandom.current().nextDouble() < configuration.getSampleRate();
+    }
+
+    private static void completed(HttpServletRequest request, RequestTiming timing) {
+        timing.lapFromMark(RequestTiming.Phase.SERIALIZE);
+        log.info("Server timing method={} uri={} {}", request.getMethod(), request.getRequestURI(), timing.toLog());
+    }
+}
@@ -0,0 +1,152 @@
+package com.mastercard.mpqr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mastercard.mpqr.service.AsyncHttpTransport;
+import com.mastercard.mpqr.service.MpqrTransport;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Retrievals and streamed lookups over the ASYNC transport against the MPQR API stub
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"com.mastercard.transport.type=ASYNC", "com.mastercard.bulk-lookup.stream-window=2"})
+@ActiveProfiles({"stub", "stub-test"})
+@AutoConfigureMockMvc
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AsyncTransportTests {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        StubTestProperties.register(registry, folder);
+    }
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Autowired
+    MpqrTransport mpqrTransport;
+
+    @Test
+    public void testRetrievals() throws Exception {
+        assertThat(mpqrTransport).isInstanceOf(AsyncHttpTransport.class);
+        String ref = RandomStringUtils.insecure().nextNumeric(40);
+        String id = create(ref);
+
+        performAsync(get("/byId").param("partnerId", PARTNER_ID).param("transferId", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.merchant_transfer.id", is(id)))
+                .andExpect(jsonPath("$.merchant_transfer.transfer_reference", is(ref)));
+        performAsync(get("/byRef").param("partnerId", PARTNER_ID).param("ref", ref))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.merchant_transfers.data.merchant_transfer[0].id", is(id)));
+        performAsync(get("/byId").param("partnerId", PARTNER_ID).param("transferId", "mtr_unknown"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.source", is("transfer_id")))
+                .andExpect(jsonPath("$.reason_code", is("RESOURCE_UNKNOWN")));
+    }
+
+    @Test
+    public void testStreamedLookup() throws Exception {
+        List<String> refs = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            refs.add(RandomStringUtils.insecure().nextNumeric(40));
+            ids.add(create(refs.get(i)));
+        }
+        refs.add("unknown");
+        ObjectNode lookup = mapper.createObjectNode().put("partnerId", PARTNER_ID);
+        refs.forEach(lookup.putArray("refs")::add);
+        ids.forEach(lookup.putArray("transfer_ids")::add);
+
+        MvcResult result = mvc.perform(post("/getMerchantTransferPaymentList/stream")
+                .contentType(MediaType.APPLICATION_JSON).accept("application/x-ndjson")
+                .content(mapper.writeValueAsString(lookup)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(10000);
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(11);
+        Set<Integer> indexes = new HashSet<>();
+        for (String line : lines) {
+            JsonNode item = mapper.readTree(line);
+            int index = item.get("index").asInt();
+            assertThat(indexes.add(index)).isTrue();
+            if (index < 5) {
+                assertThat(item.get("ref").asText()).isEqualTo(refs.get(index));
+                assertThat(item.get("status").asInt()).isEqualTo(200);
+                assertThat(item.get("response").get("merchant_transfers").get("data").get("merchant_transfer").get(0).get("id").asText())
+                        .isEqualTo(ids.get(index));
+            } else if (index == 5) {
+                assertThat(item.get("status").asInt()).isEqualTo(404);
+                assertThat(item.get("error").get("reason_code").asText()).isEqualTo("RESOURCE_UNKNOWN");
+            } else {
+                assertThat(item.get("transfer_id").asText()).isEqualTo(ids.get(index - 6));
+                assertThat(item.get("response").get("merchant_transfer").get("id").asText()).isEqualTo(ids.get(index - 6));
+            }
+        }
+        assertThat(indexes).hasSize(11);
+    }
+
+    private String create(String ref) throws Exception {
+        ObjectNode payment = (ObjectNode) mapper.readTree(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"));
+        ((ObjectNode) payment.get("merchant_payment_transfer")).put("transfer_reference", ref);
+        MvcResult created = performAsync(post("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(payment)))
+                .andExpect(status().isOk())
+                .andReturn();
+        return mapper.readTree(created.getResponse().getContentAsString()).get("merchant_transfer").get("id").asText();
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,125 @@
+package com.mastercard.mpqr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Batch payment endpoint against the MPQR API stub, results are streamed back as newline delimited json
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "com.mastercard.batch.window=2")
+@ActiveProfiles({"stub", "stub-test"})
+@AutoConfigureMockMvc
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchPaymentTests {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        StubTestProperties.register(registry, folder);
+    }
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Test
+    public void testBatchJsonArray() throws Exception {
+        List<String> refs = new ArrayList<>();
+        StringBuilder content = new StringBuilder("[");
+        for (int i = 0; i < 5; i++) {
+            String ref = RandomStringUtils.insecure().nextNumeric(40);
+            refs.add(ref);
+            content.append(i == 0 ? "" : ",").append(payment(ref));
+        }
+        content.append(']');
+
+        List<JsonNode> results = performBatch("application/json", content.toString());
+
+        assertThat(results).hasSize(5);
+        for (int i = 0; i < results.size(); i++) {
+            JsonNode result = results.get(i);
+            assertThat(result.get("index").asInt()).isEqualTo(i);
+            assertThat(result.get("status").asInt()).isEqualTo(200);
+            assertThat(result.get("transfer_reference").asText()).isEqualTo(refs.get(i));
+            assertThat(result.get("response").get("merchant_transfer").get("transfer_reference").asText()).isEqualTo(refs.get(i));
+        }
+    }
+
+    @Test
+    public void testBatchMalformedItems() throws Exception {
+        String first = RandomStringUtils.insecure().nextNumeric(40);
+        String third = RandomStringUtils.insecure().nextNumeric(40);
+        String content = payment(first) + "\nnull\n" + payment(third) + "\n{\"partnerId\":";
+
+        List<JsonNode> results = performBatch(APPLICATION_NDJSON_VALUE, content);
+
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(0).get("transfer_reference").asText()).isEqualTo(first);
+        assertThat(results.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(results.get(1).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+        assertThat(results.get(2).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(2).get("transfer_reference").asText()).isEqualTo(third);
+        assertThat(results.get(3).get("status").asInt()).isEqualTo(400);
+        assertThat(results.get(3).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+    }
+
+    /**
+     * Result lines of the batch sorted by index, they are written in completion order
+     */
+    private List<JsonNode> performBatch(String contentType, String content) throws Exception {
+        MvcResult result = mvc.perform(post("/merchantTransferPayment/batch")
+                .contentType(contentType).accept(APPLICATION_NDJSON_VALUE)
+                .content(content))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(10000);
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            lines.add(mapper.readTree(line));
+        }
+        lines.sort((a, b) -> a.get("index").asInt() - b.get("index").asInt());
+        return lines;
+    }
+
+    private String payment(String ref) throws IOException {
+        ObjectNode payment = (ObjectNode) mapper.readTree(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"));
+        ((ObjectNode) payment.get("merchant_payment_transfer")).put("transfer_reference", ref);
+        return mapper.writeValueAsString(payment);
+    }
+}
@@ -0,0 +1,181 @@
+package com.mastercard.mpqr;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.service.MasterCardAsyncService;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bulk lookup contract, lookups answered by a mocked service: failed lookups are reported
+ * per item in errors, lists over max-items are rejected and slow lookups time out alone
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"com.mastercard.bulk-lookup.max-items=3", "com.mastercard.bulk-lookup.timeout-millis=200"})
+@ActiveProfiles({"stub", "stub-test"})
+@AutoConfigureMockMvc
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkLookupTests {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        StubTestProperties.register(registry, folder);
+    }
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockitoBean
+    MasterCardAsyncService masterCardAsyncService;
+
+    @Test
+    public void testGetListWithErrors() throws Exception {
+        when(masterCardAsyncService.getByRef(PARTNER_ID, "ref-1")).thenReturn(CompletableFuture.completedFuture(byRef("ref-1", "id-1")));
+        when(masterCardAsyncService.getByRef(PARTNER_ID, "unknown")).thenReturn(failed(
+                new MasterCardException("transfer_reference", "RESOURCE_UNKNOWN", "Record not found", HttpStatus.NOT_FOUND)));
+        when(masterCardAsyncService.getById(PARTNER_ID, "id-2")).thenReturn(CompletableFuture.completedFuture(byId("ref-2", "id-2")));
+
+        performAsync(get("/getMerchantTransferPaymentList")
+                .param("partnerId", PARTNER_ID)
+                .param("ref", "ref-1", "unknown")
+                .param("transferId", "id-2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.merchant_transfers.item_count", is(2)))
+                .andExpect(jsonPath("$.merchant_transfers.data.merchant_transfer[*].id", contains("id-1", "id-2")))
+                .andExpect(jsonPath("$.errors", hasSize(1)))
+                .andExpect(jsonPath("$.errors[0].ref", is("unknown")))
+                .andExpect(jsonPath("$.errors[0].source", is("transfer_reference")))
+                .andExpect(jsonPath("$.errors[0].reason_code", is("RESOURCE_UNKNOWN")));
+    }
+
+    @Test
+    public void testPostListWithoutErrors() throws Exception {
+        when(masterCardAsyncService.getById(PARTNER_ID, "id-1")).thenReturn(CompletableFuture.completedFuture(byId("ref-1", "id-1")));
+        when(masterCardAsyncService.getById(PARTNER_ID, "id-2")).thenReturn(CompletableFuture.completedFuture(byId("ref-2", "id-2")));
+
+        performAsync(post("/getMerchantTransferPaymentList")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .content("{\"partnerId\":\"" + PARTNER_ID + "\",\"transfer_ids\":[\"id-1\",\"id-2\"]}"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.merchant_transfers.item_count", is(2)))
+                .andExpect(jsonPath("$.merchant_transfers.data.merchant_transfer[*].transfer_reference", contains("ref-1", "ref-2")))
+                .andExpect(jsonPath("$.errors").doesNotExist());
+    }
+
+    @Test
+    public void testPostListTooManyItems() throws Exception {
+        mvc.perform(post("/getMerchantTransferPaymentList")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .content("{\"partnerId\":\"" + PARTNER_ID + "\",\"refs\":[\"ref-1\",\"ref-2\"],\"transfer_ids\":[\"id-1\",\"id-2\"]}"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.source", is("refs")))
+                .andExpect(jsonPath("$.reason_code", is("INVALID_INPUT_LENGTH")));
+    }
+
+    @Test
+    public void testPostListMissedPartnerId() throws Exception {
+        mvc.perform(post("/getMerchantTransferPaymentList")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .content("{\"refs\":[\"ref-1\"]}"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.source", is("partnerId")))
+                .andExpect(jsonPath("$.reason_code", is("MISSING_REQUIRED_INPUT")));
+    }
+
+    @Test
+    public void testSlowLookupTimesOutAlone() throws Exception {
+        when(masterCardAsyncService.getByRef(PARTNER_ID, "ref-1")).thenReturn(CompletableFuture.completedFuture(byRef("ref-1", "id-1")));
+        when(masterCardAsyncService.getByRef(PARTNER_ID, "slow")).thenReturn(new CompletableFuture<>());
+
+        performAsync(get("/getMerchantTransferPaymentList")
+                .param("partnerId", PARTNER_ID)
+                .param("ref", "ref-1", "slow"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.merchant_transfers.item_count", is("1")))
+                .andExpect(jsonPath("$.merchant_transfers.data.merchant_transfer[0].id", is("id-1")))
+                .andExpect(jsonPath("$.errors", hasSize(1)))
+                .andExpect(jsonPath("$.errors[0].ref", is("slow")))
+                .andExpect(jsonPath("$.errors[0].reason_code", is("TIMEOUT")));
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+
+    private static Map<String, Object> transfer(String ref, String id) {
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("id", id);
+        transfer.put("transfer_reference", ref);
+        transfer.put("status", "APPROVED");
+        return transfer;
+    }
+
+    private static Map<String, Object> byId(String ref, String id) {
+        return Collections.singletonMap("merchant_transfer", transfer(ref, id));
+    }
+
+    private static Map<String, Object> byRef(String ref, String id) {
+        Map<String, Object> list = new LinkedHashMap<>();
+        list.put("resource_type", "list");
+        list.put("item_count", "1");
+        list.put("data", Collections.singletonMap("merchant_transfer", Collections.singletonList(transfer(ref, id))));
+        return Collections.singletonMap("merchant_transfers", list);
+    }
+
+    private static CompletableFuture<Map<String, Object>> failed(Throwable e) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+}
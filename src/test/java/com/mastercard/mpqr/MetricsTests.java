@@ -0,0 +1,133 @@
+package com.mastercard.mpqr;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Scrapes /metrics after calls to the MPQR API stub and checks the Prometheus text exposition format
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "com.mastercard.transport.type=POOLED")
+@ActiveProfiles({"stub", "stub-test"})
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MetricsTests {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        StubTestProperties.register(registry, folder);
+    }
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    static final String NAME = "[a-zA-Z_:][a-zA-Z0-9_:]*";
+
+    static final String LABEL = "[a-zA-Z_][a-zA-Z0-9_]*=\"(?:[^\"\\\\\\n]|\\\\[\"\\\\n])*\"";
+
+    static final Pattern SAMPLE = Pattern.compile("(" + NAME + ")(\\{" + LABEL + "(?:," + LABEL + ")*})? (-?[0-9.]+(?:E-?[0-9]+)?|NaN|[+-]Inf)");
+
+    static final Pattern HELP = Pattern.compile("# HELP (" + NAME + ") \\S.*");
+
+    static final Pattern TYPE = Pattern.compile("# TYPE (" + NAME + ") (counter|gauge|histogram|summary|untyped)");
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    public void testExpositionFormat() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            ResponseEntity<Map> response = restTemplate.getForEntity("/byRef?partnerId={partnerId}&ref={ref}", Map.class,
+                    PARTNER_ID, "unknown-ref-" + i);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        }
+
+        String metrics = scrape("mpqr_http_request_duration_seconds_count{endpoint=\"GET /byRef\"} 2");
+
+        Map<String, String> types = new HashMap<>();
+        Set<String> helps = new HashSet<>();
+        String family = null;
+        for (String line : metrics.split("\n", -1)) {
+            Matcher help = HELP.matcher(line);
+            Matcher type = TYPE.matcher(line);
+            Matcher sample = SAMPLE.matcher(line);
+            if (help.matches()) {
+                assertThat(helps.add(help.group(1))).as("HELP once per family: %s", line).isTrue();
+            } else if (type.matches()) {
+                assertThat(helps).as("HELP before TYPE: %s", line).contains(type.group(1));
+                assertThat(types.put(type.group(1), type.group(2))).as("TYPE once per family: %s", line).isNull();
+                family = type.group(1);
+            } else if (sample.matches()) {
+                String name = sample.group(1);
+                assertThat(family).as("sample after the TYPE of its family: %s", line).isNotNull();
+                if ("histogram".equals(types.get(family))) {
+                    assertThat(name).isIn(family + "_bucket", family + "_sum", family + "_count");
+                } else {
+                    assertThat(name).isEqualTo(family);
+                }
+                if (types.get(family).equals("counter")) {
+                    assertThat(name).endsWith("_total");
+                }
+            } else {
+                // the exposition ends with a line feed
+                assertThat(line).as("valid line").isEmpty();
+            }
+        }
+        assertThat(metrics).endsWith("\n");
+
+        assertThat(types).containsEntry("mpqr_http_request_duration_seconds", "histogram")
+                .containsEntry("mpqr_http_request_duration_seconds_quantile", "gauge")
+                .containsEntry("mpqr_upstream_duration_seconds", "histogram")
+                .containsEntry("mpqr_upstream_errors_total", "counter")
+                .containsEntry("mpqr_circuit_state", "gauge");
+        assertThat(metrics).contains(
+                "mpqr_http_request_duration_seconds_bucket{endpoint=\"GET /byRef\",le=\"+Inf\"} 2\n",
+                "mpqr_upstream_duration_seconds_count{operation=\"get_by_ref\"} 2\n",
+                "mpqr_upstream_errors_total{operation=\"get_by_ref\",reason_code=\"RESOURCE_UNKNOWN\"} 2\n",
+                "mpqr_circuit_state{state=\"CLOSED\"} 1\n");
+        for (String quantile : new String[]{"0.5", "0.9", "0.99", "0.999"}) {
+            assertThat(metrics).containsPattern("\nmpqr_http_request_duration_seconds_quantile\\{endpoint=\"GET /byRef\",quantile=\""
+                    + Pattern.quote(quantile) + "\"} [0-9.]+(E-?[0-9]+)?\n");
+        }
+    }
+
+    /**
+     * Requests are recorded once completed, which may be just after their response is received
+     */
+    private String scrape(String expected) throws Exception {
+        for (int i = 0; ; i++) {
+            ResponseEntity<String> response = restTemplate.getForEntity("/metrics", String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getHeaders().getContentType().toString()).isEqualTo("text/plain;version=0.0.4;charset=utf-8");
+            if (response.getBody().contains(expected) || i == 50) {
+                return response.getBody();
+            }
+            Thread.sleep(100);
+        }
+    }
+}
@@ -2,7 +2,7 @@ package com.mastercard.mpqr;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
 import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
 import lombok.AccessLevel;
@@ -17,9 +17,12 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.util.ResourceUtils;
 
-import javax.annotation.PostConstruct;
+import jakarta.annotation.PostConstruct;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -28,11 +31,13 @@ import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isIn;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -50,16 +55,16 @@ public class MpqrApplicationTests {
 
     @PostConstruct
     public void init() {
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        mapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+        mapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
     }
 
     @Test
     public void testMerchantTransferFundingAndPaymentMissedPartnerId() throws Exception {
         MerchantTransferFundingAndPaymentRequest request = getMerchantTransferFundingAndPaymentRequest();
         request.setPartnerId(null);
-        mvc.perform(post("/merchantTransferFundingAndPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferFundingAndPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isBadRequest());
@@ -69,12 +74,12 @@ public class MpqrApplicationTests {
     public void testMerchantTransferFundingAndPaymentWrongPartnerId() throws Exception {
         MerchantTransferFundingAndPaymentRequest request = getMerchantTransferFundingAndPaymentRequest();
         request.setPartnerId("test");
-        mvc.perform(post("/merchantTransferFundingAndPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferFundingAndPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isBadRequest())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.source", is("partnerId")))
                 .andExpect(jsonPath("$.reason_code", is("INVALID_INPUT_LENGTH")))
                 .andExpect(jsonPath("$.message", is("Invalid length")));
@@ -83,38 +88,48 @@ public class MpqrApplicationTests {
     @Test
     public void testMerchantTransferFundingAndPaymentOk() throws Exception {
         MerchantTransferFundingAndPaymentRequest request = getMerchantTransferFundingAndPaymentRequest();
-        String ref = RandomStringUtils.randomNumeric(40);
+        String ref = RandomStringUtils.insecure().nextNumeric(40);
         request.getMerchantTransfer().setTransferReference(ref);
-        mvc.perform(post("/merchantTransferFundingAndPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferFundingAndPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.merchant_transfer.transfer_reference", is(ref)));
     }
 
     @Test
     public void testMerchantTransferFundingAndPaymentDuplicate() throws Exception {
         MerchantTransferFundingAndPaymentRequest request = getMerchantTransferFundingAndPaymentRequest();
-        String ref = RandomStringUtils.randomNumeric(40);
+        String ref = RandomStringUtils.insecure().nextNumeric(40);
         request.getMerchantTransfer().setTransferReference(ref);
         //first call should succeed
-        mvc.perform(post("/merchantTransferFundingAndPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferFundingAndPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.merchant_transfer.transfer_reference", is(ref)));
 
-        //second will fail
-        mvc.perform(post("/merchantTransferFundingAndPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        //retry of the same request is replayed
+        performAsync(post("/merchantTransferFundingAndPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(request)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.merchant_transfer.transfer_reference", is(ref)));
+
+        //different request with the same reference will fail
+        request.getMerchantTransfer().getTransferAmount().setValue("19");
+        performAsync(post("/merchantTransferFundingAndPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isConflict())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.source", is("transfer_reference")))
                 .andExpect(jsonPath("$.reason_code", is("RESOURCE_ERROR")))
                 .andExpect(jsonPath("$.message", is("Duplicate value")));
@@ -124,8 +139,8 @@ public class MpqrApplicationTests {
     public void testMerchantTransferPaymentMissedPartnerId() throws Exception {
         MerchantTransferPaymentRequest request = getMerchantTransferPaymentRequest();
         request.setPartnerId(null);
-        mvc.perform(post("/merchantTransferPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isBadRequest());
@@ -135,12 +150,12 @@ public class MpqrApplicationTests {
     public void testMerchantTransferPaymentWrongPartnerId() throws Exception {
         MerchantTransferPaymentRequest request = getMerchantTransferPaymentRequest();
         request.setPartnerId("test");
-        mvc.perform(post("/merchantTransferPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isBadRequest())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.source", is("partnerId")))
                 .andExpect(jsonPath("$.reason_code", is("INVALID_INPUT_LENGTH")))
                 .andExpect(jsonPath("$.message", is("Invalid length")));
@@ -149,38 +164,48 @@ public class MpqrApplicationTests {
     @Test
     public void testMerchantTransferPaymentOk() throws Exception {
         MerchantTransferPaymentRequest request = getMerchantTransferPaymentRequest();
-        String ref = RandomStringUtils.randomNumeric(40);
+        String ref = RandomStringUtils.insecure().nextNumeric(40);
         request.getMerchantPaymentTransfer().setTransferReference(ref);
-        mvc.perform(post("/merchantTransferPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.merchant_transfer.transfer_reference", is(ref)));
     }
 
     @Test
     public void testMerchantTransferPaymentDuplicate() throws Exception {
         MerchantTransferPaymentRequest request = getMerchantTransferPaymentRequest();
-        String ref = RandomStringUtils.randomNumeric(40);
+        String ref = RandomStringUtils.insecure().nextNumeric(40);
         request.getMerchantPaymentTransfer().setTransferReference(ref);
         //first call should succeed
-        mvc.perform(post("/merchantTransferPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        performAsync(post("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(request)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.merchant_transfer.transfer_reference", is(ref)));
+
+        //retry of the same request is replayed
+        performAsync(post("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.merchant_transfer.transfer_reference", is(ref)));
 
-        //second will fail
-        mvc.perform(post("/merchantTransferPayment")
-                .contentType(MediaType.APPLICATION_JSON_UTF8).accept(MediaType.APPLICATION_JSON_UTF8)
+        //different request with the same reference will fail
+        request.getMerchantPaymentTransfer().setAmount("45");
+        performAsync(post("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(request)))
                 .andDo(print())
                 .andExpect(status().isConflict())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.source", is("transfer_reference")))
                 .andExpect(jsonPath("$.reason_code", is("RESOURCE_ERROR")))
                 .andExpect(jsonPath("$.message", is("Duplicate value")));
@@ -203,11 +228,11 @@ public class MpqrApplicationTests {
 
     @Test
     public void testGetByRefInvalidRef() throws Exception {
-        mvc.perform(get("/byRef")
+        performAsync(get("/byRef")
                 .param("partnerId", "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo")
                 .param("ref", "xxx"))
                 .andDo(print())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.source", is("transfer_reference")))
                 .andExpect(jsonPath("$.reason_code", is("RESOURCE_UNKNOWN")))
                 .andExpect(jsonPath("$.message", is("Record not found")));
@@ -230,17 +255,24 @@ public class MpqrApplicationTests {
     
     @Test
     public void testGetByIdInvalidId() throws Exception {
-        mvc.perform(get("/byId")
+        performAsync(get("/byId")
                 .param("partnerId", "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo")
                 .param("transferId", "xxx"))
                 .andDo(print())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.source", is("transfer_id")))
                 .andExpect(jsonPath("$.reason_code", is("RESOURCE_UNKNOWN")))
                 .andExpect(jsonPath("$.message", is("Record not found")));
     }
 
 
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+
     private MerchantTransferFundingAndPaymentRequest getMerchantTransferFundingAndPaymentRequest() throws IOException {
         return mapper.readValue(getFile("/MerchantTransferFundingAndPaymentRequest.json"), MerchantTransferFundingAndPaymentRequest.class);
     }
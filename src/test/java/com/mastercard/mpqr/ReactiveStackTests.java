@@ -0,0 +1,196 @@
+package com.mastercard.mpqr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mastercard.mpqr.service.AsyncHttpTransport;
+import com.mastercard.mpqr.service.MpqrTransport;
+import com.mastercard.mpqr.web.MasterCardController;
+import com.mastercard.mpqr.web.ReactiveMasterCardController;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Endpoints served by WebFlux on Netty with the reactive profile, calling the MPQR API stub over the ASYNC transport
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"com.mastercard.bulk-lookup.stream-window=2", "com.mastercard.batch.window=2"})
+@ActiveProfiles({"stub", "stub-test", "reactive"})
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReactiveStackTests {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        StubTestProperties.register(registry, folder);
+    }
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Autowired
+    MpqrTransport mpqrTransport;
+
+    @Autowired
+    ReactiveWebServerApplicationContext context;
+
+    @Test
+    public void testRetrievals() throws Exception {
+        assertThat(context.getWebServer()).isInstanceOf(NettyWebServer.class);
+        assertThat(mpqrTransport).isInstanceOf(AsyncHttpTransport.class);
+        assertThat(context.getBeansOfType(ReactiveMasterCardController.class)).hasSize(1);
+        assertThat(context.getBeansOfType(MasterCardController.class)).isEmpty();
+        String ref = RandomStringUtils.insecure().nextNumeric(40);
+        String id = create(ref);
+
+        client.get().uri("/byId?partnerId={partnerId}&transferId={id}", PARTNER_ID, id).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.merchant_transfer.id").isEqualTo(id)
+                .jsonPath("$.merchant_transfer.transfer_reference").isEqualTo(ref);
+        client.get().uri("/byRef?partnerId={partnerId}&ref={ref}", PARTNER_ID, ref).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.merchant_transfers.data.merchant_transfer[0].id").isEqualTo(id);
+        client.get().uri("/byId?partnerId={partnerId}&transferId=mtr_unknown", PARTNER_ID).exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.source").isEqualTo("transfer_id")
+                .jsonPath("$.reason_code").isEqualTo("RESOURCE_UNKNOWN");
+    }
+
+    @Test
+    public void testStreamedLookup() throws Exception {
+        List<String> refs = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            refs.add(RandomStringUtils.insecure().nextNumeric(40));
+            ids.add(create(refs.get(i)));
+        }
+        refs.add("unknown");
+        ObjectNode lookup = mapper.createObjectNode().put("partnerId", PARTNER_ID);
+        refs.forEach(lookup.putArray("refs")::add);
+        ids.forEach(lookup.putArray("transfer_ids")::add);
+
+        List<JsonNode> lines = post("/getMerchantTransferPaymentList/stream", MediaType.APPLICATION_JSON_VALUE,
+                mapper.writeValueAsString(lookup));
+
+        assertThat(lines).hasSize(11);
+        Set<Integer> indexes = new HashSet<>();
+        for (JsonNode item : lines) {
+            int index = item.get("index").asInt();
+            assertThat(indexes.add(index)).isTrue();
+            if (index < 5) {
+                assertThat(item.get("ref").asText()).isEqualTo(refs.get(index));
+                assertThat(item.get("status").asInt()).isEqualTo(200);
+                assertThat(item.get("response").get("merchant_transfers").get("data").get("merchant_transfer").get(0).get("id").asText())
+                        .isEqualTo(ids.get(index));
+            } else if (index == 5) {
+                assertThat(item.get("status").asInt()).isEqualTo(404);
+                assertThat(item.get("error").get("reason_code").asText()).isEqualTo("RESOURCE_UNKNOWN");
+            } else {
+                assertThat(item.get("transfer_id").asText()).isEqualTo(ids.get(index - 6));
+                assertThat(item.get("response").get("merchant_transfer").get("id").asText()).isEqualTo(ids.get(index - 6));
+            }
+        }
+    }
+
+    @Test
+    public void testStreamedLookupMissedPartnerId() {
+        client.post().uri("/getMerchantTransferPaymentList/stream")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.valueOf(APPLICATION_NDJSON_VALUE), MediaType.APPLICATION_JSON)
+                .bodyValue("{\"refs\":[\"ref-1\"]}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.source").isEqualTo("partnerId")
+                .jsonPath("$.reason_code").isEqualTo("MISSING_REQUIRED_INPUT");
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        String first = RandomStringUtils.insecure().nextNumeric(40);
+        String third = RandomStringUtils.insecure().nextNumeric(40);
+        String content = payment(first) + "\nnull\n" + payment(third) + "\n{\"partnerId\":";
+
+        List<JsonNode> results = post("/merchantTransferPayment/batch", APPLICATION_NDJSON_VALUE, content);
+        results.sort((a, b) -> a.get("index").asInt() - b.get("index").asInt());
+
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(0).get("response").get("merchant_transfer").get("transfer_reference").asText()).isEqualTo(first);
+        assertThat(results.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(results.get(1).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+        assertThat(results.get(2).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(2).get("transfer_reference").asText()).isEqualTo(third);
+        assertThat(results.get(3).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+    }
+
+    private String create(String ref) throws Exception {
+        byte[] created = client.post().uri("/merchantTransferPayment")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .bodyValue(payment(ref))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+        return mapper.readTree(created).get("merchant_transfer").get("id").asText();
+    }
+
+    /**
+     * Newline delimited json lines of the response, in the order they were written
+     */
+    private List<JsonNode> post(String uri, String contentType, String content) throws Exception {
+        String body = client.post().uri(uri)
+                .contentType(MediaType.valueOf(contentType)).accept(MediaType.valueOf(APPLICATION_NDJSON_VALUE))
+                .bodyValue(content)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON_VALUE)
+                .expectBody(String.class).returnResult().getResponseBody();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(mapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private String payment(String ref) throws Exception {
+        ObjectNode payment = (ObjectNode) mapper.readTree(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"));
+        ((ObjectNode) payment.get("merchant_payment_transfer")).put("transfer_reference", ref);
+        return mapper.writeValueAsString(payment);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mastercard.mpqr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Server-Timing breakdown of requests served by Tomcat, whose MPQR API calls complete on the threads
+ * of the ASYNC transport after the request thread has returned
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "com.mastercard.transport.type=ASYNC")
+@ActiveProfiles({"stub", "stub-test"})
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ServerTimingTests {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        StubTestProperties.register(registry, folder);
+    }
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    static final String DURATION = ";dur=\\d+\\.\\d{3}";
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Test
+    public void testTimedCreation() throws Exception {
+        ResponseEntity<Map> response = restTemplate.exchange("/merchantTransferPayment", HttpMethod.POST,
+                new HttpEntity<>(payment(), headers(true)), Map.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().get("Server-Timing")).singleElement().asString()
+                .matches("deserialize" + DURATION + ", flatten" + DURATION + ", sign" + DURATION + ", upstream" + DURATION
+                        + ", app" + DURATION);
+    }
+
+    @Test
+    public void testTimedRetrieval() {
+        ResponseEntity<Map> response = restTemplate.exchange("/byRef?partnerId={partnerId}&ref={ref}", HttpMethod.GET,
+                new HttpEntity<>(headers(true)), Map.class, PARTNER_ID, "unknown-ref");
+
+        // errors of the MPQR API call are timed too
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getHeaders().get("Server-Timing")).singleElement().asString()
+                .matches("sign" + DURATION + ", upstream" + DURATION + ", app" + DURATION);
+    }
+
+    @Test
+    public void testUntimedRequests() throws Exception {
+        ResponseEntity<Map> created = restTemplate.exchange("/merchantTransferPayment", HttpMethod.POST,
+                new HttpEntity<>(payment(), headers(false)), Map.class);
+        ResponseEntity<Map> retrieved = restTemplate.exchange("/byRef?partnerId={partnerId}&ref={ref}", HttpMethod.GET,
+                new HttpEntity<>(headers(false)), Map.class, PARTNER_ID, "unknown-ref");
+
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(created.getHeaders().containsKey("Server-Timing")).isFalse();
+        assertThat(retrieved.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(retrieved.getHeaders().containsKey("Server-Timing")).isFalse();
+    }
+
+    private static HttpHeaders headers(boolean timed) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (timed) {
+            headers.add("X-Server-Timing", "1");
+        }
+        return headers;
+    }
+
+    private String payment() throws Exception {
+        ObjectNode payment = (ObjectNode) mapper.readTree(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"));
+        ((ObjectNode) payment.get("merchant_payment_transfer")).put("transfer_reference", RandomStringUtils.insecure().nextNumeric(40));
+        return mapper.writeValueAsString(payment);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mastercard.mpqr;
+
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.util.TestSocketUtils;
+
+import java.io.File;
+
+/**
+ * Properties of each test context against the MPQR API stub, see /resources/application-stub-test.yml.
+ * The stub listens on a free port, and the ledger, audit and idempotency files go to a folder of the
+ * test class, deleted after it, so that contexts neither collide nor read the files of previous runs.
+ */
+final class StubTestProperties {
+
+    private StubTestProperties() {
+    }
+
+    /**
+     * @param registry of the test context, from a @DynamicPropertySource method
+     * @param folder   class rule of the test class
+     */
+    static void register(DynamicPropertyRegistry registry, TemporaryFolder folder) {
+        int port = TestSocketUtils.findAvailableTcpPort();
+        File root = folder.getRoot();
+        registry.add("com.mastercard.stub.port", () -> port);
+        registry.add("com.mastercard.transport.base-url", () -> "http://localhost:" + port);
+        registry.add("com.mastercard.ledger.directory", () -> new File(root, "ledger").getPath());
+        registry.add("com.mastercard.audit.directory", () -> new File(root, "audit").getPath());
+        registry.add("com.mastercard.idempotency.journal-file", () -> new File(root, "idempotency.log").getPath());
+    }
+}
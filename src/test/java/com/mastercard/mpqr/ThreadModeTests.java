@@ -0,0 +1,82 @@
+package com.mastercard.mpqr;
+
+import com.mastercard.mpqr.config.ThreadConfiguration;
+import com.mastercard.mpqr.config.BoundedExecutor;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.catalina.connector.Connector;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the application in VIRTUAL mode against the MPQR API stub, requests and MPQR API calls run on virtual threads
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "com.mastercard.threads.mode=VIRTUAL", "com.mastercard.transport.type=POOLED"})
+@ActiveProfiles({"stub", "stub-test"})
+@DirtiesContext
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ThreadModeTests {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        StubTestProperties.register(registry, folder);
+    }
+
+    @Autowired
+    ThreadConfiguration threadConfiguration;
+
+    @Autowired
+    ExecutorService outboundExecutor;
+
+    @Autowired
+    ServletWebServerApplicationContext context;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        assertThat(threadConfiguration.isVirtual()).isTrue();
+        assertThat(outboundExecutor).isInstanceOf(BoundedExecutor.class);
+        Connector connector = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector();
+        Executor executor = connector.getProtocolHandler().getExecutor();
+        assertThat(executor).isInstanceOf(ExecutorService.class);
+        Future<Boolean> virtual = ((ExecutorService) executor).submit(() -> Thread.currentThread().isVirtual());
+        assertThat(virtual.get()).isTrue();
+
+        assertRetrievalServed();
+    }
+
+    private void assertRetrievalServed() {
+        ResponseEntity<Map> response = restTemplate.getForEntity("/byRef?partnerId={partnerId}&ref={ref}", Map.class,
+                "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo", "unknown-ref");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getBody().get("reason_code")).isEqualTo("RESOURCE_UNKNOWN");
+    }
+}
@@ -0,0 +1,83 @@
+package com.mastercard.mpqr.audit;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mastercard.mpqr.config.AuditConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AuditJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    ObjectMapper mapper;
+
+    AuditConfiguration configuration;
+
+    @Before
+    public void init() {
+        mapper = new ObjectMapper();
+        mapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        configuration = new AuditConfiguration();
+        configuration.setDirectory(folder.getRoot().getPath());
+        configuration.setSegmentBytes(65536);
+    }
+
+    @Test
+    public void testRecordsAreMaskedAndReadBack() throws Exception {
+        MerchantTransferPaymentRequest request = mapper.readValue(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"),
+                MerchantTransferPaymentRequest.class);
+        AuditJournal journal = new AuditJournal(configuration, mapper);
+        journal.start();
+        journal.record(UpstreamOperation.MERCHANT_TRANSFER_PAYMENT, request.getPartnerId(), "ref", request,
+                () -> Collections.singletonMap("id", "tx"));
+        catchThrowable(() -> journal.record(UpstreamOperation.GET_BY_ID, request.getPartnerId(), "tx", null, () -> {
+            throw new MasterCardException("transfer_id", "RESOURCE_UNKNOWN", "Record not found", HttpStatus.NOT_FOUND);
+        }));
+        journal.stop();
+
+        List<ObjectNode> records = new ArrayList<>();
+        for (Path segment : AuditJournal.segments(folder.getRoot().toPath())) {
+            AuditJournalReader.read(segment, records::add);
+        }
+
+        assertThat(records).hasSize(2);
+        String payment = records.get(0).toString();
+        assertThat(records.get(0).get("operation").asText()).isEqualTo("merchant_transfer_payment");
+        assertThat(records.get(0).at("/request/merchant_payment_transfer/sender_account_uri").asText()).isEqualTo("pan:550967******0187");
+        assertThat(records.get(0).at("/response/id").asText()).isEqualTo("tx");
+        assertThat(payment).doesNotContain("5509670000000187");
+        assertThat(payment).doesNotContain("cvc");
+        assertThat(payment).doesNotContain(request.getMerchantPaymentTransfer().getSender().getLastName());
+        assertThat(records.get(1).get("status").asInt()).isEqualTo(404);
+        assertThat(records.get(1).get("reason_code").asText()).isEqualTo("RESOURCE_UNKNOWN");
+        assertThat(journal.recordedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAccountUriMasking() {
+        assertThat(AuditMasking.maskAccountUri("pan:5184680430000006;exp=2018-08;cvc=123")).isEqualTo("pan:518468******0006");
+        assertThat(AuditMasking.maskAccountUri("ewallet:jane@example.com")).isEqualTo("ewallet:****.com");
+    }
+}
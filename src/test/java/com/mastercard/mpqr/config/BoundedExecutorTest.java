@@ -0,0 +1,39 @@
+package com.mastercard.mpqr.config;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class BoundedExecutorTest {
+
+    @Test
+    public void testBoundedExecutorRejectsOverCapacity() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor("bounded-test-", 2);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> await(release));
+        executor.execute(() -> await(release));
+
+        assertThat(executor.getActiveCount()).isEqualTo(2);
+        assertThat(catchThrowable(() -> executor.execute(() -> {
+        }))).isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.isTerminated()).isTrue();
+        assertThat(executor.getActiveCount()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
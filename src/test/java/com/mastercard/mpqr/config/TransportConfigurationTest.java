@@ -0,0 +1,226 @@
+package com.mastercard.mpqr.config;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import com.mastercard.mpqr.service.AsyncHttpTransport;
+import com.mastercard.mpqr.service.OAuthSigner;
+import com.mastercard.mpqr.service.PooledHttpTransport.PartnerRoute;
+import com.mastercard.mpqr.service.TransferResponses;
+import com.mastercard.mpqr.stub.MpqrStubServer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * ASYNC transport built by the configuration, calling the MPQR API stub
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransportConfigurationTest {
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    static PrivateKey privateKey;
+
+    ObjectMapper mapper;
+
+    StubConfiguration stubConfiguration;
+
+    MpqrStubServer stub;
+
+    MasterCardConfiguration masterCardConfiguration;
+
+    TransportConfiguration configuration;
+
+    ScheduledExecutorService scheduler;
+
+    List<AsyncHttpTransport> transports = new ArrayList<>();
+
+    @BeforeClass
+    public static void generateKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        privateKey = generator.generateKeyPair().getPrivate();
+    }
+
+    @Before
+    public void init() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        stubConfiguration = new StubConfiguration();
+        stubConfiguration.setPort(freePort());
+        stubConfiguration.setThreads(4);
+        stubConfiguration.setMedianLatencyMillis(0);
+        stubConfiguration.setP99LatencyMillis(0);
+        stubConfiguration.setStallMillis(2000);
+        stub = new MpqrStubServer(stubConfiguration);
+        stub.start();
+        masterCardConfiguration = new MasterCardConfiguration();
+        masterCardConfiguration.setConnectTimeoutMillis(300);
+        masterCardConfiguration.setReadTimeoutMillis(300);
+        configuration = new TransportConfiguration();
+        configuration.setType(TransportConfiguration.Type.ASYNC);
+        configuration.setIoThreads(1);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void close() throws Exception {
+        for (AsyncHttpTransport transport : transports) {
+            transport.close();
+        }
+        scheduler.shutdownNow();
+        stub.stop();
+    }
+
+    @Test
+    public void testCreateAndRetrieve() throws Exception {
+        AsyncHttpTransport transport = open(stubConfiguration.getPort());
+        MerchantTransferPaymentRequest request = mapper.readValue(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"),
+                MerchantTransferPaymentRequest.class);
+        request.setPartnerId(PARTNER_ID);
+
+        Map<String, Object> created = transport.merchantTransferPaymentAsync(request).get(5, TimeUnit.SECONDS);
+        Object id = TransferResponses.findValue(created, "id");
+        String ref = request.getMerchantPaymentTransfer().getTransferReference();
+        assertThat(id).isNotNull();
+        assertThat(TransferResponses.findValue(created, "transfer_reference")).isEqualTo(ref);
+
+        Map<String, Object> byId = transport.getByIdAsync(PARTNER_ID, id.toString()).get(5, TimeUnit.SECONDS);
+        assertThat(TransferResponses.findValue(byId, "id")).isEqualTo(id);
+        Map<String, Object> byRef = transport.getByRefAsync(PARTNER_ID, ref).get(5, TimeUnit.SECONDS);
+        assertThat(TransferResponses.findValue(byRef, "item_count")).isEqualTo("1");
+        assertThat(TransferResponses.findValue(byRef, "id")).isEqualTo(id);
+        // the blocking calls wait for the same futures
+        assertThat(transport.getById(PARTNER_ID, id.toString())).isEqualTo(byId);
+
+        MasterCardException duplicate = failure(transport.merchantTransferPaymentAsync(request));
+        assertThat(duplicate.getHttpStatus()).isEqualTo(409);
+        assertThat(duplicate.getReasonCode()).isEqualTo("RESOURCE_ERROR");
+    }
+
+    @Test
+    public void testErrorEnvelope() {
+        AsyncHttpTransport transport = open(stubConfiguration.getPort());
+
+        MasterCardException e = failure(transport.getByIdAsync(PARTNER_ID, "mtr_unknown"));
+        assertThat(e.getHttpStatus()).isEqualTo(404);
+        assertThat(e.getSource()).isEqualTo("transfer_id");
+        assertThat(e.getReasonCode()).isEqualTo("RESOURCE_UNKNOWN");
+        assertThat(e.getMessage()).isEqualTo("Record not found");
+
+        // a transfer id leaving its path segment is not sent
+        e = failure(transport.getByIdAsync(PARTNER_ID, "../../" + PARTNER_ID + "/merchant/transfers"));
+        assertThat(e.getHttpStatus()).isEqualTo(400);
+        assertThat(e.getSource()).isEqualTo("transferId");
+        assertThat(e.getReasonCode()).isEqualTo("INVALID_INPUT_VALUE");
+
+        stubConfiguration.setErrorRate(1);
+        e = failure(transport.getByRefAsync(PARTNER_ID, "ref-1"));
+        assertThat(e.getHttpStatus()).isEqualTo(500);
+        assertThat(e.getReasonCode()).isEqualTo("SYSTEM_ERROR");
+    }
+
+    @Test
+    public void testReadTimeout() {
+        AsyncHttpTransport transport = open(stubConfiguration.getPort());
+        stubConfiguration.setStallRate(1);
+
+        MasterCardException e = failure(transport.getByIdAsync(PARTNER_ID, "mtr_1"));
+        assertThat(e.getHttpStatus()).isEqualTo(504);
+        assertThat(e.getReasonCode()).isNull();
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        // a listener with a full backlog drops further connection attempts
+        try (ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            List<Socket> backlog = new ArrayList<>();
+            try {
+                for (int i = 0; i < 8; i++) {
+                    Socket socket = new Socket();
+                    backlog.add(socket);
+                    try {
+                        socket.connect(listener.getLocalSocketAddress(), 200);
+                    } catch (SocketTimeoutException full) {
+                        break;
+                    }
+                }
+                AsyncHttpTransport transport = open(listener.getLocalPort());
+
+                MasterCardException e = failure(transport.getByIdAsync(PARTNER_ID, "mtr_1"));
+                assertThat(e.getHttpStatus()).isEqualTo(504);
+            } finally {
+                for (Socket socket : backlog) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLeaseTimeout() {
+        configuration.setMaxConnections(1);
+        configuration.setMaxConnectionsPerRoute(1);
+        configuration.setConnectionRequestTimeoutMillis(100);
+        masterCardConfiguration.setReadTimeoutMillis(5000);
+        stubConfiguration.setStallMillis(3000);
+        AsyncHttpTransport transport = open(stubConfiguration.getPort());
+        stubConfiguration.setStallRate(1);
+
+        CompletableFuture<Map<String, Object>> first = transport.getByIdAsync(PARTNER_ID, "mtr_1");
+        // the only connection is held by the stalled call, checked for lease timeouts every second
+        MasterCardException e = failure(transport.getByIdAsync(PARTNER_ID, "mtr_2"));
+        assertThat(e.getHttpStatus()).isEqualTo(503);
+        assertThat(failure(first).getHttpStatus()).isEqualTo(404);
+    }
+
+    private AsyncHttpTransport open(int port) {
+        try {
+            PartnerRoute route = new PartnerRoute(URI.create("http://localhost:" + port), new OAuthSigner("consumer-key", privateKey));
+            AsyncHttpTransport transport = configuration.asyncTransport(masterCardConfiguration, mapper, scheduler, route,
+                    Collections.emptyMap());
+            transports.add(transport);
+            return transport;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MasterCardException failure(CompletableFuture<Map<String, Object>> future) {
+        Throwable e = catchThrowable(() -> future.get(10, TimeUnit.SECONDS));
+        assertThat(e).hasCauseInstanceOf(MasterCardException.class);
+        return (MasterCardException) e.getCause();
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
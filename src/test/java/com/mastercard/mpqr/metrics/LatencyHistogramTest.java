@@ -0,0 +1,37 @@
+package com.mastercard.mpqr.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int index = LatencyHistogram.indexOf(micros);
+            assertThat(LatencyHistogram.upperBoundOf(index)).isGreaterThanOrEqualTo(micros);
+            if (index > 0) {
+                assertThat(LatencyHistogram.upperBoundOf(index - 1)).isLessThan(micros);
+            }
+        }
+    }
+
+    @Test
+    public void quantilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(1000);
+        assertThat(snapshot.getSumSeconds()).isCloseTo(500.5, within(1e-9));
+        assertThat(snapshot.quantileSeconds(.5)).isCloseTo(.5, within(.5 * .125));
+        assertThat(snapshot.quantileSeconds(.99)).isCloseTo(.99, within(.99 * .125));
+        assertThat(snapshot.countAtOrBelow(.1)).isBetween(85L, 100L);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mastercard.mpqr.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestTimingTest {
+
+    @After
+    public void detach() {
+        RequestTiming.detach(null);
+    }
+
+    @Test
+    public void untimedRequestsRecordNothing() {
+        assertThat(RequestTiming.start()).isZero();
+        assertThat(RequestTiming.lap(RequestTiming.Phase.UPSTREAM, System.nanoTime())).isZero();
+        Supplier<String> task = () -> "transfer";
+        assertThat(RequestTiming.propagate(task)).isSameAs(task);
+    }
+
+    @Test
+    public void headerListsRecordedPhasesInOrder() {
+        RequestTiming timing = new RequestTiming();
+        timing.add(RequestTiming.Phase.UPSTREAM, TimeUnit.MICROSECONDS.toNanos(12345));
+        timing.add(RequestTiming.Phase.DESERIALIZE, TimeUnit.MICROSECONDS.toNanos(250));
+
+        assertThat(timing.toHeader()).matches("deserialize;dur=0\\.250, upstream;dur=12\\.345, app;dur=\\d+\\.\\d{3}");
+        assertThat(timing.toLog()).matches("queue_ms=0\\.000 deserialize_ms=0\\.250 flatten_ms=0\\.000 sign_ms=0\\.000 "
+                + "upstream_ms=12\\.345 serialize_ms=0\\.000 total_ms=\\d+\\.\\d{3}");
+    }
+
+    @Test
+    public void phasesLappedOnTheThreadsTheRequestMovesTo() throws Exception {
+        RequestTiming timing = new RequestTiming();
+        RequestTiming.attach(timing);
+        long start = RequestTiming.start();
+        assertThat(start).isPositive();
+
+        Supplier<Long> task = RequestTiming.propagate(() -> RequestTiming.lap(RequestTiming.Phase.QUEUE, start));
+        long end = CompletableFuture.supplyAsync(task).get(5, TimeUnit.SECONDS);
+
+        assertThat(timing.nanos(RequestTiming.Phase.QUEUE)).isEqualTo(end - start);
+        assertThat(RequestTiming.current()).isSameAs(timing);
+    }
+
+    @Test
+    public void markLappedOnce() {
+        RequestTiming timing = new RequestTiming();
+        timing.lapFromMark(RequestTiming.Phase.SERIALIZE);
+        assertThat(timing.nanos(RequestTiming.Phase.SERIALIZE)).isZero();
+
+        timing.mark();
+        timing.lapFromMark(RequestTiming.Phase.SERIALIZE);
+        long serialized = timing.nanos(RequestTiming.Phase.SERIALIZE);
+        timing.lapFromMark(RequestTiming.Phase.SERIALIZE);
+        assertThat(timing.nanos(RequestTiming.Phase.SERIALIZE)).isEqualTo(serialized);
+    }
+}
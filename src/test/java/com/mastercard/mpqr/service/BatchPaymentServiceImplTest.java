@@ -0,0 +1,279 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.mastercard.mpqr.config.BatchConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchPaymentServiceImplTest {
+
+    ObjectMapper mapper;
+
+    BatchConfiguration configuration;
+
+    ExecutorService batchExecutor;
+
+    BlockingQueue<Call> calls;
+
+    BlockingQueue<String> lines;
+
+    boolean completeImmediately;
+
+    BatchPaymentServiceImpl service;
+
+    @Before
+    public void init() {
+        mapper = new ObjectMapper();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        configuration = new BatchConfiguration();
+        configuration.setWindow(2);
+        batchExecutor = configuration.batchExecutor();
+        calls = new LinkedBlockingQueue<>();
+        lines = new LinkedBlockingQueue<>();
+        service = new BatchPaymentServiceImpl(new RecordingService(), mapper, configuration, batchExecutor);
+    }
+
+    @After
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testWindowAndCompletionOrder() throws Exception {
+        CompletableFuture<Void> batch = service.merchantTransferPayments(batch("[", ",", "]", "r0", "r1", "r2", "r3"), lines::add);
+
+        Call first = calls.poll(5, TimeUnit.SECONDS);
+        Call second = calls.poll(5, TimeUnit.SECONDS);
+        assertThat(first.ref).isEqualTo("r0");
+        assertThat(second.ref).isEqualTo("r1");
+        // the window is full until a payment completes
+        assertThat(calls.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+        second.complete();
+        assertThat(line().get("index").asInt()).isEqualTo(1);
+        Call third = calls.poll(5, TimeUnit.SECONDS);
+        assertThat(third.ref).isEqualTo("r2");
+        assertThat(calls.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+        first.complete();
+        assertThat(line().get("index").asInt()).isEqualTo(0);
+        Call fourth = calls.poll(5, TimeUnit.SECONDS);
+        fourth.complete();
+        third.complete();
+        batch.get(5, TimeUnit.SECONDS);
+
+        List<Integer> remaining = new ArrayList<>();
+        for (String line; (line = lines.poll()) != null; ) {
+            JsonNode result = mapper.readTree(line);
+            assertThat(result.get("status").asInt()).isEqualTo(200);
+            assertThat(result.get("response").get("merchant_transfer").get("transfer_reference").asText())
+                    .isEqualTo(result.get("transfer_reference").asText());
+            remaining.add(result.get("index").asInt());
+        }
+        assertThat(remaining).containsOnly(2, 3);
+    }
+
+    @Test
+    public void testMalformedItemsFailAlone() throws Exception {
+        completeImmediately = true;
+        String content = "{\"partnerId\":\"ptnr_1234567890\",\"merchant_payment_transfer\":{\"transfer_reference\":\"r0\"}}\n"
+                + "null\n"
+                + "{\"partnerId\":\"ptnr_1234567890\",\"merchant_payment_transfer\":{\"transfer_reference\":\"r2\"}}\n"
+                + "{\"partnerId\":";
+
+        service.merchantTransferPayments(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), lines::add)
+                .get(5, TimeUnit.SECONDS);
+
+        List<JsonNode> results = new ArrayList<>();
+        for (String line; (line = lines.poll()) != null; ) {
+            results.add(mapper.readTree(line));
+        }
+        results.sort((a, b) -> a.get("index").asInt() - b.get("index").asInt());
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(results.get(1).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+        assertThat(results.get(2).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(3).get("status").asInt()).isEqualTo(400);
+        assertThat(results.get(3).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+    }
+
+    @Test
+    public void testStreamedBatchReadAsItArrives() throws Exception {
+        byte[] content = batch("[", " ,\n", "] trailing", "r0", "r1", "r2", "r3").readAllBytes();
+        Sinks.Many<DataBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+        CompletableFuture<Void> batch = new CompletableFuture<>();
+        service.merchantTransferPayments(body.asFlux())
+                .subscribe(lines::add, batch::completeExceptionally, () -> batch.complete(null));
+
+        // the first item is split across chunks and starts as soon as its last byte arrives
+        int end = new String(content, StandardCharsets.UTF_8).indexOf("} ,") + 1;
+        body.tryEmitNext(chunk(content, 0, 7));
+        body.tryEmitNext(chunk(content, 7, end - 1));
+        assertThat(calls.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        body.tryEmitNext(chunk(content, end - 1, end));
+        Call first = calls.poll(5, TimeUnit.SECONDS);
+        assertThat(first.ref).isEqualTo("r0");
+
+        // the rest in chunks of odd sizes, at most a window of payments in flight
+        for (int offset = end, size = 13; offset < content.length; offset += size) {
+            body.tryEmitNext(chunk(content, offset, Math.min(offset + size, content.length)));
+        }
+        body.tryEmitComplete();
+        Call second = calls.poll(5, TimeUnit.SECONDS);
+        assertThat(second.ref).isEqualTo("r1");
+        assertThat(calls.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+        second.complete();
+        assertThat(line().get("index").asInt()).isEqualTo(1);
+        Call third = calls.poll(5, TimeUnit.SECONDS);
+        assertThat(third.ref).isEqualTo("r2");
+        first.complete();
+        third.complete();
+        calls.poll(5, TimeUnit.SECONDS).complete();
+        batch.get(5, TimeUnit.SECONDS);
+
+        List<Integer> indexes = new ArrayList<>();
+        indexes.add(1);
+        for (String line; (line = lines.poll()) != null; ) {
+            JsonNode result = mapper.readTree(line);
+            assertThat(result.get("status").asInt()).isEqualTo(200);
+            indexes.add(result.get("index").asInt());
+        }
+        assertThat(indexes).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    public void testStreamedMalformedItemsFailAlone() throws Exception {
+        completeImmediately = true;
+        byte[] content = ("{\"partnerId\":\"ptnr_1234567890\",\"merchant_payment_transfer\":{\"transfer_reference\":\"r0\"}}\n"
+                + "null\n"
+                + "{\"partnerId\":\"ptnr_1234567890\",\"merchant_payment_transfer\":{\"transfer_reference\":\"r2\"}}\n"
+                + "{\"partnerId\":").getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += 5) {
+            chunks.add(chunk(content, offset, Math.min(offset + 5, content.length)));
+        }
+
+        List<String> results = service.merchantTransferPayments(Flux.fromIterable(chunks))
+                .collectList().block(Duration.ofSeconds(5));
+
+        List<JsonNode> sorted = new ArrayList<>();
+        for (String line : results) {
+            sorted.add(mapper.readTree(line));
+        }
+        sorted.sort((a, b) -> a.get("index").asInt() - b.get("index").asInt());
+        assertThat(sorted).hasSize(4);
+        assertThat(sorted.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(sorted.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(sorted.get(1).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+        assertThat(sorted.get(2).get("status").asInt()).isEqualTo(200);
+        assertThat(sorted.get(3).get("status").asInt()).isEqualTo(400);
+        assertThat(sorted.get(3).get("error").get("reason_code").asText()).isEqualTo("INVALID_INPUT_FORMAT");
+    }
+
+    @Test
+    public void testStreamedBatchesBounded() {
+        configuration.setMaxConcurrentBatches(1);
+        service = new BatchPaymentServiceImpl(new RecordingService(), mapper, configuration, batchExecutor);
+        Sinks.Many<DataBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+        service.merchantTransferPayments(body.asFlux()).subscribe();
+
+        assertThatThrownBy(() -> service.merchantTransferPayments(Flux.empty()).blockLast(Duration.ofSeconds(5)))
+                .isInstanceOf(MasterCardException.class)
+                .hasMessage("Too many concurrent batches");
+        body.tryEmitComplete();
+        assertThat(service.merchantTransferPayments(Flux.empty()).collectList().block(Duration.ofSeconds(5))).isEmpty();
+    }
+
+    private static DataBuffer chunk(byte[] content, int from, int to) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(content, from, to));
+    }
+
+    private JsonNode line() throws Exception {
+        String line = lines.poll(5, TimeUnit.SECONDS);
+        assertThat(line).isNotNull();
+        return mapper.readTree(line);
+    }
+
+    private static ByteArrayInputStream batch(String start, String separator, String end, String... refs) {
+        List<String> payments = new ArrayList<>();
+        for (String ref : refs) {
+            payments.add("{\"partnerId\":\"ptnr_1234567890\",\"merchant_payment_transfer\":{\"transfer_reference\":\"" + ref + "\"}}");
+        }
+        return new ByteArrayInputStream((start + String.join(separator, payments) + end).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class Call {
+        String ref;
+        CompletableFuture<Map<String, Object>> response = new CompletableFuture<>();
+
+        Call(String ref) {
+            this.ref = ref;
+        }
+
+        void complete() {
+            response.complete(Collections.singletonMap("merchant_transfer", Collections.singletonMap("transfer_reference", ref)));
+        }
+    }
+
+    private class RecordingService implements MasterCardAsyncService {
+
+        @Override
+        public CompletableFuture<Map<String, Object>> merchantTransferPayment(MerchantTransferPaymentRequest request) {
+            Call call = new Call(request.getMerchantPaymentTransfer().getTransferReference());
+            if (completeImmediately) {
+                call.complete();
+            } else {
+                calls.add(call);
+            }
+            return call.response;
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Object>> merchantTransferFundingAndPayment(MerchantTransferFundingAndPaymentRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Object>> getById(String partnerId, String transferId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Object>> getByRef(String partnerId, String ref) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.CircuitBreakerConfiguration;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CircuitBreakerTest {
+
+    static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    AtomicLong now;
+
+    CircuitBreaker breaker;
+
+    @Before
+    public void init() {
+        CircuitBreakerConfiguration configuration = new CircuitBreakerConfiguration();
+        configuration.setWindowSize(10);
+        configuration.setMinimumCalls(4);
+        configuration.setHalfOpenCalls(2);
+        configuration.setOpenMillis(1000);
+        now = new AtomicLong();
+        breaker = new CircuitBreaker(configuration, now::get);
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        call(false);
+        call(true);
+        call(false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        call(true);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testOpensOnSlowCalls() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onResult(TimeUnit.SECONDS.toNanos(6), false);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulProbes() {
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testReopensAfterFailedProbe() {
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        call(true);
+        call(false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void call(boolean failed) {
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onResult(FAST, failed);
+    }
+}
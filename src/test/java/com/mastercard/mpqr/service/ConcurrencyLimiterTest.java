@@ -0,0 +1,115 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.ConcurrencyLimitConfiguration;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConcurrencyLimiterTest {
+
+    ConcurrencyLimitConfiguration configuration;
+
+    ConcurrencyLimiter limiter;
+
+    @Before
+    public void init() {
+        configuration = new ConcurrencyLimitConfiguration();
+        configuration.setInitialLimit(20);
+        configuration.setMinLimit(4);
+        configuration.setMaxLimit(64);
+        configuration.setLongWindow(100);
+        limiter = new ConcurrencyLimiter(configuration);
+    }
+
+    @Test
+    public void testGrowsWhileLatencyIsFlat() {
+        int previous = limiter.getLimit();
+        for (int i = 0; i < 20; i++) {
+            sample(10);
+            assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(previous);
+            previous = limiter.getLimit();
+        }
+        assertThat(limiter.getLimit()).isGreaterThan(20);
+
+        // the ceiling holds however long latency stays flat
+        for (int i = 0; i < 500; i++) {
+            sample(10);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(64);
+    }
+
+    @Test
+    public void testShrinksAsLatencyRises() {
+        // above the limit the gradient alone would settle at
+        configuration.setMinLimit(8);
+        limiter = new ConcurrencyLimiter(configuration);
+        for (int i = 0; i < 100; i++) {
+            sample(10);
+        }
+        int flat = limiter.getLimit();
+
+        int previous = flat;
+        for (int i = 0; i < 10; i++) {
+            sample(100);
+            assertThat(limiter.getLimit()).isLessThanOrEqualTo(previous);
+            previous = limiter.getLimit();
+        }
+        assertThat(limiter.getLimit()).isLessThan(flat);
+
+        // the floor holds however long latency stays high
+        for (int i = 0; i < 50; i++) {
+            sample(1000 * (i + 1));
+        }
+        assertThat(limiter.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    public void testBacksOffOnFailuresDownToTheFloor() {
+        assertThat(limiter.tryAcquire()).isEqualTo(1);
+        limiter.release(1, TimeUnit.MILLISECONDS.toNanos(10), true);
+        assertThat(limiter.getLimit()).isEqualTo(18);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.release(limiter.tryAcquire(), TimeUnit.MILLISECONDS.toNanos(10), true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void testCallsOverTheLimitRejected() {
+        configuration.setInitialLimit(2);
+        limiter = new ConcurrencyLimiter(configuration);
+
+        assertThat(limiter.tryAcquire()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isEqualTo(2);
+        assertThat(limiter.tryAcquire()).isZero();
+        limiter.cancel();
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        assertThat(limiter.tryAcquire()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSamplesBelowTheLimitIgnored() {
+        for (int i = 0; i < 50; i++) {
+            int inFlight = limiter.tryAcquire();
+            limiter.release(inFlight, TimeUnit.MILLISECONDS.toNanos(10), false);
+        }
+        // a single call in flight says nothing about a higher limit
+        assertThat(limiter.getLimit()).isEqualTo(20);
+    }
+
+    /**
+     * Call made while the limit was reached
+     */
+    private void sample(long rttMillis) {
+        assertThat(limiter.tryAcquire()).isPositive();
+        limiter.release(limiter.getLimit(), TimeUnit.MILLISECONDS.toNanos(rttMillis), false);
+    }
+}
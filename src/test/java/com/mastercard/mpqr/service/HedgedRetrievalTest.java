@@ -0,0 +1,217 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.RetrievalConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.exception.RateLimitException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class HedgedRetrievalTest {
+
+    AtomicLong now;
+
+    List<Long> backoffs;
+
+    AtomicInteger calls;
+
+    RetrievalConfiguration configuration;
+
+    ExecutorService outboundExecutor;
+
+    ExecutorService hedgeExecutor;
+
+    ScheduledExecutorService scheduler;
+
+    @Before
+    public void init() {
+        now = new AtomicLong();
+        backoffs = new ArrayList<>();
+        calls = new AtomicInteger();
+        configuration = new RetrievalConfiguration();
+        configuration.setMaxAttempts(4);
+        configuration.setBackoffMillis(50);
+        configuration.setMaxBackoffMillis(120);
+        configuration.setBudgetRatio(0);
+        configuration.setBudgetMinPerSecond(10);
+        outboundExecutor = mock(ExecutorService.class);
+        hedgeExecutor = mock(ExecutorService.class);
+        scheduler = mock(ScheduledExecutorService.class);
+        // retries are scheduled after their backoff, then run on the outbound executor
+        doAnswer(invocation -> {
+            backoffs.add(invocation.getArgument(1));
+            ((Runnable) invocation.getArgument(0)).run();
+            return mock(ScheduledFuture.class);
+        }).when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(outboundExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void testRetryBackoff() {
+        HedgedRetrieval retrieval = open();
+
+        CompletableFuture<String> response = retrieval.executeAsync(() -> {
+            if (calls.incrementAndGet() < 4) {
+                throw unavailable();
+            }
+            return "transfer";
+        });
+
+        assertThat(response.join()).isEqualTo("transfer");
+        assertThat(retrieval.retryCount()).isEqualTo(3);
+        verify(outboundExecutor, times(3)).execute(any(Runnable.class));
+        assertThat(retrieval.maxBackoffMillis(1)).isEqualTo(50);
+        assertThat(retrieval.maxBackoffMillis(2)).isEqualTo(100);
+        assertThat(retrieval.maxBackoffMillis(3)).isEqualTo(120);
+        assertThat(retrieval.maxBackoffMillis(30)).isEqualTo(120);
+        assertThat(backoffs).hasSize(3);
+        for (int i = 0; i < backoffs.size(); i++) {
+            assertThat(backoffs.get(i)).isBetween(0L, retrieval.maxBackoffMillis(i + 1));
+        }
+    }
+
+    @Test
+    public void testLastErrorAfterMaxAttempts() {
+        HedgedRetrieval retrieval = open();
+
+        assertThat(failure(retrieval.executeAsync(failing()))).isInstanceOf(MasterCardException.class);
+        assertThat(calls.get()).isEqualTo(4);
+        assertThat(backoffs).hasSize(3);
+    }
+
+    @Test
+    public void testBudgetExhausted() {
+        configuration.setBudgetMinPerSecond(1);
+        HedgedRetrieval retrieval = open();
+
+        assertThat(failure(retrieval.executeAsync(failing()))).isInstanceOf(MasterCardException.class);
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(failure(retrieval.executeAsync(failing()))).isInstanceOf(MasterCardException.class);
+        assertThat(calls.get()).isEqualTo(3);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(failure(retrieval.executeAsync(failing()))).isInstanceOf(MasterCardException.class);
+        assertThat(calls.get()).isEqualTo(5);
+        assertThat(retrieval.retryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testClientErrorsAndRejectionsNotRetried() {
+        HedgedRetrieval retrieval = open();
+
+        assertThat(failure(retrieval.executeAsync(() -> {
+            calls.incrementAndGet();
+            throw new MasterCardException("transfer_reference", "RESOURCE_UNKNOWN", "Record not found", HttpStatus.NOT_FOUND);
+        }))).isInstanceOf(MasterCardException.class);
+        assertThat(failure(retrieval.executeAsync(() -> {
+            calls.incrementAndGet();
+            throw new MasterCardException(null, UpstreamGuard.CIRCUIT_OPEN, "MPQR API unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+        }))).isInstanceOf(MasterCardException.class);
+        // each attempt takes its own token, a local rejection is not retried
+        assertThat(failure(retrieval.executeAsync(() -> {
+            calls.incrementAndGet();
+            throw new RateLimitException("partnerId", "Too many requests from partner", 1);
+        }))).isInstanceOf(RateLimitException.class);
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(backoffs).isEmpty();
+    }
+
+    @Test
+    public void testHedgeDelaySelection() {
+        HedgedRetrieval retrieval = open();
+
+        // the max until enough latencies are known
+        retrieval.executeAsync(taking(100));
+        assertThat(retrieval.hedgeDelayMillis()).isEqualTo(1000);
+
+        for (int i = 1; i < 100; i++) {
+            retrieval.executeAsync(taking(i < 90 ? 100 : 400));
+        }
+        assertThat(retrieval.hedgeDelayMillis()).isEqualTo(400);
+        configuration.setHedgeDelayPercentile(90);
+        assertThat(retrieval.hedgeDelayMillis()).isEqualTo(100);
+
+        // bounded by the min and max
+        configuration.setMinHedgeDelayMillis(150);
+        assertThat(retrieval.hedgeDelayMillis()).isEqualTo(150);
+        configuration.setHedgeDelayPercentile(95);
+        configuration.setMaxHedgeDelayMillis(300);
+        assertThat(retrieval.hedgeDelayMillis()).isEqualTo(300);
+    }
+
+    @Test
+    public void testHedgeScheduledAfterDelay() {
+        configuration.setHedgingEnabled(true);
+        configuration.setMaxHedgeDelayMillis(700);
+        doReturn(mock(ScheduledFuture.class)).when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        HedgedRetrieval retrieval = open();
+
+        assertThat(retrieval.executeAsync(taking(100)).join()).isEqualTo("transfer");
+
+        ArgumentCaptor<Runnable> hedge = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(hedge.capture(), eq(700L), eq(TimeUnit.MILLISECONDS));
+        // the retrieval answered first, no hedge is sent
+        hedge.getValue().run();
+        assertThat(retrieval.hedgeCount()).isZero();
+        assertThat(calls.get()).isEqualTo(1);
+        // the first attempt ran on the calling thread
+        verifyNoInteractions(hedgeExecutor, outboundExecutor);
+    }
+
+    private HedgedRetrieval open() {
+        return new HedgedRetrieval(configuration, outboundExecutor, hedgeExecutor, scheduler, now::get);
+    }
+
+    private static Throwable failure(CompletableFuture<?> response) {
+        return catchThrowable(response::join).getCause();
+    }
+
+    private Supplier<String> taking(long millis) {
+        return () -> {
+            calls.incrementAndGet();
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+            return "transfer";
+        };
+    }
+
+    private Supplier<String> failing() {
+        return () -> {
+            calls.incrementAndGet();
+            throw unavailable();
+        };
+    }
+
+    private static MasterCardException unavailable() {
+        return new MasterCardException(null, "SERVICE_UNAVAILABLE", "Service unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
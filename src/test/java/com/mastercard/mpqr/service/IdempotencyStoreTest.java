@@ -0,0 +1,296 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.mastercard.mpqr.config.IdempotencyConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class IdempotencyStoreTest {
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    ObjectMapper mapper;
+
+    IdempotencyConfiguration configuration;
+
+    ExecutorService executor;
+
+    IdempotencyStore store;
+
+    AtomicInteger calls = new AtomicInteger();
+
+    @Before
+    public void init() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        configuration = new IdempotencyConfiguration();
+        configuration.setJournalFile(folder.getRoot().toPath().resolve("idempotency.log").toString());
+        configuration.setWaitMillis(100);
+        executor = Executors.newCachedThreadPool();
+        store = open();
+    }
+
+    @After
+    public void close() throws Exception {
+        store.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        MerchantTransferPaymentRequest request = request("ref-1", "44");
+
+        Map<String, Object> created = store.execute(PARTNER_ID, "ref-1", request, create("ref-1"));
+        Map<String, Object> replayed = store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1"));
+
+        assertThat(transfer(replayed).get("id")).isEqualTo(transfer(created).get("id"));
+        assertThat(transfer(created).get("sender_account_uri")).isEqualTo("pan:5509670000000187;exp=2099-08;cvc=123");
+        assertThat(transfer(replayed).get("sender_account_uri")).isEqualTo("pan:550967******0187");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(store.replayCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAsyncCreationAndDuplicates() throws Exception {
+        CompletableFuture<Map<String, Object>> upstream = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> created = store.executeAsync(PARTNER_ID, "ref-1", request("ref-1", "44"), () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<Map<String, Object>> duplicate = store.executeAsync(PARTNER_ID, "ref-1", request("ref-1", "44"),
+                () -> CompletableFuture.completedFuture(created("ref-1")));
+        assertThat(duplicate).isNotDone();
+
+        upstream.complete(created("ref-1"));
+        assertThat(transfer(created.get(1, TimeUnit.SECONDS)).get("sender_account_uri")).isEqualTo("pan:5509670000000187;exp=2099-08;cvc=123");
+        assertThat(transfer(duplicate.get(1, TimeUnit.SECONDS)).get("sender_account_uri")).isEqualTo("pan:550967******0187");
+        assertThat(calls.get()).isEqualTo(1);
+
+        // a failed creation is forgotten, its retry creates the transfer
+        CompletableFuture<Map<String, Object>> failed = store.executeAsync(PARTNER_ID, "ref-2", request("ref-2", "44"),
+                () -> CompletableFuture.failedFuture(new MasterCardException(null, "SYSTEM_ERROR", "Unexpected error",
+                        HttpStatus.INTERNAL_SERVER_ERROR)));
+        assertThat(MasterCardException.from(catchThrowable(() -> failed.get(1, TimeUnit.SECONDS))).getReasonCode()).isEqualTo("SYSTEM_ERROR");
+        store.executeAsync(PARTNER_ID, "ref-2", request("ref-2", "44"), () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(created("ref-2"));
+        }).get(1, TimeUnit.SECONDS);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFingerprintMismatch() throws Exception {
+        store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1"));
+
+        MasterCardException e = (MasterCardException) catchThrowable(
+                () -> store.execute(PARTNER_ID, "ref-1", request("ref-1", "45"), create("ref-1")));
+        assertThat(e.getReasonCode()).isEqualTo("RESOURCE_ERROR");
+        assertThat(e.getHttpStatus()).isEqualTo(409);
+        assertThat(calls.get()).isEqualTo(1);
+        // other partners have their own references
+        store.execute("ptnr_0123456789", "ref-1", request("ref-1", "45"), create("ref-1"));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        configuration.setRetentionMillis(1);
+        store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1"));
+        Thread.sleep(5);
+
+        store.execute(PARTNER_ID, "ref-1", request("ref-1", "45"), create("ref-1"));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedCreationRetried() throws Exception {
+        Supplier<Map<String, Object>> failing = () -> {
+            throw new MasterCardException(null, "SYSTEM_ERROR", "Unexpected error", HttpStatus.INTERNAL_SERVER_ERROR);
+        };
+        assertThat(catchThrowable(() -> store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), failing)))
+                .isInstanceOf(MasterCardException.class);
+        store.close();
+        store = open();
+
+        store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1"));
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testJournalRecoveryMasksPersonalData() throws Exception {
+        Map<String, Object> created = store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1"));
+        assertThat(transfer(created).get("sender_account_uri")).isEqualTo("pan:5509670000000187;exp=2099-08;cvc=123");
+        Map<String, Object> replayedBefore = store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1"));
+        store.close();
+
+        String journal = new String(Files.readAllBytes(Paths.get(configuration.getJournalFile())), StandardCharsets.UTF_8);
+        assertThat(journal).doesNotContain("5509670000000187", "John");
+
+        store = open();
+        Map<String, Object> replayed = store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1"));
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(transfer(replayed).get("id")).isEqualTo("mtr_ref-1");
+        assertThat(transfer(replayed).get("sender_account_uri")).isEqualTo("pan:550967******0187");
+        assertThat(((Map<?, ?>) transfer(replayed).get("sender")).get("first_name")).isEqualTo("****");
+        // replays have the same shape before and after a restart
+        assertThat(replayed).isEqualTo(replayedBefore);
+    }
+
+    @Test
+    public void testCrashDuringCreationIsNotCreatedAgain() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch crashed = new CountDownLatch(1);
+        Thread creation = new Thread(() -> store.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), () -> {
+            started.countDown();
+            await(crashed);
+            return created("ref-1");
+        }));
+        creation.start();
+        started.await();
+
+        // the journal of the process that crashed is loaded by the next one
+        IdempotencyStore restarted = open();
+        try {
+            MasterCardException e = (MasterCardException) catchThrowable(
+                    () -> restarted.execute(PARTNER_ID, "ref-1", request("ref-1", "44"), create("ref-1")));
+            assertThat(e.getReasonCode()).isEqualTo("REQUEST_IN_PROGRESS");
+            assertThat(e.getHttpStatus()).isEqualTo(409);
+            assertThat(calls.get()).isZero();
+        } finally {
+            restarted.close();
+            crashed.countDown();
+            creation.join();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            store.execute(PARTNER_ID, "ref-" + i, request("ref-" + i, "44"), create("ref-" + i));
+        }
+        assertThat(catchThrowable(() -> store.execute(PARTNER_ID, "ref-failed", request("ref-failed", "44"), () -> {
+            throw new MasterCardException(null, "SYSTEM_ERROR", "Unexpected error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }))).isInstanceOf(MasterCardException.class);
+        store.flush();
+        assertThat(Files.readAllLines(Paths.get(configuration.getJournalFile()))).hasSize(22);
+
+        store.purge();
+        assertThat(Files.readAllLines(Paths.get(configuration.getJournalFile()))).hasSize(10);
+
+        // appends go to the compacted journal
+        store.execute(PARTNER_ID, "ref-10", request("ref-10", "44"), create("ref-10"));
+        store.close();
+        store = open();
+        store.execute(PARTNER_ID, "ref-10", request("ref-10", "44"), create("ref-10"));
+        store.execute(PARTNER_ID, "ref-3", request("ref-3", "44"), create("ref-3"));
+        assertThat(calls.get()).isEqualTo(11);
+    }
+
+    @Test
+    public void testCompactionWhileCreating() throws Exception {
+        configuration.setFsync(IdempotencyConfiguration.Fsync.INTERVAL);
+        store.close();
+        store = open();
+        Thread creations = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                store.execute(PARTNER_ID, "ref-" + i, request("ref-" + i, "44"), create("ref-" + i));
+            }
+        });
+        creations.start();
+        int compactions = 0;
+        while (creations.isAlive()) {
+            store.compact();
+            compactions++;
+        }
+        creations.join();
+        store.close();
+
+        // lines written during a compaction are kept by it
+        store = open();
+        for (int i = 0; i < 200; i++) {
+            store.execute(PARTNER_ID, "ref-" + i, request("ref-" + i, "44"), create("ref-" + i));
+        }
+        assertThat(calls.get()).isEqualTo(200);
+        assertThat(store.replayCount()).isEqualTo(200);
+        assertThat(compactions).isGreaterThan(1);
+    }
+
+    private IdempotencyStore open() throws Exception {
+        IdempotencyStore idempotencyStore = new IdempotencyStore(configuration, mapper, new RequestMapFlattener(mapper), executor);
+        idempotencyStore.init();
+        return idempotencyStore;
+    }
+
+    private MerchantTransferPaymentRequest request(String ref, String amount) {
+        try {
+            MerchantTransferPaymentRequest request = mapper.readValue(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"),
+                    MerchantTransferPaymentRequest.class);
+            request.getMerchantPaymentTransfer().setTransferReference(ref);
+            request.getMerchantPaymentTransfer().setAmount(amount);
+            return request;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Supplier<Map<String, Object>> create(String ref) {
+        return () -> {
+            calls.incrementAndGet();
+            return created(ref);
+        };
+    }
+
+    private Map<String, Object> created(String ref) {
+        MerchantTransferPaymentRequest request = request(ref, "44");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> transfer = mapper.convertValue(request.getMerchantPaymentTransfer(), LinkedHashMap.class);
+        transfer.put("id", "mtr_" + ref);
+        transfer.put("status", "APPROVED");
+        return Collections.singletonMap("merchant_transfer", transfer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> transfer(Map<String, Object> response) {
+        return (Map<String, Object>) response.get("merchant_transfer");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.mastercard.mpqr.config.BulkLookupConfiguration;
+import com.mastercard.mpqr.exception.RateLimitException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streamed lookups, blocking and reactive, against a mocked service, lookups complete when the test completes their future
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MerchantTransferLookupServiceImplTest {
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    ObjectMapper mapper;
+
+    BulkLookupConfiguration configuration;
+
+    ScheduledExecutorService scheduler;
+
+    ExecutorService streamExecutor;
+
+    MasterCardAsyncService masterCardAsyncService;
+
+    MerchantTransferLookupService lookupService;
+
+    Map<String, List<CompletableFuture<Map<String, Object>>>> lookups;
+
+    BlockingQueue<String> lines;
+
+    @Before
+    public void init() {
+        mapper = new ObjectMapper();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        configuration = new BulkLookupConfiguration();
+        configuration.setStreamWindow(2);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        streamExecutor = Executors.newCachedThreadPool();
+        lookups = new ConcurrentHashMap<>();
+        lines = new LinkedBlockingQueue<>();
+        masterCardAsyncService = mock(MasterCardAsyncService.class);
+        when(masterCardAsyncService.getByRef(eq(PARTNER_ID), anyString())).thenAnswer(invocation -> {
+            CompletableFuture<Map<String, Object>> lookup = new CompletableFuture<>();
+            lookups.computeIfAbsent(invocation.getArgument(1), ref -> Collections.synchronizedList(new ArrayList<>())).add(lookup);
+            return lookup;
+        });
+        lookupService = new MerchantTransferLookupServiceImpl(masterCardAsyncService, configuration, scheduler, streamExecutor, mapper);
+    }
+
+    @After
+    public void close() {
+        scheduler.shutdownNow();
+        streamExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamWindowAndCompletionOrder() throws Exception {
+        CompletableFuture<Void> stream = lookupService.streamMerchantTransferList(PARTNER_ID,
+                Arrays.asList("ref-0", "ref-1", "ref-2", "ref-3"), null, lines::add);
+
+        await(() -> started() == 2);
+        complete("ref-1");
+        assertThat(line().get("index").asInt()).isEqualTo(1);
+        await(() -> started() == 3);
+        assertThat(lookups).containsOnlyKeys("ref-0", "ref-1", "ref-2");
+
+        complete("ref-2");
+        complete("ref-0");
+        // both lookups are done, their lines race to the stream
+        assertThat(Arrays.asList(line().get("index").asInt(), line().get("index").asInt())).containsExactlyInAnyOrder(2, 0);
+        await(() -> started() == 4);
+        complete("ref-3");
+        JsonNode last = line();
+        assertThat(last.get("index").asInt()).isEqualTo(3);
+        assertThat(last.get("ref").asText()).isEqualTo("ref-3");
+        assertThat(last.get("status").asInt()).isEqualTo(200);
+        assertThat(last.get("response").get("merchant_transfer").get("id").asText()).isEqualTo("mtr_ref-3");
+
+        stream.get(5, TimeUnit.SECONDS);
+        assertThat(lines).isEmpty();
+    }
+
+    @Test
+    public void testSlowReaderHoldsBackLookups() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CompletableFuture<Void> stream = lookupService.streamMerchantTransferList(PARTNER_ID,
+                Arrays.asList("ref-0", "ref-1", "ref-2", "ref-3"), null, line -> {
+                    await(reading);
+                    lines.add(line);
+                });
+
+        await(() -> started() == 2);
+        complete("ref-0");
+        complete("ref-1");
+        // the first line is not written yet, no lookup starts meanwhile
+        Thread.sleep(100);
+        assertThat(started()).isEqualTo(2);
+
+        reading.countDown();
+        await(() -> started() == 4);
+        complete("ref-2");
+        complete("ref-3");
+        stream.get(5, TimeUnit.SECONDS);
+        assertThat(lines).hasSize(4);
+    }
+
+    @Test
+    public void testStreamPacedOnRetryAfter() throws Exception {
+        CompletableFuture<Void> stream = lookupService.streamMerchantTransferList(PARTNER_ID,
+                Arrays.asList("ref-0", "ref-1"), null, lines::add);
+
+        await(() -> started() == 2);
+        long rejectedAt = System.nanoTime();
+        lookups.get("ref-0").get(0).completeExceptionally(new RateLimitException("partnerId", "Too many requests from partner", 1));
+        complete("ref-1");
+        assertThat(line().get("index").asInt()).isEqualTo(1);
+
+        // started again once the Retry-After elapsed instead of written as a 429 line
+        await(() -> lookups.get("ref-0").size() == 2);
+        assertThat(System.nanoTime() - rejectedAt).isGreaterThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+        lookups.get("ref-0").get(1).complete(transfer("ref-0"));
+        JsonNode retried = line();
+        assertThat(retried.get("index").asInt()).isEqualTo(0);
+        assertThat(retried.get("status").asInt()).isEqualTo(200);
+        stream.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFluxLookupsFollowDemand() throws Exception {
+        BaseSubscriber<String> subscriber = new BaseSubscriber<String>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(String line) {
+                lines.add(line);
+            }
+        };
+        lookupService.streamMerchantTransferList(PARTNER_ID, Arrays.asList("ref-0", "ref-1", "ref-2", "ref-3"), null)
+                .subscribe(subscriber);
+
+        await(() -> started() == 2);
+        complete("ref-1");
+        assertThat(line().get("index").asInt()).isEqualTo(1);
+        await(() -> started() == 3);
+        complete("ref-2");
+        complete("ref-0");
+        // no line is requested, results wait and no lookup starts meanwhile
+        Thread.sleep(100);
+        assertThat(lines).isEmpty();
+        assertThat(started()).isEqualTo(3);
+
+        subscriber.request(3);
+        assertThat(Arrays.asList(line().get("index").asInt(), line().get("index").asInt())).containsExactlyInAnyOrder(0, 2);
+        await(() -> started() == 4);
+        complete("ref-3");
+        assertThat(line().get("index").asInt()).isEqualTo(3);
+        await(subscriber::isDisposed);
+        assertThat(started()).isEqualTo(4);
+    }
+
+    @Test
+    public void testFluxPacedOnRetryAfter() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        lookupService.streamMerchantTransferList(PARTNER_ID, Arrays.asList("ref-0", "ref-1"), null)
+                .doOnComplete(done::countDown)
+                .subscribe(lines::add);
+
+        await(() -> started() == 2);
+        long rejectedAt = System.nanoTime();
+        lookups.get("ref-0").get(0).completeExceptionally(new RateLimitException("partnerId", "Too many requests from partner", 1));
+        complete("ref-1");
+        assertThat(line().get("index").asInt()).isEqualTo(1);
+
+        await(() -> lookups.get("ref-0").size() == 2);
+        assertThat(System.nanoTime() - rejectedAt).isGreaterThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+        lookups.get("ref-0").get(1).complete(transfer("ref-0"));
+        JsonNode retried = line();
+        assertThat(retried.get("index").asInt()).isEqualTo(0);
+        assertThat(retried.get("status").asInt()).isEqualTo(200);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private int started() {
+        return lookups.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void complete(String ref) {
+        lookups.get(ref).get(0).complete(transfer(ref));
+    }
+
+    private JsonNode line() throws Exception {
+        String line = lines.poll(5, TimeUnit.SECONDS);
+        assertThat(line).endsWith("\n");
+        return mapper.readTree(line);
+    }
+
+    private static Map<String, Object> transfer(String ref) {
+        return Collections.singletonMap("merchant_transfer", Collections.singletonMap("id", "mtr_" + ref));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mastercard.mpqr.service;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OAuthSignerTest {
+
+    static KeyPair keyPair;
+
+    @BeforeClass
+    public static void generateKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+    }
+
+    @Test
+    public void signsBaseStringWithBodyHashAndQueryParameters() throws Exception {
+        OAuthSigner signer = new OAuthSigner("consumer!key", keyPair.getPrivate());
+        String body = "{\"merchant_transfer\":{\"transfer_reference\":\"ref 1\"}}";
+        HttpPost request = new HttpPost("https://sandbox.api.mastercard.com:443/send/v1/partners/ptnr_1/merchant/transfers?ref=a%20b&format=JSON");
+        request.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+
+        signer.signRequest(request.getURI(), request);
+
+        Map<String, String> oauth = new TreeMap<>();
+        for (String parameter : request.getFirstHeader("Authorization").getValue().substring("OAuth ".length()).split(",")) {
+            String[] pair = parameter.split("=", 2);
+            oauth.put(pair[0], pair[1].substring(1, pair[1].length() - 1));
+        }
+        String bodyHash = Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+        assertThat(oauth.get("oauth_body_hash")).isEqualTo(OAuthSigner.encode(bodyHash));
+        assertThat(oauth.get("oauth_consumer_key")).isEqualTo("consumer%21key");
+
+        String parameters = "format=JSON"
+                + "&oauth_body_hash=" + oauth.get("oauth_body_hash")
+                + "&oauth_consumer_key=" + oauth.get("oauth_consumer_key")
+                + "&oauth_nonce=" + oauth.get("oauth_nonce")
+                + "&oauth_signature_method=RSA-SHA256"
+                + "&oauth_timestamp=" + oauth.get("oauth_timestamp")
+                + "&oauth_version=1.0"
+                + "&ref=a%20b";
+        String baseString = "POST&" + OAuthSigner.encode("https://sandbox.api.mastercard.com/send/v1/partners/ptnr_1/merchant/transfers")
+                + "&" + OAuthSigner.encode(parameters);
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(baseString.getBytes(StandardCharsets.UTF_8));
+        String signature = URLDecoder.decode(oauth.get("oauth_signature"), "UTF-8");
+        assertThat(verifier.verify(Base64.getDecoder().decode(signature))).isTrue();
+
+        assertThat(request.getEntity().isRepeatable()).isTrue();
+    }
+
+    @Test
+    public void reusesSignatureEngineOfThread() throws Exception {
+        OAuthSigner signer = new OAuthSigner("consumer-key", keyPair.getPrivate());
+        URI uri = URI.create("https://sandbox.api.mastercard.com/send/v1/partners/ptnr_1/merchant/transfers/tr_1");
+
+        String first = signer.authorizationHeader("GET", uri, null);
+        String second = signer.authorizationHeader("GET", uri, null);
+
+        assertThat(first).contains("oauth_body_hash=\"" + OAuthSigner.encode(OAuthSigner.EMPTY_BODY_HASH) + "\"");
+        assertThat(first).isNotEqualTo(second);
+        assertThat(signer.signatures.acquire()).isSameAs(signer.signatures.acquire());
+    }
+
+    @Test
+    public void reusesPooledSignatureEngineOnVirtualThreads() throws Exception {
+        OAuthSigner signer = new OAuthSigner("consumer-key", keyPair.getPrivate());
+        URI uri = URI.create("https://sandbox.api.mastercard.com/send/v1/partners/ptnr_1/merchant/transfers/tr_1");
+        List<Signature> engines = new CopyOnWriteArrayList<>();
+
+        for (int call = 0; call < 3; call++) {
+            Thread thread = Thread.ofVirtual().name("signer-test-", call).start(() -> {
+                try {
+                    signer.authorizationHeader("GET", uri, null);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                Signature engine = signer.signatures.acquire();
+                engines.add(engine);
+                signer.signatures.release(engine);
+            });
+            thread.join();
+        }
+
+        assertThat(engines).hasSize(3);
+        assertThat(engines.get(1)).isSameAs(engines.get(0));
+        assertThat(engines.get(2)).isSameAs(engines.get(0));
+        assertThat(signer.signatures.pooledCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.service.PooledHttpTransport.PartnerRoute;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PooledHttpTransportTest {
+
+    static final PartnerRoute ROUTE = new PartnerRoute(URI.create("https://api.mastercard.com/mpqr/"), null);
+
+    @Test
+    public void testTransfersPath() {
+        assertThat(PooledHttpTransport.uri(ROUTE, "ptnr_1", "payment", null).toString())
+                .isEqualTo("https://api.mastercard.com/mpqr/send/v1/partners/ptnr_1/merchant/transfers/payment");
+        assertThat(PooledHttpTransport.uri(ROUTE, "ptnr_1", null, "ref 1&x=2").toString())
+                .isEqualTo("https://api.mastercard.com/mpqr/send/v1/partners/ptnr_1/merchant/transfers?ref=ref+1%26x%3D2");
+    }
+
+    @Test
+    public void testValuesEncodedAsOneSegment() {
+        URI uri = PooledHttpTransport.uri(ROUTE, "ptnr 1", "mtr_1?ref=2#x;y", null);
+
+        assertThat(uri.getRawPath()).isEqualTo("/mpqr/send/v1/partners/ptnr%201/merchant/transfers/mtr_1%3Fref=2%23x%3By");
+        assertThat(uri.getRawQuery()).isNull();
+        assertThat(uri.getRawFragment()).isNull();
+    }
+
+    @Test
+    public void testPathTraversalRejected() {
+        for (String value : new String[]{"..", ".", "", "../payment", "mtr_1/..", "..\\payment"}) {
+            MasterCardException e = (MasterCardException) catchThrowable(() -> PooledHttpTransport.uri(ROUTE, "ptnr_1", value, null));
+            assertThat(e.getSource()).isEqualTo("transferId");
+            assertThat(e.getReasonCode()).isEqualTo("INVALID_INPUT_VALUE");
+            assertThat(e.getHttpStatus()).isEqualTo(400);
+        }
+        MasterCardException e = (MasterCardException) catchThrowable(() -> PooledHttpTransport.uri(ROUTE, "../ptnr_2", "mtr_1", null));
+        assertThat(e.getSource()).isEqualTo("partnerId");
+    }
+
+    @Test
+    public void testUpstreamStatusResolved() {
+        assertThat(PooledHttpTransport.error(404, Collections.emptyMap()).getHttpStatus()).isEqualTo(404);
+        // statuses unknown to HttpStatus are reported as a bad gateway
+        assertThat(PooledHttpTransport.error(599, Collections.emptyMap()).getHttpStatus()).isEqualTo(502);
+    }
+}
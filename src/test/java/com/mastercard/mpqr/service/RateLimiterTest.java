@@ -0,0 +1,142 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.RateLimitConfiguration;
+import com.mastercard.mpqr.exception.RateLimitException;
+import com.mastercard.mpqr.metrics.UpstreamOperation;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RateLimiterTest {
+
+    AtomicLong now;
+
+    RateLimitConfiguration configuration;
+
+    @Before
+    public void init() {
+        now = new AtomicLong();
+        configuration = new RateLimitConfiguration();
+        configuration.setPartnerCreatePerSecond(1);
+        configuration.setPartnerCreateBurst(1);
+        configuration.setPartnerRetrievalPerSecond(1);
+        configuration.setPartnerRetrievalBurst(2);
+        configuration.setGlobalCreatePerSecond(100);
+        configuration.setGlobalCreateBurst(100);
+        configuration.setGlobalRetrievalPerSecond(1000);
+        configuration.setGlobalRetrievalBurst(3);
+    }
+
+    @Test
+    public void testPartnerScope() {
+        RateLimiter limiter = new RateLimiter(configuration, 1, now::get);
+
+        limiter.acquire("ptnr_a", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+        RateLimitException e = (RateLimitException) catchThrowable(
+                () -> limiter.acquire("ptnr_a", UpstreamOperation.MERCHANT_TRANSFER_FUNDING_AND_PAYMENT));
+        assertThat(e.getSource()).isEqualTo("partnerId");
+        assertThat(e.getReasonCode()).isEqualTo("RATE_LIMIT_EXCEEDED");
+        assertThat(e.getHttpStatus()).isEqualTo(429);
+        assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+
+        // other partners and retrievals of the same partner have their own buckets
+        limiter.acquire("ptnr_b", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+        limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID);
+        assertThat(limiter.partnerRejectionCount()).isEqualTo(1);
+        assertThat(limiter.globalRejectionCount()).isZero();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.acquire("ptnr_a", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+    }
+
+    @Test
+    public void testGlobalScopeGivesPartnerTokenBack() {
+        RateLimiter limiter = new RateLimiter(configuration, 1, now::get);
+
+        limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID);
+        limiter.acquire("ptnr_b", UpstreamOperation.GET_BY_REF);
+        limiter.acquire("ptnr_c", UpstreamOperation.GET_BY_ID);
+        RateLimitException e = (RateLimitException) catchThrowable(() -> limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID));
+        assertThat(e.getSource()).isNull();
+        assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+        assertThat(limiter.globalRejectionCount()).isEqualTo(1);
+
+        // the second token of ptnr_a was given back when the global limit rejected the call
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        e = (RateLimitException) catchThrowable(() -> limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID));
+        assertThat(e.getSource()).isEqualTo("partnerId");
+    }
+
+    @Test
+    public void testStripeFallback() {
+        configuration.setPartnerRetrievalBurst(100);
+        configuration.setGlobalRetrievalBurst(4);
+        // four stripes holding one token each, all taken from the same thread
+        RateLimiter limiter = new RateLimiter(configuration, 4, now::get);
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID);
+        }
+        assertThat(catchThrowable(() -> limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID)))
+                .isInstanceOf(RateLimitException.class);
+
+        // a stripe refills at a quarter of the rate
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(4));
+        limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID);
+    }
+
+    @Test
+    public void testPruneIdlePartners() {
+        configuration.setMaxPartners(2);
+        RateLimiter limiter = new RateLimiter(configuration, 1, now::get);
+
+        limiter.acquire("ptnr_a", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+        limiter.acquire("ptnr_b", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+        // buckets still refilling are kept
+        limiter.acquire("ptnr_c", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+        assertThat(limiter.partnerCount()).isEqualTo(3);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        limiter.acquire("ptnr_d", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+        assertThat(limiter.partnerCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDisabled() {
+        configuration.setEnabled(false);
+        RateLimiter limiter = new RateLimiter(configuration, 1, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("ptnr_a", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT);
+        }
+        assertThat(limiter.partnerCount()).isZero();
+    }
+
+    @Test
+    public void testExecuteChargesOnlyCalls() {
+        RateLimiter limiter = new RateLimiter(configuration, 1, now::get);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThat(limiter.execute("ptnr_a", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT, calls::incrementAndGet)).isEqualTo(1);
+        assertThat(catchThrowable(() -> limiter.execute("ptnr_a", UpstreamOperation.MERCHANT_TRANSFER_PAYMENT, calls::incrementAndGet)))
+                .isInstanceOf(RateLimitException.class);
+        assertThat(calls.get()).isEqualTo(1);
+
+        limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID);
+        limiter.acquire("ptnr_a", UpstreamOperation.GET_BY_ID);
+        CompletableFuture<Integer> response = limiter.executeAsync("ptnr_a", UpstreamOperation.GET_BY_ID,
+                () -> CompletableFuture.completedFuture(calls.incrementAndGet()));
+        assertThat(response).isCompletedExceptionally();
+        assertThat(catchThrowable(response::join)).hasCauseInstanceOf(RateLimitException.class);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+}
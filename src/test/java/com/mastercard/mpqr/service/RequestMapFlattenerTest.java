@@ -0,0 +1,97 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RequestMapFlattenerTest {
+
+    ObjectMapper mapper;
+
+    RequestMapFlattener flattener;
+
+    @Before
+    public void init() {
+        mapper = new ObjectMapper();
+        mapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        flattener = new RequestMapFlattener(mapper);
+    }
+
+    @Test
+    public void testMerchantTransferPaymentSameAsJsonTree() throws Exception {
+        MerchantTransferPaymentRequest request = mapper.readValue(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"),
+                MerchantTransferPaymentRequest.class);
+        assertThat(flatten(request)).containsExactlyElementsOf(flattenJsonTree(request));
+    }
+
+    @Test
+    public void testMerchantTransferFundingAndPaymentSameAsJsonTree() throws Exception {
+        MerchantTransferFundingAndPaymentRequest request = mapper.readValue(getClass().getResourceAsStream("/MerchantTransferFundingAndPaymentRequest.json"),
+                MerchantTransferFundingAndPaymentRequest.class);
+        assertThat(flatten(request)).containsExactlyElementsOf(flattenJsonTree(request));
+    }
+
+    @Test
+    public void testNullValuesSkipped() throws Exception {
+        MerchantTransferPaymentRequest request = new MerchantTransferPaymentRequest();
+        request.setPartnerId("ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo");
+        request.setMerchantPaymentTransfer(new MerchantTransferPaymentRequest.MerchantPaymentTransfer());
+        request.getMerchantPaymentTransfer().setAmount("10");
+        assertThat(flatten(request)).containsOnly(
+                "partnerId=ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo",
+                "merchant_payment_transfer.amount=10");
+        assertThat(flatten(request)).containsExactlyElementsOf(flattenJsonTree(request));
+    }
+
+    private List<String> flatten(Object request) {
+        List<String> entries = new ArrayList<>();
+        flattener.flatten(request, (path, value) -> entries.add(path + "=" + value));
+        return entries;
+    }
+
+    /**
+     * Reference implementation going through the json representation of the request
+     */
+    private List<String> flattenJsonTree(Object request) throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        addKeys("", mapper.readTree(mapper.writeValueAsString(request)), map);
+        List<String> entries = new ArrayList<>();
+        map.forEach((path, value) -> entries.add(path + "=" + value));
+        return entries;
+    }
+
+    private void addKeys(String currentPath, JsonNode jsonNode, Map<String, Object> map) {
+        if (jsonNode.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> iter = jsonNode.properties().iterator();
+            String pathPrefix = currentPath.isEmpty() ? "" : currentPath + ".";
+            while (iter.hasNext()) {
+                Map.Entry<String, JsonNode> entry = iter.next();
+                addKeys(pathPrefix + entry.getKey(), entry.getValue(), map);
+            }
+        } else if (jsonNode.isArray()) {
+            for (int i = 0; i < jsonNode.size(); i++) {
+                addKeys(currentPath + "[" + i + "]", jsonNode.get(i), map);
+            }
+        } else if (jsonNode.isValueNode()) {
+            map.put(currentPath, jsonNode.asText());
+        }
+    }
+}
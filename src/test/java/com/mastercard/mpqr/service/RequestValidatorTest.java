@@ -0,0 +1,81 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.mastercard.mpqr.config.ValidationConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.model.MerchantTransferFundingAndPaymentRequest;
+import com.mastercard.mpqr.model.MerchantTransferPaymentRequest;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RequestValidatorTest {
+
+    ObjectMapper mapper;
+
+    RequestValidator validator;
+
+    @Before
+    public void init() {
+        mapper = new ObjectMapper();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        validator = new RequestValidator(new ValidationConfiguration());
+    }
+
+    @Test
+    public void testValidRequestsPass() throws Exception {
+        validator.validate(paymentRequest());
+        validator.validate(mapper.readValue(getClass().getResourceAsStream("/MerchantTransferFundingAndPaymentRequest.json"),
+                MerchantTransferFundingAndPaymentRequest.class));
+        assertThat(validator.rejectionCount()).isZero();
+    }
+
+    @Test
+    public void testRejectionsLikeMpqrApi() throws Exception {
+        MerchantTransferPaymentRequest request = paymentRequest();
+        request.setPartnerId("test");
+        assertRejected(request, "partnerId", "INVALID_INPUT_LENGTH", "Invalid length");
+
+        request = paymentRequest();
+        request.getMerchantPaymentTransfer().setAmount("4.4");
+        assertRejected(request, "amount", "INVALID_INPUT_FORMAT", "Invalid format");
+
+        request = paymentRequest();
+        request.getMerchantPaymentTransfer().setCurrency("XYZ");
+        assertRejected(request, "currency", "INVALID_INPUT_VALUE", "Invalid value");
+
+        request = paymentRequest();
+        request.getMerchantPaymentTransfer().setSenderAccountUri("pan:5509670000000188;exp=2099-08");
+        assertRejected(request, "sender_account_uri", "INVALID_INPUT_VALUE", "Invalid value");
+
+        request = paymentRequest();
+        request.getMerchantPaymentTransfer().setRecipientAccountUri("card:5509670000000187");
+        assertRejected(request, "recipient_account_uri", "INVALID_INPUT_FORMAT", "Invalid format");
+
+        request = paymentRequest();
+        request.getMerchantPaymentTransfer().setTransferReference(null);
+        assertRejected(request, "transfer_reference", "MISSING_REQUIRED_INPUT", "Missing required input");
+
+        assertThat(validator.rejectionCount()).isEqualTo(6);
+    }
+
+    private void assertRejected(MerchantTransferPaymentRequest request, String source, String reasonCode, String message) {
+        Throwable thrown = catchThrowable(() -> validator.validate(request));
+        assertThat(thrown).isInstanceOf(MasterCardException.class);
+        MasterCardException e = (MasterCardException) thrown;
+        assertThat(e.getSource()).isEqualTo(source);
+        assertThat(e.getReasonCode()).isEqualTo(reasonCode);
+        assertThat(e.getMessage()).isEqualTo(message);
+        assertThat(e.getHttpStatus()).isEqualTo(400);
+    }
+
+    private MerchantTransferPaymentRequest paymentRequest() throws Exception {
+        return mapper.readValue(getClass().getResourceAsStream("/MerchantTransferPaymentRequest.json"), MerchantTransferPaymentRequest.class);
+    }
+}
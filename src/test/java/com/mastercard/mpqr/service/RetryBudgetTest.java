@@ -0,0 +1,55 @@
+package com.mastercard.mpqr.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryBudgetTest {
+
+    AtomicLong now;
+
+    @Before
+    public void init() {
+        now = new AtomicLong();
+    }
+
+    @Test
+    public void testExhaustedAndRefilled() {
+        RetryBudget budget = new RetryBudget(0.25, 2, now::get);
+
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse();
+
+        // four calls earn a retry
+        for (int i = 0; i < 4; i++) {
+            budget.onCall();
+        }
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse();
+
+        // and the minimum comes back with time
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testBurstBounded() {
+        RetryBudget budget = new RetryBudget(0.5, 1, now::get);
+
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+        for (int i = 0; i < 10000; i++) {
+            budget.onCall();
+        }
+        int acquired = 0;
+        while (budget.tryAcquire()) {
+            acquired++;
+        }
+        assertThat(acquired).isEqualTo(501);
+    }
+}
@@ -0,0 +1,42 @@
+package com.mastercard.mpqr.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimerWheelTest {
+
+    @Test
+    public void testExpiresOnDeadlineAcrossRounds() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, 8, 0);
+        wheel.schedule("soon", 250);
+        wheel.schedule("later", 2000);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(200, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(300, expired::add);
+        assertThat(expired).containsExactly("soon");
+        wheel.advance(1900, expired::add);
+        assertThat(expired).containsExactly("soon");
+        wheel.advance(2000, expired::add);
+        assertThat(expired).containsExactly("soon", "later");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void testLateAdvanceExpiresEverythingDue() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(100, 8, 0);
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(i, i * 100);
+        }
+        List<Integer> expired = new ArrayList<>();
+
+        wheel.advance(10_000, expired::add);
+        assertThat(expired).hasSize(20);
+        assertThat(wheel.size()).isZero();
+    }
+}
@@ -0,0 +1,42 @@
+package com.mastercard.mpqr.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstThenRate() {
+        AtomicLong now = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+
+        assertThat(bucket.isFull()).isTrue();
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryAcquire()).isZero();
+        }
+        long waitNanos = bucket.tryAcquire();
+        assertThat(waitNanos).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        now.addAndGet(waitNanos);
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.isFull()).isTrue();
+    }
+
+    @Test
+    public void testReleaseGivesTokenBack() {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(1, 1, now::get);
+
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+        bucket.release();
+        assertThat(bucket.tryAcquire()).isZero();
+    }
+}
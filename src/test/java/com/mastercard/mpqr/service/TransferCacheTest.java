@@ -0,0 +1,154 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.TransferCacheConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.fail;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferCacheTest {
+
+    static final Map<String, Object> APPROVED = transfer("APPROVED");
+    static final Map<String, Object> PENDING = transfer("PENDING");
+
+    TransferCacheConfiguration configuration;
+
+    TransferCache cache;
+
+    AtomicInteger calls;
+
+    @Before
+    public void init() {
+        configuration = new TransferCacheConfiguration();
+        configuration.setPendingTtlMillis(0);
+        cache = new TransferCache(configuration);
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    public void testTerminalTransferCached() {
+        TransferKey key = TransferKey.byId("partner", "1");
+        assertThat(cache.get(key, () -> load(APPROVED))).isEqualTo(APPROVED);
+        assertThat(cache.get(key, () -> load(APPROVED))).isEqualTo(APPROVED);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPendingTransferNotCachedWithZeroTtl() {
+        TransferKey key = TransferKey.byRef("partner", "1");
+        cache.get(key, () -> load(PENDING));
+        cache.get(key, () -> load(PENDING));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNotFoundCached() {
+        TransferKey key = TransferKey.byId("partner", "xxx");
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get(key, () -> {
+                    calls.incrementAndGet();
+                    throw new MasterCardException("transfer_id", "RESOURCE_UNKNOWN", "Record not found", HttpStatus.NOT_FOUND);
+                });
+                fail("not found expected");
+            } catch (MasterCardException e) {
+                assertThat(e.getReasonCode()).isEqualTo("RESOURCE_UNKNOWN");
+                assertThat(e.getHttpStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+            }
+        }
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAsyncNotFoundCached() {
+        TransferKey key = TransferKey.byId("partner", "xxx");
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<Map<String, Object>> response = cache.getAsync(key, () -> {
+                calls.incrementAndGet();
+                CompletableFuture<Map<String, Object>> notFound = new CompletableFuture<>();
+                notFound.completeExceptionally(new MasterCardException("transfer_id", "RESOURCE_UNKNOWN", "Record not found", HttpStatus.NOT_FOUND));
+                return notFound;
+            });
+            assertThat(response.isCompletedExceptionally()).isTrue();
+            assertThat(MasterCardException.from(catchThrowable(response::join)).getReasonCode()).isEqualTo("RESOURCE_UNKNOWN");
+        }
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        configuration.setMaxWeightBytes(1500);
+        TransferKey first = TransferKey.byId("partner", "1");
+        TransferKey second = TransferKey.byId("partner", "2");
+        TransferKey third = TransferKey.byId("partner", "3");
+        cache.get(first, () -> load(APPROVED));
+        cache.get(second, () -> load(APPROVED));
+        cache.get(first, () -> load(APPROVED));
+        cache.get(third, () -> load(APPROVED));
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.weightBytes()).isLessThanOrEqualTo(1500);
+        cache.get(first, () -> load(APPROVED));
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testConcurrentHitsAndEvictions() throws Exception {
+        configuration.setMaxWeightBytes(5000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                threads.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        TransferKey key = TransferKey.byId("partner", String.valueOf(ThreadLocalRandom.current().nextInt(i % 2 == 0 ? 4 : 40)));
+                        assertThat(cache.get(key, () -> load(APPROVED))).isEqualTo(APPROVED);
+                    }
+                }));
+            }
+            for (Future<?> thread : threads) {
+                thread.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.hitCount() + cache.missCount()).isEqualTo(16000);
+        assertThat(cache.missCount()).isEqualTo(calls.get());
+        assertThat(cache.weightBytes()).isBetween(1L, 5000L);
+        // concurrent loads of a key replace each other instead of being evicted
+        assertThat(cache.evictionCount()).isPositive().isLessThanOrEqualTo(cache.missCount() - cache.size());
+    }
+
+    private Map<String, Object> load(Map<String, Object> body) {
+        calls.incrementAndGet();
+        return body;
+    }
+
+    private static Map<String, Object> transfer(String status) {
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("id", "1");
+        transfer.put("status", status);
+        return Collections.singletonMap("merchant_transfer", transfer);
+    }
+}
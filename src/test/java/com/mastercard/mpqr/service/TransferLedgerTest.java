@@ -0,0 +1,191 @@
+package com.mastercard.mpqr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.mpqr.config.LedgerConfiguration;
+import com.mastercard.mpqr.config.TransferCacheConfiguration;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferLedgerTest {
+
+    static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    LedgerConfiguration configuration;
+
+    TransferLedger ledger;
+
+    AtomicInteger calls = new AtomicInteger();
+
+    @Before
+    public void init() throws Exception {
+        configuration = new LedgerConfiguration();
+        configuration.setDirectory(folder.getRoot().getPath());
+        configuration.setSegmentBytes(65536);
+        configuration.setInitialIndexSlots(16);
+        configuration.setEncryptionKey(KEY);
+        ledger = open();
+    }
+
+    @After
+    public void close() {
+        ledger.close();
+    }
+
+    @Test
+    public void testTerminalTransfersAnsweredLocallyAfterRestart() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            ledger.record("partner", created("mtr_" + i, "ref" + i, i % 2 == 0 ? "APPROVED" : "PENDING"));
+        }
+        ledger.close();
+        ledger = open();
+
+        assertThat(ledger.keyCount()).isEqualTo(400);
+        assertThat(ledger.segmentCount()).isGreaterThan(1);
+        Map<String, Object> byId = ledger.get(TransferKey.byId("partner", "mtr_42"), upstream("mtr_42", "ref42", "APPROVED"));
+        assertThat(TransferResponses.findValue(byId, "transfer_reference")).isEqualTo("ref42");
+        Map<String, Object> byRef = ledger.get(TransferKey.byRef("partner", "ref42"), upstream("mtr_42", "ref42", "APPROVED"));
+        assertThat(TransferResponses.findValue(byRef, "id")).isEqualTo("mtr_42");
+        assertThat(ledger.get(TransferKey.byId("other", "mtr_42"), upstream("mtr_42", "ref42", "APPROVED"))).isNotNull();
+        assertThat(calls.get()).isEqualTo(1);
+
+        // pending transfers go to MPQR API, which settled them meanwhile
+        ledger.get(TransferKey.byId("partner", "mtr_43"), upstream("mtr_43", "ref43", "APPROVED"));
+        ledger.get(TransferKey.byRef("partner", "ref43"), upstream("mtr_43", "ref43", "APPROVED"));
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(ledger.hitCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testCompactionDropsExpiredSegments() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            ledger.record("partner", created("mtr_" + i, "ref" + i, "APPROVED"));
+        }
+        int segments = ledger.segmentCount();
+        configuration.setRetentionMillis(1);
+        Thread.sleep(5);
+        ledger.compact();
+
+        assertThat(ledger.segmentCount()).isEqualTo(1);
+        assertThat(ledger.keyCount()).isLessThan(400);
+        ledger.get(TransferKey.byId("partner", "mtr_0"), upstream("mtr_0", "ref0", "APPROVED"));
+        ledger.get(TransferKey.byId("partner", "mtr_199"), upstream("mtr_199", "ref199", "APPROVED"));
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(segments).isGreaterThan(1);
+        assertThat(folder.getRoot().listFiles((directory, name) -> name.endsWith(TransferLedger.SEGMENT_SUFFIX))).hasSize(1);
+    }
+
+    @Test
+    public void testUnmap() throws Exception {
+        Path path = folder.newFile().toPath();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 4096);
+        }
+        buffer.putInt(0, TransferLedger.MAGIC);
+
+        assertThat(TransferLedger.unmap(buffer)).isTrue();
+        Files.delete(path);
+    }
+
+    @Test
+    public void testTransfersEncryptedAtRest() throws Exception {
+        Map<String, Object> body = created("mtr_1", "ref1", "APPROVED");
+        Map<String, Object> sender = new LinkedHashMap<>();
+        sender.put("first_name", "John");
+        sender.put("account_uri", "pan:5509670000000187;exp=2099-08;cvc=123");
+        transfer(body).put("sender", sender);
+        transfer(body).put("sender_account_uri", "pan:5509670000000187;exp=2099-08;cvc=123");
+        ledger.record("partner", body);
+        ledger.close();
+
+        for (File segment : folder.getRoot().listFiles((directory, name) -> name.endsWith(TransferLedger.SEGMENT_SUFFIX))) {
+            assertThat(new String(Files.readAllBytes(segment.toPath()), StandardCharsets.UTF_8)).doesNotContain("5509670000000187", "John");
+        }
+
+        // retrievals answered from the ledger are the responses of MPQR API
+        ledger = open();
+        Map<String, Object> byId = ledger.get(TransferKey.byId("partner", "mtr_1"), upstream("mtr_1", "ref1", "APPROVED"));
+        assertThat(calls.get()).isZero();
+        assertThat(transfer(byId)).isEqualTo(transfer(body));
+        ledger.close();
+
+        // with another key the transfer is retrieved from MPQR API again
+        configuration.setEncryptionKey(Base64.getEncoder().encodeToString(new byte[16]));
+        ledger = open();
+        ledger.get(TransferKey.byId("partner", "mtr_1"), upstream("mtr_1", "ref1", "APPROVED"));
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testTooLongReferenceNotRecorded() throws Exception {
+        StringBuilder ref = new StringBuilder();
+        while (ref.length() <= Short.MAX_VALUE) {
+            ref.append("ref");
+        }
+        Map<String, Object> body = created("mtr_1", ref.toString(), "APPROVED");
+        assertThat(ledger.record("partner", body)).isSameAs(body);
+        ledger.record("partner", created("mtr_2", "ref2", "APPROVED"));
+        assertThat(ledger.keyCount()).isEqualTo(2);
+        ledger.close();
+        ledger = open();
+
+        assertThat(ledger.keyCount()).isEqualTo(2);
+        ledger.get(TransferKey.byId("partner", "mtr_2"), upstream("mtr_2", "ref2", "APPROVED"));
+        assertThat(calls.get()).isZero();
+        ledger.get(TransferKey.byId("partner", "mtr_1"), upstream("mtr_1", ref.toString(), "APPROVED"));
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    private TransferLedger open() throws Exception {
+        TransferLedger ledger = new TransferLedger(configuration, new TransferCacheConfiguration(), new ObjectMapper());
+        ledger.init();
+        return ledger;
+    }
+
+    private Supplier<Map<String, Object>> upstream(String id, String ref, String status) {
+        return () -> {
+            calls.incrementAndGet();
+            return created(id, ref, status);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> transfer(Map<String, Object> response) {
+        return (Map<String, Object>) response.get("merchant_transfer");
+    }
+
+    private static Map<String, Object> created(String id, String ref, String status) {
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("id", id);
+        transfer.put("transfer_reference", ref);
+        transfer.put("amount", "44");
+        transfer.put("additional_message", String.format("%0500d", 0));
+        transfer.put("status", status);
+        return Collections.singletonMap("merchant_transfer", transfer);
+    }
+}
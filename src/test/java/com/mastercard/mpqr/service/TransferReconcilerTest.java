@@ -0,0 +1,213 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.ReconciliationConfiguration;
+import com.mastercard.mpqr.config.TransferCacheConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reconciler ticked by hand on a fake clock, refreshes run inline on the calling thread
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferReconcilerTest {
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    static final long START = 1_000_000;
+
+    AtomicLong now;
+
+    List<Long> refreshedAt;
+
+    ReconciliationConfiguration configuration;
+
+    MasterCardService masterCardService;
+
+    TransferCache transferCache;
+
+    ExecutorService outboundExecutor;
+
+    TransferReconciler reconciler;
+
+    @Before
+    public void init() {
+        now = new AtomicLong(START);
+        refreshedAt = new ArrayList<>();
+        configuration = new ReconciliationConfiguration();
+        masterCardService = mock(MasterCardService.class);
+        TransferCacheConfiguration cacheConfiguration = new TransferCacheConfiguration();
+        transferCache = spy(new TransferCache(cacheConfiguration));
+        outboundExecutor = mock(ExecutorService.class);
+        doAnswer(inline()).when(outboundExecutor).execute(any(Runnable.class));
+        reconciler = new TransferReconciler(configuration, cacheConfiguration, masterCardService, transferCache,
+                outboundExecutor, now::get);
+        reconciler.start(mock(ScheduledExecutorService.class));
+    }
+
+    @After
+    public void stop() {
+        reconciler.stop();
+    }
+
+    @Test
+    public void testBackoffSchedule() {
+        Map<String, Object> pending = created("mtr_1", "ref-1", "PENDING");
+        refreshes(() -> pending);
+        reconciler.track(PARTNER_ID, pending);
+
+        runFor(65000);
+
+        assertThat(refreshedAt).hasSize(6);
+        assertThat(refreshedAt.get(0) - START).isBetween(1000L, 1200L);
+        long[] delays = {2000, 4000, 8000, 16000, 30000};
+        for (int i = 0; i < delays.length; i++) {
+            assertThat(refreshedAt.get(i + 1) - refreshedAt.get(i)).isBetween(delays[i], delays[i] + 200);
+        }
+        // clients polling the pending transfer get the last state until the next refresh
+        verify(transferCache).publish(TransferKey.byId(PARTNER_ID, "mtr_1"), pending, 2100);
+        assertThat(reconciler.trackedCount()).isEqualTo(1);
+        assertThat(reconciler.refreshCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void testTerminalStatePublishedByIdAndRef() {
+        Map<String, Object> approved = created("mtr_1", "ref-1", "APPROVED");
+        refreshes(() -> approved);
+        reconciler.track(PARTNER_ID, created("mtr_1", "ref-1", "PENDING"));
+
+        runFor(1500);
+
+        verify(transferCache).publish(TransferKey.byId(PARTNER_ID, "mtr_1"), approved, 0);
+        Map<String, Object> byRef = TransferResponses.retrievalResponse(TransferKey.Type.REF, transfer(approved));
+        verify(transferCache).publish(TransferKey.byRef(PARTNER_ID, "ref-1"), byRef, 0);
+        assertThat(transferCache.get(TransferKey.byId(PARTNER_ID, "mtr_1"), this::notCalled)).isEqualTo(approved);
+        assertThat(transferCache.get(TransferKey.byRef(PARTNER_ID, "ref-1"), this::notCalled)).isEqualTo(byRef);
+        assertThat(reconciler.resolvedCount()).isEqualTo(1);
+        assertThat(reconciler.trackedCount()).isZero();
+
+        runFor(60000);
+        assertThat(refreshedAt).hasSize(1);
+    }
+
+    @Test
+    public void testTerminalCreationsNotTracked() {
+        reconciler.track(PARTNER_ID, created("mtr_1", "ref-1", "APPROVED"));
+
+        runFor(5000);
+        assertThat(reconciler.trackedCount()).isZero();
+        assertThat(refreshedAt).isEmpty();
+    }
+
+    @Test
+    public void testAbandonedWhenUnknown() {
+        refreshes(() -> {
+            throw new MasterCardException("transfer_id", TransferReconciler.RESOURCE_UNKNOWN, "Record not found", HttpStatus.NOT_FOUND);
+        });
+        reconciler.track(PARTNER_ID, created("mtr_1", "ref-1", "PENDING"));
+
+        runFor(60000);
+
+        assertThat(refreshedAt).hasSize(1);
+        assertThat(reconciler.abandonedCount()).isEqualTo(1);
+        assertThat(reconciler.trackedCount()).isZero();
+    }
+
+    @Test
+    public void testAbandonedAfterMaxAge() {
+        configuration.setMaxAgeMillis(5000);
+        Map<String, Object> pending = created("mtr_1", "ref-1", "PENDING");
+        refreshes(() -> pending);
+        reconciler.track(PARTNER_ID, pending);
+
+        runFor(60000);
+
+        // refreshed after 1, 3 and 7 seconds, the last one found the transfer older than the max age
+        assertThat(refreshedAt).hasSize(3);
+        assertThat(reconciler.abandonedCount()).isEqualTo(1);
+        assertThat(reconciler.trackedCount()).isZero();
+    }
+
+    @Test
+    public void testRetriedNextTickWhenRejected() {
+        doThrow(new RejectedExecutionException()).doAnswer(inline()).when(outboundExecutor).execute(any(Runnable.class));
+        refreshes(() -> created("mtr_1", "ref-1", "APPROVED"));
+        reconciler.track(PARTNER_ID, created("mtr_1", "ref-1", "PENDING"));
+
+        runFor(1000);
+        assertThat(refreshedAt).isEmpty();
+        assertThat(reconciler.refreshCount()).isZero();
+
+        runFor(100);
+        assertThat(refreshedAt).hasSize(1);
+        assertThat(refreshedAt.get(0) - START).isEqualTo(1100);
+        assertThat(reconciler.refreshCount()).isEqualTo(1);
+        runFor(100);
+        assertThat(reconciler.resolvedCount()).isEqualTo(1);
+    }
+
+    private void refreshes(Supplier<Map<String, Object>> response) {
+        when(masterCardService.refreshById(PARTNER_ID, "mtr_1")).thenAnswer(invocation -> {
+            refreshedAt.add(now.get());
+            return response.get();
+        });
+    }
+
+    /**
+     * Advances the clock tick by tick
+     */
+    private void runFor(long millis) {
+        for (long end = now.get() + millis; now.get() < end; ) {
+            now.addAndGet(configuration.getTickMillis());
+            reconciler.tick();
+        }
+    }
+
+    private Map<String, Object> notCalled() {
+        throw new AssertionError("MPQR API called");
+    }
+
+    private static Answer<Void> inline() {
+        return invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        };
+    }
+
+    private static Map<String, Object> created(String id, String ref, String status) {
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("id", id);
+        transfer.put("transfer_reference", ref);
+        transfer.put("status", status);
+        return Collections.singletonMap("merchant_transfer", transfer);
+    }
+
+    private static Object transfer(Map<String, Object> response) {
+        return response.get("merchant_transfer");
+    }
+}
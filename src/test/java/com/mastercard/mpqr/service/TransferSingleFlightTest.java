@@ -0,0 +1,173 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferSingleFlightTest {
+
+    static final TransferKey KEY = TransferKey.byId("partner", "mtr_1");
+
+    static final int WAITERS = 4;
+
+    TransferSingleFlight singleFlight;
+
+    ExecutorService executor;
+
+    AtomicInteger calls;
+
+    CountDownLatch release;
+
+    @Before
+    public void init() {
+        singleFlight = new TransferSingleFlight();
+        executor = Executors.newCachedThreadPool();
+        calls = new AtomicInteger();
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void close() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentRetrievalsShareOneCall() throws Exception {
+        Map<String, Object> response = Collections.singletonMap("merchant_transfer", Collections.singletonMap("id", "mtr_1"));
+
+        List<Future<Map<String, Object>>> results = retrieveConcurrently(() -> {
+            calls.incrementAndGet();
+            await(release);
+            return response;
+        });
+        release.countDown();
+
+        for (Future<Map<String, Object>> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(response);
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(singleFlight.sharedCount()).isEqualTo(WAITERS);
+        assertThat(singleFlight.inFlightCount()).isZero();
+
+        // the next retrieval calls MPQR API again
+        singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailurePropagatedToEveryWaiter() throws Exception {
+        MasterCardException failure = new MasterCardException(null, "SYSTEM_ERROR", "Unexpected error", HttpStatus.INTERNAL_SERVER_ERROR);
+
+        List<Future<Map<String, Object>>> results = retrieveConcurrently(() -> {
+            calls.incrementAndGet();
+            await(release);
+            throw failure;
+        });
+        release.countDown();
+
+        for (Future<Map<String, Object>> result : results) {
+            assertThat(catchThrowable(() -> result.get(5, TimeUnit.SECONDS))).hasCause(failure);
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    public void testAsyncRetrievalsShareOneCall() {
+        CompletableFuture<Map<String, Object>> upstream = new CompletableFuture<>();
+        Supplier<CompletableFuture<Map<String, Object>>> call = () -> {
+            calls.incrementAndGet();
+            return upstream;
+        };
+
+        CompletableFuture<Map<String, Object>> leader = singleFlight.executeAsync(KEY, call);
+        CompletableFuture<Map<String, Object>> waiter = singleFlight.executeAsync(KEY, call);
+        assertThat(singleFlight.inFlightCount()).isEqualTo(1);
+        assertThat(leader).isNotDone();
+
+        MasterCardException failure = new MasterCardException(null, "SYSTEM_ERROR", "Unexpected error", HttpStatus.INTERNAL_SERVER_ERROR);
+        upstream.completeExceptionally(failure);
+
+        assertThat(catchThrowable(leader::join)).hasCause(failure);
+        assertThat(catchThrowable(waiter::join)).hasCause(failure);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(singleFlight.sharedCount()).isEqualTo(1);
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    public void testBlockingRetrievalWaitsForAsyncCall() throws Exception {
+        CompletableFuture<Map<String, Object>> upstream = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> leader = singleFlight.executeAsync(KEY, () -> upstream);
+        Future<Map<String, Object>> waiter = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return null;
+        }));
+        awaitShared(1);
+
+        Map<String, Object> response = Collections.singletonMap("merchant_transfer", Collections.singletonMap("id", "mtr_1"));
+        upstream.complete(response);
+
+        assertThat(leader.join()).isSameAs(response);
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isSameAs(response);
+        assertThat(calls.get()).isZero();
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    /**
+     * Starts a leader blocked in the call and waiters joining it
+     */
+    private List<Future<Map<String, Object>>> retrieveConcurrently(Supplier<Map<String, Object>> call) throws Exception {
+        List<Future<Map<String, Object>>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute(KEY, call)));
+        while (singleFlight.inFlightCount() == 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < WAITERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute(KEY, call)));
+        }
+        awaitShared(WAITERS);
+        return results;
+    }
+
+    private void awaitShared(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.sharedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(singleFlight.sharedCount()).isEqualTo(count);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
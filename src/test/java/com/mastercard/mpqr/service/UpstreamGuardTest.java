@@ -0,0 +1,119 @@
+package com.mastercard.mpqr.service;
+
+import com.mastercard.mpqr.config.CircuitBreakerConfiguration;
+import com.mastercard.mpqr.config.ConcurrencyLimitConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UpstreamGuardTest {
+
+    CircuitBreakerConfiguration breakerConfiguration;
+
+    ConcurrencyLimitConfiguration limitConfiguration;
+
+    AtomicInteger calls;
+
+    @Before
+    public void init() {
+        breakerConfiguration = new CircuitBreakerConfiguration();
+        breakerConfiguration.setWindowSize(2);
+        breakerConfiguration.setMinimumCalls(2);
+        breakerConfiguration.setOpenMillis(1);
+        breakerConfiguration.setHalfOpenCalls(1);
+        limitConfiguration = new ConcurrencyLimitConfiguration();
+        limitConfiguration.setInitialLimit(3);
+        limitConfiguration.setMinLimit(1);
+        limitConfiguration.setBackoffRatio(0.5);
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    public void testCallsOverTheLimitRejected() {
+        limitConfiguration.setInitialLimit(1);
+        UpstreamGuard guard = new UpstreamGuard(breakerConfiguration, limitConfiguration);
+        CompletableFuture<Map<String, Object>> pending = guard.executeAsync(CompletableFuture::new);
+        assertThat(guard.inFlightCount()).isEqualTo(1);
+
+        MasterCardException e = (MasterCardException) catchThrowable(() -> guard.execute(call()));
+        assertThat(e.getReasonCode()).isEqualTo(UpstreamGuard.CONCURRENCY_LIMIT_EXCEEDED);
+        assertThat(e.getHttpStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(guard.executeAsync(() -> CompletableFuture.completedFuture("transfer"))).isCompletedExceptionally();
+        assertThat(calls.get()).isZero();
+        assertThat(guard.limitRejectionCount()).isEqualTo(2);
+        assertThat(guard.circuitRejectionCount()).isZero();
+    }
+
+    @Test
+    public void testRejectionGivesTheProbeBack() throws Exception {
+        UpstreamGuard guard = new UpstreamGuard(breakerConfiguration, limitConfiguration);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> held = new CompletableFuture<>();
+        CompletableFuture<String> guardedFirst = guard.executeAsync(() -> first);
+        CompletableFuture<String> guardedSecond = guard.executeAsync(() -> second);
+        CompletableFuture<String> guardedHeld = guard.executeAsync(() -> held);
+        // both failures open the circuit and bring the limit down to the call still in flight
+        first.completeExceptionally(unavailable());
+        second.completeExceptionally(unavailable());
+        assertThat(guardedFirst).isCompletedExceptionally();
+        assertThat(guardedSecond).isCompletedExceptionally();
+        assertThat(guard.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(guard.concurrencyLimit()).isEqualTo(1);
+        assertThat(guard.inFlightCount()).isEqualTo(1);
+        Thread.sleep(20);
+
+        // the only probe of the half open circuit is taken then given back, every time
+        for (int i = 0; i < 3; i++) {
+            MasterCardException e = (MasterCardException) catchThrowable(() -> guard.execute(call()));
+            assertThat(e.getReasonCode()).isEqualTo(UpstreamGuard.CONCURRENCY_LIMIT_EXCEEDED);
+        }
+        assertThat(guard.circuitState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(guard.circuitRejectionCount()).isZero();
+        assertThat(calls.get()).isZero();
+
+        held.complete("transfer");
+        assertThat(guardedHeld.get()).isEqualTo("transfer");
+        assertThat(guard.execute(call())).isEqualTo("transfer");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOpenCircuitRejectsBeforeTheLimit() {
+        breakerConfiguration.setOpenMillis(60000);
+        UpstreamGuard guard = new UpstreamGuard(breakerConfiguration, limitConfiguration);
+        for (int i = 0; i < 2; i++) {
+            catchThrowable(() -> guard.execute(() -> {
+                throw unavailable();
+            }));
+        }
+
+        MasterCardException e = (MasterCardException) catchThrowable(() -> guard.execute(call()));
+        assertThat(e.getReasonCode()).isEqualTo(UpstreamGuard.CIRCUIT_OPEN);
+        assertThat(guard.inFlightCount()).isZero();
+        assertThat(guard.limitRejectionCount()).isZero();
+    }
+
+    private Supplier<String> call() {
+        return () -> {
+            calls.incrementAndGet();
+            return "transfer";
+        };
+    }
+
+    private static MasterCardException unavailable() {
+        return new MasterCardException(null, "SERVICE_UNAVAILABLE", "Service unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,74 @@
+package com.mastercard.mpqr.stub;
+
+import com.mastercard.mpqr.config.StubConfiguration;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MpqrStubServerTest {
+
+    static final String PAYMENT = "{\"merchant_payment_transfer\":{\"transfer_reference\":\"ref-1\",\"amount\":\"10\"}}";
+
+    MpqrStubServer server;
+
+    String baseUrl;
+
+    @Before
+    public void start() throws IOException {
+        StubConfiguration configuration = new StubConfiguration();
+        try (ServerSocket socket = new ServerSocket(0)) {
+            configuration.setPort(socket.getLocalPort());
+        }
+        configuration.setThreads(2);
+        configuration.setMedianLatencyMillis(0);
+        configuration.setP99LatencyMillis(0);
+        server = new MpqrStubServer(configuration);
+        server.start();
+        baseUrl = "http://localhost:" + configuration.getPort() + "/send/v1/partners/ptnr_0123456789/merchant/transfers";
+    }
+
+    @After
+    public void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void testDuplicateReferenceConflicts() throws IOException {
+        assertThat(post("/payment", PAYMENT).getResponseCode()).isEqualTo(200);
+
+        HttpURLConnection duplicate = post("/payment", PAYMENT);
+        assertThat(duplicate.getResponseCode()).isEqualTo(409);
+        assertThat(body(duplicate.getErrorStream())).contains("\"ReasonCode\":\"RESOURCE_ERROR\"");
+    }
+
+    private HttpURLConnection post(String resource, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(baseUrl + resource).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private static String body(InputStream in) {
+        try (Scanner scanner = new Scanner(in, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+}
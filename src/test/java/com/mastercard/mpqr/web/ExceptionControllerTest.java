@@ -0,0 +1,90 @@
+package com.mastercard.mpqr.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.mastercard.mpqr.config.BatchConfiguration;
+import com.mastercard.mpqr.config.BulkLookupConfiguration;
+import com.mastercard.mpqr.exception.MasterCardException;
+import com.mastercard.mpqr.exception.RateLimitException;
+import com.mastercard.mpqr.service.BatchPaymentService;
+import com.mastercard.mpqr.service.MasterCardAsyncService;
+import com.mastercard.mpqr.service.MerchantTransferLookupService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ExceptionControllerTest {
+
+    static final String PARTNER_ID = "ptnr_BEeCrYJHh2BXTXPy_PEtp-8DBOo";
+
+    MasterCardAsyncService masterCardAsyncService;
+
+    MockMvc mvc;
+
+    @Before
+    public void init() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        masterCardAsyncService = mock(MasterCardAsyncService.class);
+        MasterCardController controller = new MasterCardController(masterCardAsyncService, mock(BatchPaymentService.class),
+                new BatchConfiguration(), new BulkLookupConfiguration(), mock(MerchantTransferLookupService.class));
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new ExceptionController())
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(mapper))
+                .build();
+    }
+
+    @Test
+    public void testRateLimitExceeded() throws Exception {
+        when(masterCardAsyncService.getById(PARTNER_ID, "id-1"))
+                .thenReturn(failed(new RateLimitException("partnerId", "Too many requests from partner", 3)));
+
+        MvcResult result = mvc.perform(get("/byId").param("partnerId", PARTNER_ID).param("transferId", "id-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"))
+                .andExpect(jsonPath("$.source", is("partnerId")))
+                .andExpect(jsonPath("$.reason_code", is("RATE_LIMIT_EXCEEDED")))
+                .andExpect(jsonPath("$.message", is("Too many requests from partner")));
+    }
+
+    @Test
+    public void testOtherErrorsWithoutRetryAfter() throws Exception {
+        when(masterCardAsyncService.getById(PARTNER_ID, "id-1")).thenReturn(failed(
+                new MasterCardException(null, "SERVICE_UNAVAILABLE", "Too many concurrent requests to MPQR API", HttpStatus.SERVICE_UNAVAILABLE)));
+
+        MvcResult result = mvc.perform(get("/byId").param("partnerId", PARTNER_ID).param("transferId", "id-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().doesNotExist(HttpHeaders.RETRY_AFTER))
+                .andExpect(jsonPath("$.reason_code", is("SERVICE_UNAVAILABLE")));
+    }
+
+    private static CompletableFuture<Map<String, Object>> failed(Throwable e) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+}